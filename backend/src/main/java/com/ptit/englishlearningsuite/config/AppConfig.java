@@ -1,9 +1,14 @@
 package com.ptit.englishlearningsuite.config;
 
+import com.ptit.englishlearningsuite.service.LessonFeatureIndex;
+import com.ptit.englishlearningsuite.util.ExactLessonVectorIndex;
+import com.ptit.englishlearningsuite.util.HnswLessonVectorIndex;
+import com.ptit.englishlearningsuite.util.LessonVectorIndex;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.annotation.EnableAsync;
+import org.springframework.scheduling.annotation.EnableScheduling;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.web.servlet.config.annotation.ResourceHandlerRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
@@ -13,11 +18,25 @@ import java.util.concurrent.Executor;
 
 @Configuration
 @EnableAsync
+@EnableScheduling
 public class AppConfig {
 
     @Value("${media.upload-dir:uploads}")
     private String uploadDir;
 
+    // exact: quét chính xác theo cửa sổ độ khó; hnsw: đồ thị HNSW xấp xỉ cho danh mục lớn
+    @Value("${recommendation.vector-index.type:exact}")
+    private String vectorIndexType;
+
+    @Value("${recommendation.vector-index.hnsw.m:16}")
+    private int hnswMaxConnections;
+
+    @Value("${recommendation.vector-index.hnsw.ef-construction:200}")
+    private int hnswEfConstruction;
+
+    @Value("${recommendation.vector-index.hnsw.ef-search:64}")
+    private int hnswEfSearch;
+
     @Bean
     public RestTemplate restTemplate() {
         return new RestTemplate();
@@ -34,6 +53,16 @@ public class AppConfig {
         return executor;
     }
 
+    @Bean
+    public LessonVectorIndex lessonVectorIndex() {
+        return switch (vectorIndexType.trim().toLowerCase()) {
+            case "exact" -> new ExactLessonVectorIndex(LessonFeatureIndex.SKILL_DIMENSIONS);
+            case "hnsw" -> new HnswLessonVectorIndex(LessonFeatureIndex.SKILL_DIMENSIONS,
+                    hnswMaxConnections, hnswEfConstruction, hnswEfSearch);
+            default -> throw new IllegalArgumentException("Unknown recommendation.vector-index.type: " + vectorIndexType);
+        };
+    }
+
     @Bean
     public WebMvcConfigurer mediaResourceConfigurer() {
         return new WebMvcConfigurer() {
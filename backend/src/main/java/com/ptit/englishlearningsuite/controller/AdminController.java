@@ -4,11 +4,24 @@ import com.ptit.englishlearningsuite.dto.AccountDTO;
 import com.ptit.englishlearningsuite.dto.AdminAccountRequest;
 import com.ptit.englishlearningsuite.dto.AdminDashboardDTO;
 import com.ptit.englishlearningsuite.dto.DetailedStatisticsDTO;
+import com.ptit.englishlearningsuite.dto.LearnerMailboxStatsDTO;
+import com.ptit.englishlearningsuite.dto.LessonImportStatusDTO;
+import com.ptit.englishlearningsuite.dto.RatingBackfillStatusDTO;
+import com.ptit.englishlearningsuite.dto.RatingEngineStatsDTO;
+import com.ptit.englishlearningsuite.dto.RecommendationMaterializerStatsDTO;
 import com.ptit.englishlearningsuite.dto.StatisticsDTO;
 import com.ptit.englishlearningsuite.service.AccountService;
 import com.ptit.englishlearningsuite.service.AdminDashboardService;
+import com.ptit.englishlearningsuite.service.Glicko2RatingEngine;
+import com.ptit.englishlearningsuite.service.LearnerMailbox;
+import com.ptit.englishlearningsuite.service.LessonImportJob;
+import com.ptit.englishlearningsuite.service.RatingBackfillJob;
+import com.ptit.englishlearningsuite.service.RecommendationMaterializer;
 import com.ptit.englishlearningsuite.service.StatisticsService;
+import jakarta.servlet.http.HttpServletRequest;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
@@ -16,9 +29,13 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 @RestController
 @RequestMapping("/api/admin")
@@ -33,6 +50,21 @@ public class AdminController {
     @Autowired
     private StatisticsService statisticsService;
 
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
+
+    @Autowired
+    private LearnerMailbox learnerMailbox;
+
+    @Autowired
+    private RatingBackfillJob ratingBackfillJob;
+
+    @Autowired
+    private Glicko2RatingEngine glicko2RatingEngine;
+
+    @Autowired
+    private LessonImportJob lessonImportJob;
+
     @GetMapping("/users")
     public List<AccountDTO> getAllUsers() {
         return accountService.getAllAccounts();
@@ -63,8 +95,94 @@ public class AdminController {
         return statisticsService.getStatistics();
     }
 
+    @PostMapping("/statistics/rebuild")
+    public StatisticsDTO rebuildStatistics() {
+        statisticsService.rebuildAggregates();
+        return statisticsService.getStatistics();
+    }
+
     @GetMapping("/statistics/detailed")
-    public DetailedStatisticsDTO getDetailedStatistics() {
-        return statisticsService.getDetailedStatistics();
+    public DetailedStatisticsDTO getDetailedStatistics(@RequestParam(defaultValue = "30") int days) {
+        return statisticsService.getDetailedStatistics(days);
+    }
+
+    @PostMapping("/statistics/rollups/rebuild")
+    public Map<String, Integer> rebuildDailyRollups(@RequestParam(defaultValue = "365") int days) {
+        return Collections.singletonMap("rows", statisticsService.rebuildDailyRollups(days));
+    }
+
+    @GetMapping("/recommendations/materializer")
+    public RecommendationMaterializerStatsDTO getRecommendationMaterializerStats() {
+        return recommendationMaterializer.stats();
+    }
+
+    @PostMapping("/recommendations/materializer/refresh")
+    public RecommendationMaterializerStatsDTO refreshRecommendations() {
+        recommendationMaterializer.refreshAll();
+        return recommendationMaterializer.stats();
+    }
+
+    @GetMapping("/learner-mailbox")
+    public LearnerMailboxStatsDTO getLearnerMailboxStats() {
+        return learnerMailbox.stats();
+    }
+
+    @GetMapping("/ratings/engine")
+    public RatingEngineStatsDTO getRatingEngineStats() {
+        return glicko2RatingEngine.stats();
+    }
+
+    /**
+     * Kết thúc kỳ xếp hạng Glicko-2 ngay (không chờ lịch).
+     */
+    @PostMapping("/ratings/engine/flush")
+    public RatingEngineStatsDTO flushRatingPeriod() {
+        glicko2RatingEngine.flush();
+        return glicko2RatingEngine.stats();
+    }
+
+    @GetMapping("/ratings/backfill")
+    public RatingBackfillStatusDTO getRatingBackfillStatus() {
+        return ratingBackfillJob.status();
+    }
+
+    /**
+     * Tính lại toàn bộ Elo/độ khó từ lịch sử (chạy nền); {@code dryRun=true} chỉ báo cáo chênh lệch, không ghi.
+     */
+    @PostMapping("/ratings/backfill")
+    public ResponseEntity<?> startRatingBackfill(@RequestParam(defaultValue = "true") boolean dryRun) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ratingBackfillJob.start(dryRun));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        }
+    }
+
+    @PostMapping("/ratings/backfill/{runId}/resume")
+    public ResponseEntity<?> resumeRatingBackfill(@PathVariable Long runId) {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(ratingBackfillJob.resume(runId));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        }
+    }
+
+    @GetMapping("/lessons/import")
+    public LessonImportStatusDTO getLessonImportStatus() {
+        return lessonImportJob.status();
+    }
+
+    /**
+     * Nhập bài học hàng loạt (chạy nền): body là tệp JSON Lines, mỗi dòng một LessonRequestDTO, có thể nén gzip/zip.
+     * Body được đọc thẳng từ request (không qua multipart nên không bị giới hạn kích thước upload).
+     */
+    @PostMapping("/lessons/import")
+    public ResponseEntity<?> startLessonImport(HttpServletRequest request,
+                                               @RequestParam(defaultValue = "upload") String filename) throws IOException {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(lessonImportJob.start(request.getInputStream(), filename));
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body("Error: " + e.getMessage());
+        }
     }
-}
\ No newline at end of file
+}
@@ -1,25 +1,90 @@
 package com.ptit.englishlearningsuite.controller;
 
+import com.ptit.englishlearningsuite.dto.LeaderboardEntryDTO;
+import com.ptit.englishlearningsuite.dto.LeaderboardPageDTO;
 import com.ptit.englishlearningsuite.dto.StatisticsDTO;
-import com.ptit.englishlearningsuite.service.StatisticsService;
+import com.ptit.englishlearningsuite.entity.LeaderboardPeriod;
+import com.ptit.englishlearningsuite.service.XpLeaderboardService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 
+import java.time.LocalDate;
 import java.util.List;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/leaderboard")
 public class LeaderboardController {
 
+    private static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_RADIUS = 50;
+
     @Autowired
-    private StatisticsService statisticsService;
+    private XpLeaderboardService xpLeaderboardService;
 
     @GetMapping("/xp")
-    public List<StatisticsDTO.UserStatisticsDTO> getXpLeaderboard() {
-        return statisticsService.getStatistics().getTopUsers();
+    public List<StatisticsDTO.UserStatisticsDTO> getXpLeaderboard(@RequestParam(defaultValue = "10") int limit,
+                                                                  @RequestParam(defaultValue = "all") String period) {
+        return xpLeaderboardService.top(parsePeriod(period), clamp(limit, MAX_PAGE_SIZE)).stream()
+                .map(entry -> {
+                    StatisticsDTO.UserStatisticsDTO dto = new StatisticsDTO.UserStatisticsDTO();
+                    dto.setUserId(entry.getUserId());
+                    dto.setUsername(entry.getUsername());
+                    dto.setFullName(entry.getFullName());
+                    dto.setCompletedLessons(entry.getCompletedLessons());
+                    dto.setCompletedTests(entry.getCompletedTests());
+                    dto.setAverageTestScore(entry.getAverageTestScore());
+                    dto.setXp(entry.getXp());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+    }
+
+    @GetMapping("/xp/ranks")
+    public LeaderboardPageDTO getXpRanks(@RequestParam(defaultValue = "0") int page,
+                                         @RequestParam(defaultValue = "20") int size,
+                                         @RequestParam(defaultValue = "all") String period) {
+        return xpLeaderboardService.page(parsePeriod(period), Math.max(0, page), clamp(size, MAX_PAGE_SIZE));
     }
-}
 
+    @GetMapping("/xp/top")
+    public List<LeaderboardEntryDTO> getXpTop(@RequestParam(defaultValue = "10") int limit,
+                                              @RequestParam(defaultValue = "all") String period) {
+        return xpLeaderboardService.top(parsePeriod(period), clamp(limit, MAX_PAGE_SIZE));
+    }
+
+    // Hạng của người dùng đang đăng nhập cùng những người xung quanh
+    @GetMapping("/xp/me")
+    public LeaderboardPageDTO getMyXpRank(@RequestParam(defaultValue = "5") int radius,
+                                          @RequestParam(defaultValue = "all") String period) {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        return xpLeaderboardService.around(parsePeriod(period), authentication.getName(),
+                Math.max(0, Math.min(radius, MAX_RADIUS)));
+    }
 
+    // Kết quả đã chốt của một tuần/tháng theo lịch (mặc định: kỳ gần nhất)
+    @GetMapping("/xp/history")
+    public LeaderboardPageDTO getXpHistory(@RequestParam(defaultValue = "week") String period,
+                                           @RequestParam(required = false)
+                                           @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate start) {
+        return xpLeaderboardService.history(parsePeriod(period), start);
+    }
+
+    private LeaderboardPeriod parsePeriod(String period) {
+        try {
+            return LeaderboardPeriod.valueOf(period.trim().toUpperCase());
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid leaderboard period: " + period + " (expected week, month or all)");
+        }
+    }
+
+    private int clamp(int value, int max) {
+        return Math.max(1, Math.min(value, max));
+    }
+}
@@ -1,14 +1,21 @@
 package com.ptit.englishlearningsuite.controller;
 
 import com.ptit.englishlearningsuite.dto.*;
+import com.ptit.englishlearningsuite.service.ContentVersionService;
+import com.ptit.englishlearningsuite.service.LearnerMailbox;
 import com.ptit.englishlearningsuite.service.LessonService;
+import com.ptit.englishlearningsuite.service.SerializedResponseCache;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.IOException;
+import java.util.Objects;
 
 @RestController
 @RequestMapping("/api/lessons")
@@ -17,19 +24,65 @@ public class LessonController {
     @Autowired
     private LessonService lessonService;
 
+    @Autowired
+    private SerializedResponseCache serializedResponseCache;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    // JSON dựng sẵn được ghi thẳng ra response (xem SerializedResponseCache); If-None-Match khớp phiên bản nội dung
+    // thì trả 304 mà không chạm DB.
+    // Không có tham số: toàn bộ danh mục; có bộ lọc/con trỏ/limit: một trang keyset (CatalogPageDTO)
     @GetMapping
-    public List<LessonSummaryDTO> getAllLessons() {
-        return lessonService.getAllLessons();
+    public void getAllLessons(@RequestParam(required = false) Integer level,
+                              @RequestParam(required = false) Boolean active,
+                              @RequestParam(required = false) String cursor,
+                              @RequestParam(required = false) Integer limit,
+                              HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long catalogVersion = contentVersionService.lessonCatalogVersion();
+        if (level == null && active == null && cursor == null && limit == null) {
+            String etag = SerializedResponseCache.etag("lessons", catalogVersion);
+            if (SerializedResponseCache.notModified(etag, request, response)) {
+                return;
+            }
+            serializedResponseCache.lessonList(catalogVersion, lessonService::getAllLessons).writeTo(request, response, etag);
+            return;
+        }
+
+        // Trang cũng chỉ đổi khi danh mục đổi: ETag = phiên bản danh mục + băm của truy vấn
+        String query = Integer.toUnsignedString(Objects.hash(level, active, cursor, limit), 36);
+        String etag = SerializedResponseCache.etag("lessons-" + query, catalogVersion);
+        if (SerializedResponseCache.notModified(etag, request, response)) {
+            return;
+        }
+        CatalogPageDTO<LessonSummaryDTO> page;
+        try {
+            page = lessonService.getLessonCatalogPage(level, active, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Error: " + e.getMessage());
+            return;
+        }
+        serializedResponseCache.uncached(page).writeTo(request, response, etag);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<LessonDetailDTO> getLessonDetails(@PathVariable Long id) {
+    public void getLessonDetails(@PathVariable Long id, HttpServletRequest request,
+                                 HttpServletResponse response) throws IOException {
+        Long version = contentVersionService.lessonVersion(id);
+        String etag = SerializedResponseCache.etag("lesson-" + id, version);
+        if (SerializedResponseCache.notModified(etag, request, response)) {
+            return;
+        }
+        SerializedResponseCache.SerializedResponse body;
         try {
-            LessonDetailDTO lessonDto = lessonService.getLessonById(id);
-            return ResponseEntity.ok(lessonDto);
+            body = serializedResponseCache.lessonDetail(id, version, () -> lessonService.getSharedLessonDetail(id));
         } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        body.writeTo(request, response, etag);
     }
 
     @PostMapping
@@ -69,6 +122,9 @@ public class LessonController {
 
             PracticeSubmissionResponseDTO response = lessonService.submitPractice(id, submission);
             return ResponseEntity.ok(response);
+        } catch (LearnerMailbox.MailboxFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Error: " + e.getMessage());
@@ -95,6 +151,9 @@ public class LessonController {
 
             AnswerSubmissionResponseDTO response = lessonService.submitAnswer(id, submission);
             return ResponseEntity.ok(response);
+        } catch (LearnerMailbox.MailboxFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body("Error: " + e.getMessage());
         } catch (RuntimeException e) {
             return ResponseEntity.status(HttpStatus.BAD_REQUEST)
                     .body("Error: " + e.getMessage());
@@ -1,8 +1,10 @@
 package com.ptit.englishlearningsuite.controller;
 
 import com.ptit.englishlearningsuite.dto.LessonProgressDTO;
+import com.ptit.englishlearningsuite.service.LearnerMailbox;
 import com.ptit.englishlearningsuite.service.LessonProgressService;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -18,6 +20,8 @@ public class LessonProgressController {
         try {
             lessonProgressService.completeLesson(progressDto);
             return ResponseEntity.ok().body("Lesson progress saved successfully.");
+        } catch (LearnerMailbox.MailboxFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("Error: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error saving lesson progress: " + e.getMessage());
         }
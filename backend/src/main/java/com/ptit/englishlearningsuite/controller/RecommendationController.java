@@ -4,8 +4,11 @@ import com.ptit.englishlearningsuite.dto.RecommendedLessonDTO;
 import com.ptit.englishlearningsuite.dto.SimulateLessonResultDTO;
 import com.ptit.englishlearningsuite.entity.Account;
 import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.repository.AccountFeatureRow;
 import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.service.LearnerMailbox;
 import com.ptit.englishlearningsuite.service.RecommendationService;
+import com.ptit.englishlearningsuite.util.RatingMath;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
@@ -26,6 +29,9 @@ public class RecommendationController {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private LearnerMailbox learnerMailbox;
+
     @GetMapping
     public ResponseEntity<?> getRecommendedLessons(@RequestParam(required = false) Long userId) {
         try {
@@ -91,7 +97,7 @@ public class RecommendationController {
             stats.put("id", account.getId());
             stats.put("username", account.getUsername());
             stats.put("fullName", account.getFullName());
-            stats.put("eloRating", account.getEloRating() != null ? account.getEloRating() : 1500);
+            stats.put("eloRating", account.getEloRating() != null ? account.getEloRating() : RatingMath.DEFAULT_ELO);
             stats.put("grammarProficiency", account.getGrammarProficiency() != null ? account.getGrammarProficiency() : 0.0);
             stats.put("vocabProficiency", account.getVocabProficiency() != null ? account.getVocabProficiency() : 0.0);
             stats.put("listeningProficiency", account.getListeningProficiency() != null ? account.getListeningProficiency() : 0.0);
@@ -125,19 +131,20 @@ public class RecommendationController {
             Account account = accountRepository.findById(request.getUserId())
                     .orElseThrow(() -> new RuntimeException("Account not found with id: " + request.getUserId()));
 
-            int oldElo = account.getEloRating() != null ? account.getEloRating() : 1500;
+            int oldElo = account.getEloRating() != null ? account.getEloRating() : RatingMath.DEFAULT_ELO;
             double oldGrammar = account.getGrammarProficiency() != null ? account.getGrammarProficiency() : 0.0;
             double oldVocab = account.getVocabProficiency() != null ? account.getVocabProficiency() : 0.0;
             double oldListening = account.getListeningProficiency() != null ? account.getListeningProficiency() : 0.0;
 
-            recommendationService.processLessonResult(
-                    request.getUserId(),
-                    request.getLessonId(),
-                    request.getIsPassed()
-            );
-
-            account = accountRepository.findById(request.getUserId())
-                    .orElseThrow(() -> new RuntimeException("Account not found after update"));
+            // Đi qua mailbox của người học như các lượt trả lời thật. Giá trị sau cập nhật lấy từ kết quả trả về:
+            // lượt ghi là câu UPDATE trực tiếp nên entity đã nạp ở trên (còn trong session) không đổi theo
+            RecommendationService.RatingUpdate update = learnerMailbox.submit(request.getUserId(),
+                    () -> recommendationService.processLessonResult(
+                            request.getUserId(),
+                            request.getLessonId(),
+                            request.getIsPassed()
+                    ));
+            AccountFeatureRow after = update.features();
 
             StringBuilder response = new StringBuilder();
             response.append("Simulation completed successfully!\n\n");
@@ -148,17 +155,17 @@ public class RecommendationController {
             response.append(String.format("Listening Proficiency: %.2f\n", oldListening));
             response.append("\n=== AFTER ===\n");
             response.append(String.format("Elo Rating: %d (Δ%d)\n", 
-                    account.getEloRating(), 
-                    account.getEloRating() - oldElo));
+                    after.eloRating(), 
+                    after.eloRating() - oldElo));
             response.append(String.format("Grammar Proficiency: %.2f (Δ%.2f)\n", 
-                    account.getGrammarProficiency(),
-                    account.getGrammarProficiency() - oldGrammar));
+                    after.grammarProficiency(),
+                    after.grammarProficiency() - oldGrammar));
             response.append(String.format("Vocab Proficiency: %.2f (Δ%.2f)\n", 
-                    account.getVocabProficiency(),
-                    account.getVocabProficiency() - oldVocab));
+                    after.vocabProficiency(),
+                    after.vocabProficiency() - oldVocab));
             response.append(String.format("Listening Proficiency: %.2f (Δ%.2f)\n", 
-                    account.getListeningProficiency(),
-                    account.getListeningProficiency() - oldListening));
+                    after.listeningProficiency(),
+                    after.listeningProficiency() - oldListening));
             response.append(String.format("\nResult: %s\n", request.getIsPassed() ? "PASSED" : "FAILED"));
 
             return ResponseEntity.ok(response.toString());
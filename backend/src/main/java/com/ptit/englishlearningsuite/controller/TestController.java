@@ -1,17 +1,25 @@
 package com.ptit.englishlearningsuite.controller;
 
-import com.ptit.englishlearningsuite.dto.TestDetailDTO;
+import com.ptit.englishlearningsuite.dto.CatalogPageDTO;
 import com.ptit.englishlearningsuite.dto.TestRequestDTO;
 import com.ptit.englishlearningsuite.dto.TestSubmissionDTO;
 import com.ptit.englishlearningsuite.dto.TestSummaryDTO;
+import com.ptit.englishlearningsuite.service.ContentVersionService;
+import com.ptit.englishlearningsuite.service.LearnerMailbox;
+import com.ptit.englishlearningsuite.service.SerializedResponseCache;
 import com.ptit.englishlearningsuite.service.TestService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
+import java.io.IOException;
+import java.util.Objects;
 import java.util.Collections;
-import java.util.List;
 import java.util.Map;
 
 @RestController
@@ -21,19 +29,64 @@ public class TestController {
     @Autowired
     private TestService testService;
 
+    @Autowired
+    private SerializedResponseCache serializedResponseCache;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    // JSON dựng sẵn được ghi thẳng ra response (xem SerializedResponseCache); If-None-Match khớp phiên bản nội dung
+    // thì trả 304 mà không chạm DB.
+    // Không có tham số: toàn bộ danh mục; có bộ lọc/con trỏ/limit: một trang keyset (CatalogPageDTO)
     @GetMapping
-    public List<TestSummaryDTO> getAllTests() {
-        return testService.getAllTests();
+    public void getAllTests(@RequestParam(required = false) Integer level,
+                            @RequestParam(required = false) String cursor,
+                            @RequestParam(required = false) Integer limit,
+                            HttpServletRequest request, HttpServletResponse response) throws IOException {
+        long catalogVersion = contentVersionService.testCatalogVersion();
+        if (level == null && cursor == null && limit == null) {
+            String etag = SerializedResponseCache.etag("tests", catalogVersion);
+            if (SerializedResponseCache.notModified(etag, request, response)) {
+                return;
+            }
+            serializedResponseCache.testList(catalogVersion, testService::getAllTests).writeTo(request, response, etag);
+            return;
+        }
+
+        // Trang cũng chỉ đổi khi danh mục đổi: ETag = phiên bản danh mục + băm của truy vấn
+        String query = Integer.toUnsignedString(Objects.hash(level, cursor, limit), 36);
+        String etag = SerializedResponseCache.etag("tests-" + query, catalogVersion);
+        if (SerializedResponseCache.notModified(etag, request, response)) {
+            return;
+        }
+        CatalogPageDTO<TestSummaryDTO> page;
+        try {
+            page = testService.getTestCatalogPage(level, cursor, limit);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpServletResponse.SC_BAD_REQUEST);
+            response.setContentType(MediaType.TEXT_PLAIN_VALUE);
+            response.getWriter().write("Error: " + e.getMessage());
+            return;
+        }
+        serializedResponseCache.uncached(page).writeTo(request, response, etag);
     }
 
     @GetMapping("/{id}")
-    public ResponseEntity<TestDetailDTO> getTestDetails(@PathVariable Long id) {
+    public void getTestDetails(@PathVariable Long id, HttpServletRequest request,
+                               HttpServletResponse response) throws IOException {
+        Long version = contentVersionService.testVersion(id);
+        String etag = SerializedResponseCache.etag("test-" + id, version);
+        if (SerializedResponseCache.notModified(etag, request, response)) {
+            return;
+        }
+        SerializedResponseCache.SerializedResponse body;
         try {
-            TestDetailDTO testDto = testService.getTestById(id);
-            return ResponseEntity.ok(testDto);
+            body = serializedResponseCache.testDetail(id, version, () -> testService.getTestById(id));
         } catch (RuntimeException e) {
-            return ResponseEntity.notFound().build();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return;
         }
+        body.writeTo(request, response, etag);
     }
 
     @PostMapping("/submit")
@@ -43,6 +96,8 @@ public class TestController {
             // Trả về một đối tượng JSON chứa điểm số
             Map<String, Integer> response = Collections.singletonMap("score", score);
             return ResponseEntity.ok(response);
+        } catch (LearnerMailbox.MailboxFullException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("Error: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.badRequest().body("Error processing submission: " + e.getMessage());
         }
@@ -0,0 +1,14 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.util.List;
+import java.util.Map;
+
+@Data
+public class CatalogPageDTO<T> {
+    private List<T> items;
+    private String nextCursor; // Gửi lại nguyên văn để lấy trang sau; null khi đã hết
+    private int limit;
+    private Map<Integer, Long> levelCounts; // Số mục theo cấp độ (theo bộ lọc active, không theo bộ lọc cấp độ)
+}
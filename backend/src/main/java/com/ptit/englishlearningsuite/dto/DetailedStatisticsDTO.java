@@ -23,6 +23,10 @@ public class DetailedStatisticsDTO {
     private List<PopularItemDTO> popularLessons;
     
     private List<PopularItemDTO> popularTests;
+
+    private List<TrendingItemDTO> trendingLessons; // Phổ biến trong cửa sổ ngày đang xem
+
+    private List<TrendingItemDTO> trendingTests;
     
     private EngagementMetricsDTO engagementMetrics;
     
@@ -45,6 +49,15 @@ public class DetailedStatisticsDTO {
         private long totalTimeSpent; // seconds
     }
     
+    // Mục nổi bật lấy từ sketch Top-K: chỉ có số lượt hoàn thành (xấp xỉ cận trên), không có điểm/thời gian học
+    @Data
+    public static class TrendingItemDTO {
+        private Long id;
+        private String name;
+        private int level;
+        private long completionCount;
+    }
+
     @Data
     public static class EngagementMetricsDTO {
         private double averageStudyHoursPerDay;
@@ -52,6 +65,8 @@ public class DetailedStatisticsDTO {
         private long totalActiveDays;
         private double retentionRate;
         private long peakConcurrentUsers;
+        private long weeklyActiveUsers;
+        private long monthlyActiveUsers;
     }
 }
 
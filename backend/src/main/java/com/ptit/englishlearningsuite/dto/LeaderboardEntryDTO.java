@@ -0,0 +1,15 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+@Data
+public class LeaderboardEntryDTO {
+    private int rank; // Hạng, bắt đầu từ 1
+    private Long userId;
+    private String username;
+    private String fullName;
+    private long completedLessons;
+    private long completedTests;
+    private double averageTestScore;
+    private long xp;
+}
@@ -0,0 +1,18 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Data
+public class LeaderboardPageDTO {
+    private String period; // week | month | all
+    private LocalDate periodStart; // null với all
+    private LocalDate periodEnd;
+    private int page;
+    private int size;
+    private long totalUsers; // Số người dùng có XP > 0
+    private LeaderboardEntryDTO me; // Chỉ có ở /xp/me; null nếu người dùng chưa có XP
+    private List<LeaderboardEntryDTO> entries;
+}
@@ -0,0 +1,22 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+/**
+ * Số liệu vận hành của hàng đợi tuần tự theo người học: độ sâu hàng đợi, độ trễ và số lượt bị từ chối/hết hạn chờ.
+ */
+@Data
+public class LearnerMailboxStatsDTO {
+    private long activeMailboxes;
+    private long pendingTasks;
+    private long maxQueueDepth; // Hàng đợi dài nhất hiện tại của một người học
+    private long submitted;
+    private long completed;
+    private long failed;
+    private long rejected; // Bị từ chối do quá giới hạn (áp lực ngược)
+    private long timedOut; // Chờ tới lượt quá learner.mailbox.timeout-ms, việc không được chạy
+    private double averageWaitMs; // Thời gian chờ trong hàng đợi
+    private double maxWaitMs;
+    private double averageProcessingMs;
+    private double maxProcessingMs;
+}
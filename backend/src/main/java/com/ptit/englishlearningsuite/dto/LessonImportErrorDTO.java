@@ -0,0 +1,16 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một bản ghi không nhập được trong lượt nhập bài học hàng loạt.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class LessonImportErrorDTO {
+    private String location; // "tệp:dòng" (với tệp zip: tên mục trong zip)
+    private String message;
+}
@@ -0,0 +1,29 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tiến độ và kết quả của lượt nhập bài học hàng loạt gần nhất.
+ */
+@Data
+public class LessonImportStatusDTO {
+    private long importId;
+    private String source;
+    private String status; // RUNNING | COMPLETED | FAILED
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error; // Lỗi làm dừng cả lượt (không phải lỗi của từng bản ghi)
+
+    private long totalBytes; // Kích thước tệp (đã nén nếu là gzip/zip)
+    private long bytesRead;
+    private long recordsRead;
+    private long lessonsImported;
+    private long rowsInserted; // Mọi dòng được chèn: bài học, từ vựng, ngữ pháp, hội thoại, câu thoại
+    private long recordsFailed;
+    private double rowsPerSecond;
+    private List<LessonImportErrorDTO> errors = new ArrayList<>(); // Tối đa lesson.import.max-reported-errors lỗi đầu tiên
+}
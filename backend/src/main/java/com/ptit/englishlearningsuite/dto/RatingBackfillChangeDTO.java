@@ -0,0 +1,18 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * Một thay đổi rating do lượt tính lại sinh ra (dùng cho báo cáo dry-run).
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class RatingBackfillChangeDTO {
+    private String type; // ACCOUNT hoặc LESSON
+    private Long id;
+    private Integer currentRating;
+    private Integer recomputedRating;
+}
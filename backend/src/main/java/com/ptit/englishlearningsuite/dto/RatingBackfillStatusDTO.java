@@ -0,0 +1,47 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tiến độ và kết quả của lượt tính lại Elo/độ khó gần nhất; ở chế độ dry-run kèm thống kê chênh lệch
+ * giữa giá trị đang lưu và giá trị tính lại.
+ */
+@Data
+public class RatingBackfillStatusDTO {
+    private Long runId;
+    private String status;
+    private String phase;
+    private boolean dryRun;
+    private LocalDateTime cutoff;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+    private String error;
+
+    private long totalEvents; // Số lượt trả lời trước mốc cutoff
+    private long replayedEvents;
+    private double eventsPerSecond;
+    private long accounts;
+    private long lessons;
+    private long accountsWritten;
+    private long lessonsWritten;
+    private long accountsSkipped; // Không ghi: có lượt trả lời mới trong lúc chạy (vòng đuổi ghi lại) hoặc đã bị xóa
+    private long lessonsSkipped;
+    private int catchUpRounds;
+
+    // Người học/bài học có lịch sử bắt đầu trước practice_attempts: replay sẽ đặt lại giá trị của họ về mặc định,
+    // nên lượt ghi thật bị từ chối khi các số này khác 0
+    private long accountsWithIncompleteHistory;
+    private long lessonsWithIncompleteHistory;
+
+    private long accountsChanged;
+    private double meanAbsEloChange;
+    private int maxAbsEloChange;
+    private long lessonsChanged;
+    private double meanAbsDifficultyChange;
+    private int maxAbsDifficultyChange;
+    private List<RatingBackfillChangeDTO> largestChanges = new ArrayList<>();
+}
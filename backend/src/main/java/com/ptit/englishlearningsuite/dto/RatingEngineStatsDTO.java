@@ -0,0 +1,25 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu của bộ xếp hạng theo kỳ (Glicko-2): số lượt đang chờ, số dòng đã ghi so với số lượt đã xử lý.
+ */
+@Data
+public class RatingEngineStatsDTO {
+    private String engine; // elo hoặc glicko2
+    private long periodMs;
+    private long pendingResults;
+    private long pendingProficiencies; // Người dùng có mức thành thạo chưa ghi xuống DB
+    private long periodsFlushed;
+    private long resultsFlushed;
+    private long rowsWritten; // Số dòng accounts + lessons đã UPDATE
+    private double resultsPerRowWritten; // Ở chế độ Elo mỗi lượt ghi 1 dòng accounts (lessons được gom riêng)
+    private LocalDateTime lastFlushAt;
+    private long lastFlushResults;
+    private long lastFlushAccounts;
+    private long lastFlushLessons;
+    private long lastFlushDurationMs;
+}
@@ -0,0 +1,23 @@
+package com.ptit.englishlearningsuite.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * Số liệu vận hành của bộ tính trước gợi ý: độ cũ của kết quả và tốc độ tính lại.
+ */
+@Data
+public class RecommendationMaterializerStatsDTO {
+    private long materializedAccounts;
+    private double averageStalenessSeconds;
+    private double maxStalenessSeconds;
+    private long lookupHits;
+    private long lookupMisses;
+    private long singleRecomputes; // Tính lại một người dùng (sau processLessonResult hoặc khi tra cứu trượt)
+    private long totalRecomputes;
+    private LocalDateTime lastRefreshStartedAt;
+    private long lastRefreshDurationMs;
+    private long lastRefreshAccounts;
+    private double lastRefreshAccountsPerSecond;
+}
@@ -6,7 +6,9 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "accounts")
+@Table(name = "accounts", indexes = {
+        @Index(name = "idx_accounts_created_at", columnList = "created_at")
+})
 @Getter
 @Setter
 @ToString
@@ -36,17 +38,33 @@ public class Account {
     @Column(nullable = false)
     private String role;
 
-    @Column(name = "elo_rating")
+    // Elo/mức thành thạo chỉ được ghi qua AccountRepository.compareAndSetRating (updatable = false để lượt lưu
+    // cả entity với dữ liệu cũ không ghi đè kết quả mới)
+    @Column(name = "elo_rating", updatable = false)
     private Integer eloRating = 1000;
 
-    @Column(name = "grammar_proficiency")
+    @Column(name = "grammar_proficiency", updatable = false)
     private Double grammarProficiency = 0.0;
 
-    @Column(name = "vocab_proficiency")
+    @Column(name = "vocab_proficiency", updatable = false)
     private Double vocabProficiency = 0.0;
 
-    @Column(name = "listening_proficiency")
+    @Column(name = "listening_proficiency", updatable = false)
     private Double listeningProficiency = 0.0;
+
+    // Độ lệch/độ biến động Glicko-2 và thời điểm được xếp hạng gần nhất (chỉ dùng khi rating.engine=glicko2)
+    @Column(name = "rating_deviation", updatable = false)
+    private Double ratingDeviation;
+
+    @Column(name = "rating_volatility", updatable = false)
+    private Double ratingVolatility;
+
+    @Column(name = "rated_at", updatable = false)
+    private LocalDateTime ratedAt;
+
+    // Tăng sau mỗi lần cập nhật Elo/mức thành thạo (compare-and-set)
+    @Column(name = "rating_version", updatable = false)
+    private Long ratingVersion = 0L;
     
     @Column(name = "created_at", updatable = false)
     private LocalDateTime createdAt;
@@ -0,0 +1,38 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Số liệu tổng hợp theo từng người dùng: số bài học/bài kiểm tra đã hoàn thành và XP.
+ * XP = 10 * bài học hoàn thành + 20 * bài kiểm tra.
+ */
+@Entity
+@Table(name = "account_statistics", indexes = {
+        @Index(name = "idx_account_statistics_total_completions", columnList = "total_completions"),
+        @Index(name = "idx_account_statistics_xp", columnList = "xp")
+})
+@Getter
+@Setter
+public class AccountStatistics {
+
+    @Id
+    @Column(name = "account_id")
+    private Long accountId;
+
+    @Column(name = "completed_lessons", nullable = false)
+    private long completedLessons;
+
+    @Column(name = "completed_tests", nullable = false)
+    private long completedTests;
+
+    @Column(name = "test_score_sum", nullable = false)
+    private long testScoreSum;
+
+    @Column(name = "total_completions", nullable = false)
+    private long totalCompletions;
+
+    @Column(nullable = false)
+    private long xp;
+}
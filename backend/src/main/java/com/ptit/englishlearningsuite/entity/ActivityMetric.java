@@ -0,0 +1,10 @@
+package com.ptit.englishlearningsuite.entity;
+
+public enum ActivityMetric {
+    NEW_USERS,
+    LESSON_COMPLETIONS,
+    TEST_COMPLETIONS,
+    ACTIVE_USERS,
+    STUDY_SECONDS,
+    STUDY_SESSIONS
+}
@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 
 import java.util.Set;
 
@@ -13,7 +14,7 @@ import java.util.Set;
 @Getter
 @Setter
 @ToString
-@EqualsAndHashCode(exclude = "lesson")
+@EqualsAndHashCode(exclude = {"lesson", "sentences"}) // Băm theo sentences sẽ buộc nạp lazy khi thêm vào Set
 public class Conversation {
     @Id
     @GeneratedValue(strategy = GenerationType.IDENTITY)
@@ -26,6 +27,8 @@ public class Conversation {
     private String title;
     private String audioUrl;
 
+    // Duyệt nhiều hội thoại ngoài fetch plan: nạp câu của tối đa 50 hội thoại mỗi truy vấn
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL)
+    @BatchSize(size = 50)
     private Set<Sentence> sentences;
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Tập người dùng hoạt động trong một ngày, lưu dưới dạng Roaring bitmap (đã serialize) theo account id.
+ */
+@Entity
+@Table(name = "daily_active_users")
+@Getter
+@Setter
+public class DailyActiveUsers {
+
+    @Id
+    private LocalDate day;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] bitmap;
+
+    @Column(nullable = false)
+    private long cardinality;
+
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,33 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Một dòng = một chỉ số của một ngày đã đóng (người dùng mới, lượt hoàn thành, DAU, thời gian học...).
+ */
+@Entity
+@Table(name = "daily_activity_rollup", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_daily_activity_rollup_day_metric", columnNames = {"day", "metric"})
+})
+@Getter
+@Setter
+public class DailyActivityRollup {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private LocalDate day;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 32)
+    private ActivityMetric metric;
+
+    @Column(name = "metric_value", nullable = false)
+    private long metricValue;
+}
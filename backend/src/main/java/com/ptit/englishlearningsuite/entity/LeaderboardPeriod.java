@@ -0,0 +1,20 @@
+package com.ptit.englishlearningsuite.entity;
+
+/**
+ * Các kỳ của bảng xếp hạng XP. WEEK/MONTH là cửa sổ trượt {@code days} ngày gần nhất (tính cả hôm nay).
+ */
+public enum LeaderboardPeriod {
+    WEEK(7),
+    MONTH(30),
+    ALL(0);
+
+    private final int days;
+
+    LeaderboardPeriod(int days) {
+        this.days = days;
+    }
+
+    public int getDays() {
+        return days;
+    }
+}
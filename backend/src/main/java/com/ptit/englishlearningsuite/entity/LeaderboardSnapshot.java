@@ -0,0 +1,54 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDate;
+
+/**
+ * Kết quả chốt của một kỳ thi đua đã đóng (tuần theo lịch Thứ 2 - Chủ nhật, hoặc tháng theo lịch).
+ * Mỗi dòng là một người trong top của kỳ; tên được lưu lại tại thời điểm chốt.
+ */
+@Entity
+@Table(name = "leaderboard_snapshots", uniqueConstraints = {
+        @UniqueConstraint(name = "uk_leaderboard_snapshots_period_account", columnNames = {"period", "period_start", "account_id"})
+}, indexes = {
+        @Index(name = "idx_leaderboard_snapshots_period_rank", columnList = "period, period_start, rank_position")
+})
+@Getter
+@Setter
+public class LeaderboardSnapshot {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private LeaderboardPeriod period;
+
+    @Column(name = "period_start", nullable = false)
+    private LocalDate periodStart;
+
+    @Column(name = "period_end", nullable = false)
+    private LocalDate periodEnd;
+
+    @Column(name = "rank_position", nullable = false)
+    private int rankPosition;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    private String username;
+
+    private String fullName;
+
+    private long completedLessons;
+
+    private long completedTests;
+
+    private long testScoreSum;
+
+    private long xp;
+}
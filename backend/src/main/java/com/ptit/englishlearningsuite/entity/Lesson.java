@@ -6,10 +6,15 @@ import lombok.EqualsAndHashCode; // Thêm import
 import lombok.Getter; // Thêm import
 import lombok.Setter; // Thêm import
 import lombok.ToString; // Thêm import
+import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "lessons")
+@Table(name = "lessons", indexes = {
+        // Danh mục: lọc theo cấp độ / active, sắp và phân trang keyset theo (level, lesson_number, id)
+        @Index(name = "idx_lessons_level_number", columnList = "level, lesson_number, id"),
+        @Index(name = "idx_lessons_active_level_number", columnList = "is_active, level, lesson_number, id")
+})
 // THAY THẾ @Data BẰNG CÁC ANNOTATION SAU
 @Getter
 @Setter
@@ -28,6 +33,13 @@ public class Lesson {
     
     @Column(name = "is_active")
     private Boolean isActive = true;
+
+    /**
+     * Phiên bản nội dung: tăng ở mỗi lần admin tạo/sửa bài học, là ETag của chi tiết bài học (xem ContentVersionService).
+     * Chỉ đổi qua UPDATE cộng dồn nên updatable = false.
+     */
+    @Column(name = "content_version", updatable = false)
+    private Long contentVersion = 0L;
     
     // =================================================================
     // HYBRID RECOMMENDATION SYSTEM FIELDS
@@ -36,10 +48,24 @@ public class Lesson {
     /**
      * Difficulty Rating: Độ khó của bài học (Elo rating của bài học)
      * Giá trị mặc định: 1500 (mức trung bình)
-     * Được cập nhật động dựa trên kết quả của người học
+     * Được cập nhật động dựa trên kết quả của người học, chỉ qua UPDATE cộng dồn của LessonDifficultyAccumulator
+     * (updatable = false để lượt lưu cả entity không ghi đè giá trị đã cộng dồn)
      */
-    @Column(name = "difficulty_rating")
+    @Column(name = "difficulty_rating", updatable = false)
     private Integer difficultyRating = 1500;
+
+    /**
+     * Độ lệch/độ biến động Glicko-2 của độ khó và thời điểm được xếp hạng gần nhất
+     * (chỉ dùng khi rating.engine=glicko2, ghi bởi Glicko2RatingEngine)
+     */
+    @Column(name = "rating_deviation", updatable = false)
+    private Double ratingDeviation;
+
+    @Column(name = "rating_volatility", updatable = false)
+    private Double ratingVolatility;
+
+    @Column(name = "rated_at", updatable = false)
+    private LocalDateTime ratedAt;
     
     /**
      * Grammar Weight: Trọng số ngữ pháp của bài học (0.0 - 1.0)
@@ -9,7 +9,9 @@ import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "lesson_progress")
+@Table(name = "lesson_progress", indexes = {
+        @Index(name = "idx_lesson_progress_completed_at", columnList = "completed_at")
+})
 @Getter
 @Setter
 @ToString
@@ -0,0 +1,33 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Số liệu tổng hợp theo từng bài học, chỉ tính các LessonProgress đã hoàn thành.
+ */
+@Entity
+@Table(name = "lesson_statistics", indexes = {
+        @Index(name = "idx_lesson_statistics_completion_count", columnList = "completion_count"),
+        @Index(name = "idx_lesson_statistics_level", columnList = "level")
+})
+@Getter
+@Setter
+public class LessonStatistics {
+
+    @Id
+    @Column(name = "lesson_id")
+    private Long lessonId;
+
+    private int level;
+
+    @Column(name = "completion_count", nullable = false)
+    private long completionCount;
+
+    @Column(name = "score_sum", nullable = false)
+    private long scoreSum;
+
+    @Column(name = "time_spent_seconds", nullable = false)
+    private long timeSpentSeconds;
+}
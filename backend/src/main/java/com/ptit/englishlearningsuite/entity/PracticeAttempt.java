@@ -0,0 +1,45 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Nhật ký từng lượt trả lời đi qua {@code processLessonResult} (chỉ thêm, không sửa): đủ để replay lịch sử
+ * qua phép tính Elo khi chỉnh hệ số K / cửa sổ độ khó.
+ */
+@Entity
+@Table(name = "practice_attempts", indexes = {
+        @Index(name = "idx_practice_attempts_answered_at", columnList = "answered_at"),
+        @Index(name = "idx_practice_attempts_account_answered", columnList = "account_id, answered_at"),
+        @Index(name = "idx_practice_attempts_lesson_answered", columnList = "lesson_id, answered_at")
+})
+@Getter
+@Setter
+public class PracticeAttempt {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "account_id", nullable = false)
+    private Long accountId;
+
+    @Column(name = "lesson_id", nullable = false)
+    private Long lessonId;
+
+    @Column(nullable = false)
+    private boolean passed;
+
+    // Elo/độ khó dùng cho lượt này (trước cập nhật)
+    @Column(name = "user_elo")
+    private Integer userElo;
+
+    @Column(name = "lesson_difficulty")
+    private Integer lessonDifficulty;
+
+    @Column(name = "answered_at", nullable = false)
+    private LocalDateTime answeredAt;
+}
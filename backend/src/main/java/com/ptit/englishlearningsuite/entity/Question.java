@@ -5,6 +5,7 @@ import lombok.EqualsAndHashCode;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.ToString;
+import org.hibernate.annotations.BatchSize;
 import java.util.Set;
 
 @Entity
@@ -32,6 +33,8 @@ public class Question {
     private String imageUrl;
     private String explanation;
 
+    // Duyệt nhiều câu hỏi ngoài fetch plan (ví dụ chấm bài): nạp đáp án của tối đa 50 câu mỗi truy vấn
     @OneToMany(mappedBy = "question", cascade = CascadeType.ALL)
+    @BatchSize(size = 50)
     private Set<AnswerOption> answerOptions;
 }
\ No newline at end of file
@@ -0,0 +1,13 @@
+package com.ptit.englishlearningsuite.entity;
+
+/**
+ * Các bước của một lượt tính lại rating: replay lịch sử trong bộ nhớ, ghi người học, ghi bài học,
+ * rồi các vòng đuổi theo những lượt trả lời phát sinh trong lúc chạy.
+ */
+public enum RatingBackfillPhase {
+    REPLAY,
+    WRITE_ACCOUNTS,
+    WRITE_LESSONS,
+    CATCH_UP,
+    DONE
+}
@@ -0,0 +1,65 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một lượt tính lại toàn bộ Elo/độ khó từ practice_attempts. Mốc {@code cutoff} cố định tập lượt được replay nên
+ * replay lại cho cùng kết quả; {@code lastAccountId}/{@code lastLessonId} là điểm dừng đã ghi (commit cùng lô),
+ * để lượt chạy bị ngắt có thể tiếp tục mà không ghi lại từ đầu.
+ */
+@Entity
+@Table(name = "rating_backfill_runs")
+@Getter
+@Setter
+public class RatingBackfillRun {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RatingBackfillStatus status;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RatingBackfillPhase phase;
+
+    @Column(name = "dry_run", nullable = false)
+    private boolean dryRun;
+
+    // Chỉ replay các lượt trả lời trước mốc này
+    @Column(nullable = false)
+    private LocalDateTime cutoff;
+
+    @Column(name = "last_account_id")
+    private Long lastAccountId;
+
+    @Column(name = "last_lesson_id")
+    private Long lastLessonId;
+
+    @Column(name = "events_replayed")
+    private long eventsReplayed;
+
+    @Column(name = "accounts_written")
+    private long accountsWritten;
+
+    @Column(name = "lessons_written")
+    private long lessonsWritten;
+
+    @Column(name = "started_at", nullable = false)
+    private LocalDateTime startedAt;
+
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    @Column(length = 1000)
+    private String error;
+}
@@ -0,0 +1,7 @@
+package com.ptit.englishlearningsuite.entity;
+
+public enum RatingBackfillStatus {
+    RUNNING,
+    COMPLETED,
+    FAILED
+}
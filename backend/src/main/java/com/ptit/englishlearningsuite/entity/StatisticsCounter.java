@@ -0,0 +1,23 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Bộ đếm tổng hợp toàn hệ thống (tổng lượt hoàn thành, tổng điểm, tổng thời gian...).
+ * Được cộng dồn mỗi khi có tiến độ mới thay vì quét lại toàn bộ bảng progress.
+ */
+@Entity
+@Table(name = "statistics_counters")
+@Getter
+@Setter
+public class StatisticsCounter {
+
+    @Id
+    @Column(name = "counter_key", length = 64)
+    private String counterKey;
+
+    @Column(name = "counter_value", nullable = false)
+    private long counterValue;
+}
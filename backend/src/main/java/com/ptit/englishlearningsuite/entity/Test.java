@@ -8,7 +8,10 @@ import lombok.ToString;
 import java.util.Set;
 
 @Entity
-@Table(name = "tests")
+@Table(name = "tests", indexes = {
+        // Danh mục: lọc theo cấp độ, sắp và phân trang keyset theo (level, id)
+        @Index(name = "idx_tests_level_id", columnList = "level, id")
+})
 @Getter
 @Setter
 @ToString
@@ -23,6 +26,10 @@ public class Test {
     private int level;
     private String audioUrl;
 
+    // Phiên bản nội dung (ETag), chỉ tăng qua UPDATE cộng dồn - xem ContentVersionService
+    @Column(name = "content_version", updatable = false)
+    private Long contentVersion = 0L;
+
     @OneToMany(mappedBy = "test", cascade = CascadeType.ALL, orphanRemoval = true)
     private Set<Question> questions;
 }
\ No newline at end of file
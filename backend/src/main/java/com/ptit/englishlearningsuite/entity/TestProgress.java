@@ -9,7 +9,9 @@ import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "test_progress")
+@Table(name = "test_progress", indexes = {
+        @Index(name = "idx_test_progress_completed_at", columnList = "completed_at")
+})
 @Getter
 @Setter
 @ToString
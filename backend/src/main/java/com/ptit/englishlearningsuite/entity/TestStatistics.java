@@ -0,0 +1,33 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Số liệu tổng hợp theo từng bài kiểm tra.
+ */
+@Entity
+@Table(name = "test_statistics", indexes = {
+        @Index(name = "idx_test_statistics_completion_count", columnList = "completion_count"),
+        @Index(name = "idx_test_statistics_level", columnList = "level")
+})
+@Getter
+@Setter
+public class TestStatistics {
+
+    @Id
+    @Column(name = "test_id")
+    private Long testId;
+
+    private int level;
+
+    @Column(name = "completion_count", nullable = false)
+    private long completionCount;
+
+    @Column(name = "score_sum", nullable = false)
+    private long scoreSum;
+
+    @Column(name = "time_spent_seconds", nullable = false)
+    private long timeSpentSeconds;
+}
@@ -0,0 +1,10 @@
+package com.ptit.englishlearningsuite.entity;
+
+/**
+ * Các bảng xếp hạng được theo dõi bằng sketch Top-K (khóa là id của bài học/bài kiểm tra/người dùng).
+ */
+public enum TopKDimension {
+    LESSON,
+    TEST,
+    USER
+}
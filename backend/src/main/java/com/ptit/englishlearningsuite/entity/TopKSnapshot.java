@@ -0,0 +1,28 @@
+package com.ptit.englishlearningsuite.entity;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+
+/**
+ * Ảnh chụp của một sketch Top-K. sketchKey có dạng {@code LESSON:all} (toàn thời gian)
+ * hoặc {@code LESSON:2024-05-01} (bucket theo ngày cho cửa sổ trượt).
+ */
+@Entity
+@Table(name = "top_k_snapshots")
+@Getter
+@Setter
+public class TopKSnapshot {
+
+    @Id
+    @Column(name = "sketch_key", length = 64)
+    private String sketchKey;
+
+    @Lob
+    @Column(nullable = false, columnDefinition = "LONGBLOB")
+    private byte[] payload;
+
+    private LocalDateTime updatedAt;
+}
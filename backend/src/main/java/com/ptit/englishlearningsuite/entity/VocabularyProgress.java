@@ -9,7 +9,9 @@ import lombok.ToString;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "vocabulary_progress")
+@Table(name = "vocabulary_progress", indexes = {
+        @Index(name = "idx_vocabulary_progress_last_reviewed_at", columnList = "last_reviewed_at")
+})
 @Getter
 @Setter
 @ToString
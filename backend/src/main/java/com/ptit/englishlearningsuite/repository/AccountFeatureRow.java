@@ -0,0 +1,18 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.Account;
+
+/**
+ * Các cột của người dùng mà bộ gợi ý cần: Elo và mức thành thạo từng kỹ năng.
+ */
+public record AccountFeatureRow(Long id,
+                                Integer eloRating,
+                                Double grammarProficiency,
+                                Double vocabProficiency,
+                                Double listeningProficiency) {
+
+    public static AccountFeatureRow of(Account account) {
+        return new AccountFeatureRow(account.getId(), account.getEloRating(), account.getGrammarProficiency(),
+                account.getVocabProficiency(), account.getListeningProficiency());
+    }
+}
@@ -0,0 +1,7 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Cặp (người dùng, bài học) của một dòng lesson_progress.
+ */
+public record AccountLessonId(Long accountId, Long lessonId) {
+}
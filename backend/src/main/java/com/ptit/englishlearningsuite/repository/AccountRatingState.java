@@ -0,0 +1,14 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Elo, mức thành thạo và phiên bản (rating_version) của một người dùng - đủ để tính và ghi một lượt cập nhật
+ * bằng compare-and-set.
+ */
+public interface AccountRatingState {
+    Long getId();
+    Integer getEloRating();
+    Double getGrammarProficiency();
+    Double getVocabProficiency();
+    Double getListeningProficiency();
+    Long getRatingVersion();
+}
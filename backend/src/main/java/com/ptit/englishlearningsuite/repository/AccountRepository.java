@@ -2,10 +2,12 @@ package com.ptit.englishlearningsuite.repository;
 
 import com.ptit.englishlearningsuite.entity.Account;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -19,4 +21,45 @@ public interface AccountRepository extends JpaRepository<Account, Long> {
     
     @Query("SELECT a FROM Account a WHERE a.createdAt >= :startDate AND a.createdAt < :endDate ORDER BY a.createdAt ASC")
     List<Account> findByCreatedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+
+    @Query(value = "SELECT DATEDIFF(created_at, '1970-01-01') AS epochDay, COUNT(*) AS metricValue FROM accounts " +
+            "WHERE created_at >= :startDate AND created_at < :endDate GROUP BY epochDay", nativeQuery = true)
+    List<DailyMetricValue> countCreatedByDay(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.AccountFeatureRow(" +
+            "a.id, a.eloRating, a.grammarProficiency, a.vocabProficiency, a.listeningProficiency) " +
+            "FROM Account a WHERE a.id IN :ids")
+    List<AccountFeatureRow> findFeaturesByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query(value = "SELECT id AS id, elo_rating AS eloRating, grammar_proficiency AS grammarProficiency, " +
+            "vocab_proficiency AS vocabProficiency, listening_proficiency AS listeningProficiency, " +
+            "COALESCE(rating_version, 0) AS ratingVersion FROM accounts WHERE id = :id", nativeQuery = true)
+    Optional<AccountRatingState> findRatingStateById(@Param("id") Long id);
+
+    /**
+     * Như {@link #findRatingStateById} nhưng là locking read: luôn thấy bản đã commit mới nhất
+     * (đọc thường trong giao dịch REPEATABLE READ chỉ thấy snapshot lúc giao dịch bắt đầu đọc).
+     */
+    @Query(value = "SELECT id AS id, elo_rating AS eloRating, grammar_proficiency AS grammarProficiency, " +
+            "vocab_proficiency AS vocabProficiency, listening_proficiency AS listeningProficiency, " +
+            "COALESCE(rating_version, 0) AS ratingVersion FROM accounts WHERE id = :id FOR UPDATE", nativeQuery = true)
+    Optional<AccountRatingState> lockRatingStateById(@Param("id") Long id);
+
+    @Query(value = "SELECT id AS id, elo_rating AS rating, rating_deviation AS deviation, " +
+            "rating_volatility AS volatility, rated_at AS ratedAt FROM accounts WHERE id IN :ids", nativeQuery = true)
+    List<GlickoRatingState> findGlickoStateByIdIn(@Param("ids") Collection<Long> ids);
+
+    /**
+     * Ghi Elo và mức thành thạo mới nếu rating_version vẫn là {@code expectedVersion}; trả về số dòng được cập nhật.
+     */
+    @Modifying
+    @Query(value = "UPDATE accounts SET elo_rating = :elo, grammar_proficiency = :grammar, " +
+            "vocab_proficiency = :vocab, listening_proficiency = :listening, rating_version = :expectedVersion + 1 " +
+            "WHERE id = :id AND COALESCE(rating_version, 0) = :expectedVersion", nativeQuery = true)
+    int compareAndSetRating(@Param("id") Long id,
+                            @Param("expectedVersion") long expectedVersion,
+                            @Param("elo") int elo,
+                            @Param("grammar") double grammar,
+                            @Param("vocab") double vocab,
+                            @Param("listening") double listening);
+}
@@ -0,0 +1,59 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.AccountStatistics;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface AccountStatisticsRepository extends JpaRepository<AccountStatistics, Long> {
+
+    long countByTotalCompletionsGreaterThan(long minCompletions);
+
+    List<AccountStatistics> findByTotalCompletionsGreaterThan(long minCompletions, Pageable pageable);
+
+    /**
+     * Toàn bộ người dùng có XP kèm tên, đọc dạng stream để dựng bảng xếp hạng trong bộ nhớ.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LeaderboardRow(" +
+            "s.accountId, a.username, a.fullName, s.completedLessons, s.completedTests, s.testScoreSum, s.xp) " +
+            "FROM AccountStatistics s, Account a WHERE a.id = s.accountId AND s.xp > 0")
+    Stream<LeaderboardRow> streamLeaderboardRows();
+
+    @Modifying
+    @Query(value = "INSERT INTO account_statistics (account_id, completed_lessons, completed_tests, test_score_sum, total_completions, xp) " +
+            "VALUES (:accountId, :lessons, :tests, :testScoreSum, :lessons + :tests, :lessons * 10 + :tests * 20) " +
+            "ON DUPLICATE KEY UPDATE completed_lessons = completed_lessons + VALUES(completed_lessons), " +
+            "completed_tests = completed_tests + VALUES(completed_tests), " +
+            "test_score_sum = test_score_sum + VALUES(test_score_sum), " +
+            "total_completions = total_completions + VALUES(total_completions), " +
+            "xp = xp + VALUES(xp)",
+            nativeQuery = true)
+    int applyDelta(@Param("accountId") Long accountId,
+                   @Param("lessons") long lessons,
+                   @Param("tests") long tests,
+                   @Param("testScoreSum") long testScoreSum);
+
+    @Modifying
+    @Query(value = "INSERT INTO account_statistics (account_id, completed_lessons, completed_tests, test_score_sum, total_completions, xp) " +
+            "SELECT a.account_id, SUM(a.lessons), SUM(a.tests), SUM(a.test_score), " +
+            "SUM(a.lessons) + SUM(a.tests), SUM(a.lessons) * 10 + SUM(a.tests) * 20 " +
+            "FROM (" +
+            "  SELECT account_id, COUNT(*) AS lessons, 0 AS tests, 0 AS test_score " +
+            "  FROM lesson_progress WHERE is_completed = 1 GROUP BY account_id " +
+            "  UNION ALL " +
+            "  SELECT account_id, 0, COUNT(*), SUM(score) FROM test_progress GROUP BY account_id" +
+            ") a GROUP BY a.account_id",
+            nativeQuery = true)
+    int rebuildFromProgress();
+}
@@ -0,0 +1,7 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Id và phiên bản nội dung của một bài học/bài kiểm tra (không kéo theo nội dung).
+ */
+public record ContentVersionRow(Long id, Long contentVersion) {
+}
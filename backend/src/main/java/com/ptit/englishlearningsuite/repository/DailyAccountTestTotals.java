@@ -0,0 +1,11 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Số bài kiểm tra và tổng điểm theo (ngày, người dùng); ngày là số ngày kể từ 1970-01-01.
+ */
+public interface DailyAccountTestTotals {
+    Long getEpochDay();
+    Long getAccountId();
+    Long getCompletions();
+    Long getScoreSum();
+}
@@ -0,0 +1,37 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.DailyActiveUsers;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.Stream;
+
+@Repository
+public interface DailyActiveUsersRepository extends JpaRepository<DailyActiveUsers, LocalDate> {
+
+    List<DailyActiveUsers> findAllByDayGreaterThanEqual(LocalDate startDay);
+
+    /**
+     * Các cặp (account, ngày) có ôn từ vựng trong khoảng; hoàn thành bài học/bài kiểm tra được đọc
+     * bằng các stream của LessonProgressRepository/TestProgressRepository.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DISTINCT account_id AS accountId, DATEDIFF(last_reviewed_at, '1970-01-01') AS epochDay " +
+            "FROM vocabulary_progress WHERE last_reviewed_at >= :startDate AND last_reviewed_at < :endDate",
+            nativeQuery = true)
+    Stream<AccountActiveDay> streamVocabularyActivity(@Param("startDate") LocalDateTime startDate,
+                                                      @Param("endDate") LocalDateTime endDate);
+
+    interface AccountActiveDay {
+        Long getAccountId();
+        Long getEpochDay();
+    }
+}
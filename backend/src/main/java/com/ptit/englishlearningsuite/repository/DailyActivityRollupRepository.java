@@ -0,0 +1,63 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.DailyActivityRollup;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface DailyActivityRollupRepository extends JpaRepository<DailyActivityRollup, Long> {
+
+    List<DailyActivityRollup> findAllByDayBetweenOrderByDayAsc(LocalDate startDay, LocalDate endDay);
+
+    @Query("SELECT MAX(r.day) FROM DailyActivityRollup r")
+    LocalDate findLatestDay();
+
+    @Modifying
+    @Query("DELETE FROM DailyActivityRollup r WHERE r.day >= :startDay AND r.day <= :endDay")
+    int deleteAllByDayBetween(@Param("startDay") LocalDate startDay, @Param("endDay") LocalDate endDay);
+
+    // --- Các truy vấn gom nhóm theo ngày trên nhiều bảng tiến độ (dùng index completed_at) ---
+
+    @Query(value = "SELECT DATEDIFF(a.completed_at, '1970-01-01') AS epochDay, COUNT(DISTINCT a.account_id) AS metricValue FROM (" +
+            "  SELECT account_id, completed_at FROM lesson_progress " +
+            "  WHERE is_completed = 1 AND completed_at >= :startDate AND completed_at < :endDate " +
+            "  UNION ALL " +
+            "  SELECT account_id, completed_at FROM test_progress " +
+            "  WHERE completed_at >= :startDate AND completed_at < :endDate " +
+            "  UNION ALL " +
+            "  SELECT account_id, last_reviewed_at FROM vocabulary_progress " +
+            "  WHERE last_reviewed_at >= :startDate AND last_reviewed_at < :endDate" +
+            ") a GROUP BY epochDay",
+            nativeQuery = true)
+    List<DailyMetricValue> countActiveUsersByDay(@Param("startDate") LocalDateTime startDate,
+                                                 @Param("endDate") LocalDateTime endDate);
+
+    @Query(value = "SELECT DATEDIFF(s.completed_at, '1970-01-01') AS epochDay, SUM(s.time_spent_seconds) AS metricValue FROM (" +
+            "  SELECT completed_at, time_spent_seconds FROM lesson_progress " +
+            "  WHERE time_spent_seconds > 0 AND completed_at >= :startDate AND completed_at < :endDate " +
+            "  UNION ALL " +
+            "  SELECT completed_at, time_spent_seconds FROM test_progress " +
+            "  WHERE time_spent_seconds > 0 AND completed_at >= :startDate AND completed_at < :endDate" +
+            ") s GROUP BY epochDay",
+            nativeQuery = true)
+    List<DailyMetricValue> sumStudySecondsByDay(@Param("startDate") LocalDateTime startDate,
+                                                @Param("endDate") LocalDateTime endDate);
+
+    @Query(value = "SELECT DATEDIFF(s.completed_at, '1970-01-01') AS epochDay, COUNT(*) AS metricValue FROM (" +
+            "  SELECT completed_at FROM lesson_progress " +
+            "  WHERE time_spent_seconds > 0 AND completed_at >= :startDate AND completed_at < :endDate " +
+            "  UNION ALL " +
+            "  SELECT completed_at FROM test_progress " +
+            "  WHERE time_spent_seconds > 0 AND completed_at >= :startDate AND completed_at < :endDate" +
+            ") s GROUP BY epochDay",
+            nativeQuery = true)
+    List<DailyMetricValue> countStudySessionsByDay(@Param("startDate") LocalDateTime startDate,
+                                                   @Param("endDate") LocalDateTime endDate);
+}
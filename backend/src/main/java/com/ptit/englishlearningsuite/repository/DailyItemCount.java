@@ -0,0 +1,11 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Projection cho các truy vấn gom nhóm theo (ngày, phần tử) - ví dụ số lượt hoàn thành của từng bài học mỗi ngày.
+ * Ngày là số ngày kể từ 1970-01-01 (xem {@link DailyMetricValue}).
+ */
+public interface DailyItemCount {
+    Long getEpochDay();
+    Long getItemId();
+    Long getMetricValue();
+}
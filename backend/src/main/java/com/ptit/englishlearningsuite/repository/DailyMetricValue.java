@@ -0,0 +1,10 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Projection cho các truy vấn gom nhóm theo ngày. Ngày được trả về dưới dạng số ngày kể từ 1970-01-01
+ * (DATEDIFF(x, '1970-01-01')) để chuyển sang LocalDate bằng LocalDate.ofEpochDay.
+ */
+public interface DailyMetricValue {
+    Long getEpochDay();
+    Long getMetricValue();
+}
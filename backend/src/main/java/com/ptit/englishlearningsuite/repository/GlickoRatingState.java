@@ -0,0 +1,15 @@
+package com.ptit.englishlearningsuite.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Trạng thái Glicko-2 của một người dùng hoặc bài học (rating nằm trong cột Elo / độ khó hiện có).
+ * Giá trị null nghĩa là chưa từng được xếp hạng bằng Glicko-2.
+ */
+public interface GlickoRatingState {
+    Long getId();
+    Integer getRating();
+    Double getDeviation();
+    Double getVolatility();
+    LocalDateTime getRatedAt();
+}
@@ -0,0 +1,13 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Một dòng của bảng xếp hạng XP: số liệu từ account_statistics kèm tên hiển thị của người dùng.
+ */
+public record LeaderboardRow(Long accountId,
+                             String username,
+                             String fullName,
+                             long completedLessons,
+                             long completedTests,
+                             long testScoreSum,
+                             long xp) {
+}
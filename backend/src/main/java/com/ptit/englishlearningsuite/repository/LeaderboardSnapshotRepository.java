@@ -0,0 +1,22 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.LeaderboardPeriod;
+import com.ptit.englishlearningsuite.entity.LeaderboardSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.List;
+
+@Repository
+public interface LeaderboardSnapshotRepository extends JpaRepository<LeaderboardSnapshot, Long> {
+
+    boolean existsByPeriodAndPeriodStart(LeaderboardPeriod period, LocalDate periodStart);
+
+    List<LeaderboardSnapshot> findAllByPeriodAndPeriodStartOrderByRankPositionAsc(LeaderboardPeriod period, LocalDate periodStart);
+
+    @Query("SELECT MAX(s.periodStart) FROM LeaderboardSnapshot s WHERE s.period = :period")
+    LocalDate findLatestPeriodStart(@Param("period") LeaderboardPeriod period);
+}
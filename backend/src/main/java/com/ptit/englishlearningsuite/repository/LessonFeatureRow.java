@@ -0,0 +1,11 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Các cột của bài học mà bộ gợi ý cần: độ khó (Elo) và trọng số kỹ năng. Không kéo theo các collection của Lesson.
+ */
+public record LessonFeatureRow(Long id,
+                               Integer difficultyRating,
+                               Double grammarWeight,
+                               Double vocabWeight,
+                               Double listeningWeight) {
+}
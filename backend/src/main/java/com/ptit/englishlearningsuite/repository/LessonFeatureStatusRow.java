@@ -0,0 +1,16 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * {@link LessonFeatureRow} kèm trạng thái active, cho những nơi cần cả bài học đã ẩn (độ khó của chúng vẫn đổi).
+ */
+public record LessonFeatureStatusRow(Long id,
+                                     Integer difficultyRating,
+                                     Double grammarWeight,
+                                     Double vocabWeight,
+                                     Double listeningWeight,
+                                     Boolean active) {
+
+    public LessonFeatureRow features() {
+        return new LessonFeatureRow(id, difficultyRating, grammarWeight, vocabWeight, listeningWeight);
+    }
+}
@@ -4,13 +4,18 @@ import com.ptit.englishlearningsuite.entity.Account;
 import com.ptit.englishlearningsuite.entity.Lesson;
 import com.ptit.englishlearningsuite.entity.LessonProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface LessonProgressRepository extends JpaRepository<LessonProgress, Long> {
@@ -18,6 +23,52 @@ public interface LessonProgressRepository extends JpaRepository<LessonProgress,
     List<LessonProgress> findAllByAccount(Account account);
     List<LessonProgress> findAllByAccountOrderByCompletedAtAsc(Account account);
     
-    @Query("SELECT lp FROM LessonProgress lp WHERE lp.completedAt >= :startDate AND lp.completedAt < :endDate AND lp.isCompleted = true")
-    List<LessonProgress> findCompletedByCompletedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+    /**
+     * Đọc dạng stream (cần transaction, nhớ đóng stream) toàn bộ tiến độ bài học của một người dùng.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonProgressRow(" +
+            "lp.account.id, lp.lesson.id, lp.lesson.level, lp.score, lp.isCompleted, lp.timeSpentSeconds, lp.completedAt) " +
+            "FROM LessonProgress lp WHERE lp.account.id = :accountId")
+    Stream<LessonProgressRow> streamByAccountId(@Param("accountId") Long accountId);
+
+    /**
+     * Các bài học đã có tiến độ của người dùng (không cần nạp entity LessonProgress/Lesson).
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT lp.lesson.id FROM LessonProgress lp WHERE lp.account.id = :accountId")
+    Stream<Long> streamLessonIdsByAccountId(@Param("accountId") Long accountId);
+
+    /**
+     * Như {@link #streamLessonIdsByAccountId} nhưng cho nhiều người dùng trong một truy vấn.
+     */
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.AccountLessonId(lp.account.id, lp.lesson.id) " +
+            "FROM LessonProgress lp WHERE lp.account.id IN :accountIds")
+    List<AccountLessonId> findLessonIdsByAccountIdIn(@Param("accountIds") Collection<Long> accountIds);
+
+    /**
+     * Các lượt hoàn thành bài học trong khoảng [startDate, endDate) cho báo cáo, đọc dạng stream.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonProgressRow(" +
+            "lp.account.id, lp.lesson.id, lp.lesson.level, lp.score, lp.isCompleted, lp.timeSpentSeconds, lp.completedAt) " +
+            "FROM LessonProgress lp WHERE lp.completedAt >= :startDate AND lp.completedAt < :endDate AND lp.isCompleted = true")
+    Stream<LessonProgressRow> streamCompletedBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, COUNT(*) AS metricValue FROM lesson_progress " +
+            "WHERE is_completed = 1 AND completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay", nativeQuery = true)
+    List<DailyMetricValue> countCompletionsByDay(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Số lượt hoàn thành theo (ngày, lesson) và theo (ngày, người dùng) - dùng để dựng lại các sketch Top-K theo ngày.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, lesson_id AS itemId, COUNT(*) AS metricValue FROM lesson_progress " +
+            "WHERE is_completed = 1 AND completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay, lesson_id", nativeQuery = true)
+    Stream<DailyItemCount> streamCompletionsByDayAndLesson(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, account_id AS itemId, COUNT(*) AS metricValue FROM lesson_progress " +
+            "WHERE is_completed = 1 AND completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay, account_id", nativeQuery = true)
+    Stream<DailyItemCount> streamCompletionsByDayAndAccount(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+}
@@ -0,0 +1,16 @@
+package com.ptit.englishlearningsuite.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bản ghi tiến độ bài học dạng phẳng cho các đường đọc báo cáo: chỉ gồm các cột cần thiết,
+ * không kéo theo Account/Lesson nên có thể đọc dạng stream mà không giữ đồ thị entity trong persistence context.
+ */
+public record LessonProgressRow(Long accountId,
+                                Long lessonId,
+                                int level,
+                                int score,
+                                boolean completed,
+                                Integer timeSpentSeconds,
+                                LocalDateTime completedAt) {
+}
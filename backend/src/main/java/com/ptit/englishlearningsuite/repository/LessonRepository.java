@@ -1,9 +1,126 @@
 package com.ptit.englishlearningsuite.repository;
 
 import com.ptit.englishlearningsuite.entity.Lesson;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface LessonRepository extends JpaRepository<Lesson, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Nạp cả cây nội dung của bài học (từ vựng, ngữ pháp, hội thoại - câu, câu hỏi luyện tập - đáp án) bằng 4 câu SQL
+     * cố định, bất kể số hội thoại/câu hỏi: mỗi câu fetch join một nhánh và cùng trả về một entity Lesson trong
+     * persistence context, nên các collection được khởi tạo dần trên cùng đối tượng. Tách nhánh để tránh tích Descartes
+     * giữa các nhánh. Phải gọi trong giao dịch.
+     */
+    default Optional<Lesson> findDetailById(Long id) {
+        Optional<Lesson> lesson = findWithVocabulariesById(id);
+        if (lesson.isPresent()) {
+            findWithGrammarsById(id);
+            findWithConversationsById(id);
+            findWithPracticeQuestionsById(id);
+        }
+        return lesson;
+    }
+
+    @Query("SELECT l FROM Lesson l LEFT JOIN FETCH l.vocabularies WHERE l.id = :id")
+    Optional<Lesson> findWithVocabulariesById(@Param("id") Long id);
+
+    @Query("SELECT l FROM Lesson l LEFT JOIN FETCH l.grammars WHERE l.id = :id")
+    Optional<Lesson> findWithGrammarsById(@Param("id") Long id);
+
+    @Query("SELECT l FROM Lesson l LEFT JOIN FETCH l.conversations c LEFT JOIN FETCH c.sentences WHERE l.id = :id")
+    Optional<Lesson> findWithConversationsById(@Param("id") Long id);
+
+    @Query("SELECT l FROM Lesson l LEFT JOIN FETCH l.practiceQuestions q LEFT JOIN FETCH q.answerOptions WHERE l.id = :id")
+    Optional<Lesson> findWithPracticeQuestionsById(@Param("id") Long id);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonFeatureRow(" +
+            "l.id, l.difficultyRating, l.grammarWeight, l.vocabWeight, l.listeningWeight) " +
+            "FROM Lesson l WHERE l.isActive = true")
+    List<LessonFeatureRow> findActiveLessonFeatures();
+
+    // Cả bài học đã ẩn: lịch sử cũ vẫn có lượt trả lời trên chúng
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonFeatureRow(" +
+            "l.id, l.difficultyRating, l.grammarWeight, l.vocabWeight, l.listeningWeight) FROM Lesson l")
+    List<LessonFeatureRow> findAllLessonFeatures();
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonFeatureRow(" +
+            "l.id, l.difficultyRating, l.grammarWeight, l.vocabWeight, l.listeningWeight) " +
+            "FROM Lesson l WHERE l.id IN :ids AND l.isActive = true")
+    List<LessonFeatureRow> findLessonFeaturesByIdIn(@Param("ids") Collection<Long> ids);
+
+    // Không lọc isActive: bài học đã ẩn vẫn có lượt trả lời làm đổi độ khó
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonFeatureStatusRow(" +
+            "l.id, l.difficultyRating, l.grammarWeight, l.vocabWeight, l.listeningWeight, l.isActive) " +
+            "FROM Lesson l WHERE l.id IN :ids")
+    List<LessonFeatureStatusRow> findLessonFeatureStatusByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonFeatureRow(" +
+            "l.id, l.difficultyRating, l.grammarWeight, l.vocabWeight, l.listeningWeight) " +
+            "FROM Lesson l WHERE l.id = :id")
+    Optional<LessonFeatureRow> findFeaturesById(@Param("id") Long id);
+
+    @Query(value = "SELECT id AS id, difficulty_rating AS rating, rating_deviation AS deviation, " +
+            "rating_volatility AS volatility, rated_at AS ratedAt FROM lessons WHERE id IN :ids", nativeQuery = true)
+    List<GlickoRatingState> findGlickoStateByIdIn(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.ContentVersionRow(l.id, COALESCE(l.contentVersion, 0L)) FROM Lesson l")
+    List<ContentVersionRow> findContentVersions();
+
+    /**
+     * Tăng phiên bản nội dung của bài học (khóa dòng tới khi commit nên hai lượt sửa đồng thời nhận hai phiên bản khác nhau).
+     */
+    @Modifying
+    @Query("UPDATE Lesson l SET l.contentVersion = COALESCE(l.contentVersion, 0L) + 1 WHERE l.id = :id")
+    int incrementContentVersion(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(l.contentVersion, 0L) FROM Lesson l WHERE l.id = :id")
+    Optional<Long> findContentVersionById(@Param("id") Long id);
+
+    // --- Danh mục: projection tóm tắt, sắp theo (level, lessonNumber, id), phân trang keyset ---
+    // Mỗi tổ hợp bộ lọc một câu riêng để MySQL dùng đúng chỉ mục (idx_lessons_level_number / idx_lessons_active_level_number)
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonSummaryRow(l.id, l.lessonNumber, l.level, l.name) " +
+            "FROM Lesson l ORDER BY l.level, l.lessonNumber, l.id")
+    List<LessonSummaryRow> findAllSummaries();
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonSummaryRow(l.id, l.lessonNumber, l.level, l.name) " +
+            "FROM Lesson l WHERE l.level > :level OR (l.level = :level AND (l.lessonNumber > :lessonNumber " +
+            "OR (l.lessonNumber = :lessonNumber AND l.id > :id))) ORDER BY l.level, l.lessonNumber, l.id")
+    List<LessonSummaryRow> findSummariesAfter(@Param("level") int level, @Param("lessonNumber") int lessonNumber,
+                                              @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonSummaryRow(l.id, l.lessonNumber, l.level, l.name) " +
+            "FROM Lesson l WHERE l.level = :level AND (l.lessonNumber > :lessonNumber " +
+            "OR (l.lessonNumber = :lessonNumber AND l.id > :id)) ORDER BY l.lessonNumber, l.id")
+    List<LessonSummaryRow> findSummariesByLevelAfter(@Param("level") int level, @Param("lessonNumber") int lessonNumber,
+                                                     @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonSummaryRow(l.id, l.lessonNumber, l.level, l.name) " +
+            "FROM Lesson l WHERE l.isActive = :active AND (l.level > :level OR (l.level = :level " +
+            "AND (l.lessonNumber > :lessonNumber OR (l.lessonNumber = :lessonNumber AND l.id > :id)))) " +
+            "ORDER BY l.level, l.lessonNumber, l.id")
+    List<LessonSummaryRow> findSummariesByActiveAfter(@Param("active") boolean active, @Param("level") int level,
+                                                      @Param("lessonNumber") int lessonNumber,
+                                                      @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LessonSummaryRow(l.id, l.lessonNumber, l.level, l.name) " +
+            "FROM Lesson l WHERE l.isActive = :active AND l.level = :level AND (l.lessonNumber > :lessonNumber " +
+            "OR (l.lessonNumber = :lessonNumber AND l.id > :id)) ORDER BY l.lessonNumber, l.id")
+    List<LessonSummaryRow> findSummariesByActiveAndLevelAfter(@Param("active") boolean active, @Param("level") int level,
+                                                              @Param("lessonNumber") int lessonNumber,
+                                                              @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LevelCountRow(l.level, l.isActive, COUNT(l)) " +
+            "FROM Lesson l GROUP BY l.level, l.isActive")
+    List<LevelCountRow> countByLevelAndActive();
+}
@@ -0,0 +1,52 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.LessonStatistics;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface LessonStatisticsRepository extends JpaRepository<LessonStatistics, Long> {
+
+    List<LessonStatistics> findByCompletionCountGreaterThan(long minCompletions, Pageable pageable);
+
+    @Query("SELECT s.level AS level, SUM(s.completionCount) AS completions FROM LessonStatistics s " +
+            "WHERE s.completionCount > 0 GROUP BY s.level")
+    List<LevelCompletions> sumCompletionsByLevel();
+
+    @Modifying
+    @Query(value = "INSERT INTO lesson_statistics (lesson_id, level, completion_count, score_sum, time_spent_seconds) " +
+            "VALUES (:lessonId, :level, :completions, :scoreSum, :timeSpent) " +
+            "ON DUPLICATE KEY UPDATE level = VALUES(level), " +
+            "completion_count = completion_count + VALUES(completion_count), " +
+            "score_sum = score_sum + VALUES(score_sum), " +
+            "time_spent_seconds = time_spent_seconds + VALUES(time_spent_seconds)",
+            nativeQuery = true)
+    int applyDelta(@Param("lessonId") Long lessonId,
+                   @Param("level") int level,
+                   @Param("completions") long completions,
+                   @Param("scoreSum") long scoreSum,
+                   @Param("timeSpent") long timeSpent);
+
+    @Modifying
+    @Query("UPDATE LessonStatistics s SET s.level = :level WHERE s.lessonId = :lessonId")
+    int updateLevel(@Param("lessonId") Long lessonId, @Param("level") int level);
+
+    @Modifying
+    @Query(value = "INSERT INTO lesson_statistics (lesson_id, level, completion_count, score_sum, time_spent_seconds) " +
+            "SELECT l.id, l.level, COUNT(lp.id), COALESCE(SUM(lp.score), 0), COALESCE(SUM(lp.time_spent_seconds), 0) " +
+            "FROM lesson_progress lp JOIN lessons l ON l.id = lp.lesson_id " +
+            "WHERE lp.is_completed = 1 GROUP BY l.id, l.level",
+            nativeQuery = true)
+    int rebuildFromProgress();
+
+    interface LevelCompletions {
+        Integer getLevel();
+        Long getCompletions();
+    }
+}
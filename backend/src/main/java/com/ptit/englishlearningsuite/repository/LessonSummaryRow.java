@@ -0,0 +1,7 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Các cột của bài học mà danh mục cần (không nạp entity và các collection của nó).
+ */
+public record LessonSummaryRow(Long id, Integer lessonNumber, Integer level, String name) {
+}
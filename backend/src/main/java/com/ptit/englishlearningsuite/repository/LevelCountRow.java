@@ -0,0 +1,11 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Số mục của danh mục theo cấp độ (và trạng thái active với bài học; null với bài kiểm tra).
+ */
+public record LevelCountRow(Integer level, Boolean active, Long count) {
+
+    public LevelCountRow(Integer level, Long count) {
+        this(level, null, count);
+    }
+}
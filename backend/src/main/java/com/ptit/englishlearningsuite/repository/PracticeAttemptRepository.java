@@ -0,0 +1,49 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.PracticeAttempt;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.stream.Stream;
+
+@Repository
+public interface PracticeAttemptRepository extends JpaRepository<PracticeAttempt, Long> {
+
+    long countByAnsweredAtBefore(LocalDateTime cutoff);
+
+    /**
+     * Các lượt trả lời trong [from, to) theo đúng thứ tự đã xử lý, đọc dạng stream.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "1000"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.PracticeAttemptRow(" +
+            "p.accountId, p.lessonId, p.passed, p.answeredAt) " +
+            "FROM PracticeAttempt p WHERE p.answeredAt >= :from AND p.answeredAt < :to ORDER BY p.answeredAt, p.id")
+    Stream<PracticeAttemptRow> streamBetween(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    /**
+     * Số người học có lượt hoàn thành bài học/bài kiểm tra sớm hơn lượt trả lời đầu tiên trong nhật ký (trước mốc
+     * {@code cutoff}): lịch sử của họ bắt đầu trước khi có practice_attempts nên không replay lại đầy đủ được.
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT account_id, MIN(answered_at) AS first_answered_at " +
+            "FROM practice_attempts WHERE answered_at < :cutoff GROUP BY account_id) p " +
+            "WHERE EXISTS (SELECT 1 FROM lesson_progress lp WHERE lp.account_id = p.account_id " +
+            "AND lp.completed_at < p.first_answered_at) " +
+            "OR EXISTS (SELECT 1 FROM test_progress tp WHERE tp.account_id = p.account_id " +
+            "AND tp.completed_at < p.first_answered_at)", nativeQuery = true)
+    long countAccountsWithEarlierProgress(@Param("cutoff") LocalDateTime cutoff);
+
+    /**
+     * Tương tự cho bài học: số bài học có lượt hoàn thành sớm hơn lượt trả lời đầu tiên trong nhật ký.
+     */
+    @Query(value = "SELECT COUNT(*) FROM (SELECT lesson_id, MIN(answered_at) AS first_answered_at " +
+            "FROM practice_attempts WHERE answered_at < :cutoff GROUP BY lesson_id) p " +
+            "WHERE EXISTS (SELECT 1 FROM lesson_progress lp WHERE lp.lesson_id = p.lesson_id " +
+            "AND lp.completed_at < p.first_answered_at)", nativeQuery = true)
+    long countLessonsWithEarlierProgress(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -0,0 +1,9 @@
+package com.ptit.englishlearningsuite.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Một lượt trả lời dạng phẳng để replay (đọc dạng stream, không giữ entity trong persistence context).
+ */
+public record PracticeAttemptRow(Long accountId, Long lessonId, boolean passed, LocalDateTime answeredAt) {
+}
@@ -0,0 +1,12 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.RatingBackfillRun;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface RatingBackfillRunRepository extends JpaRepository<RatingBackfillRun, Long> {
+    Optional<RatingBackfillRun> findTopByOrderByIdDesc();
+}
@@ -0,0 +1,32 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.StatisticsCounter;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface StatisticsCounterRepository extends JpaRepository<StatisticsCounter, String> {
+
+    /**
+     * Cộng dồn nguyên tử (INSERT ... ON DUPLICATE KEY UPDATE) để không mất cập nhật khi ghi đồng thời.
+     */
+    @Modifying
+    @Query(value = "INSERT INTO statistics_counters (counter_key, counter_value) VALUES (:key, :delta) " +
+            "ON DUPLICATE KEY UPDATE counter_value = counter_value + VALUES(counter_value)",
+            nativeQuery = true)
+    int increment(@Param("key") String key, @Param("delta") long delta);
+
+    @Modifying
+    @Query(value = "INSERT INTO statistics_counters (counter_key, counter_value) VALUES " +
+            "('lesson.completions', (SELECT COALESCE(SUM(completion_count), 0) FROM lesson_statistics)), " +
+            "('lesson.score_sum', (SELECT COALESCE(SUM(score_sum), 0) FROM lesson_statistics)), " +
+            "('lesson.time_spent', (SELECT COALESCE(SUM(time_spent_seconds), 0) FROM lesson_statistics)), " +
+            "('test.completions', (SELECT COALESCE(SUM(completion_count), 0) FROM test_statistics)), " +
+            "('test.score_sum', (SELECT COALESCE(SUM(score_sum), 0) FROM test_statistics)), " +
+            "('test.time_spent', (SELECT COALESCE(SUM(time_spent_seconds), 0) FROM test_statistics))",
+            nativeQuery = true)
+    int rebuildFromStatistics();
+}
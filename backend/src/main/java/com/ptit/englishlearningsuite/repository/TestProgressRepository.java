@@ -4,12 +4,16 @@ import com.ptit.englishlearningsuite.entity.Account;
 import com.ptit.englishlearningsuite.entity.Test;
 import com.ptit.englishlearningsuite.entity.TestProgress;
 import org.springframework.data.jpa.repository.JpaRepository;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TestProgressRepository extends JpaRepository<TestProgress, Long> {
@@ -18,6 +22,44 @@ public interface TestProgressRepository extends JpaRepository<TestProgress, Long
     List<TestProgress> findAllByAccountOrderByCompletedAtAsc(Account account);
     int countByAccount(Account account);
     
-    @Query("SELECT tp FROM TestProgress tp WHERE tp.completedAt >= :startDate AND tp.completedAt < :endDate")
-    List<TestProgress> findByCompletedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
-}
\ No newline at end of file
+    /**
+     * Đọc dạng stream (cần transaction, nhớ đóng stream) toàn bộ tiến độ bài kiểm tra của một người dùng.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.TestProgressRow(" +
+            "tp.account.id, tp.test.id, tp.test.level, tp.score, tp.timeSpentSeconds, tp.completedAt) " +
+            "FROM TestProgress tp WHERE tp.account.id = :accountId")
+    Stream<TestProgressRow> streamByAccountId(@Param("accountId") Long accountId);
+
+    /**
+     * Các lượt làm bài kiểm tra trong khoảng [startDate, endDate) cho báo cáo, đọc dạng stream.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.TestProgressRow(" +
+            "tp.account.id, tp.test.id, tp.test.level, tp.score, tp.timeSpentSeconds, tp.completedAt) " +
+            "FROM TestProgress tp WHERE tp.completedAt >= :startDate AND tp.completedAt < :endDate")
+    Stream<TestProgressRow> streamByCompletedAtBetween(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, COUNT(*) AS metricValue FROM test_progress " +
+            "WHERE completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay", nativeQuery = true)
+    List<DailyMetricValue> countCompletionsByDay(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    /**
+     * Số lượt hoàn thành theo (ngày, test) và theo (ngày, người dùng) - dùng để dựng lại các sketch Top-K theo ngày.
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, test_id AS itemId, COUNT(*) AS metricValue FROM test_progress " +
+            "WHERE completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay, test_id", nativeQuery = true)
+    Stream<DailyItemCount> streamCompletionsByDayAndTest(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, account_id AS itemId, COUNT(*) AS metricValue FROM test_progress " +
+            "WHERE completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay, account_id", nativeQuery = true)
+    Stream<DailyItemCount> streamCompletionsByDayAndAccount(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "500"))
+    @Query(value = "SELECT DATEDIFF(completed_at, '1970-01-01') AS epochDay, account_id AS accountId, " +
+            "COUNT(*) AS completions, SUM(score) AS scoreSum FROM test_progress " +
+            "WHERE completed_at >= :startDate AND completed_at < :endDate GROUP BY epochDay, account_id", nativeQuery = true)
+    Stream<DailyAccountTestTotals> streamTestTotalsByDayAndAccount(@Param("startDate") LocalDateTime startDate, @Param("endDate") LocalDateTime endDate);
+}
@@ -0,0 +1,14 @@
+package com.ptit.englishlearningsuite.repository;
+
+import java.time.LocalDateTime;
+
+/**
+ * Bản ghi tiến độ bài kiểm tra dạng phẳng cho các đường đọc báo cáo (xem {@link LessonProgressRow}).
+ */
+public record TestProgressRow(Long accountId,
+                              Long testId,
+                              int level,
+                              int score,
+                              Integer timeSpentSeconds,
+                              LocalDateTime completedAt) {
+}
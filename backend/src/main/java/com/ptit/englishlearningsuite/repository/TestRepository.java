@@ -1,9 +1,52 @@
 package com.ptit.englishlearningsuite.repository;
 
 import com.ptit.englishlearningsuite.entity.Test;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface TestRepository extends JpaRepository<Test, Long> {
-}
\ No newline at end of file
+
+    /**
+     * Bài kiểm tra cùng toàn bộ câu hỏi và đáp án trong một câu SQL (không nạp lazy từng câu hỏi).
+     */
+    @Query("SELECT t FROM Test t LEFT JOIN FETCH t.questions q LEFT JOIN FETCH q.answerOptions WHERE t.id = :id")
+    Optional<Test> findDetailById(@Param("id") Long id);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.ContentVersionRow(t.id, COALESCE(t.contentVersion, 0L)) FROM Test t")
+    List<ContentVersionRow> findContentVersions();
+
+    /**
+     * Tăng phiên bản nội dung của bài kiểm tra (khóa dòng tới khi commit nên hai lượt sửa đồng thời nhận hai phiên bản khác nhau).
+     */
+    @Modifying
+    @Query("UPDATE Test t SET t.contentVersion = COALESCE(t.contentVersion, 0L) + 1 WHERE t.id = :id")
+    int incrementContentVersion(@Param("id") Long id);
+
+    @Query("SELECT COALESCE(t.contentVersion, 0L) FROM Test t WHERE t.id = :id")
+    Optional<Long> findContentVersionById(@Param("id") Long id);
+
+    // --- Danh mục: projection tóm tắt, sắp theo (level, id), phân trang keyset (chỉ mục idx_tests_level_id) ---
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.TestSummaryRow(t.id, t.name, t.level) " +
+            "FROM Test t ORDER BY t.level, t.id")
+    List<TestSummaryRow> findAllSummaries();
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.TestSummaryRow(t.id, t.name, t.level) " +
+            "FROM Test t WHERE t.level > :level OR (t.level = :level AND t.id > :id) ORDER BY t.level, t.id")
+    List<TestSummaryRow> findSummariesAfter(@Param("level") int level, @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.TestSummaryRow(t.id, t.name, t.level) " +
+            "FROM Test t WHERE t.level = :level AND t.id > :id ORDER BY t.id")
+    List<TestSummaryRow> findSummariesByLevelAfter(@Param("level") int level, @Param("id") long id, Pageable pageable);
+
+    @Query("SELECT new com.ptit.englishlearningsuite.repository.LevelCountRow(t.level, COUNT(t)) FROM Test t GROUP BY t.level")
+    List<LevelCountRow> countByLevel();
+}
@@ -0,0 +1,51 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.TestStatistics;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface TestStatisticsRepository extends JpaRepository<TestStatistics, Long> {
+
+    List<TestStatistics> findByCompletionCountGreaterThan(long minCompletions, Pageable pageable);
+
+    @Query("SELECT s.level AS level, SUM(s.completionCount) AS completions FROM TestStatistics s " +
+            "WHERE s.completionCount > 0 GROUP BY s.level")
+    List<LevelCompletions> sumCompletionsByLevel();
+
+    @Modifying
+    @Query(value = "INSERT INTO test_statistics (test_id, level, completion_count, score_sum, time_spent_seconds) " +
+            "VALUES (:testId, :level, :completions, :scoreSum, :timeSpent) " +
+            "ON DUPLICATE KEY UPDATE level = VALUES(level), " +
+            "completion_count = completion_count + VALUES(completion_count), " +
+            "score_sum = score_sum + VALUES(score_sum), " +
+            "time_spent_seconds = time_spent_seconds + VALUES(time_spent_seconds)",
+            nativeQuery = true)
+    int applyDelta(@Param("testId") Long testId,
+                   @Param("level") int level,
+                   @Param("completions") long completions,
+                   @Param("scoreSum") long scoreSum,
+                   @Param("timeSpent") long timeSpent);
+
+    @Modifying
+    @Query("UPDATE TestStatistics s SET s.level = :level WHERE s.testId = :testId")
+    int updateLevel(@Param("testId") Long testId, @Param("level") int level);
+
+    @Modifying
+    @Query(value = "INSERT INTO test_statistics (test_id, level, completion_count, score_sum, time_spent_seconds) " +
+            "SELECT t.id, t.level, COUNT(tp.id), COALESCE(SUM(tp.score), 0), COALESCE(SUM(tp.time_spent_seconds), 0) " +
+            "FROM test_progress tp JOIN tests t ON t.id = tp.test_id GROUP BY t.id, t.level",
+            nativeQuery = true)
+    int rebuildFromProgress();
+
+    interface LevelCompletions {
+        Integer getLevel();
+        Long getCompletions();
+    }
+}
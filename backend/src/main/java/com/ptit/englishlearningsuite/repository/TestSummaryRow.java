@@ -0,0 +1,7 @@
+package com.ptit.englishlearningsuite.repository;
+
+/**
+ * Các cột của bài kiểm tra mà danh mục cần (không nạp câu hỏi).
+ */
+public record TestSummaryRow(Long id, String name, Integer level) {
+}
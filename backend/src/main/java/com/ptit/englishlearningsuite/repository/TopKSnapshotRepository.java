@@ -0,0 +1,9 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.TopKSnapshot;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface TopKSnapshotRepository extends JpaRepository<TopKSnapshot, String> {
+}
@@ -21,6 +21,15 @@ public class AccountService {
     @Autowired
     private PasswordEncoder passwordEncoder;
 
+    @Autowired
+    private XpLeaderboardService xpLeaderboardService;
+
+    @Autowired
+    private LearnedLessonCache learnedLessonCache;
+
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
+
     public AccountDTO registerAccount(Account account) {
         if (accountRepository.findByUsername(account.getUsername()).isPresent()) {
             throw new IllegalStateException("Username '" + account.getUsername() + "' already exists.");
@@ -86,7 +95,9 @@ public class AccountService {
             account.setPassword(passwordEncoder.encode(request.getPassword()));
         }
 
-        return convertToDto(accountRepository.save(account));
+        Account saved = accountRepository.save(account);
+        xpLeaderboardService.rename(saved);
+        return convertToDto(saved);
     }
 
     public void deleteAccountByAdmin(Long id) {
@@ -94,6 +105,9 @@ public class AccountService {
             throw new IllegalArgumentException("Account not found with id " + id);
         }
         accountRepository.deleteById(id);
+        xpLeaderboardService.remove(id);
+        learnedLessonCache.evict(id);
+        recommendationMaterializer.evict(id);
     }
 
     public Account findByUsername(String username) {
@@ -0,0 +1,311 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.entity.DailyActiveUsers;
+import com.ptit.englishlearningsuite.repository.DailyActiveUsersRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRow;
+import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRow;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Chỉ mục người dùng hoạt động theo ngày: mỗi ngày là một Roaring bitmap theo account id.
+ * DAU/WAU/MAU, tỉ lệ giữ chân và phân bố số ngày học/tuần được tính bằng OR/AND/cardinality
+ * trên bitmap thay vì dựng HashSet từ toàn bộ bảng tiến độ.
+ * Bitmap được ghi xuống bảng daily_active_users theo chu kỳ (chỉ những ngày có thay đổi).
+ */
+@Service
+public class ActiveUserIndexService {
+
+    private static final int BACKFILL_CHUNK_DAYS = 31;
+
+    @Value("${statistics.active-users.retention-days:400}")
+    private int retentionDays;
+
+    @Value("${statistics.active-users.load-on-startup:true}")
+    private boolean startupLoadEnabled;
+
+    @Autowired
+    private DailyActiveUsersRepository dailyActiveUsersRepository;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TestProgressRepository testProgressRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<LocalDate, RoaringBitmap> days = new ConcurrentHashMap<>();
+
+    private final Set<LocalDate> dirtyDays = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Đánh dấu người dùng hoạt động trong ngày. Trong giao dịch thì chỉ đánh dấu sau khi commit,
+     * để lượt ghi tiến độ bị rollback không tính người dùng là hoạt động.
+     */
+    public void markActive(Long accountId, LocalDateTime activeAt) {
+        if (accountId == null) {
+            return;
+        }
+        LocalDate day = (activeAt != null ? activeAt : LocalDateTime.now()).toLocalDate();
+        AfterCommit.run(() -> mark(accountId, day));
+    }
+
+    private void mark(Long accountId, LocalDateTime activeAt) {
+        mark(accountId, (activeAt != null ? activeAt : LocalDateTime.now()).toLocalDate());
+    }
+
+    private void mark(Long accountId, LocalDate day) {
+        if (accountId == null) {
+            return;
+        }
+        RoaringBitmap bitmap = days.computeIfAbsent(day, d -> new RoaringBitmap());
+        boolean added;
+        synchronized (bitmap) {
+            added = bitmap.checkedAdd(Math.toIntExact(accountId));
+        }
+        if (added) {
+            dirtyDays.add(day);
+        }
+    }
+
+    public long countActive(LocalDate day) {
+        RoaringBitmap bitmap = days.get(day);
+        if (bitmap == null) {
+            return 0;
+        }
+        synchronized (bitmap) {
+            return bitmap.getLongCardinality();
+        }
+    }
+
+    /**
+     * Số người dùng hoạt động ít nhất một lần trong [startDay, endDay] (WAU/MAU...).
+     */
+    public long countActiveBetween(LocalDate startDay, LocalDate endDay) {
+        return unionBetween(startDay, endDay).getLongCardinality();
+    }
+
+    /**
+     * Tập account id hoạt động ít nhất một lần trong [startDay, endDay] (bản sao, người gọi được phép sửa).
+     */
+    public RoaringBitmap activeAccounts(LocalDate startDay, LocalDate endDay) {
+        return unionBetween(startDay, endDay);
+    }
+
+    /**
+     * Số người hoạt động trong cả hai khoảng (ví dụ: giữ chân từ tuần trước sang tuần này).
+     */
+    public long countRetained(LocalDate cohortStart, LocalDate cohortEnd, LocalDate returnStart, LocalDate returnEnd) {
+        return RoaringBitmap.andCardinality(unionBetween(cohortStart, cohortEnd), unionBetween(returnStart, returnEnd));
+    }
+
+    /**
+     * Phân bố số ngày hoạt động của từng người dùng trong [startDay, endDay]: key = số ngày, value = số người.
+     * Dùng bộ đếm bit-sliced (mỗi lát là một bitmap) nên không cần map theo từng người dùng.
+     */
+    public Map<Integer, Long> activeDaysDistribution(LocalDate startDay, LocalDate endDay) {
+        List<RoaringBitmap> slices = new ArrayList<>();
+        RoaringBitmap everyone = new RoaringBitmap();
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            RoaringBitmap bitmap = days.get(day);
+            if (bitmap == null) {
+                continue;
+            }
+            RoaringBitmap carry;
+            synchronized (bitmap) {
+                carry = bitmap.clone();
+            }
+            everyone.or(carry);
+            for (int i = 0; i < slices.size() && !carry.isEmpty(); i++) {
+                RoaringBitmap slice = slices.get(i);
+                RoaringBitmap nextCarry = RoaringBitmap.and(slice, carry);
+                slice.xor(carry);
+                carry = nextCarry;
+            }
+            if (!carry.isEmpty()) {
+                slices.add(carry);
+            }
+        }
+
+        Map<Integer, Long> distribution = new LinkedHashMap<>();
+        int maxCount = (1 << slices.size()) - 1;
+        for (int count = 1; count <= maxCount; count++) {
+            RoaringBitmap matching = everyone.clone();
+            for (int i = 0; i < slices.size(); i++) {
+                if ((count & (1 << i)) != 0) {
+                    matching.and(slices.get(i));
+                } else {
+                    matching.andNot(slices.get(i));
+                }
+            }
+            long users = matching.getLongCardinality();
+            if (users > 0) {
+                distribution.put(count, users);
+            }
+        }
+        return distribution;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(2)
+    public void loadOnStartup() {
+        if (startupLoadEnabled) {
+            load();
+        }
+    }
+
+    /**
+     * Nạp bitmap của {@code retentionDays} ngày gần nhất từ DB; ngày nào chưa có thì dựng lại từ các bảng tiến độ.
+     */
+    public void load() {
+        LocalDate today = LocalDate.now();
+        LocalDate startDay = today.minusDays(retentionDays - 1L);
+
+        Set<LocalDate> persisted = new HashSet<>();
+        for (DailyActiveUsers row : dailyActiveUsersRepository.findAllByDayGreaterThanEqual(startDay)) {
+            RoaringBitmap bitmap = deserialize(row.getBitmap());
+            days.merge(row.getDay(), bitmap, (current, loaded) -> {
+                synchronized (current) {
+                    current.or(loaded);
+                }
+                return current;
+            });
+            persisted.add(row.getDay());
+        }
+
+        // Dựng lại các chuỗi ngày liên tiếp chưa được lưu; riêng hôm nay luôn tính lại vì có thể chưa kịp flush
+        LocalDate runStart = null;
+        for (LocalDate day = startDay; !day.isAfter(today.plusDays(1)); day = day.plusDays(1)) {
+            boolean missing = !day.isAfter(today) && (day.equals(today) || !persisted.contains(day));
+            if (missing && runStart == null) {
+                runStart = day;
+            } else if (!missing && runStart != null) {
+                backfill(runStart, day.minusDays(1));
+                runStart = null;
+            }
+        }
+        flush();
+    }
+
+    private void backfill(LocalDate startDay, LocalDate endDay) {
+        for (LocalDate chunkStart = startDay; !chunkStart.isAfter(endDay); chunkStart = chunkStart.plusDays(BACKFILL_CHUNK_DAYS)) {
+            LocalDate chunkEnd = chunkStart.plusDays(BACKFILL_CHUNK_DAYS - 1L);
+            if (chunkEnd.isAfter(endDay)) {
+                chunkEnd = endDay;
+            }
+            LocalDateTime startDate = chunkStart.atStartOfDay();
+            LocalDateTime endDate = chunkEnd.plusDays(1).atStartOfDay();
+            // Đọc dạng stream trong một transaction chỉ đọc: mỗi dòng được đánh dấu rồi bỏ đi ngay
+            // (dữ liệu đã commit nên đánh dấu trực tiếp, không chờ commit)
+            transactionTemplate.executeWithoutResult(status -> {
+                try (Stream<LessonProgressRow> rows = lessonProgressRepository.streamCompletedBetween(startDate, endDate)) {
+                    rows.forEach(row -> mark(row.accountId(), row.completedAt()));
+                }
+                try (Stream<TestProgressRow> rows = testProgressRepository.streamByCompletedAtBetween(startDate, endDate)) {
+                    rows.forEach(row -> mark(row.accountId(), row.completedAt()));
+                }
+                try (Stream<DailyActiveUsersRepository.AccountActiveDay> rows =
+                             dailyActiveUsersRepository.streamVocabularyActivity(startDate, endDate)) {
+                    rows.forEach(row -> mark(row.getAccountId(), LocalDate.ofEpochDay(row.getEpochDay())));
+                }
+            });
+        }
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            days.computeIfAbsent(day, d -> new RoaringBitmap());
+            dirtyDays.add(day);
+        }
+    }
+
+    /**
+     * Ghi các ngày có thay đổi xuống DB và bỏ các ngày đã quá hạn lưu giữ khỏi bộ nhớ.
+     */
+    @Scheduled(fixedDelayString = "${statistics.active-users.flush-interval-ms:60000}")
+    @PreDestroy
+    public void flush() {
+        for (LocalDate day : new ArrayList<>(dirtyDays)) {
+            dirtyDays.remove(day);
+            RoaringBitmap bitmap = days.get(day);
+            if (bitmap == null) {
+                continue;
+            }
+            RoaringBitmap copy;
+            synchronized (bitmap) {
+                copy = bitmap.clone();
+            }
+            copy.runOptimize();
+
+            DailyActiveUsers row = new DailyActiveUsers();
+            row.setDay(day);
+            row.setBitmap(serialize(copy));
+            row.setCardinality(copy.getLongCardinality());
+            row.setUpdatedAt(LocalDateTime.now());
+            dailyActiveUsersRepository.save(row);
+        }
+
+        LocalDate oldestKept = LocalDate.now().minusDays(retentionDays - 1L);
+        days.keySet().removeIf(day -> day.isBefore(oldestKept));
+    }
+
+    private RoaringBitmap unionBetween(LocalDate startDay, LocalDate endDay) {
+        RoaringBitmap union = new RoaringBitmap();
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            RoaringBitmap bitmap = days.get(day);
+            if (bitmap != null) {
+                synchronized (bitmap) {
+                    union.or(bitmap);
+                }
+            }
+        }
+        return union;
+    }
+
+    private byte[] serialize(RoaringBitmap bitmap) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(bitmap.serializedSizeInBytes());
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            bitmap.serialize(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private RoaringBitmap deserialize(byte[] bytes) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            bitmap.deserialize(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bitmap;
+    }
+}
@@ -0,0 +1,161 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.repository.ContentVersionRow;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.repository.TestRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Phiên bản nội dung của từng bài học/bài kiểm tra (cột content_version) và của cả danh mục, giữ trong bộ nhớ để
+ * trả lời {@code If-None-Match} bằng 304 mà không chạm DB hay dựng DTO.
+ * <p>
+ * Phiên bản được tăng trong giao dịch của các đường tạo/sửa ({@link #bumpLesson}/{@link #bumpTest}) và chỉ được công bố
+ * sau khi commit. Phiên bản danh mục là tổng băm của các cặp (id, phiên bản) nên đổi khi một mục được thêm, sửa hoặc
+ * xóa và giống nhau giữa các lần khởi động. Bảng được nạp lại định kỳ làm lưới an toàn cho các thay đổi ngoài service.
+ */
+@Service
+public class ContentVersionService {
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    // null cho tới lần nạp đầu tiên
+    private volatile Versions lessons;
+    private volatile Versions tests;
+
+    @Scheduled(fixedDelayString = "${content.version.refresh-interval-ms:60000}",
+            initialDelayString = "${content.version.refresh-interval-ms:60000}")
+    public void refresh() {
+        lessons = reload(lessons, lessonRepository::findContentVersions);
+        tests = reload(tests, testRepository::findContentVersions);
+    }
+
+    /** Phiên bản hiện tại của bài học, null nếu không biết (chưa có hoặc đã xóa). */
+    public Long lessonVersion(Long lessonId) {
+        return lessons().get(lessonId);
+    }
+
+    public Long testVersion(Long testId) {
+        return tests().get(testId);
+    }
+
+    public long lessonCatalogVersion() {
+        return lessons().catalog;
+    }
+
+    public long testCatalogVersion() {
+        return tests().catalog;
+    }
+
+    /**
+     * Tăng phiên bản nội dung của bài học trong giao dịch hiện tại; phiên bản mới được công bố sau khi commit.
+     */
+    public void bumpLesson(Long lessonId) {
+        lessonRepository.incrementContentVersion(lessonId);
+        long version = lessonRepository.findContentVersionById(lessonId)
+                .orElseThrow(() -> new RuntimeException("Lesson not found with id: " + lessonId));
+        AfterCommit.run(() -> lessons().put(lessonId, version));
+    }
+
+    public void bumpTest(Long testId) {
+        testRepository.incrementContentVersion(testId);
+        long version = testRepository.findContentVersionById(testId)
+                .orElseThrow(() -> new RuntimeException("Test not found with id: " + testId));
+        AfterCommit.run(() -> tests().put(testId, version));
+    }
+
+    public void lessonRemoved(Long lessonId) {
+        AfterCommit.run(() -> lessons().remove(lessonId));
+    }
+
+    public void testRemoved(Long testId) {
+        AfterCommit.run(() -> tests().remove(testId));
+    }
+
+    private Versions lessons() {
+        Versions current = lessons;
+        if (current == null) {
+            synchronized (this) {
+                if (lessons == null) {
+                    lessons = reload(null, lessonRepository::findContentVersions);
+                }
+                current = lessons;
+            }
+        }
+        return current;
+    }
+
+    private Versions tests() {
+        Versions current = tests;
+        if (current == null) {
+            synchronized (this) {
+                if (tests == null) {
+                    tests = reload(null, testRepository::findContentVersions);
+                }
+                current = tests;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Đọc lại từ DB. Nếu trong lúc đọc có thay đổi được công bố thì giữ bảng cũ (ảnh chụp có thể cũ hơn thay đổi đó),
+     * lượt nạp sau sẽ bắt kịp.
+     */
+    private static Versions reload(Versions current, Supplier<List<ContentVersionRow>> loader) {
+        long modCount = current != null ? current.modCount : 0;
+        Versions fresh = new Versions();
+        for (ContentVersionRow row : loader.get()) {
+            fresh.put(row.id(), row.contentVersion());
+        }
+        if (current != null && current.modCount != modCount) {
+            return current;
+        }
+        return fresh;
+    }
+
+    private static final class Versions {
+        private final ConcurrentHashMap<Long, Long> byId = new ConcurrentHashMap<>();
+        private volatile long catalog;
+        private volatile long modCount;
+
+        private Long get(Long id) {
+            return id != null ? byId.get(id) : null;
+        }
+
+        private synchronized void put(Long id, long version) {
+            Long previous = byId.put(id, version);
+            if (previous != null) {
+                catalog -= mix(id, previous);
+            }
+            catalog += mix(id, version);
+            modCount++;
+        }
+
+        private synchronized void remove(Long id) {
+            Long previous = byId.remove(id);
+            if (previous != null) {
+                catalog -= mix(id, previous);
+                modCount++;
+            }
+        }
+
+        // Cộng các giá trị băm nên không phụ thuộc thứ tự và cập nhật được từng mục
+        private static long mix(long id, long version) {
+            long h = (id * 0x9E3779B97F4A7C15L) ^ (version * 0xC2B2AE3D27D4EB4FL);
+            h ^= h >>> 31;
+            h *= 0xBF58476D1CE4E5B9L;
+            return h ^ (h >>> 29);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.entity.ActivityMetric;
+import com.ptit.englishlearningsuite.entity.DailyActivityRollup;
+import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.DailyActivityRollupRepository;
+import com.ptit.englishlearningsuite.repository.DailyMetricValue;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Bảng tổng hợp theo ngày (daily_activity_rollup) cho các biểu đồ trong getDetailedStatistics.
+ * Job định kỳ gộp các ngày đã đóng; ngày hôm nay (chưa đóng) được tính trực tiếp bằng truy vấn theo khoảng.
+ */
+@Service
+public class DailyActivityRollupService {
+
+    @Value("${statistics.rollup.backfill-days:365}")
+    private int backfillDays;
+
+    @Value("${statistics.rollup.fold-on-startup:true}")
+    private boolean startupFoldEnabled;
+
+    @Autowired
+    private DailyActivityRollupRepository dailyActivityRollupRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TestProgressRepository testProgressRepository;
+
+    /**
+     * Gộp mọi ngày đã đóng chưa có trong bảng rollup (bù lại cả những ngày server không chạy).
+     * Nếu bảng còn trống thì backfill {@code backfillDays} ngày gần nhất.
+     */
+    @Scheduled(cron = "${statistics.rollup.cron:0 5 0 * * *}")
+    @Transactional
+    public void foldClosedDays() {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        LocalDate latest = dailyActivityRollupRepository.findLatestDay();
+        LocalDate startDay = latest != null ? latest.plusDays(1) : yesterday.minusDays(backfillDays - 1L);
+        if (!startDay.isAfter(yesterday)) {
+            rebuild(startDay, yesterday);
+        }
+    }
+
+    /**
+     * Bù các ngày đã đóng trong lúc server tắt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(1)
+    @Transactional
+    public void foldClosedDaysOnStartup() {
+        if (startupFoldEnabled) {
+            foldClosedDays();
+        }
+    }
+
+    /**
+     * Tính lại rollup cho khoảng [startDay, endDay] (hai đầu bao gồm). Mỗi chỉ số là một truy vấn gom nhóm theo ngày.
+     */
+    @Transactional
+    public int rebuild(LocalDate startDay, LocalDate endDay) {
+        Map<LocalDate, Map<ActivityMetric, Long>> values = computeRange(startDay, endDay);
+
+        List<DailyActivityRollup> rows = new ArrayList<>();
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            Map<ActivityMetric, Long> dayValues = values.getOrDefault(day, Map.of());
+            for (ActivityMetric metric : ActivityMetric.values()) {
+                DailyActivityRollup row = new DailyActivityRollup();
+                row.setDay(day);
+                row.setMetric(metric);
+                row.setMetricValue(dayValues.getOrDefault(metric, 0L));
+                rows.add(row);
+            }
+        }
+
+        dailyActivityRollupRepository.deleteAllByDayBetween(startDay, endDay);
+        dailyActivityRollupRepository.saveAll(rows);
+        return rows.size();
+    }
+
+    /**
+     * Chuỗi giá trị theo ngày cho khoảng [startDay, endDay]. Các ngày đã đóng đọc từ bảng rollup,
+     * riêng hôm nay được tính trực tiếp.
+     */
+    @Transactional(readOnly = true)
+    public Map<LocalDate, Map<ActivityMetric, Long>> getSeries(LocalDate startDay, LocalDate endDay) {
+        Map<LocalDate, Map<ActivityMetric, Long>> series = new TreeMap<>();
+        for (LocalDate day = startDay; !day.isAfter(endDay); day = day.plusDays(1)) {
+            series.put(day, emptyMetrics());
+        }
+
+        for (DailyActivityRollup row : dailyActivityRollupRepository.findAllByDayBetweenOrderByDayAsc(startDay, endDay)) {
+            series.get(row.getDay()).put(row.getMetric(), row.getMetricValue());
+        }
+
+        LocalDate today = LocalDate.now();
+        if (!today.isBefore(startDay) && !today.isAfter(endDay)) {
+            series.put(today, computeRange(today, today).getOrDefault(today, emptyMetrics()));
+        }
+        return series;
+    }
+
+    private Map<LocalDate, Map<ActivityMetric, Long>> computeRange(LocalDate startDay, LocalDate endDay) {
+        LocalDateTime startDate = startDay.atStartOfDay();
+        LocalDateTime endDate = endDay.plusDays(1).atStartOfDay();
+
+        Map<LocalDate, Map<ActivityMetric, Long>> values = new TreeMap<>();
+        collect(values, ActivityMetric.NEW_USERS, accountRepository.countCreatedByDay(startDate, endDate));
+        collect(values, ActivityMetric.LESSON_COMPLETIONS, lessonProgressRepository.countCompletionsByDay(startDate, endDate));
+        collect(values, ActivityMetric.TEST_COMPLETIONS, testProgressRepository.countCompletionsByDay(startDate, endDate));
+        collect(values, ActivityMetric.ACTIVE_USERS, dailyActivityRollupRepository.countActiveUsersByDay(startDate, endDate));
+        collect(values, ActivityMetric.STUDY_SECONDS, dailyActivityRollupRepository.sumStudySecondsByDay(startDate, endDate));
+        collect(values, ActivityMetric.STUDY_SESSIONS, dailyActivityRollupRepository.countStudySessionsByDay(startDate, endDate));
+        return values;
+    }
+
+    private void collect(Map<LocalDate, Map<ActivityMetric, Long>> values, ActivityMetric metric, List<DailyMetricValue> rows) {
+        for (DailyMetricValue row : rows) {
+            LocalDate day = LocalDate.ofEpochDay(row.getEpochDay());
+            values.computeIfAbsent(day, k -> emptyMetrics())
+                    .put(metric, row.getMetricValue() != null ? row.getMetricValue() : 0L);
+        }
+    }
+
+    private Map<ActivityMetric, Long> emptyMetrics() {
+        Map<ActivityMetric, Long> metrics = new EnumMap<>(ActivityMetric.class);
+        for (ActivityMetric metric : ActivityMetric.values()) {
+            metrics.put(metric, 0L);
+        }
+        return metrics;
+    }
+}
@@ -0,0 +1,374 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.RatingEngineStatsDTO;
+import com.ptit.englishlearningsuite.repository.AccountFeatureRow;
+import com.ptit.englishlearningsuite.repository.AccountRatingState;
+import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.GlickoRatingState;
+import com.ptit.englishlearningsuite.repository.LessonFeatureRow;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import com.ptit.englishlearningsuite.util.Glicko2;
+import com.ptit.englishlearningsuite.util.RatingMath;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+
+/**
+ * Bộ xếp hạng theo kỳ (bật bằng {@code rating.engine=glicko2}; mặc định {@code elo} vẫn cập nhật từng lượt
+ * qua {@link com.ptit.englishlearningsuite.util.HybridMathUtils}).
+ * <p>
+ * Mỗi lượt trả lời chỉ được đưa vào hàng đợi của kỳ hiện tại (sau khi giao dịch commit), không ghi gì xuống DB;
+ * mức thành thạo được tính ngay và giữ trong bộ nhớ để lượt sau và bộ gợi ý thấy giá trị mới. Cuối mỗi kỳ
+ * ({@code rating.glicko2.period-ms}, mặc định 5 phút) mọi lượt được cập nhật cùng lúc bằng Glicko-2: người dùng và bài
+ * học là hai phía của trận, đều tính từ giá trị đầu kỳ, song song theo người dùng/bài học; rồi ghi bằng một lô UPDATE
+ * cho accounts, một cho lessons và một lô INSERT nhật ký practice_attempts trong cùng một giao dịch. Một người làm
+ * 50 câu trong kỳ chỉ còn 1 lần ghi dòng accounts thay vì 50.
+ * <p>
+ * Kỳ không có trận thì RD (độ không chắc chắn) tăng dần; thay vì ghi mọi dòng mỗi kỳ, số kỳ nghỉ được tính lại từ
+ * {@code rated_at} khi đối tượng được xếp hạng lần sau.
+ */
+@Service
+public class Glicko2RatingEngine {
+
+    private static final int LOAD_CHUNK = 1000;
+
+    private static final String UPDATE_ACCOUNT = "UPDATE accounts SET elo_rating = ?, rating_deviation = ?, " +
+            "rating_volatility = ?, rated_at = ?, grammar_proficiency = COALESCE(?, grammar_proficiency), " +
+            "vocab_proficiency = COALESCE(?, vocab_proficiency), " +
+            "listening_proficiency = COALESCE(?, listening_proficiency), " +
+            "rating_version = COALESCE(rating_version, 0) + 1 WHERE id = ?";
+
+    private static final String UPDATE_LESSON = "UPDATE lessons SET difficulty_rating = ?, rating_deviation = ?, " +
+            "rating_volatility = ?, rated_at = ? WHERE id = ?";
+
+    private static final String INSERT_ATTEMPT = "INSERT INTO practice_attempts " +
+            "(account_id, lesson_id, passed, user_elo, lesson_difficulty, answered_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    // elo: cập nhật từng lượt (mặc định); glicko2: gom theo kỳ
+    @Value("${rating.engine:elo}")
+    private String engine;
+
+    @Value("${rating.glicko2.period-ms:300000}")
+    private long periodMs;
+
+    // Hằng số hệ thống τ: giới hạn tốc độ thay đổi độ biến động (0.3 - 1.2)
+    @Value("${rating.glicko2.tau:0.5}")
+    private double tau;
+
+    @Value("${rating.glicko2.threads:4}")
+    private int threads;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
+
+    // Khóa đọc khi thêm lượt, khóa ghi khi tráo hàng đợi: không lượt nào rơi vào hàng đợi đã được lấy ra
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private ConcurrentLinkedQueue<Result> results = new ConcurrentLinkedQueue<>();
+
+    // Mức thành thạo chưa ghi xuống DB; giá trị luôn được thay bằng mảng mới để lúc ghi xong chỉ xóa đúng bản đã ghi
+    private final Map<Long, double[]> pendingProficiency = new ConcurrentHashMap<>();
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong periodsFlushed = new AtomicLong();
+    private final AtomicLong resultsFlushed = new AtomicLong();
+    private final AtomicLong rowsWritten = new AtomicLong();
+    private volatile FlushRun lastFlush;
+
+    @PostConstruct
+    void validate() {
+        String value = engine.trim().toLowerCase();
+        if (!value.equals("elo") && !value.equals("glicko2")) {
+            throw new IllegalArgumentException("Unknown rating.engine: " + engine);
+        }
+    }
+
+    public boolean isEnabled() {
+        return engine.trim().equalsIgnoreCase("glicko2");
+    }
+
+    /**
+     * Ghi nhận một lượt vào kỳ hiện tại (trong giao dịch thì chỉ sau khi commit) và trả về mức thành thạo mới;
+     * Elo/độ khó chỉ đổi ở cuối kỳ. Các lượt của cùng một người dùng phải được gọi tuần tự (hàng đợi theo người học).
+     */
+    public AccountFeatureRow record(AccountRatingState state, LessonFeatureRow lesson, boolean passed) {
+        Long accountId = state.getId();
+        double[] current = pendingProficiency.get(accountId);
+        RatingMath.Result next = RatingMath.apply(state.getEloRating(), lesson.difficultyRating(),
+                current != null ? Double.valueOf(current[0]) : state.getGrammarProficiency(),
+                current != null ? Double.valueOf(current[1]) : state.getVocabProficiency(),
+                current != null ? Double.valueOf(current[2]) : state.getListeningProficiency(),
+                lesson.grammarWeight(), lesson.vocabWeight(), lesson.listeningWeight(), passed);
+        double[] proficiency = {next.grammar(), next.vocab(), next.listening()};
+        Result result = new Result(accountId, lesson.id(), passed, LocalDateTime.now());
+
+        Runnable enqueue = () -> {
+            pendingProficiency.put(accountId, proficiency);
+            swapLock.readLock().lock();
+            try {
+                results.add(result);
+                pending.incrementAndGet();
+            } finally {
+                swapLock.readLock().unlock();
+            }
+        };
+        AfterCommit.run(enqueue);
+        return new AccountFeatureRow(accountId,
+                state.getEloRating() != null ? state.getEloRating() : RatingMath.DEFAULT_ELO,
+                proficiency[0], proficiency[1], proficiency[2]);
+    }
+
+    /**
+     * Kết thúc kỳ: cập nhật Glicko-2 mọi người dùng/bài học có lượt trong kỳ rồi ghi theo lô.
+     * Lỗi khi ghi thì các lượt được trả lại hàng đợi để kỳ sau xử lý.
+     */
+    @Scheduled(fixedDelayString = "${rating.glicko2.period-ms:300000}",
+            initialDelayString = "${rating.glicko2.period-ms:300000}")
+    @PreDestroy
+    public synchronized void flush() {
+        List<Result> batch;
+        swapLock.writeLock().lock();
+        try {
+            batch = new ArrayList<>(results);
+            results = new ConcurrentLinkedQueue<>();
+            pending.addAndGet(-batch.size());
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            ratePeriod(batch);
+        } catch (RuntimeException e) {
+            swapLock.readLock().lock();
+            try {
+                results.addAll(batch);
+                pending.addAndGet(batch.size());
+            } finally {
+                swapLock.readLock().unlock();
+            }
+            throw e;
+        }
+    }
+
+    private void ratePeriod(List<Result> batch) {
+        long startedAt = System.currentTimeMillis();
+        LocalDateTime now = LocalDateTime.now();
+
+        Map<Long, List<Result>> byAccount = new HashMap<>();
+        Map<Long, List<Result>> byLesson = new HashMap<>();
+        for (Result result : batch) {
+            byAccount.computeIfAbsent(result.accountId(), id -> new ArrayList<>()).add(result);
+            byLesson.computeIfAbsent(result.lessonId(), id -> new ArrayList<>()).add(result);
+        }
+        Map<Long, Glicko2.Rating> accountStart = load(byAccount.keySet(), accountRepository::findGlickoStateByIdIn,
+                RatingMath.DEFAULT_ELO, now);
+        Map<Long, Glicko2.Rating> lessonStart = load(byLesson.keySet(), lessonRepository::findGlickoStateByIdIn,
+                RatingMath.DEFAULT_DIFFICULTY, now);
+        // Người dùng/bài học đã bị xóa trong kỳ: bỏ các lượt của họ
+        byAccount.keySet().retainAll(accountStart.keySet());
+        byLesson.keySet().retainAll(lessonStart.keySet());
+
+        Map<Long, Glicko2.Rating> accountNext = rateAll(byAccount, accountStart, lessonStart, true);
+        Map<Long, Glicko2.Rating> lessonNext = rateAll(byLesson, lessonStart, accountStart, false);
+
+        List<Object[]> accountRows = new ArrayList<>(accountNext.size());
+        Map<Long, double[]> writtenProficiency = new HashMap<>();
+        accountNext.forEach((accountId, rating) -> {
+            double[] proficiency = pendingProficiency.get(accountId);
+            writtenProficiency.put(accountId, proficiency);
+            accountRows.add(new Object[]{(int) Math.round(rating.rating()), rating.deviation(), rating.volatility(), now,
+                    proficiency != null ? proficiency[0] : null,
+                    proficiency != null ? proficiency[1] : null,
+                    proficiency != null ? proficiency[2] : null,
+                    accountId});
+        });
+        List<Object[]> lessonRows = new ArrayList<>(lessonNext.size());
+        lessonNext.forEach((lessonId, rating) -> lessonRows.add(new Object[]{
+                (int) Math.round(rating.rating()), rating.deviation(), rating.volatility(), now, lessonId}));
+        List<Object[]> attemptRows = new ArrayList<>(batch.size());
+        for (Result result : batch) {
+            Glicko2.Rating user = accountStart.get(result.accountId());
+            Glicko2.Rating lesson = lessonStart.get(result.lessonId());
+            if (user != null && lesson != null) {
+                attemptRows.add(new Object[]{result.accountId(), result.lessonId(), result.passed(),
+                        (int) Math.round(user.rating()), (int) Math.round(lesson.rating()), result.answeredAt()});
+            }
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.batchUpdate(UPDATE_ACCOUNT, accountRows);
+            jdbcTemplate.batchUpdate(UPDATE_LESSON, lessonRows);
+            jdbcTemplate.batchUpdate(INSERT_ATTEMPT, attemptRows);
+        });
+
+        // Mức thành thạo đã nằm trong DB; lượt mới chen vào sau khi đọc thì đã thay mảng nên được giữ lại
+        writtenProficiency.forEach((accountId, proficiency) -> {
+            if (proficiency != null) {
+                pendingProficiency.remove(accountId, proficiency);
+            }
+        });
+        if (!lessonNext.isEmpty()) {
+            for (LessonFeatureRow row : lessonRepository.findLessonFeaturesByIdIn(lessonNext.keySet())) {
+                lessonFeatureIndex.upsert(row);
+            }
+        }
+        for (AccountFeatureRow row : accountRepository.findFeaturesByIdIn(accountNext.keySet())) {
+            recommendationMaterializer.recompute(row);
+        }
+
+        periodsFlushed.incrementAndGet();
+        resultsFlushed.addAndGet(batch.size());
+        rowsWritten.addAndGet(accountRows.size() + lessonRows.size());
+        lastFlush = new FlushRun(now, batch.size(), accountRows.size(), lessonRows.size(),
+                System.currentTimeMillis() - startedAt);
+    }
+
+    /**
+     * Giá trị đầu kỳ (RD đã tăng theo số kỳ nghỉ kể từ lần xếp hạng trước).
+     */
+    private Map<Long, Glicko2.Rating> load(Collection<Long> ids, Function<Collection<Long>, List<GlickoRatingState>> query,
+                                           int defaultRating, LocalDateTime now) {
+        Map<Long, Glicko2.Rating> states = new HashMap<>();
+        List<Long> all = new ArrayList<>(ids);
+        for (int from = 0; from < all.size(); from += LOAD_CHUNK) {
+            for (GlickoRatingState state : query.apply(all.subList(from, Math.min(all.size(), from + LOAD_CHUNK)))) {
+                double volatility = state.getVolatility() != null ? state.getVolatility() : Glicko2.DEFAULT_VOLATILITY;
+                double deviation = Glicko2.DEFAULT_DEVIATION;
+                if (state.getDeviation() != null && state.getRatedAt() != null) {
+                    // Kỳ hiện tại đã được tính trong bước cập nhật; chỉ cộng các kỳ nghỉ ở giữa
+                    long idlePeriods = Duration.between(state.getRatedAt(), now).toMillis() / Math.max(1, periodMs) - 1;
+                    deviation = Glicko2.idle(state.getDeviation(), volatility, idlePeriods);
+                }
+                states.put(state.getId(), new Glicko2.Rating(
+                        state.getRating() != null ? state.getRating() : defaultRating, deviation, volatility));
+            }
+        }
+        return states;
+    }
+
+    /**
+     * Cập nhật song song: mỗi luồng xử lý một phần các đối tượng, đối thủ luôn lấy giá trị đầu kỳ.
+     */
+    private Map<Long, Glicko2.Rating> rateAll(Map<Long, List<Result>> games, Map<Long, Glicko2.Rating> start,
+                                              Map<Long, Glicko2.Rating> opponents, boolean accountSide) {
+        List<Long> ids = new ArrayList<>(games.keySet());
+        int partitions = Math.max(1, Math.min(threads, ids.size() / 256 + 1));
+        Map<Long, Glicko2.Rating> next = new ConcurrentHashMap<>();
+        Runnable[] tasks = new Runnable[partitions];
+        for (int p = 0; p < partitions; p++) {
+            int partition = p;
+            tasks[p] = () -> {
+                for (int i = partition; i < ids.size(); i += partitions) {
+                    Long id = ids.get(i);
+                    List<Result> played = games.get(id);
+                    double[] opponentRatings = new double[played.size()];
+                    double[] opponentDeviations = new double[played.size()];
+                    double[] scores = new double[played.size()];
+                    int n = 0;
+                    for (Result result : played) {
+                        Glicko2.Rating opponent = opponents.get(accountSide ? result.lessonId() : result.accountId());
+                        if (opponent == null) {
+                            continue;
+                        }
+                        opponentRatings[n] = opponent.rating();
+                        opponentDeviations[n] = opponent.deviation();
+                        // Người dùng đúng thì người dùng thắng, bài học thua
+                        scores[n] = result.passed() == accountSide ? 1.0 : 0.0;
+                        n++;
+                    }
+                    if (n > 0) {
+                        Glicko2.Rating own = start.get(id);
+                        next.put(id, Glicko2.update(own.rating(), own.deviation(), own.volatility(),
+                                opponentRatings, opponentDeviations, scores, n, tau));
+                    }
+                }
+            };
+        }
+        if (partitions == 1) {
+            tasks[0].run();
+            return next;
+        }
+        try (ExecutorService executor = Executors.newFixedThreadPool(partitions)) {
+            List<Future<?>> futures = new ArrayList<>(partitions);
+            for (Runnable task : tasks) {
+                futures.add(executor.submit(task));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Glicko-2 rating period interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Glicko-2 rating period failed", e.getCause());
+        }
+        return next;
+    }
+
+    public RatingEngineStatsDTO stats() {
+        RatingEngineStatsDTO dto = new RatingEngineStatsDTO();
+        dto.setEngine(isEnabled() ? "glicko2" : "elo");
+        dto.setPeriodMs(periodMs);
+        dto.setPendingResults(pending.get());
+        dto.setPendingProficiencies(pendingProficiency.size());
+        dto.setPeriodsFlushed(periodsFlushed.get());
+        dto.setResultsFlushed(resultsFlushed.get());
+        dto.setRowsWritten(rowsWritten.get());
+        dto.setResultsPerRowWritten(rowsWritten.get() > 0 ? (double) resultsFlushed.get() / rowsWritten.get() : 0.0);
+        FlushRun flush = lastFlush;
+        if (flush != null) {
+            dto.setLastFlushAt(flush.at());
+            dto.setLastFlushResults(flush.results());
+            dto.setLastFlushAccounts(flush.accounts());
+            dto.setLastFlushLessons(flush.lessons());
+            dto.setLastFlushDurationMs(flush.durationMs());
+        }
+        return dto;
+    }
+
+    private record Result(Long accountId, Long lessonId, boolean passed, LocalDateTime answeredAt) {
+    }
+
+    private record FlushRun(LocalDateTime at, long results, long accounts, long lessons, long durationMs) {
+    }
+}
@@ -0,0 +1,138 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.repository.AccountLessonId;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * Tập bài học đã có tiến độ của từng người dùng, lưu dạng Roaring bitmap theo lesson id (id tự tăng nên dày đặc).
+ * Cache LRU có giới hạn {@code recommendation.learned-lessons.cache-size} người dùng; khi thiếu thì dựng lại
+ * bằng một truy vấn chỉ lấy lesson id. Bitmap trả ra không bị sửa sau đó (cập nhật theo kiểu copy-on-write)
+ * nên người đọc dùng trực tiếp không cần khóa.
+ */
+@Service
+public class LearnedLessonCache {
+
+    @Value("${recommendation.learned-lessons.cache-size:10000}")
+    private int cacheSize;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, RoaringBitmap> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, RoaringBitmap> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    /**
+     * Bitmap lesson id đã học của người dùng (chỉ đọc).
+     */
+    public RoaringBitmap learnedLessons(Long accountId) {
+        synchronized (cache) {
+            RoaringBitmap cached = cache.get(accountId);
+            if (cached != null) {
+                return cached;
+            }
+        }
+        RoaringBitmap loaded = load(accountId);
+        synchronized (cache) {
+            // Có thể đã có lượt ghi khác nạp/cập nhật trong lúc đọc DB: ưu tiên bản trong cache
+            return cache.merge(accountId, loaded, (current, ignored) -> current);
+        }
+    }
+
+    /**
+     * Bitmap của nhiều người dùng cùng lúc; những người chưa có trong cache được nạp bằng một truy vấn duy nhất.
+     */
+    public Map<Long, RoaringBitmap> learnedLessons(Collection<Long> accountIds) {
+        Map<Long, RoaringBitmap> result = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        synchronized (cache) {
+            for (Long accountId : accountIds) {
+                RoaringBitmap cached = cache.get(accountId);
+                if (cached != null) {
+                    result.put(accountId, cached);
+                } else {
+                    missing.add(accountId);
+                }
+            }
+        }
+        if (missing.isEmpty()) {
+            return result;
+        }
+
+        Map<Long, RoaringBitmap> loaded = new HashMap<>();
+        for (Long accountId : missing) {
+            loaded.put(accountId, new RoaringBitmap());
+        }
+        for (AccountLessonId row : lessonProgressRepository.findLessonIdsByAccountIdIn(missing)) {
+            loaded.get(row.accountId()).add(Math.toIntExact(row.lessonId()));
+        }
+        synchronized (cache) {
+            loaded.forEach((accountId, bitmap) -> {
+                bitmap.runOptimize();
+                result.put(accountId, cache.merge(accountId, bitmap, (current, ignored) -> current));
+            });
+        }
+        return result;
+    }
+
+    /**
+     * Ghi nhận người dùng vừa có tiến độ ở một bài học. Nếu người dùng chưa có trong cache thì bỏ qua -
+     * lần đọc tới sẽ nạp từ DB. Trong giao dịch thì chỉ ghi nhận sau khi commit, để lượt hoàn thành bị rollback
+     * không đánh dấu bài học là đã học.
+     */
+    public void markLearned(Long accountId, Long lessonId) {
+        if (accountId == null || lessonId == null) {
+            return;
+        }
+        AfterCommit.run(() -> add(accountId, lessonId));
+    }
+
+    private void add(Long accountId, Long lessonId) {
+        int lesson = Math.toIntExact(lessonId);
+        synchronized (cache) {
+            RoaringBitmap current = cache.get(accountId);
+            if (current != null && !current.contains(lesson)) {
+                RoaringBitmap next = current.clone();
+                next.add(lesson);
+                cache.put(accountId, next);
+            }
+        }
+    }
+
+    public void evict(Long accountId) {
+        synchronized (cache) {
+            cache.remove(accountId);
+        }
+    }
+
+    private RoaringBitmap load(Long accountId) {
+        RoaringBitmap bitmap = new RoaringBitmap();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<Long> lessonIds = lessonProgressRepository.streamLessonIdsByAccountId(accountId)) {
+                lessonIds.forEach(lessonId -> bitmap.add(Math.toIntExact(lessonId)));
+            }
+        });
+        bitmap.runOptimize();
+        return bitmap;
+    }
+}
@@ -0,0 +1,196 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.LearnerMailboxStatsDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Tuần tự hóa theo từng người học: mọi thay đổi Elo, mức thành thạo và tiến độ của một người đi qua "mailbox" của
+ * người đó và chạy lần lượt theo thứ tự nộp, nên không còn hai lượt trả lời của cùng người học (hai tab) chạy song song.
+ * Các người học khác nhau chạy song song, không khóa chung.
+ * <p>
+ * Mailbox là một khóa công bằng (FIFO) theo người học; việc chạy ngay trên luồng của người gọi. Không chuyển sang luồng
+ * khác nên giao dịch của việc dùng lại kết nối JDBC mà request đang giữ (open-session-in-view), không cần kết nối thứ
+ * hai: người đang giữ khóa luôn có kết nối nên luôn chạy tiếp được, pool không thể bị các lượt chờ làm cạn.
+ * Mailbox chỉ tồn tại khi có người giữ hoặc chờ khóa.
+ * <p>
+ * Người gọi chờ tới lượt tối đa {@code learner.mailbox.timeout-ms}; hết hạn thì việc không chạy và bị từ chối bằng
+ * {@link MailboxFullException} (client thử lại sẽ không bị ghi hai lần). Áp lực ngược: quá {@code learner.mailbox.max-depth}
+ * lượt chờ của một người (mỗi lượt chờ vẫn giữ kết nối của request), hoặc quá {@code learner.mailbox.max-pending} lượt
+ * chờ toàn hệ thống, thì từ chối ngay.
+ * <p>
+ * Việc đang chạy trong mailbox mà lại nộp tiếp cho chính người đó thì chạy luôn tại chỗ (khóa vào lại được).
+ */
+@Service
+public class LearnerMailbox {
+
+    @Value("${learner.mailbox.max-depth:4}")
+    private int maxDepth;
+
+    @Value("${learner.mailbox.max-pending:10000}")
+    private int maxPending;
+
+    @Value("${learner.mailbox.timeout-ms:10000}")
+    private long timeoutMs;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<Long, Mailbox> mailboxes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder timedOut = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final LongAdder totalProcessingNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong maxProcessingNanos = new AtomicLong();
+
+    /**
+     * Chạy {@code task} trên luồng hiện tại khi tới lượt của người học; ngoại lệ của task được ném lại nguyên vẹn.
+     */
+    public <T> T submit(Long accountId, Supplier<T> task) {
+        if (accountId == null) {
+            throw new IllegalArgumentException("accountId is required");
+        }
+        Mailbox current = mailboxes.get(accountId);
+        if (current != null && current.lock.isHeldByCurrentThread()) {
+            return task.get();
+        }
+
+        Mailbox mailbox = join(accountId);
+        long enqueuedAt = System.nanoTime();
+        boolean acquired;
+        try {
+            acquired = mailbox.lock.tryLock(timeoutMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            leave(accountId, mailbox);
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for submission");
+        } finally {
+            pending.decrementAndGet();
+        }
+        if (!acquired) {
+            leave(accountId, mailbox);
+            timedOut.increment();
+            throw new MailboxFullException("Earlier submissions for this account are still being processed, please retry later");
+        }
+
+        long started = System.nanoTime();
+        record(totalWaitNanos, maxWaitNanos, started - enqueuedAt);
+        try {
+            T result = task.get();
+            completed.increment();
+            return result;
+        } catch (RuntimeException | Error e) {
+            failed.increment();
+            throw e;
+        } finally {
+            record(totalProcessingNanos, maxProcessingNanos, System.nanoTime() - started);
+            mailbox.lock.unlock();
+            leave(accountId, mailbox);
+        }
+    }
+
+    /**
+     * Như {@link #submit}, nhưng {@code task} chạy trong một giao dịch riêng, mở khi đã tới lượt và commit trước khi
+     * lượt kế tiếp của cùng người học bắt đầu: lượt sau luôn thấy kết quả của lượt trước, và lượt đang chờ không giữ
+     * giao dịch hay khóa dòng nào. Dùng cho các đường nộp bài (trả lời, luyện tập, hoàn thành bài học, bài kiểm tra).
+     */
+    public <T> T submitInTransaction(Long accountId, Supplier<T> task) {
+        return submit(accountId, () -> transactionTemplate.execute(status -> task.get()));
+    }
+
+    public LearnerMailboxStatsDTO stats() {
+        LearnerMailboxStatsDTO dto = new LearnerMailboxStatsDTO();
+        int deepest = 0;
+        for (Mailbox mailbox : mailboxes.values()) {
+            deepest = Math.max(deepest, mailbox.lock.getQueueLength());
+        }
+        long done = completed.sum() + failed.sum();
+        dto.setActiveMailboxes(mailboxes.size());
+        dto.setPendingTasks(pending.get());
+        dto.setMaxQueueDepth(deepest);
+        dto.setSubmitted(submitted.sum());
+        dto.setCompleted(completed.sum());
+        dto.setFailed(failed.sum());
+        dto.setRejected(rejected.sum());
+        dto.setTimedOut(timedOut.sum());
+        dto.setAverageWaitMs(done > 0 ? totalWaitNanos.sum() / 1_000_000.0 / done : 0.0);
+        dto.setMaxWaitMs(maxWaitNanos.get() / 1_000_000.0);
+        dto.setAverageProcessingMs(done > 0 ? totalProcessingNanos.sum() / 1_000_000.0 / done : 0.0);
+        dto.setMaxProcessingMs(maxProcessingNanos.get() / 1_000_000.0);
+        return dto;
+    }
+
+    /**
+     * Ghi danh người gọi vào mailbox của người học (tạo nếu chưa có); từ chối nếu quá giới hạn chờ.
+     */
+    private Mailbox join(Long accountId) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            rejected.increment();
+            throw new MailboxFullException("Server is busy, please retry later");
+        }
+        while (true) {
+            Mailbox mailbox = mailboxes.computeIfAbsent(accountId, id -> new Mailbox());
+            synchronized (mailbox) {
+                if (mailbox.closed) {
+                    // Mailbox vừa hết người dùng và bị bỏ: lấy mailbox mới
+                    continue;
+                }
+                // users gồm cả người đang giữ khóa
+                if (mailbox.users > maxDepth) {
+                    pending.decrementAndGet();
+                    rejected.increment();
+                    throw new MailboxFullException("Too many pending submissions for this account, please retry later");
+                }
+                mailbox.users++;
+            }
+            submitted.increment();
+            return mailbox;
+        }
+    }
+
+    private void leave(Long accountId, Mailbox mailbox) {
+        synchronized (mailbox) {
+            if (--mailbox.users == 0) {
+                mailbox.closed = true;
+                mailboxes.remove(accountId, mailbox);
+            }
+        }
+    }
+
+    private static void record(LongAdder total, AtomicLong max, long nanos) {
+        total.add(nanos);
+        max.accumulateAndGet(nanos, Math::max);
+    }
+
+    /** Hàng đợi quá tải hoặc chờ quá lâu; nơi gọi nên trả 429 để client thử lại sau. */
+    public static class MailboxFullException extends RuntimeException {
+        public MailboxFullException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class Mailbox {
+        // Công bằng: người chờ lâu nhất được chạy trước, giữ đúng thứ tự nộp
+        private final ReentrantLock lock = new ReentrantLock(true);
+        private int users;
+        private boolean closed;
+    }
+}
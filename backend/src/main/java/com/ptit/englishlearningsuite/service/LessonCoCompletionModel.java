@@ -0,0 +1,297 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRow;
+import com.ptit.englishlearningsuite.util.LongIntHashMap;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Lọc cộng tác item-item từ lesson_progress: hai bài học càng hay được cùng một người hoàn thành thì càng "gần".
+ * Trọng số cạnh là cosine trên vector nhị phân người học: co(a, b) / sqrt(n(a) * n(b)).
+ * <p>
+ * Bộ đếm cặp nằm trong bảng băm nguyên thủy và được cập nhật tăng dần: mỗi lần chạy chỉ đọc (dạng stream) các lượt
+ * hoàn thành từ mốc lần trước, một bitmap bài đã đếm cho mỗi người học giúp không đếm trùng. Sau đó ma trận
+ * lân cận được dựng lại ở dạng CSR (rowPtr/cols/weights theo lesson id, mỗi bài giữ tối đa {@code neighbours} láng giềng
+ * nặng nhất) và tráo vào một lần. Lượt tra cứu chỉ đi qua láng giềng của vài bài học gần nhất của người học.
+ * Bỏ hoàn thành / xóa tiến độ không trừ được tăng dần nên được dọn bởi lượt dựng lại toàn bộ hằng đêm.
+ */
+@Service
+public class LessonCoCompletionModel {
+
+    // Số bài hoàn thành gần nhất của mỗi người học dùng làm "hạt giống" khi tra cứu
+    public static final int RECENT_LESSONS = 10;
+
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    @Value("${recommendation.cf.neighbours:50}")
+    private int neighbours;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private volatile Csr csr = Csr.EMPTY;
+
+    // Trạng thái dựng tăng dần; chỉ luồng đang giữ monitor của đối tượng này được sửa
+    private volatile State state = new State();
+
+    /**
+     * Đọc các lượt hoàn thành mới từ mốc lần trước (lần đầu: toàn bộ) rồi dựng lại ma trận CSR.
+     * Lần đầu chạy ngay khi bộ lập lịch khởi động, trên luồng của bộ lập lịch thay vì chặn lúc khởi động.
+     */
+    @Scheduled(fixedDelayString = "${recommendation.cf.refresh-interval-ms:300000}",
+            initialDelayString = "${recommendation.cf.initial-delay-ms:0}")
+    public synchronized void refresh() {
+        State current = state;
+        if (load(current) > 0 || csr == Csr.EMPTY) {
+            csr = buildCsr(current);
+        }
+    }
+
+    /**
+     * Dựng lại từ đầu (bắt được cả các lượt bỏ hoàn thành/xóa tiến độ mà bản tăng dần không trừ được).
+     * Trạng thái mới được dựng riêng rồi tráo vào, trong lúc đó tra cứu vẫn dùng bản cũ.
+     */
+    @Scheduled(cron = "${recommendation.cf.full-rebuild-cron:0 30 3 * * *}")
+    public synchronized void rebuild() {
+        State fresh = new State();
+        load(fresh);
+        Csr next = buildCsr(fresh);
+        state = fresh;
+        csr = next;
+    }
+
+    /**
+     * Điểm cộng tác cho các bài học là láng giềng của những bài người học hoàn thành gần đây, chuẩn hóa về [0, 1].
+     */
+    public CoCompletionScores scoresFor(Long accountId) {
+        long[] seeds = accountId != null ? state.recentLessons.get(accountId) : null;
+        Csr current = csr;
+        if (seeds == null || current.rowPtr.length == 0) {
+            return CoCompletionScores.EMPTY;
+        }
+
+        int touched = 0;
+        for (long seed : seeds) {
+            if (seed < current.rowPtr.length - 1) {
+                touched += current.rowPtr[(int) seed + 1] - current.rowPtr[(int) seed];
+            }
+        }
+        if (touched == 0) {
+            return CoCompletionScores.EMPTY;
+        }
+
+        // Gom (lesson, trọng số) của các láng giềng, sắp theo lesson rồi cộng dồn các lesson trùng
+        long[] lessons = new long[touched];
+        float[] weights = new float[touched];
+        int n = 0;
+        for (long seed : seeds) {
+            if (seed >= current.rowPtr.length - 1) {
+                continue;
+            }
+            for (int k = current.rowPtr[(int) seed]; k < current.rowPtr[(int) seed + 1]; k++) {
+                lessons[n] = ((long) current.cols[k] << 32) | n;
+                weights[n] = current.weights[k];
+                n++;
+            }
+        }
+        Arrays.sort(lessons, 0, n);
+
+        long[] ids = new long[n];
+        float[] scores = new float[n];
+        int size = 0;
+        float max = 0f;
+        for (int i = 0; i < n; i++) {
+            long lessonId = lessons[i] >>> 32;
+            float weight = weights[(int) lessons[i]];
+            if (size > 0 && ids[size - 1] == lessonId) {
+                scores[size - 1] += weight;
+            } else {
+                ids[size] = lessonId;
+                scores[size] = weight;
+                size++;
+            }
+            max = Math.max(max, scores[size - 1]);
+        }
+        for (int i = 0; i < size; i++) {
+            scores[i] /= max;
+        }
+        return new CoCompletionScores(Arrays.copyOf(ids, size), Arrays.copyOf(scores, size));
+    }
+
+    /** Số cạnh (có hướng) đang có trong ma trận CSR. */
+    public int edgeCount() {
+        return csr.cols.length;
+    }
+
+    /**
+     * Đọc dạng stream các lượt hoàn thành từ mốc của {@code target}; trả về số cặp (người học, bài) mới được đếm.
+     */
+    private int load(State target) {
+        // Mốc lấy trước khi đọc và so sánh >= nên lượt sau đọc chồng một ít; bitmap đã đếm giúp không đếm trùng
+        LocalDateTime nextWatermark = LocalDateTime.now();
+        LocalDateTime since = target.watermark != null ? target.watermark : BEGINNING;
+        int[] applied = new int[1];
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<LessonProgressRow> rows =
+                         lessonProgressRepository.streamCompletedBetween(since, nextWatermark.plusYears(100))) {
+                rows.forEach(row -> {
+                    if (target.apply(row)) {
+                        applied[0]++;
+                    }
+                });
+            }
+        });
+        target.watermark = nextWatermark;
+        return applied[0];
+    }
+
+    private Csr buildCsr(State source) {
+        LongIntHashMap pairCounts = source.pairCounts;
+        int[] counts = source.lessonCounts;
+        int rows = counts.length;
+        int[] degree = new int[rows + 1];
+        pairCounts.forEach((key, count) -> {
+            degree[(int) (key >>> 32)]++;
+            degree[(int) key]++;
+        });
+        int[] start = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            start[i + 1] = start[i] + degree[i];
+        }
+
+        // Mỗi cạnh đóng gói thành long: bit cao = trọng số (float dương nên so sánh như int), bit thấp = lesson láng giềng
+        long[] packed = new long[start[rows]];
+        int[] fill = Arrays.copyOf(start, rows);
+        pairCounts.forEach((key, count) -> {
+            int a = (int) (key >>> 32);
+            int b = (int) key;
+            float weight = (float) (count / Math.sqrt((double) counts[a] * counts[b]));
+            long bits = (long) Float.floatToIntBits(weight) << 32;
+            packed[fill[a]++] = bits | b;
+            packed[fill[b]++] = bits | a;
+        });
+
+        int[] rowPtr = new int[rows + 1];
+        for (int i = 0; i < rows; i++) {
+            rowPtr[i + 1] = rowPtr[i] + Math.min(neighbours, degree[i]);
+        }
+        int[] cols = new int[rowPtr[rows]];
+        float[] weights = new float[rowPtr[rows]];
+        for (int i = 0; i < rows; i++) {
+            Arrays.sort(packed, start[i], start[i + 1]);
+            int k = rowPtr[i];
+            for (int j = start[i + 1] - 1; j >= start[i] && k < rowPtr[i + 1]; j--, k++) {
+                cols[k] = (int) packed[j];
+                weights[k] = Float.intBitsToFloat((int) (packed[j] >>> 32));
+            }
+        }
+        return new Csr(rowPtr, cols, weights);
+    }
+
+    private static long pairKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    /**
+     * Điểm cộng tác theo lesson id (đã sắp tăng dần để tra bằng tìm nhị phân, không boxing).
+     */
+    public record CoCompletionScores(long[] lessonIds, float[] scores) {
+
+        public static final CoCompletionScores EMPTY = new CoCompletionScores(new long[0], new float[0]);
+
+        public float scoreOf(long lessonId) {
+            int index = Arrays.binarySearch(lessonIds, lessonId);
+            return index >= 0 ? scores[index] : 0f;
+        }
+
+        public boolean isEmpty() {
+            return lessonIds.length == 0;
+        }
+    }
+
+    private static final class State {
+        private final LongIntHashMap pairCounts = new LongIntHashMap(1 << 16);
+        private int[] lessonCounts = new int[0];
+        private final Map<Long, RoaringBitmap> countedLessons = new HashMap<>();
+        private final Map<Long, long[]> recentCompletedAt = new HashMap<>();
+        // Đọc không khóa khi tra cứu: giá trị luôn được thay bằng mảng mới, không sửa tại chỗ
+        private final Map<Long, long[]> recentLessons = new ConcurrentHashMap<>();
+        private LocalDateTime watermark;
+
+        private boolean apply(LessonProgressRow row) {
+            if (row.accountId() == null || row.lessonId() == null) {
+                return false;
+            }
+            int lesson = Math.toIntExact(row.lessonId());
+            rememberRecent(row.accountId(), lesson, row.completedAt());
+            RoaringBitmap counted = countedLessons.computeIfAbsent(row.accountId(), id -> new RoaringBitmap());
+            if (counted.contains(lesson)) {
+                return false;
+            }
+            counted.forEach((int other) -> pairCounts.addTo(pairKey(lesson, other), 1));
+            counted.add(lesson);
+            if (lesson >= lessonCounts.length) {
+                lessonCounts = Arrays.copyOf(lessonCounts, Math.max(lesson + 1, lessonCounts.length * 2));
+            }
+            lessonCounts[lesson]++;
+            return true;
+        }
+
+        /**
+         * Giữ {@value #RECENT_LESSONS} bài hoàn thành gần nhất của người học (theo completedAt, không phụ thuộc thứ tự đọc).
+         */
+        private void rememberRecent(Long accountId, int lesson, LocalDateTime completedAt) {
+            long at = completedAt != null ? completedAt.toEpochSecond(ZoneOffset.UTC) : 0;
+            long[] lessons = recentLessons.getOrDefault(accountId, new long[0]);
+            long[] times = recentCompletedAt.getOrDefault(accountId, new long[0]);
+
+            int slot = -1;
+            for (int i = 0; i < lessons.length; i++) {
+                if (lessons[i] == lesson) {
+                    slot = i;
+                }
+            }
+            if (slot < 0 && lessons.length < RECENT_LESSONS) {
+                slot = lessons.length;
+            } else if (slot < 0) {
+                // Đầy: thay bài cũ nhất
+                slot = 0;
+                for (int i = 1; i < times.length; i++) {
+                    if (times[i] < times[slot]) {
+                        slot = i;
+                    }
+                }
+            }
+            if (slot < times.length && times[slot] >= at) {
+                return;
+            }
+            int length = Math.max(lessons.length, slot + 1);
+            long[] nextLessons = Arrays.copyOf(lessons, length);
+            long[] nextTimes = Arrays.copyOf(times, length);
+            nextLessons[slot] = lesson;
+            nextTimes[slot] = at;
+            recentLessons.put(accountId, nextLessons);
+            recentCompletedAt.put(accountId, nextTimes);
+        }
+    }
+
+    private record Csr(int[] rowPtr, int[] cols, float[] weights) {
+        private static final Csr EMPTY = new Csr(new int[0], new int[0], new float[0]);
+    }
+}
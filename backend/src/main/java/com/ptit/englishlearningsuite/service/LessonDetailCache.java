@@ -0,0 +1,155 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ptit.englishlearningsuite.dto.ConversationDTO;
+import com.ptit.englishlearningsuite.dto.LessonDetailDTO;
+import com.ptit.englishlearningsuite.dto.OptionDTO;
+import com.ptit.englishlearningsuite.dto.PracticeQuestionDTO;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Cache chi tiết bài học đã dựng sẵn (từ vựng, ngữ pháp, hội thoại - câu, câu hỏi luyện tập - đáp án): nội dung chỉ
+ * đổi khi admin sửa bài học, nên thay vì vài truy vấn lazy và một đồ thị DTO mới ở mỗi lượt mở bài, bản dựng sẵn
+ * được giữ lại và dùng chung.
+ * <p>
+ * Giới hạn theo trọng số ({@code lesson.detail-cache.max-weight}, trọng số = số phần tử con của bài) nên bài lớn
+ * chiếm nhiều chỗ hơn bài nhỏ; Caffeine loại bỏ theo tần suất/độ gần dùng. Các collection trong bản dựng sẵn là
+ * không sửa được; mỗi lượt đọc nhận một bản sao nông, trong đó chỉ thứ tự đáp án của câu MULTIPLE_CHOICE được xáo lại.
+ */
+@Service
+public class LessonDetailCache {
+
+    @Value("${lesson.detail-cache.max-weight:200000}")
+    private long maxWeight;
+
+    // Lưới an toàn cho những đường sửa nội dung không đi qua LessonService
+    @Value("${lesson.detail-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    private Cache<Long, LessonDetailDTO> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeight)
+                .weigher((Long id, LessonDetailDTO detail) -> weightOf(detail))
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    /**
+     * Bản sao để trả cho một lượt đọc; thiếu thì dựng bằng {@code loader} (không cache khi loader lỗi).
+     */
+    public LessonDetailDTO get(Long lessonId, Function<Long, LessonDetailDTO> loader) {
+        return servedCopy(cache.get(lessonId, id -> freeze(loader.apply(id))));
+    }
+
+    /**
+     * Bản dựng sẵn dùng chung (thứ tự đáp án gốc, collection không sửa được); nơi gọi không được sửa đối tượng trả về.
+     */
+    public LessonDetailDTO getShared(Long lessonId, Function<Long, LessonDetailDTO> loader) {
+        return cache.get(lessonId, id -> freeze(loader.apply(id)));
+    }
+
+    /**
+     * Dựng sẵn (nếu chưa có) mà không trả bản sao - dùng để làm nóng cache lúc khởi động.
+     */
+    public void warm(Long lessonId, Function<Long, LessonDetailDTO> loader) {
+        cache.get(lessonId, id -> freeze(loader.apply(id)));
+    }
+
+    /**
+     * Bỏ bản dựng sẵn của bài học. Trong giao dịch thì bỏ thêm lần nữa sau khi commit, để lượt đọc chen vào
+     * trước commit (còn thấy nội dung cũ) không để lại bản cũ trong cache.
+     */
+    public void invalidate(Long lessonId) {
+        if (lessonId == null) {
+            return;
+        }
+        AfterCommit.runNowAndAfterCommit(() -> cache.invalidate(lessonId));
+    }
+
+    private static LessonDetailDTO freeze(LessonDetailDTO detail) {
+        detail.setVocabularies(Collections.unmodifiableSet(detail.getVocabularies()));
+        detail.setGrammars(Collections.unmodifiableSet(detail.getGrammars()));
+        for (ConversationDTO conversation : detail.getConversations()) {
+            conversation.setSentences(Collections.unmodifiableSet(conversation.getSentences()));
+        }
+        detail.setConversations(Collections.unmodifiableSet(detail.getConversations()));
+        for (PracticeQuestionDTO question : detail.getPracticeQuestions()) {
+            question.setOptions(List.copyOf(question.getOptions()));
+        }
+        detail.setPracticeQuestions(List.copyOf(detail.getPracticeQuestions()));
+        return detail;
+    }
+
+    private static LessonDetailDTO servedCopy(LessonDetailDTO cached) {
+        // Xáo đáp án trắc nghiệm ở từng lượt để người học không nhớ vị trí
+        return copyWithOptions(cached, options -> {
+            List<OptionDTO> shuffled = new ArrayList<>(options);
+            Collections.shuffle(shuffled);
+            return shuffled;
+        });
+    }
+
+    /**
+     * Bản sao nông của {@code cached}, trong đó danh sách đáp án của mỗi câu MULTIPLE_CHOICE được thay bằng
+     * {@code multipleChoiceOptions} (các câu khác dùng chung với bản dựng sẵn).
+     */
+    static LessonDetailDTO copyWithOptions(LessonDetailDTO cached,
+                                           UnaryOperator<List<OptionDTO>> multipleChoiceOptions) {
+        LessonDetailDTO dto = new LessonDetailDTO();
+        dto.setId(cached.getId());
+        dto.setLessonNumber(cached.getLessonNumber());
+        dto.setLevel(cached.getLevel());
+        dto.setName(cached.getName());
+        dto.setAudioUrl(cached.getAudioUrl());
+        dto.setVocabularies(cached.getVocabularies());
+        dto.setGrammars(cached.getGrammars());
+        dto.setConversations(cached.getConversations());
+
+        List<PracticeQuestionDTO> questions = new ArrayList<>(cached.getPracticeQuestions().size());
+        for (PracticeQuestionDTO question : cached.getPracticeQuestions()) {
+            if (isShuffled(question)) {
+                PracticeQuestionDTO copy = new PracticeQuestionDTO();
+                copy.setId(question.getId());
+                copy.setQuestionText(question.getQuestionText());
+                copy.setQuestionType(question.getQuestionType());
+                copy.setImageUrl(question.getImageUrl());
+                copy.setOptions(multipleChoiceOptions.apply(question.getOptions()));
+                questions.add(copy);
+            } else {
+                questions.add(question);
+            }
+        }
+        dto.setPracticeQuestions(questions);
+        return dto;
+    }
+
+    /** Câu hỏi có thứ tự đáp án được xáo ở từng lượt đọc. */
+    static boolean isShuffled(PracticeQuestionDTO question) {
+        return "MULTIPLE_CHOICE".equalsIgnoreCase(question.getQuestionType());
+    }
+
+    private static int weightOf(LessonDetailDTO detail) {
+        int weight = 1 + detail.getVocabularies().size() + detail.getGrammars().size();
+        for (ConversationDTO conversation : detail.getConversations()) {
+            weight += 1 + conversation.getSentences().size();
+        }
+        for (PracticeQuestionDTO question : detail.getPracticeQuestions()) {
+            weight += 1 + question.getOptions().size();
+        }
+        return weight;
+    }
+}
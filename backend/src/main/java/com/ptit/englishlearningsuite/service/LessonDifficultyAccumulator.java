@@ -0,0 +1,144 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.repository.LessonFeatureStatusRow;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import com.ptit.englishlearningsuite.util.RatingMath;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Gom thay đổi độ khó (Elo) của bài học trong bộ nhớ thay vì ghi cả dòng lessons ở mỗi câu trả lời.
+ * <p>
+ * Mỗi bài học có một {@link LongAdder} (cộng phân mảnh, không tranh chấp giữa các luồng); định kỳ cả map được tráo
+ * sang map mới dưới khóa ghi (các lượt cộng giữ khóa đọc, nên sau khi tráo không còn ai cộng vào map cũ và không
+ * lượt cộng nào bị mất) rồi các delta được ghi bằng một lô
+ * {@code UPDATE lessons SET difficulty_rating = difficulty_rating + ?} - DB tự cộng nên không còn
+ * mất cập nhật giữa các giao dịch, và mỗi dòng chỉ bị khóa một lần mỗi chu kỳ.
+ * <p>
+ * Phép tính kỳ vọng Elo dùng độ khó của lần ghi gần nhất ({@link #ratingOf}): mọi lượt trả lời trong cùng một chu kỳ
+ * thấy cùng một giá trị (giống một "kỳ xếp hạng" của Elo), không phụ thuộc thứ tự các luồng.
+ */
+@Service
+public class LessonDifficultyAccumulator {
+
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    private volatile Map<Long, LongAdder> pending = new ConcurrentHashMap<>();
+
+    // Khóa đọc: cộng delta (song song); khóa ghi: tráo map lúc flush
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+
+    // Độ khó đã ghi xuống DB ở lần flush gần nhất (hoặc đọc từ entity khi bài học chưa có trong map)
+    private final Map<Long, Integer> ratings = new ConcurrentHashMap<>();
+
+    /**
+     * Độ khó dùng cho phép tính Elo của bài học; {@code persisted} là giá trị vừa đọc từ entity,
+     * chỉ dùng khi bài học chưa có trong snapshot.
+     */
+    public int ratingOf(Long lessonId, Integer persisted) {
+        return ratings.computeIfAbsent(lessonId, id -> persisted != null ? persisted : RatingMath.DEFAULT_DIFFICULTY);
+    }
+
+    /**
+     * Cộng {@code delta} vào độ khó của bài học. Trong giao dịch thì chỉ cộng sau khi commit,
+     * để lượt trả lời bị rollback không làm lệch độ khó.
+     */
+    public void add(Long lessonId, int delta) {
+        if (lessonId == null || delta == 0) {
+            return;
+        }
+        AfterCommit.run(() -> addPending(lessonId, delta));
+    }
+
+    private void addPending(Long lessonId, long delta) {
+        swapLock.readLock().lock();
+        try {
+            pending.computeIfAbsent(lessonId, id -> new LongAdder()).add(delta);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Bỏ snapshot và delta đang chờ của bài học vừa bị xóa.
+     */
+    public void forget(Long lessonId) {
+        ratings.remove(lessonId);
+        pending.remove(lessonId);
+    }
+
+    /**
+     * Bỏ toàn bộ snapshot độ khó (giữ delta đang chờ), ví dụ sau khi độ khó được ghi đè bởi lượt tính lại;
+     * lượt trả lời tiếp theo đọc lại giá trị từ DB.
+     */
+    public void invalidateSnapshot() {
+        ratings.clear();
+    }
+
+    /**
+     * Ghi các delta đang chờ thành một lô UPDATE cộng dồn, rồi làm mới snapshot độ khó và chỉ mục gợi ý.
+     */
+    @Scheduled(fixedDelayString = "${lesson.difficulty.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        Map<Long, LongAdder> drained;
+        swapLock.writeLock().lock();
+        try {
+            drained = pending;
+            pending = new ConcurrentHashMap<>();
+        } finally {
+            swapLock.writeLock().unlock();
+        }
+
+        List<Long> lessonIds = new ArrayList<>();
+        List<Object[]> batch = new ArrayList<>();
+        drained.forEach((lessonId, adder) -> {
+            long delta = adder.sum();
+            if (delta != 0) {
+                lessonIds.add(lessonId);
+                batch.add(new Object[]{delta, lessonId});
+            }
+        });
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            jdbcTemplate.batchUpdate("UPDATE lessons SET difficulty_rating = COALESCE(difficulty_rating, "
+                    + RatingMath.DEFAULT_DIFFICULTY + ") + ? WHERE id = ?", batch);
+        } catch (RuntimeException e) {
+            // Trả delta lại để lần sau ghi tiếp
+            for (Object[] row : batch) {
+                addPending((Long) row[1], (Long) row[0]);
+            }
+            throw e;
+        }
+
+        // Cả bài học đã ẩn: vẫn có lượt trả lời nên snapshot của chúng cũng phải theo kịp; chỉ mục gợi ý chỉ giữ bài active
+        for (LessonFeatureStatusRow row : lessonRepository.findLessonFeatureStatusByIdIn(lessonIds)) {
+            ratings.put(row.id(), row.difficultyRating() != null ? row.difficultyRating() : RatingMath.DEFAULT_DIFFICULTY);
+            if (Boolean.TRUE.equals(row.active())) {
+                lessonFeatureIndex.upsert(row.features());
+            }
+        }
+    }
+}
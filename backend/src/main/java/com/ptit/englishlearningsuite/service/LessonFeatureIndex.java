@@ -0,0 +1,171 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.repository.LessonFeatureRow;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import com.ptit.englishlearningsuite.util.LessonVectorIndex;
+import com.ptit.englishlearningsuite.util.RatingMath;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Chỉ mục đặc trưng của các bài học đang active cho bộ gợi ý. Vector trọng số kỹ năng và độ khó của từng bài
+ * nằm trong một {@link LessonVectorIndex} (chính xác hoặc HNSW, chọn bằng {@code recommendation.vector-index.type});
+ * lớp này giữ thêm bitmap id các bài active để loại bài đã học bằng một phép AND-NOT, rồi hỏi chỉ mục vector
+ * theo cửa sổ Elo.
+ * <p>
+ * Bitmap được thay theo kiểu copy-on-write nên đọc không khóa; các đường CRUD bài học gọi {@link #upsert}/{@link #remove}.
+ */
+@Service
+public class LessonFeatureIndex {
+
+    public static final int NARROW_WINDOW = 150;
+    public static final int WIDE_WINDOW = 300;
+
+    // grammar, vocab, listening
+    public static final int SKILL_DIMENSIONS = 3;
+
+
+    // Tỉ trọng điểm cộng tác (đồng hoàn thành) khi trộn với cosine nội dung
+    @Value("${recommendation.cf.weight:0.3}")
+    private double coCompletionWeight;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private LessonVectorIndex lessonVectorIndex;
+
+    // null cho tới lần nạp đầu tiên
+    private volatile RoaringBitmap activeIds;
+
+    /**
+     * Nạp lại toàn bộ từ DB (chỉ các cột cần thiết của bài học active).
+     */
+    public synchronized void load() {
+        List<LessonFeatureRow> rows = lessonRepository.findActiveLessonFeatures();
+        List<LessonVectorIndex.Entry> entries = new ArrayList<>(rows.size());
+        RoaringBitmap ids = new RoaringBitmap();
+        for (LessonFeatureRow row : rows) {
+            entries.add(entryOf(row));
+            ids.add(Math.toIntExact(row.id()));
+        }
+        lessonVectorIndex.rebuild(entries);
+        ids.runOptimize();
+        activeIds = ids;
+    }
+
+    /**
+     * Thêm/cập nhật một bài học vừa lưu, sau khi giao dịch hiện tại commit (ngay nếu không có giao dịch); bài học
+     * không còn active thì bị bỏ khỏi chỉ mục. Giá trị được chụp lại lúc gọi, nên lượt lưu bị rollback không để lại
+     * bài học không tồn tại hay giá trị chưa commit trong chỉ mục.
+     */
+    public void upsertAfterCommit(Lesson lesson) {
+        if (lesson == null || lesson.getId() == null) {
+            return;
+        }
+        Long lessonId = lesson.getId();
+        if (lesson.getIsActive() == null || !lesson.getIsActive()) {
+            AfterCommit.run(() -> remove(lessonId));
+            return;
+        }
+        LessonFeatureRow row = new LessonFeatureRow(lessonId, lesson.getDifficultyRating(),
+                lesson.getGrammarWeight(), lesson.getVocabWeight(), lesson.getListeningWeight());
+        AfterCommit.run(() -> upsert(row));
+    }
+
+    /**
+     * Thêm/cập nhật một bài học active từ dòng đặc trưng đã đọc.
+     */
+    public synchronized void upsert(LessonFeatureRow row) {
+        RoaringBitmap current = current();
+        lessonVectorIndex.upsert(entryOf(row));
+        int id = Math.toIntExact(row.id());
+        if (!current.contains(id)) {
+            RoaringBitmap next = current.clone();
+            next.add(id);
+            activeIds = next;
+        }
+    }
+
+    public synchronized void remove(Long lessonId) {
+        RoaringBitmap current = current();
+        if (lessonId == null) {
+            return;
+        }
+        lessonVectorIndex.remove(lessonId);
+        int id = Math.toIntExact(lessonId);
+        if (current.contains(id)) {
+            RoaringBitmap next = current.clone();
+            next.remove(id);
+            activeIds = next;
+        }
+    }
+
+    /**
+     * Top {@code limit} bài học theo cosine similarity với vector nhu cầu của người dùng, giảm dần.
+     * Chỉ xét bài có độ khó trong [elo - 150, elo + 150]; nếu không có bài nào (sau khi loại {@code learnedLessonIds})
+     * thì mở rộng thành ±300.
+     * Nếu có {@code coCompletion}, thứ hạng là (1 - w) * cosine + w * điểm cộng tác (giai đoạn 3);
+     * {@link ScoredLesson#similarity()} vẫn là cosine nội dung.
+     */
+    public List<ScoredLesson> recommend(double[] userNeeds, int userElo, RoaringBitmap learnedLessonIds,
+                                        LessonCoCompletionModel.CoCompletionScores coCompletion, int limit) {
+        RoaringBitmap unlearned = RoaringBitmap.andNot(current(), learnedLessonIds);
+        if (unlearned.isEmpty()) {
+            return List.of();
+        }
+        float[] query = new float[SKILL_DIMENSIONS];
+        for (int d = 0; d < SKILL_DIMENSIONS; d++) {
+            query[d] = (float) userNeeds[d];
+        }
+        LessonVectorIndex.Ranking ranking = LessonVectorIndex.Ranking.SIMILARITY;
+        if (coCompletion != null && !coCompletion.isEmpty() && coCompletionWeight > 0.0) {
+            double weight = coCompletionWeight;
+            ranking = (lessonId, similarity) -> (1.0 - weight) * similarity + weight * coCompletion.scoreOf(lessonId);
+        }
+        List<LessonVectorIndex.Hit> hits = lessonVectorIndex.search(query,
+                userElo - NARROW_WINDOW, userElo + NARROW_WINDOW, unlearned, ranking, limit);
+        if (hits.isEmpty()) {
+            hits = lessonVectorIndex.search(query,
+                    userElo - WIDE_WINDOW, userElo + WIDE_WINDOW, unlearned, ranking, limit);
+        }
+        List<ScoredLesson> result = new ArrayList<>(hits.size());
+        for (LessonVectorIndex.Hit hit : hits) {
+            result.add(new ScoredLesson(hit.lessonId(), hit.similarity()));
+        }
+        return result;
+    }
+
+    private RoaringBitmap current() {
+        RoaringBitmap current = activeIds;
+        if (current == null) {
+            load();
+            current = activeIds;
+        }
+        return current;
+    }
+
+    private static LessonVectorIndex.Entry entryOf(LessonFeatureRow row) {
+        int difficulty = row.difficultyRating() != null ? row.difficultyRating() : RatingMath.DEFAULT_DIFFICULTY;
+        float[] vector = {
+                (float) weightOf(row.grammarWeight(), 0.33),
+                (float) weightOf(row.vocabWeight(), 0.33),
+                (float) weightOf(row.listeningWeight(), 0.34)
+        };
+        return new LessonVectorIndex.Entry(row.id(), difficulty, vector);
+    }
+
+    private static double weightOf(Double weight, double defaultWeight) {
+        return Math.max(0.0, Math.min(1.0, weight != null ? weight : defaultWeight));
+    }
+
+    public record ScoredLesson(long lessonId, double similarity) {
+    }
+}
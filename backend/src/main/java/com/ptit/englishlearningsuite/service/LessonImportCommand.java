@@ -0,0 +1,55 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.LessonImportErrorDTO;
+import com.ptit.englishlearningsuite.dto.LessonImportStatusDTO;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.SpringApplication;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.nio.file.Path;
+
+/**
+ * Nhập bài học hàng loạt từ dòng lệnh ({@link LessonImportJob}) rồi thoát, ví dụ:
+ * <pre>
+ * java -jar app.jar --lesson.import.file=curriculum.jsonl.gz --spring.main.web-application-type=none
+ * </pre>
+ * Chạy trước các CommandLineRunner khác và thoát trước ApplicationReadyEvent, nên các bước nạp lúc khởi động
+ * (số liệu tổng hợp, Top-K, bảng xếp hạng...) không chạy. Mã thoát: 0 nếu mọi bản ghi được nhập,
+ * 1 nếu có bản ghi lỗi, 2 nếu lượt nhập thất bại.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class LessonImportCommand implements CommandLineRunner {
+
+    @Value("${lesson.import.file:}")
+    private String file;
+
+    @Autowired
+    private LessonImportJob lessonImportJob;
+
+    @Autowired
+    private ConfigurableApplicationContext context;
+
+    @Override
+    public void run(String... args) {
+        if (file.isBlank()) {
+            return;
+        }
+        LessonImportStatusDTO result = lessonImportJob.run(Path.of(file));
+        for (LessonImportErrorDTO error : result.getErrors()) {
+            System.err.println(error.getLocation() + ": " + error.getMessage());
+        }
+        System.out.printf("Lesson import %s: %d records read, %d lessons imported, %d rows inserted, " +
+                        "%d records failed (%.0f rows/s)%s%n",
+                result.getStatus(), result.getRecordsRead(), result.getLessonsImported(), result.getRowsInserted(),
+                result.getRecordsFailed(), result.getRowsPerSecond(),
+                result.getError() != null ? " - " + result.getError() : "");
+        int exitCode = "FAILED".equals(result.getStatus()) ? 2 : result.getRecordsFailed() > 0 ? 1 : 0;
+        System.exit(SpringApplication.exit(context, () -> exitCode));
+    }
+}
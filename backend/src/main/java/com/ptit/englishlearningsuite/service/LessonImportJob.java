@@ -0,0 +1,617 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.ptit.englishlearningsuite.dto.GrammarDTO;
+import com.ptit.englishlearningsuite.dto.LessonImportErrorDTO;
+import com.ptit.englishlearningsuite.dto.LessonImportStatusDTO;
+import com.ptit.englishlearningsuite.dto.LessonRequestDTO;
+import com.ptit.englishlearningsuite.dto.VocabularyDTO;
+import com.ptit.englishlearningsuite.entity.Lesson;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Nhập bài học hàng loạt từ tệp JSON Lines: mỗi dòng là một {@link LessonRequestDTO} (cùng định dạng body của
+ * POST /api/lessons). Tệp có thể nén gzip, hoặc là tệp zip mà các mục được đọc lần lượt.
+ * <p>
+ * Tệp được đọc tuần tự từng dòng; mỗi dòng được parse bằng {@link JsonParser} của Jackson (từ chối thuộc tính lạ) rồi
+ * kiểm tra hợp lệ. Bộ nhớ chỉ giữ một lô {@code lesson.import.chunk-size} bài nên không phụ thuộc kích thước tệp.
+ * Mỗi lô được ghi và commit trong một giao dịch. Bài học và hội thoại được chèn bằng lô JDBC có lấy khóa sinh ra.
+ * Từ vựng, ngữ pháp và câu thoại (phần lớn số dòng) được chèn bằng câu INSERT nhiều dòng, mỗi câu tối đa
+ * {@code lesson.import.rows-per-statement} dòng, nên mỗi câu là một lượt đi-về, không phụ thuộc rewriteBatchedStatements.
+ * Lô nào lỗi thì được ghi lại từng bài trong giao dịch riêng, để chỉ bài hỏng bị báo lỗi.
+ * <p>
+ * Có hai cách chạy. Qua AdminController thì chạy nền: body upload được chép ra tệp tạm trước. Từ dòng lệnh thì chạy
+ * đồng bộ ({@link LessonImportCommand}). Nhập xong thì chỉ mục gợi ý, phiên bản danh mục và cache danh sách bài học
+ * được làm mới.
+ */
+@Service
+public class LessonImportJob {
+
+    private static final int VARCHAR_LENGTH = 255;
+    private static final int TEXT_BYTES = 65_535;
+
+    private static final String INSERT_LESSON = "INSERT INTO lessons (name, lesson_number, level, audio_url, is_active, " +
+            "difficulty_rating, grammar_weight, vocab_weight, listening_weight, content_version) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, 1)";
+
+    private static final String INSERT_CONVERSATION = "INSERT INTO conversations (lesson_id, title, audio_url) VALUES (?, ?, ?)";
+
+    private static final String[] VOCABULARY_COLUMNS = {"lesson_id", "word_english", "phonetic_spelling",
+            "vietnamese_meaning", "image_url", "audio_url", "example_sentence_english", "example_sentence_vietnamese"};
+    private static final String[] GRAMMAR_COLUMNS = {"lesson_id", "explanation_english", "explanation_vietnamese"};
+    private static final String[] SENTENCE_COLUMNS = {"conversation_id", "character_name", "text_english", "text_vietnamese"};
+
+    // Số bài học mỗi giao dịch (khoảng commit)
+    @Value("${lesson.import.chunk-size:200}")
+    private int chunkSize;
+
+    @Value("${lesson.import.rows-per-statement:500}")
+    private int rowsPerStatement;
+
+    @Value("${lesson.import.max-reported-errors:1000}")
+    private int maxReportedErrors;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Autowired
+    private SerializedResponseCache serializedResponseCache;
+
+    private long lastImportId;
+
+    // Lượt đang chạy (hoặc vừa xong) trong tiến trình này
+    private volatile Progress progress;
+
+    /**
+     * Chép {@code body} ra tệp tạm rồi nhập chạy nền; lỗi nếu đang có lượt khác chạy.
+     */
+    public LessonImportStatusDTO start(InputStream body, String source) throws IOException {
+        Progress next = claim(source);
+        Path file;
+        try {
+            file = Files.createTempFile("lesson-import-", ".upload");
+            Files.copy(body, file, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException | RuntimeException e) {
+            next.finish(State.FAILED, e.getMessage());
+            throw e;
+        }
+        Thread.ofPlatform().name("lesson-import-" + next.id).daemon().start(() -> {
+            try {
+                execute(file, next);
+            } finally {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    // Tệp tạm sẽ được hệ điều hành dọn
+                }
+            }
+        });
+        return next.toDto();
+    }
+
+    /**
+     * Nhập đồng bộ trên luồng hiện tại (dòng lệnh); trả về kết quả cuối cùng.
+     */
+    public LessonImportStatusDTO run(Path file) {
+        Progress next = claim(file.getFileName().toString());
+        execute(file, next);
+        return next.toDto();
+    }
+
+    public LessonImportStatusDTO status() {
+        Progress current = progress;
+        return current != null ? current.toDto() : null;
+    }
+
+    private synchronized Progress claim(String source) {
+        Progress current = progress;
+        if (current != null && current.state == State.RUNNING) {
+            throw new IllegalStateException("A lesson import is already running (import " + current.id + ")");
+        }
+        Progress next = new Progress(++lastImportId, source, maxReportedErrors);
+        progress = next;
+        return next;
+    }
+
+    private void execute(Path file, Progress progress) {
+        progress.startedNanos = System.nanoTime();
+        ObjectReader reader = objectMapper.readerFor(LessonRequestDTO.class)
+                .with(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        try (CurriculumReader lines = CurriculumReader.open(file, progress.source)) {
+            progress.totalBytes = Files.size(file);
+            List<PendingLesson> chunk = new ArrayList<>(chunkSize);
+            String line;
+            while ((line = lines.nextLine()) != null) {
+                if (line.isBlank()) {
+                    continue;
+                }
+                progress.recordsRead++;
+                try {
+                    LessonRequestDTO lesson = parse(reader, line);
+                    validate(lesson);
+                    chunk.add(new PendingLesson(lines.location(), lesson));
+                } catch (JsonProcessingException e) {
+                    progress.fail(lines.location(), e.getOriginalMessage());
+                } catch (IOException | IllegalArgumentException e) {
+                    progress.fail(lines.location(), e.getMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    write(chunk, progress);
+                    chunk.clear();
+                    progress.bytesRead = lines.bytesRead();
+                }
+            }
+            write(chunk, progress);
+            progress.bytesRead = lines.bytesRead();
+            progress.finish(State.COMPLETED, null);
+        } catch (IOException | RuntimeException e) {
+            progress.finish(State.FAILED, e.getMessage());
+        } finally {
+            if (progress.lessonsImported > 0) {
+                // Bài mới chưa có trong chỉ mục gợi ý, phiên bản danh mục và cache danh sách
+                lessonFeatureIndex.load();
+                contentVersionService.refresh();
+                serializedResponseCache.invalidateLesson(null);
+            }
+        }
+    }
+
+    private static LessonRequestDTO parse(ObjectReader reader, String line) throws IOException {
+        try (JsonParser parser = reader.createParser(line)) {
+            LessonRequestDTO lesson = reader.readValue(parser);
+            if (lesson == null) {
+                throw new IllegalArgumentException("Expected a lesson object");
+            }
+            if (parser.nextToken() != null) {
+                throw new IllegalArgumentException("Unexpected content after the lesson object");
+            }
+            return lesson;
+        }
+    }
+
+    private static void validate(LessonRequestDTO lesson) {
+        requireText(lesson.getName(), "name");
+        checkLength(lesson.getName(), "name");
+        checkLength(lesson.getAudioUrl(), "audioUrl");
+        List<VocabularyDTO> vocabularies = lesson.getVocabularies() != null ? lesson.getVocabularies() : List.of();
+        for (int i = 0; i < vocabularies.size(); i++) {
+            VocabularyDTO v = requireItem(vocabularies.get(i), "vocabularies", i);
+            String field = "vocabularies[" + i + "].";
+            requireText(v.getWordEnglish(), field + "wordEnglish");
+            checkLength(v.getWordEnglish(), field + "wordEnglish");
+            checkLength(v.getPhoneticSpelling(), field + "phoneticSpelling");
+            checkLength(v.getVietnameseMeaning(), field + "vietnameseMeaning");
+            checkLength(v.getImageUrl(), field + "imageUrl");
+            checkLength(v.getAudioUrl(), field + "audioUrl");
+            checkLength(v.getExampleSentenceEnglish(), field + "exampleSentenceEnglish");
+            checkLength(v.getExampleSentenceVietnamese(), field + "exampleSentenceVietnamese");
+        }
+        List<GrammarDTO> grammars = lesson.getGrammars() != null ? lesson.getGrammars() : List.of();
+        for (int i = 0; i < grammars.size(); i++) {
+            GrammarDTO g = requireItem(grammars.get(i), "grammars", i);
+            requireText(g.getExplanationEnglish(), "grammars[" + i + "].explanationEnglish");
+            checkTextBytes(g.getExplanationEnglish(), "grammars[" + i + "].explanationEnglish");
+            checkTextBytes(g.getExplanationVietnamese(), "grammars[" + i + "].explanationVietnamese");
+        }
+        List<LessonRequestDTO.ConversationRequestDTO> conversations =
+                lesson.getConversations() != null ? lesson.getConversations() : List.of();
+        for (int i = 0; i < conversations.size(); i++) {
+            LessonRequestDTO.ConversationRequestDTO c = requireItem(conversations.get(i), "conversations", i);
+            checkLength(c.getTitle(), "conversations[" + i + "].title");
+            checkLength(c.getAudioUrl(), "conversations[" + i + "].audioUrl");
+            List<LessonRequestDTO.SentenceRequestDTO> sentences = c.getSentences() != null ? c.getSentences() : List.of();
+            for (int j = 0; j < sentences.size(); j++) {
+                LessonRequestDTO.SentenceRequestDTO s = requireItem(sentences.get(j), "conversations[" + i + "].sentences", j);
+                String field = "conversations[" + i + "].sentences[" + j + "].";
+                requireText(s.getTextEnglish(), field + "textEnglish");
+                checkLength(s.getCharacterName(), field + "characterName");
+                checkLength(s.getTextEnglish(), field + "textEnglish");
+                checkLength(s.getTextVietnamese(), field + "textVietnamese");
+            }
+        }
+    }
+
+    private static <T> T requireItem(T item, String list, int index) {
+        if (item == null) {
+            throw new IllegalArgumentException(list + "[" + index + "] is null");
+        }
+        return item;
+    }
+
+    private static void requireText(String value, String field) {
+        if (value == null || value.isBlank()) {
+            throw new IllegalArgumentException(field + " is required");
+        }
+    }
+
+    private static void checkLength(String value, String field) {
+        if (value != null && value.length() > VARCHAR_LENGTH) {
+            throw new IllegalArgumentException(field + " is longer than " + VARCHAR_LENGTH + " characters");
+        }
+    }
+
+    private static void checkTextBytes(String value, String field) {
+        if (value != null && value.getBytes(StandardCharsets.UTF_8).length > TEXT_BYTES) {
+            throw new IllegalArgumentException(field + " is longer than " + TEXT_BYTES + " bytes");
+        }
+    }
+
+    /**
+     * Ghi một lô trong một giao dịch; nếu lỗi thì ghi lại từng bài (mỗi bài một giao dịch) để tìm bài hỏng.
+     */
+    private void write(List<PendingLesson> chunk, Progress progress) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            Long rows = transactionTemplate.execute(status -> insert(chunk));
+            progress.lessonsImported += chunk.size();
+            progress.rowsInserted += rows;
+        } catch (DataAccessException e) {
+            for (PendingLesson pending : chunk) {
+                try {
+                    Long rows = transactionTemplate.execute(status -> insert(List.of(pending)));
+                    progress.lessonsImported++;
+                    progress.rowsInserted += rows;
+                } catch (DataAccessException single) {
+                    progress.fail(pending.location(), single.getMostSpecificCause().getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Chèn một lô bài học cùng nội dung con; trả về số dòng đã chèn.
+     */
+    private long insert(List<PendingLesson> chunk) {
+        // Giá trị mặc định của bài mới lấy từ entity để không lệch với đường tạo qua JPA
+        Lesson defaults = new Lesson();
+        List<Long> lessonIds = insertReturningKeys(INSERT_LESSON, chunk.size(), (ps, i) -> {
+            LessonRequestDTO lesson = chunk.get(i).lesson();
+            ps.setString(1, lesson.getName());
+            ps.setInt(2, lesson.getLessonNumber());
+            ps.setInt(3, lesson.getLevel());
+            ps.setString(4, lesson.getAudioUrl());
+            ps.setBoolean(5, defaults.getIsActive());
+            ps.setInt(6, defaults.getDifficultyRating());
+            ps.setDouble(7, defaults.getGrammarWeight());
+            ps.setDouble(8, defaults.getVocabWeight());
+            ps.setDouble(9, defaults.getListeningWeight());
+        });
+
+        List<Object[]> vocabularies = new ArrayList<>();
+        List<Object[]> grammars = new ArrayList<>();
+        List<Long> conversationLessonIds = new ArrayList<>();
+        List<LessonRequestDTO.ConversationRequestDTO> conversations = new ArrayList<>();
+        for (int i = 0; i < chunk.size(); i++) {
+            LessonRequestDTO lesson = chunk.get(i).lesson();
+            Long lessonId = lessonIds.get(i);
+            if (lesson.getVocabularies() != null) {
+                for (VocabularyDTO v : lesson.getVocabularies()) {
+                    vocabularies.add(new Object[]{lessonId, v.getWordEnglish(), v.getPhoneticSpelling(),
+                            v.getVietnameseMeaning(), v.getImageUrl(), v.getAudioUrl(),
+                            v.getExampleSentenceEnglish(), v.getExampleSentenceVietnamese()});
+                }
+            }
+            if (lesson.getGrammars() != null) {
+                for (GrammarDTO g : lesson.getGrammars()) {
+                    grammars.add(new Object[]{lessonId, g.getExplanationEnglish(), g.getExplanationVietnamese()});
+                }
+            }
+            if (lesson.getConversations() != null) {
+                for (LessonRequestDTO.ConversationRequestDTO c : lesson.getConversations()) {
+                    conversationLessonIds.add(lessonId);
+                    conversations.add(c);
+                }
+            }
+        }
+        long rows = chunk.size();
+        rows += insertRows("vocabularies", VOCABULARY_COLUMNS, vocabularies);
+        rows += insertRows("grammars", GRAMMAR_COLUMNS, grammars);
+
+        List<Long> conversationIds = insertReturningKeys(INSERT_CONVERSATION, conversations.size(), (ps, i) -> {
+            ps.setLong(1, conversationLessonIds.get(i));
+            ps.setString(2, conversations.get(i).getTitle());
+            ps.setString(3, conversations.get(i).getAudioUrl());
+        });
+        rows += conversations.size();
+
+        List<Object[]> sentences = new ArrayList<>();
+        for (int i = 0; i < conversations.size(); i++) {
+            if (conversations.get(i).getSentences() != null) {
+                for (LessonRequestDTO.SentenceRequestDTO s : conversations.get(i).getSentences()) {
+                    sentences.add(new Object[]{conversationIds.get(i), s.getCharacterName(), s.getTextEnglish(),
+                            s.getTextVietnamese()});
+                }
+            }
+        }
+        rows += insertRows("sentences", SENTENCE_COLUMNS, sentences);
+        return rows;
+    }
+
+    /**
+     * Lô JDBC một câu INSERT cho {@code count} dòng, trả về khóa sinh ra theo đúng thứ tự dòng.
+     */
+    private List<Long> insertReturningKeys(String sql, int count, RowSetter setter) {
+        if (count == 0) {
+            return List.of();
+        }
+        KeyHolder keys = new GeneratedKeyHolder();
+        jdbcTemplate.batchUpdate(con -> con.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS),
+                new BatchPreparedStatementSetter() {
+                    @Override
+                    public void setValues(PreparedStatement ps, int i) throws SQLException {
+                        setter.set(ps, i);
+                    }
+
+                    @Override
+                    public int getBatchSize() {
+                        return count;
+                    }
+                }, keys);
+        List<Map<String, Object>> keyList = keys.getKeyList();
+        if (keyList.size() != count) {
+            throw new IllegalStateException("Expected " + count + " generated keys, got " + keyList.size());
+        }
+        List<Long> ids = new ArrayList<>(count);
+        for (Map<String, Object> key : keyList) {
+            ids.add(((Number) key.values().iterator().next()).longValue());
+        }
+        return ids;
+    }
+
+    /**
+     * Chèn các dòng bằng câu INSERT nhiều dòng, tối đa {@code rowsPerStatement} dòng mỗi câu.
+     */
+    private long insertRows(String table, String[] columns, List<Object[]> rows) {
+        String prefix = "INSERT INTO " + table + " (" + String.join(", ", columns) + ") VALUES ";
+        String tuple = "(" + "?, ".repeat(columns.length - 1) + "?)";
+        for (int from = 0; from < rows.size(); from += rowsPerStatement) {
+            int to = Math.min(rows.size(), from + rowsPerStatement);
+            StringBuilder sql = new StringBuilder(prefix.length() + (to - from) * (tuple.length() + 2)).append(prefix);
+            Object[] args = new Object[(to - from) * columns.length];
+            for (int r = from; r < to; r++) {
+                if (r > from) {
+                    sql.append(", ");
+                }
+                sql.append(tuple);
+                System.arraycopy(rows.get(r), 0, args, (r - from) * columns.length, columns.length);
+            }
+            jdbcTemplate.update(sql.toString(), args);
+        }
+        return rows.size();
+    }
+
+    @FunctionalInterface
+    private interface RowSetter {
+        void set(PreparedStatement ps, int index) throws SQLException;
+    }
+
+    private record PendingLesson(String location, LessonRequestDTO lesson) {
+    }
+
+    private enum State {
+        RUNNING, COMPLETED, FAILED
+    }
+
+    /**
+     * Đọc tuần tự các dòng của tệp JSON Lines thường, gzip hoặc zip (nhận dạng theo byte đầu tệp).
+     */
+    private static final class CurriculumReader implements Closeable {
+
+        private final String source;
+        private final CountingInputStream counter;
+        private final InputStream in;
+        private final ZipInputStream zip; // null nếu không phải zip
+        private BufferedReader reader;
+        private String entryName;
+        private long lineNumber;
+
+        private CurriculumReader(String source, CountingInputStream counter, InputStream in, ZipInputStream zip,
+                                 BufferedReader reader) {
+            this.source = source;
+            this.counter = counter;
+            this.in = in;
+            this.zip = zip;
+            this.reader = reader;
+        }
+
+        private static CurriculumReader open(Path file, String source) throws IOException {
+            CountingInputStream counter = new CountingInputStream(Files.newInputStream(file));
+            BufferedInputStream in = new BufferedInputStream(counter, 1 << 16);
+            in.mark(2);
+            int b0 = in.read();
+            int b1 = in.read();
+            in.reset();
+            if (b0 == 'P' && b1 == 'K') {
+                return new CurriculumReader(source, counter, in, new ZipInputStream(in, StandardCharsets.UTF_8), null);
+            }
+            InputStream content = b0 == 0x1f && b1 == 0x8b ? new GZIPInputStream(in, 1 << 16) : in;
+            return new CurriculumReader(source, counter, content, null,
+                    new BufferedReader(new InputStreamReader(content, StandardCharsets.UTF_8)));
+        }
+
+        private String nextLine() throws IOException {
+            while (true) {
+                if (reader != null) {
+                    String line = reader.readLine();
+                    if (line != null) {
+                        lineNumber++;
+                        // Bỏ BOM UTF-8 ở đầu tệp/mục
+                        return lineNumber == 1 && line.startsWith("\uFEFF") ? line.substring(1) : line;
+                    }
+                    if (zip == null) {
+                        return null;
+                    }
+                    reader = null;
+                }
+                ZipEntry entry = zip.getNextEntry();
+                while (entry != null && entry.isDirectory()) {
+                    entry = zip.getNextEntry();
+                }
+                if (entry == null) {
+                    return null;
+                }
+                entryName = entry.getName();
+                lineNumber = 0;
+                // ZipInputStream trả về hết dữ liệu ở cuối mỗi mục nên reader không đọc lấn sang mục sau
+                reader = new BufferedReader(new InputStreamReader(zip, StandardCharsets.UTF_8));
+            }
+        }
+
+        private String location() {
+            return (entryName != null ? entryName : source) + ":" + lineNumber;
+        }
+
+        private long bytesRead() {
+            return counter.count;
+        }
+
+        @Override
+        public void close() throws IOException {
+            (zip != null ? zip : in).close();
+        }
+    }
+
+    private static final class CountingInputStream extends FilterInputStream {
+
+        private volatile long count;
+
+        private CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b >= 0) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+
+    private static final class Progress {
+        private final long id;
+        private final String source;
+        private final int maxReportedErrors;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<LessonImportErrorDTO> errors = new CopyOnWriteArrayList<>();
+        private volatile State state = State.RUNNING;
+        private volatile LocalDateTime finishedAt;
+        private volatile String error;
+        private volatile long totalBytes;
+        private volatile long bytesRead;
+        private volatile long recordsRead;
+        private volatile long lessonsImported;
+        private volatile long rowsInserted;
+        private volatile long recordsFailed;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+
+        private Progress(long id, String source, int maxReportedErrors) {
+            this.id = id;
+            this.source = source;
+            this.maxReportedErrors = maxReportedErrors;
+        }
+
+        private void fail(String location, String message) {
+            recordsFailed++;
+            if (errors.size() < maxReportedErrors) {
+                errors.add(new LessonImportErrorDTO(location, message));
+            }
+        }
+
+        private void finish(State state, String error) {
+            this.finishedNanos = System.nanoTime();
+            this.finishedAt = LocalDateTime.now();
+            this.error = error;
+            this.state = state;
+        }
+
+        private LessonImportStatusDTO toDto() {
+            LessonImportStatusDTO dto = new LessonImportStatusDTO();
+            dto.setImportId(id);
+            dto.setSource(source);
+            dto.setStatus(state.name());
+            dto.setStartedAt(startedAt);
+            dto.setFinishedAt(finishedAt);
+            dto.setError(error);
+            dto.setTotalBytes(totalBytes);
+            dto.setBytesRead(bytesRead);
+            dto.setRecordsRead(recordsRead);
+            dto.setLessonsImported(lessonsImported);
+            dto.setRowsInserted(rowsInserted);
+            dto.setRecordsFailed(recordsFailed);
+            if (startedNanos > 0) {
+                long end = finishedNanos > 0 ? finishedNanos : System.nanoTime();
+                dto.setRowsPerSecond(rowsInserted / Math.max((end - startedNanos) / 1e9, 1e-3));
+            }
+            dto.setErrors(new ArrayList<>(errors));
+            return dto;
+        }
+    }
+}
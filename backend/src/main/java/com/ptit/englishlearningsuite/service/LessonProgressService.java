@@ -27,6 +27,21 @@ public class LessonProgressService {
     @Autowired
     private LessonRepository lessonRepository;
 
+    @Autowired
+    private StatisticsAggregateService statisticsAggregateService;
+
+    @Autowired
+    private ActiveUserIndexService activeUserIndexService;
+
+    @Autowired
+    private LearnedLessonCache learnedLessonCache;
+
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
+
+    @Autowired
+    private LearnerMailbox learnerMailbox;
+
     public LessonProgress completeLesson(LessonProgressDTO progressDto) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         String currentUsername = authentication.getName();
@@ -34,12 +49,17 @@ public class LessonProgressService {
         Account account = accountRepository.findByUsername(currentUsername)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + currentUsername));
 
+        return learnerMailbox.submitInTransaction(account.getId(), () -> completeLessonInMailbox(account, progressDto));
+    }
+
+    private LessonProgress completeLessonInMailbox(Account account, LessonProgressDTO progressDto) {
         // Tìm bài học
         Lesson lesson = lessonRepository.findById(progressDto.getLessonId())
                 .orElseThrow(() -> new RuntimeException("Lesson not found"));
 
         LessonProgress progress = lessonProgressRepository.findByAccountAndLesson(account, lesson)
                 .orElse(new LessonProgress());
+        StatisticsAggregateService.Contribution before = StatisticsAggregateService.Contribution.ofLesson(progress);
 
         progress.setAccount(account);
         progress.setLesson(lesson);
@@ -48,6 +68,14 @@ public class LessonProgressService {
         progress.setTimeSpentSeconds(progressDto.getTimeSpentSeconds());
         progress.setCompletedAt(progressDto.getCompletedAt() != null ? progressDto.getCompletedAt() : LocalDateTime.now());
 
-        return lessonProgressRepository.save(progress);
+        LessonProgress saved = lessonProgressRepository.save(progress);
+        statisticsAggregateService.applyLessonProgress(account.getId(), lesson, before,
+                StatisticsAggregateService.Contribution.ofLesson(saved));
+        learnedLessonCache.markLearned(account.getId(), lesson.getId());
+        recommendationMaterializer.evict(account.getId());
+        if (saved.isCompleted()) {
+            activeUserIndexService.markActive(account.getId(), saved.getCompletedAt());
+        }
+        return saved;
     }
 }
\ No newline at end of file
@@ -3,13 +3,24 @@ package com.ptit.englishlearningsuite.service;
 import com.ptit.englishlearningsuite.dto.*;
 import com.ptit.englishlearningsuite.entity.*;
 import com.ptit.englishlearningsuite.repository.*;
+import com.ptit.englishlearningsuite.util.CatalogCursor;
+import com.ptit.englishlearningsuite.util.SpaceSavingTopK;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 import java.util.Collections;
 
@@ -43,29 +54,159 @@ public class LessonService {
     @Autowired
     private RecommendationService recommendationService;
 
+    @Autowired
+    private StatisticsAggregateService statisticsAggregateService;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @Autowired
+    private LessonDifficultyAccumulator lessonDifficultyAccumulator;
+
+    @Autowired
+    private LearnerMailbox learnerMailbox;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LessonDetailCache lessonDetailCache;
+
+    @Autowired
+    private PopularityTopKService popularityTopKService;
+
+    @Autowired
+    private SerializedResponseCache serializedResponseCache;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Value("${catalog.page.default-limit:50}")
+    private int defaultPageLimit;
+
+    @Value("${catalog.page.max-limit:200}")
+    private int maxPageLimit;
+
+    // Số bài theo (cấp độ, active) của phiên bản danh mục gần nhất; null cho tới lần đầu cần
+    private volatile LevelFacets levelFacets;
+
+    // Số bài học phổ biến nhất được dựng sẵn chi tiết lúc khởi động
+    @Value("${lesson.detail-cache.warm-size:100}")
+    private int detailCacheWarmSize;
+
+    @Value("${lesson.detail-cache.warm-on-startup:true}")
+    private boolean startupWarmEnabled;
+
     public List<LessonSummaryDTO> getAllLessons() {
-        return lessonRepository.findAll().stream()
+        return lessonRepository.findAllSummaries().stream()
                 .map(this::convertToSummaryDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Một trang danh mục bài học, sắp theo (level, lessonNumber, id) và phân trang keyset: {@code cursor} là
+     * {@link CatalogPageDTO#getNextCursor()} của trang trước (null = trang đầu). Con trỏ hỏng thì ném IllegalArgumentException.
+     */
+    public CatalogPageDTO<LessonSummaryDTO> getLessonCatalogPage(Integer level, Boolean active, String cursor, Integer limit) {
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageLimit, maxPageLimit));
+        long[] after = cursor != null ? CatalogCursor.decode(cursor, 3)
+                : new long[]{Integer.MIN_VALUE, Integer.MIN_VALUE, Long.MIN_VALUE};
+        int afterLevel = CatalogCursor.intKey(after[0]);
+        int afterNumber = CatalogCursor.intKey(after[1]);
+        // Đọc thêm một dòng để biết còn trang sau hay không
+        Pageable page = PageRequest.of(0, size + 1);
+
+        List<LessonSummaryRow> rows;
+        if (level != null && active != null) {
+            rows = lessonRepository.findSummariesByActiveAndLevelAfter(active, level, afterNumber, after[2], page);
+        } else if (level != null) {
+            rows = lessonRepository.findSummariesByLevelAfter(level, afterNumber, after[2], page);
+        } else if (active != null) {
+            rows = lessonRepository.findSummariesByActiveAfter(active, afterLevel, afterNumber, after[2], page);
+        } else {
+            rows = lessonRepository.findSummariesAfter(afterLevel, afterNumber, after[2], page);
+        }
+
+        CatalogPageDTO<LessonSummaryDTO> dto = new CatalogPageDTO<>();
+        List<LessonSummaryRow> items = rows.subList(0, Math.min(size, rows.size()));
+        dto.setItems(items.stream().map(this::convertToSummaryDto).collect(Collectors.toList()));
+        if (rows.size() > size) {
+            LessonSummaryRow last = items.get(items.size() - 1);
+            dto.setNextCursor(CatalogCursor.encode(last.level(), last.lessonNumber(), last.id()));
+        }
+        dto.setLimit(size);
+        dto.setLevelCounts(levelCounts(active));
+        return dto;
+    }
+
+    /**
+     * Số bài học theo cấp độ: tổng hợp GROUP BY được giữ lại tới khi phiên bản danh mục đổi (xem ContentVersionService).
+     */
+    private Map<Integer, Long> levelCounts(Boolean active) {
+        long catalogVersion = contentVersionService.lessonCatalogVersion();
+        LevelFacets facets = levelFacets;
+        if (facets == null || facets.catalogVersion() != catalogVersion) {
+            facets = new LevelFacets(catalogVersion, lessonRepository.countByLevelAndActive());
+            levelFacets = facets;
+        }
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (LevelCountRow row : facets.rows()) {
+            if (active == null || active.equals(row.active())) {
+                counts.merge(row.level(), row.count(), Long::sum);
+            }
+        }
+        return counts;
+    }
+
     public LessonDetailDTO getLessonById(Long id) {
-        Lesson lesson = lessonRepository.findById(id)
-                .orElseThrow(() -> new RuntimeException("Lesson not found with id: " + id));
-        return convertToDetailDto(lesson);
+        return lessonDetailCache.get(id, this::loadDetail);
+    }
+
+    /**
+     * Bản dựng sẵn dùng chung, thứ tự đáp án gốc (cho {@link SerializedResponseCache}); không được sửa.
+     */
+    public LessonDetailDTO getSharedLessonDetail(Long id) {
+        return lessonDetailCache.getShared(id, this::loadDetail);
     }
 
+    // Cần sketch Top-K, được nạp ở bước khởi động trước (PopularityTopKService)
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(5)
+    public void warmDetailCacheOnStartup() {
+        if (startupWarmEnabled) {
+            warmDetailCache();
+        }
+    }
 
-    private LessonSummaryDTO convertToSummaryDto(Lesson lesson) {
+    /**
+     * Dựng sẵn chi tiết của các bài học được hoàn thành nhiều nhất (theo sketch Top-K).
+     */
+    public void warmDetailCache() {
+        for (SpaceSavingTopK.Entry<Long> entry : popularityTopKService.topAllTime(TopKDimension.LESSON, detailCacheWarmSize)) {
+            Long lessonId = entry.item();
+            // Bài học đã bị xóa thì bỏ qua; các lỗi khác (DB, dữ liệu hỏng) vẫn được ném ra
+            transactionTemplate.executeWithoutResult(status -> lessonRepository.findDetailById(lessonId)
+                    .ifPresent(lesson -> lessonDetailCache.warm(lessonId, id -> convertToDetailDto(lesson))));
+        }
+    }
+
+    private LessonDetailDTO loadDetail(Long id) {
+        // Cả cây nội dung được nạp bằng số câu SQL cố định (xem LessonRepository#findDetailById)
+        return transactionTemplate.execute(status -> convertToDetailDto(lessonRepository.findDetailById(id)
+                .orElseThrow(() -> new RuntimeException("Lesson not found with id: " + id))));
+    }
+
+
+    private LessonSummaryDTO convertToSummaryDto(LessonSummaryRow row) {
         LessonSummaryDTO dto = new LessonSummaryDTO();
-        dto.setId(lesson.getId());
-        dto.setLessonNumber(lesson.getLessonNumber());
-        dto.setLevel(lesson.getLevel());
-        dto.setName(lesson.getName());
+        dto.setId(row.id());
+        dto.setLessonNumber(row.lessonNumber());
+        dto.setLevel(row.level());
+        dto.setName(row.name());
         return dto;
     }
 
-    private LessonDetailDTO convertToDetailDto(Lesson lesson) {
+    LessonDetailDTO convertToDetailDto(Lesson lesson) {
         LessonDetailDTO dto = new LessonDetailDTO();
         dto.setId(lesson.getId());
         dto.setLessonNumber(lesson.getLessonNumber());
@@ -94,7 +235,7 @@ public class LessonService {
             dto.setConversations(Collections.emptySet());
         }
 
-        // Add practice questions with shuffled answer options
+        // Thứ tự đáp án được xáo ở từng lượt đọc (xem LessonDetailCache)
         if (lesson.getPracticeQuestions() != null) {
             dto.setPracticeQuestions(lesson.getPracticeQuestions().stream()
                     .map(this::convertToPracticeQuestionDto)
@@ -147,8 +288,8 @@ public class LessonService {
     }
 
     /**
-     * Convert Question entity to PracticeQuestionDTO with shuffled answer options
-     * Shuffling is done for multiple-choice questions to prevent memorization
+     * Convert Question entity to PracticeQuestionDTO
+     * Answer options of multiple-choice questions are shuffled per request by LessonDetailCache
      * Note: isCorrect is NOT included in the response to prevent cheating
      */
     private PracticeQuestionDTO convertToPracticeQuestionDto(Question question) {
@@ -158,17 +299,11 @@ public class LessonService {
         dto.setQuestionType(question.getQuestionType());
         dto.setImageUrl(question.getImageUrl());
 
-        // Convert answer options to OptionDTO (without isCorrect) and shuffle them
+        // Convert answer options to OptionDTO (without isCorrect)
         if (question.getAnswerOptions() != null) {
             List<OptionDTO> options = question.getAnswerOptions().stream()
                     .map(this::convertToOptionDto)
                     .collect(Collectors.toList());
-
-            // Shuffle answer options for multiple-choice questions
-            if ("MULTIPLE_CHOICE".equalsIgnoreCase(question.getQuestionType())) {
-                Collections.shuffle(options);
-            }
-
             dto.setOptions(options);
         } else {
             dto.setOptions(Collections.emptyList());
@@ -197,6 +332,7 @@ public class LessonService {
         lesson.setLevel(req.getLevel());
         lesson.setAudioUrl(req.getAudioUrl());
         Lesson savedLesson = lessonRepository.save(lesson);
+        lessonFeatureIndex.upsertAfterCommit(savedLesson);
 
         // 2. Lưu Từ vựng (Giữ nguyên code cũ)
         if (req.getVocabularies() != null) {
@@ -249,6 +385,9 @@ public class LessonService {
             }
         }
 
+        contentVersionService.bumpLesson(savedLesson.getId());
+        lessonDetailCache.invalidate(savedLesson.getId());
+        serializedResponseCache.invalidateLesson(savedLesson.getId());
         return savedLesson;
     }
 
@@ -259,6 +398,9 @@ public class LessonService {
 
         lesson.setName(req.getName());
         lesson.setLessonNumber(req.getLessonNumber());
+        if (lesson.getLevel() != req.getLevel()) {
+            statisticsAggregateService.onLessonLevelChanged(id, req.getLevel());
+        }
         lesson.setLevel(req.getLevel());
         if (req.getAudioUrl() != null && !req.getAudioUrl().isEmpty()) {
             lesson.setAudioUrl(req.getAudioUrl());
@@ -321,14 +463,23 @@ public class LessonService {
             }
         }
 
-        return lessonRepository.save(lesson);
+        Lesson savedLesson = lessonRepository.save(lesson);
+        lessonFeatureIndex.upsertAfterCommit(savedLesson);
+        contentVersionService.bumpLesson(id);
+        lessonDetailCache.invalidate(id);
+        serializedResponseCache.invalidateLesson(id);
+        return savedLesson;
     }
 
     public void deleteLesson(Long id) {
         lessonRepository.deleteById(id);
+        contentVersionService.lessonRemoved(id);
+        lessonDetailCache.invalidate(id);
+        serializedResponseCache.invalidateLesson(id);
+        lessonFeatureIndex.remove(id);
+        lessonDifficultyAccumulator.forget(id);
     }
 
-    @Transactional
     public PracticeSubmissionResponseDTO submitPractice(Long lessonId, PracticeSubmissionDTO submission) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if (authentication == null || !authentication.isAuthenticated()) {
@@ -338,6 +489,10 @@ public class LessonService {
         Account account = accountRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found: " + username));
 
+        return learnerMailbox.submitInTransaction(account.getId(), () -> submitPracticeInMailbox(account, lessonId, submission));
+    }
+
+    private PracticeSubmissionResponseDTO submitPracticeInMailbox(Account account, Long lessonId, PracticeSubmissionDTO submission) {
         Question question = questionRepository.findById(submission.getQuestionId())
                 .orElseThrow(() -> new RuntimeException("Question not found with id: " + submission.getQuestionId()));
         
@@ -369,18 +524,13 @@ public class LessonService {
             isCorrect = submission.getTextAnswer().trim().equalsIgnoreCase(correctAnswer.getOptionText().trim());
         }
 
-        // Save old Elo for calculating change
-        int oldElo = account.getEloRating() != null ? account.getEloRating() : 1000;
-
         // IMMEDIATELY call processLessonResult to update Elo and Difficulty
         // Treat each question as a mini-lesson: pass if correct, fail if incorrect
-        recommendationService.processLessonResult(account.getId(), lessonId, isCorrect);
-
-        // Get updated account to retrieve new Elo
-        account = accountRepository.findById(account.getId())
-                .orElseThrow(() -> new RuntimeException("Account not found after update"));
-        int newElo = account.getEloRating() != null ? account.getEloRating() : 1000;
-        int eloChange = newElo - oldElo;
+        // (returns the old/new Elo, so the account is not read again)
+        RecommendationService.RatingUpdate ratingUpdate =
+                recommendationService.processLessonResult(account.getId(), lessonId, isCorrect);
+        int newElo = ratingUpdate.newElo();
+        int eloChange = ratingUpdate.eloChange();
 
         // Build response
         PracticeSubmissionResponseDTO response = new PracticeSubmissionResponseDTO();
@@ -396,7 +546,6 @@ public class LessonService {
         return response;
     }
 
-    @Transactional
     public AnswerSubmissionResponseDTO submitAnswer(Long lessonId, AnswerSubmissionDTO submission) {
         // Get current authenticated user
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
@@ -407,6 +556,10 @@ public class LessonService {
         Account account = accountRepository.findByUsername(username)
                 .orElseThrow(() -> new RuntimeException("User not found: " + username));
 
+        return learnerMailbox.submitInTransaction(account.getId(), () -> submitAnswerInMailbox(account, lessonId, submission));
+    }
+
+    private AnswerSubmissionResponseDTO submitAnswerInMailbox(Account account, Long lessonId, AnswerSubmissionDTO submission) {
         // Get question and verify lesson exists
         Question question = questionRepository.findById(submission.getQuestionId())
                 .orElseThrow(() -> new RuntimeException("Question not found with id: " + submission.getQuestionId()));
@@ -440,18 +593,13 @@ public class LessonService {
             isCorrect = submission.getTextAnswer().trim().equalsIgnoreCase(correctAnswer.getOptionText().trim());
         }
 
-        // Save old Elo for calculating change
-        int oldElo = account.getEloRating() != null ? account.getEloRating() : 1000;
-
         // IMMEDIATELY call processLessonResult to update Elo and Difficulty
         // Treat each question as a mini-lesson: pass if correct, fail if incorrect
-        recommendationService.processLessonResult(account.getId(), lessonId, isCorrect);
-
-        // Get updated account to retrieve new Elo
-        account = accountRepository.findById(account.getId())
-                .orElseThrow(() -> new RuntimeException("Account not found after update"));
-        int newElo = account.getEloRating() != null ? account.getEloRating() : 1000;
-        int eloChange = newElo - oldElo;
+        // (returns the old/new Elo, so the account is not read again)
+        RecommendationService.RatingUpdate ratingUpdate =
+                recommendationService.processLessonResult(account.getId(), lessonId, isCorrect);
+        int newElo = ratingUpdate.newElo();
+        int eloChange = ratingUpdate.eloChange();
 
         // Build response
         AnswerSubmissionResponseDTO response = new AnswerSubmissionResponseDTO();
@@ -465,4 +613,7 @@ public class LessonService {
 
         return response;
     }
-}
\ No newline at end of file
+
+    private record LevelFacets(long catalogVersion, List<LevelCountRow> rows) {
+    }
+}
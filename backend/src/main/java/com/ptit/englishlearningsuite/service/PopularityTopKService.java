@@ -0,0 +1,325 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.entity.AccountStatistics;
+import com.ptit.englishlearningsuite.entity.LessonStatistics;
+import com.ptit.englishlearningsuite.entity.TestStatistics;
+import com.ptit.englishlearningsuite.entity.TopKDimension;
+import com.ptit.englishlearningsuite.entity.TopKSnapshot;
+import com.ptit.englishlearningsuite.repository.AccountStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.DailyItemCount;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.LessonStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.TopKSnapshotRepository;
+import com.ptit.englishlearningsuite.util.SpaceSavingTopK;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Bảng xếp hạng phổ biến (bài học, bài kiểm tra, người dùng) dựa trên sketch Space-Saving.
+ * Mỗi chiều có một sketch toàn thời gian và một sketch cho từng ngày; top-N của cửa sổ trượt
+ * được tính bằng cách gộp các sketch ngày trong cửa sổ. Các sketch được ghi xuống bảng top_k_snapshots theo chu kỳ.
+ */
+@Service
+public class PopularityTopKService {
+
+    private static final String ALL_TIME = "all";
+
+    @Value("${statistics.topk.capacity:200}")
+    private int capacity;
+
+    @Value("${statistics.topk.window-days:30}")
+    private int windowDays;
+
+    @Value("${statistics.topk.load-on-startup:true}")
+    private boolean startupLoadEnabled;
+
+    @Autowired
+    private TopKSnapshotRepository topKSnapshotRepository;
+
+    @Autowired
+    private LessonStatisticsRepository lessonStatisticsRepository;
+
+    @Autowired
+    private TestStatisticsRepository testStatisticsRepository;
+
+    @Autowired
+    private AccountStatisticsRepository accountStatisticsRepository;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TestProgressRepository testProgressRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final Map<TopKDimension, SpaceSavingTopK<Long>> allTime = new ConcurrentHashMap<>();
+
+    private final Map<TopKDimension, Map<LocalDate, SpaceSavingTopK<Long>>> daily = new EnumMap<>(TopKDimension.class);
+
+    private final Set<String> dirtyKeys = ConcurrentHashMap.newKeySet();
+
+    public PopularityTopKService() {
+        for (TopKDimension dimension : TopKDimension.values()) {
+            daily.put(dimension, new ConcurrentHashMap<>());
+        }
+    }
+
+    public int getWindowDays() {
+        return windowDays;
+    }
+
+    /**
+     * Ghi nhận {@code completions} lượt hoàn thành mới của một phần tử (bỏ qua giá trị &lt;= 0).
+     */
+    public void record(TopKDimension dimension, Long itemId, long completions, LocalDateTime completedAt) {
+        if (itemId == null || completions <= 0) {
+            return;
+        }
+        LocalDate day = (completedAt != null ? completedAt : LocalDateTime.now()).toLocalDate();
+        offerAllTime(dimension, itemId, completions);
+        if (!day.isBefore(LocalDate.now().minusDays(windowDays - 1L))) {
+            offerDay(dimension, itemId, completions, day);
+        }
+    }
+
+    /**
+     * Ứng viên top-N toàn thời gian (giảm dần). Số đếm là cận trên; người gọi đối chiếu với bảng số liệu để lấy số chính xác.
+     */
+    public List<SpaceSavingTopK.Entry<Long>> topAllTime(TopKDimension dimension, int n) {
+        return allTimeSketch(dimension).top(n);
+    }
+
+    /**
+     * Top-N trong {@code days} ngày gần nhất (tính cả hôm nay, tối đa {@code windowDays}).
+     */
+    public List<SpaceSavingTopK.Entry<Long>> topLastDays(TopKDimension dimension, int days, int n) {
+        LocalDate today = LocalDate.now();
+        int span = Math.max(1, Math.min(days, windowDays));
+        SpaceSavingTopK<Long> window = new SpaceSavingTopK<>(capacity);
+        Map<LocalDate, SpaceSavingTopK<Long>> buckets = daily.get(dimension);
+        for (LocalDate day = today.minusDays(span - 1L); !day.isAfter(today); day = day.plusDays(1)) {
+            SpaceSavingTopK<Long> bucket = buckets.get(day);
+            if (bucket != null) {
+                window.merge(bucket);
+            }
+        }
+        return window.top(n);
+    }
+
+    /**
+     * Sketch được dựng từ bảng số liệu tổng hợp nên nạp sau bước backfill của {@link StatisticsAggregateService}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(4)
+    public void loadOnStartup() {
+        if (startupLoadEnabled) {
+            load();
+        }
+    }
+
+    /**
+     * Nạp các sketch đã lưu. Nếu chưa có snapshot toàn thời gian thì dựng từ các bảng số liệu tổng hợp,
+     * các ngày trong cửa sổ chưa có snapshot thì dựng từ truy vấn gom nhóm theo (ngày, phần tử).
+     * Các sketch đang có trong bộ nhớ bị thay thế, nên gọi lại nhiều lần không cộng dồn.
+     */
+    public void load() {
+        allTime.clear();
+        LocalDate today = LocalDate.now();
+        LocalDate oldestDay = today.minusDays(windowDays - 1L);
+        Map<TopKDimension, Set<LocalDate>> persistedDays = new EnumMap<>(TopKDimension.class);
+        for (TopKDimension dimension : TopKDimension.values()) {
+            persistedDays.put(dimension, new HashSet<>());
+        }
+        Set<TopKDimension> persistedAllTime = EnumSet.noneOf(TopKDimension.class);
+
+        for (TopKSnapshot snapshot : topKSnapshotRepository.findAll()) {
+            String[] parts = snapshot.getSketchKey().split(":", 2);
+            TopKDimension dimension = TopKDimension.valueOf(parts[0]);
+            if (ALL_TIME.equals(parts[1])) {
+                allTimeSketch(dimension).merge(deserialize(snapshot.getPayload()));
+                persistedAllTime.add(dimension);
+                continue;
+            }
+            LocalDate day = LocalDate.parse(parts[1]);
+            // Hôm nay luôn được dựng lại bên dưới vì snapshot có thể chưa kịp ghi các lượt cuối
+            if (!day.isBefore(oldestDay) && day.isBefore(today)) {
+                daily.get(dimension).put(day, deserialize(snapshot.getPayload()));
+                persistedDays.get(dimension).add(day);
+            }
+        }
+
+        seedAllTime(persistedAllTime);
+
+        // Các ngày chưa có snapshot (kể cả hôm nay) được dựng lại hoàn toàn từ DB
+        daily.forEach((dimension, buckets) -> buckets.keySet().removeIf(day -> !persistedDays.get(dimension).contains(day)));
+        transactionTemplate.executeWithoutResult(status -> {
+            LocalDateTime startDate = oldestDay.atStartOfDay();
+            LocalDateTime endDate = today.plusDays(1).atStartOfDay();
+            try (Stream<DailyItemCount> rows = lessonProgressRepository.streamCompletionsByDayAndLesson(startDate, endDate)) {
+                rows.forEach(row -> seedDay(TopKDimension.LESSON, row, persistedDays));
+            }
+            try (Stream<DailyItemCount> rows = testProgressRepository.streamCompletionsByDayAndTest(startDate, endDate)) {
+                rows.forEach(row -> seedDay(TopKDimension.TEST, row, persistedDays));
+            }
+            try (Stream<DailyItemCount> rows = lessonProgressRepository.streamCompletionsByDayAndAccount(startDate, endDate)) {
+                rows.forEach(row -> seedDay(TopKDimension.USER, row, persistedDays));
+            }
+            try (Stream<DailyItemCount> rows = testProgressRepository.streamCompletionsByDayAndAccount(startDate, endDate)) {
+                rows.forEach(row -> seedDay(TopKDimension.USER, row, persistedDays));
+            }
+        });
+        flush();
+    }
+
+    /**
+     * Bỏ mọi snapshot đã lưu rồi dựng lại các sketch từ bảng số liệu tổng hợp và lịch sử hoàn thành,
+     * dùng sau khi các bảng tổng hợp được dựng lại.
+     */
+    public void rebuild() {
+        dirtyKeys.clear();
+        topKSnapshotRepository.deleteAllInBatch();
+        daily.values().forEach(Map::clear);
+        load();
+    }
+
+    /**
+     * Ghi các sketch có thay đổi xuống DB, bỏ các bucket ngày đã ra khỏi cửa sổ.
+     */
+    @Scheduled(fixedDelayString = "${statistics.topk.flush-interval-ms:60000}")
+    @PreDestroy
+    public void flush() {
+        for (String key : List.copyOf(dirtyKeys)) {
+            dirtyKeys.remove(key);
+            String[] parts = key.split(":", 2);
+            TopKDimension dimension = TopKDimension.valueOf(parts[0]);
+            SpaceSavingTopK<Long> sketch = ALL_TIME.equals(parts[1])
+                    ? allTime.get(dimension)
+                    : daily.get(dimension).get(LocalDate.parse(parts[1]));
+            if (sketch == null) {
+                continue;
+            }
+
+            TopKSnapshot snapshot = new TopKSnapshot();
+            snapshot.setSketchKey(key);
+            snapshot.setPayload(serialize(sketch));
+            snapshot.setUpdatedAt(LocalDateTime.now());
+            topKSnapshotRepository.save(snapshot);
+        }
+
+        LocalDate oldestDay = LocalDate.now().minusDays(windowDays - 1L);
+        daily.forEach((dimension, buckets) -> buckets.keySet().removeIf(day -> {
+            if (!day.isBefore(oldestDay)) {
+                return false;
+            }
+            topKSnapshotRepository.deleteById(sketchKey(dimension, day.toString()));
+            return true;
+        }));
+    }
+
+    private void seedAllTime(Set<TopKDimension> persistedAllTime) {
+        PageRequest byCompletions = PageRequest.of(0, capacity, Sort.by(Sort.Direction.DESC, "completionCount"));
+        PageRequest byTotalCompletions = PageRequest.of(0, capacity, Sort.by(Sort.Direction.DESC, "totalCompletions"));
+        if (!persistedAllTime.contains(TopKDimension.LESSON)) {
+            for (LessonStatistics statistics : lessonStatisticsRepository.findByCompletionCountGreaterThan(0, byCompletions)) {
+                offerAllTime(TopKDimension.LESSON, statistics.getLessonId(), statistics.getCompletionCount());
+            }
+        }
+        if (!persistedAllTime.contains(TopKDimension.TEST)) {
+            for (TestStatistics statistics : testStatisticsRepository.findByCompletionCountGreaterThan(0, byCompletions)) {
+                offerAllTime(TopKDimension.TEST, statistics.getTestId(), statistics.getCompletionCount());
+            }
+        }
+        if (!persistedAllTime.contains(TopKDimension.USER)) {
+            for (AccountStatistics statistics : accountStatisticsRepository.findByTotalCompletionsGreaterThan(0, byTotalCompletions)) {
+                offerAllTime(TopKDimension.USER, statistics.getAccountId(), statistics.getTotalCompletions());
+            }
+        }
+    }
+
+    private void seedDay(TopKDimension dimension, DailyItemCount row, Map<TopKDimension, Set<LocalDate>> persistedDays) {
+        LocalDate day = LocalDate.ofEpochDay(row.getEpochDay());
+        if (persistedDays.get(dimension).contains(day) || row.getMetricValue() == null) {
+            return;
+        }
+        offerDay(dimension, row.getItemId(), row.getMetricValue(), day);
+    }
+
+    private void offerAllTime(TopKDimension dimension, Long itemId, long completions) {
+        allTimeSketch(dimension).offer(itemId, completions);
+        dirtyKeys.add(sketchKey(dimension, ALL_TIME));
+    }
+
+    private void offerDay(TopKDimension dimension, Long itemId, long completions, LocalDate day) {
+        daily.get(dimension).computeIfAbsent(day, d -> new SpaceSavingTopK<>(capacity)).offer(itemId, completions);
+        dirtyKeys.add(sketchKey(dimension, day.toString()));
+    }
+
+    private SpaceSavingTopK<Long> allTimeSketch(TopKDimension dimension) {
+        return allTime.computeIfAbsent(dimension, d -> new SpaceSavingTopK<>(capacity));
+    }
+
+    private String sketchKey(TopKDimension dimension, String suffix) {
+        return dimension.name() + ":" + suffix;
+    }
+
+    private byte[] serialize(SpaceSavingTopK<Long> sketch) {
+        List<SpaceSavingTopK.Entry<Long>> entries = sketch.entries();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(8 + entries.size() * 24);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(sketch.getCapacity());
+            out.writeInt(entries.size());
+            for (SpaceSavingTopK.Entry<Long> entry : entries) {
+                out.writeLong(entry.item());
+                out.writeLong(entry.count());
+                out.writeLong(entry.error());
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private SpaceSavingTopK<Long> deserialize(byte[] payload) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload))) {
+            in.readInt(); // capacity lúc lưu; dùng cấu hình hiện tại
+            int size = in.readInt();
+            SpaceSavingTopK<Long> sketch = new SpaceSavingTopK<>(capacity);
+            for (int i = 0; i < size; i++) {
+                sketch.offer(in.readLong(), in.readLong(), in.readLong());
+            }
+            return sketch;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
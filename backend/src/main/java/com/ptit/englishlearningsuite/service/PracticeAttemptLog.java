@@ -0,0 +1,102 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Ghi nhật ký practice_attempts theo lô thay vì một câu INSERT trong mỗi lượt trả lời.
+ * <p>
+ * Mỗi lượt chỉ thêm một dòng vào hàng đợi trong bộ nhớ, và chỉ sau khi giao dịch của lượt đó commit (giống
+ * {@link LessonDifficultyAccumulator}), nên lượt bị rollback không để lại nhật ký. Định kỳ hàng đợi được ghi bằng các lô
+ * INSERT JDBC ({@code practice.attempts.batch-size} dòng mỗi lô). Hàng đợi vượt {@code practice.attempts.max-pending}
+ * dòng thì luồng vừa thêm tự ghi luôn. Lô ghi lỗi được trả lại đầu hàng đợi để lần sau ghi tiếp.
+ * <p>
+ * Nơi đọc nhật ký cần thấy cả các lượt vừa commit ({@link RatingBackfillJob}) thì gọi {@link #flush()} trước.
+ */
+@Service
+public class PracticeAttemptLog {
+
+    private static final String INSERT_ATTEMPT = "INSERT INTO practice_attempts " +
+            "(account_id, lesson_id, passed, user_elo, lesson_difficulty, answered_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    @Value("${practice.attempts.batch-size:500}")
+    private int batchSize;
+
+    @Value("${practice.attempts.max-pending:50000}")
+    private int maxPending;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ConcurrentLinkedDeque<Object[]> queue = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * Ghi nhận một lượt trả lời; {@code userElo}/{@code lessonDifficulty} là giá trị trước cập nhật.
+     */
+    public void record(Long accountId, Long lessonId, boolean passed, int userElo, int lessonDifficulty,
+                       LocalDateTime answeredAt) {
+        Object[] row = {accountId, lessonId, passed, userElo, lessonDifficulty, answeredAt};
+        AfterCommit.run(() -> enqueue(row));
+    }
+
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * Ghi toàn bộ hàng đợi hiện tại xuống DB.
+     */
+    @Scheduled(fixedDelayString = "${practice.attempts.flush-interval-ms:1000}")
+    @PreDestroy
+    public synchronized void flush() {
+        while (true) {
+            List<Object[]> batch = new ArrayList<>(batchSize);
+            Object[] row;
+            while (batch.size() < batchSize && (row = queue.pollFirst()) != null) {
+                batch.add(row);
+            }
+            if (batch.isEmpty()) {
+                return;
+            }
+            pending.addAndGet(-batch.size());
+            try {
+                // Một giao dịch mỗi lô: một lần commit thay vì mỗi dòng một lần (auto-commit)
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_ATTEMPT, batch));
+            } catch (RuntimeException e) {
+                // Trả lô lại đầu hàng đợi, giữ thứ tự
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    queue.addFirst(batch.get(i));
+                }
+                pending.addAndGet(batch.size());
+                throw e;
+            }
+        }
+    }
+
+    private void enqueue(Object[] row) {
+        queue.addLast(row);
+        if (pending.incrementAndGet() > maxPending) {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                // Các dòng vẫn nằm trong hàng đợi, lượt ghi định kỳ sẽ thử lại; không làm hỏng lượt trả lời đã commit
+            }
+        }
+    }
+}
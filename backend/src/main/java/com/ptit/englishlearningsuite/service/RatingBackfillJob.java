@@ -0,0 +1,769 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.RatingBackfillChangeDTO;
+import com.ptit.englishlearningsuite.dto.RatingBackfillStatusDTO;
+import com.ptit.englishlearningsuite.entity.RatingBackfillPhase;
+import com.ptit.englishlearningsuite.entity.RatingBackfillRun;
+import com.ptit.englishlearningsuite.entity.RatingBackfillStatus;
+import com.ptit.englishlearningsuite.repository.AccountFeatureRow;
+import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.LessonFeatureRow;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.repository.PracticeAttemptRepository;
+import com.ptit.englishlearningsuite.repository.PracticeAttemptRow;
+import com.ptit.englishlearningsuite.repository.RatingBackfillRunRepository;
+import com.ptit.englishlearningsuite.util.HybridMathUtils;
+import com.ptit.englishlearningsuite.util.LongIntHashMap;
+import com.ptit.englishlearningsuite.util.RatingMath;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.LongPredicate;
+import java.util.stream.Stream;
+
+/**
+ * Tính lại toàn bộ Elo/mức thành thạo của người học và độ khó bài học từ practice_attempts, dùng khi đổi công thức
+ * trong {@link RatingMath}: giá trị đang lưu mang ngữ nghĩa công thức cũ.
+ * <p>
+ * Lịch sử trước mốc {@code cutoff} được đọc dạng stream theo thời gian và replay hoàn toàn trong bộ nhớ trên mảng
+ * nguyên thủy (id -> chỉ số qua {@link LongIntHashMap}). Độ khó bài học là snapshot hai lớp giống
+ * {@link LessonDifficultyAccumulator}: các lượt trong cùng một chu kỳ flush chỉ đọc snapshot, delta được cộng vào
+ * bộ đệm riêng rồi mới gộp vào snapshot ở cuối chu kỳ; nhờ vậy một chu kỳ đông lượt được chia theo người học cho
+ * nhiều luồng mà kết quả không phụ thuộc thứ tự.
+ * <p>
+ * Kết quả được ghi lại bằng các lô UPDATE JDBC theo id tăng dần, mỗi lô một giao dịch ngắn (kèm điểm dừng để chạy
+ * tiếp được) và có nghỉ giữa các lô, nên trang vẫn phục vụ bình thường. Người học/bài học có lượt trả lời mới sau
+ * mốc thì không bị ghi đè (điều kiện NOT EXISTS trong câu UPDATE) mà được ghi ở các vòng đuổi: replay tiếp phần
+ * lịch sử mới rồi ghi lại đúng những id đó. Chế độ dry-run chỉ replay và so sánh với giá trị đang lưu.
+ * <p>
+ * Chỉ lịch sử có trong practice_attempts được replay: người học chưa có lượt nào trong nhật ký giữ nguyên giá trị,
+ * người học có thì bắt đầu lại từ {@link RatingMath#DEFAULT_ELO} (thành thạo 0) và bài học từ
+ * {@link RatingMath#DEFAULT_DIFFICULTY}. Vì vậy lượt ghi thật bị từ chối khi nhật ký không phủ hết lịch sử của một
+ * người học/bài học (có lượt hoàn thành sớm hơn lượt trả lời đầu tiên được ghi), nếu không rating tích lũy trước khi
+ * có nhật ký sẽ bị xóa; dry-run báo số người học/bài học như vậy.
+ */
+@Service
+public class RatingBackfillJob {
+
+    private static final int LARGEST_CHANGES = 20;
+    private static final LocalDateTime BEGINNING = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private static final String UPDATE_ACCOUNT = "UPDATE accounts SET elo_rating = ?, grammar_proficiency = ?, " +
+            "vocab_proficiency = ?, listening_proficiency = ?, rating_version = COALESCE(rating_version, 0) + 1 " +
+            "WHERE id = ? AND NOT EXISTS (SELECT 1 FROM practice_attempts p " +
+            "WHERE p.account_id = ? AND p.answered_at >= ?)";
+
+    private static final String UPDATE_LESSON = "UPDATE lessons SET difficulty_rating = ? " +
+            "WHERE id = ? AND NOT EXISTS (SELECT 1 FROM practice_attempts p " +
+            "WHERE p.lesson_id = ? AND p.answered_at >= ?)";
+
+    @Value("${rating.backfill.chunk-size:500}")
+    private int chunkSize;
+
+    // Nghỉ giữa các lô ghi để nhường DB cho lượt truy cập thật
+    @Value("${rating.backfill.chunk-pause-ms:20}")
+    private long chunkPauseMs;
+
+    @Value("${rating.backfill.threads:4}")
+    private int threads;
+
+    // Chu kỳ có ít lượt hơn ngưỡng này được xử lý ngay trên luồng đọc
+    @Value("${rating.backfill.parallel-threshold:2048}")
+    private int parallelThreshold;
+
+    @Value("${rating.backfill.catch-up-rounds:3}")
+    private int catchUpRounds;
+
+    @Value("${lesson.difficulty.flush-interval-ms:1000}")
+    private long flushIntervalMs;
+
+    @Autowired
+    private PracticeAttemptRepository practiceAttemptRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private RatingBackfillRunRepository ratingBackfillRunRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private LessonDifficultyAccumulator lessonDifficultyAccumulator;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
+
+    @Autowired
+    private Glicko2RatingEngine glicko2RatingEngine;
+
+    @Autowired
+    private PracticeAttemptLog practiceAttemptLog;
+
+    // Lượt đang chạy (hoặc vừa xong) trong tiến trình này
+    private volatile Progress progress;
+
+    /**
+     * Bắt đầu một lượt mới chạy nền; lỗi nếu đang có lượt khác chạy.
+     */
+    public synchronized RatingBackfillStatusDTO start(boolean dryRun) {
+        ensureNotRunning();
+        LocalDateTime cutoff = LocalDateTime.now();
+        if (!dryRun) {
+            ensureHistoryCovered(cutoff);
+        }
+        RatingBackfillRun run = new RatingBackfillRun();
+        run.setStatus(RatingBackfillStatus.RUNNING);
+        run.setPhase(RatingBackfillPhase.REPLAY);
+        run.setDryRun(dryRun);
+        run.setCutoff(cutoff);
+        run.setStartedAt(LocalDateTime.now());
+        run.setUpdatedAt(run.getStartedAt());
+        return launch(ratingBackfillRunRepository.save(run));
+    }
+
+    /**
+     * Chạy tiếp một lượt bị ngắt (lỗi hoặc tiến trình dừng giữa chừng): replay lại đến cùng mốc cutoff rồi
+     * ghi tiếp từ điểm dừng đã lưu.
+     */
+    public synchronized RatingBackfillStatusDTO resume(Long runId) {
+        ensureNotRunning();
+        RatingBackfillRun run = ratingBackfillRunRepository.findById(runId)
+                .orElseThrow(() -> new RuntimeException("Rating backfill run not found with id: " + runId));
+        if (run.getStatus() == RatingBackfillStatus.COMPLETED) {
+            throw new IllegalStateException("Rating backfill run " + runId + " has already completed");
+        }
+        if (!run.isDryRun()) {
+            ensureHistoryCovered(run.getCutoff());
+        }
+        run.setStatus(RatingBackfillStatus.RUNNING);
+        run.setError(null);
+        run.setFinishedAt(null);
+        run.setUpdatedAt(LocalDateTime.now());
+        return launch(ratingBackfillRunRepository.save(run));
+    }
+
+    public RatingBackfillStatusDTO status() {
+        Progress current = progress;
+        if (current != null) {
+            return current.toDto();
+        }
+        return ratingBackfillRunRepository.findTopByOrderByIdDesc()
+                .map(run -> new Progress(run).toDto())
+                .orElse(null);
+    }
+
+    private void ensureNotRunning() {
+        if (glicko2RatingEngine.isEnabled()) {
+            // Replay dùng công thức Elo từng lượt; kỳ Glicko-2 không tái tạo được từ thứ tự từng lượt
+            throw new IllegalStateException("Rating backfill replays the Elo engine; disable rating.engine=glicko2 first");
+        }
+        Progress current = progress;
+        if (current != null && current.run.getStatus() == RatingBackfillStatus.RUNNING) {
+            throw new IllegalStateException("A rating backfill is already running (run " + current.run.getId() + ")");
+        }
+    }
+
+    /**
+     * Từ chối ghi khi practice_attempts không phủ hết lịch sử trước {@code cutoff}: replay sẽ đặt lại những
+     * người học/bài học đó về giá trị mặc định.
+     */
+    private void ensureHistoryCovered(LocalDateTime cutoff) {
+        long accounts = practiceAttemptRepository.countAccountsWithEarlierProgress(cutoff);
+        long lessons = practiceAttemptRepository.countLessonsWithEarlierProgress(cutoff);
+        if (accounts > 0 || lessons > 0) {
+            throw new IllegalStateException("practice_attempts does not cover the full history of " + accounts
+                    + " accounts and " + lessons + " lessons; replaying would reset their ratings (see dry run)");
+        }
+    }
+
+    private RatingBackfillStatusDTO launch(RatingBackfillRun run) {
+        Progress next = new Progress(run);
+        next.totalEvents = practiceAttemptRepository.countByAnsweredAtBefore(run.getCutoff());
+        progress = next;
+        Thread.ofPlatform().name("rating-backfill-" + run.getId()).daemon().start(() -> execute(next));
+        return next.toDto();
+    }
+
+    private void execute(Progress progress) {
+        RatingBackfillRun run = progress.run;
+        progress.startedNanos = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads))) {
+            Replay replay = new Replay(executor);
+            for (LessonFeatureRow row : lessonRepository.findAllLessonFeatures()) {
+                replay.registerLesson(row);
+            }
+
+            setPhase(run, RatingBackfillPhase.REPLAY);
+            replay(replay, BEGINNING, run.getCutoff(), progress, null, null);
+            progress.accounts = replay.accountCount;
+            progress.lessons = replay.lessonCount;
+
+            if (run.isDryRun()) {
+                diff(replay, progress);
+                finish(run, RatingBackfillStatus.COMPLETED, null);
+                return;
+            }
+
+            // Delta của các lượt trước mốc phải nằm trong DB trước khi bị ghi đè, không được cộng thêm sau đó
+            lessonDifficultyAccumulator.flush();
+            Long lastAccountId = run.getLastAccountId();
+            Long lastLessonId = run.getLastLessonId();
+            setPhase(run, RatingBackfillPhase.WRITE_ACCOUNTS);
+            writeAccounts(replay, replay.sortedAccountIds(id -> lastAccountId == null || id > lastAccountId),
+                    run.getCutoff(), run, progress);
+            setPhase(run, RatingBackfillPhase.WRITE_LESSONS);
+            writeLessons(replay, replay.sortedLessonIds(id -> lastLessonId == null || id > lastLessonId),
+                    run.getCutoff(), run, progress);
+
+            // Vòng đuổi: replay các lượt mới từ mốc trước rồi ghi lại những người học/bài học của các lượt đó
+            setPhase(run, RatingBackfillPhase.CATCH_UP);
+            LocalDateTime from = run.getCutoff();
+            for (int round = 1; round <= catchUpRounds; round++) {
+                LocalDateTime to = LocalDateTime.now();
+                RoaringBitmap accounts = new RoaringBitmap();
+                RoaringBitmap lessons = new RoaringBitmap();
+                replay(replay, from, to, progress, accounts, lessons);
+                if (accounts.isEmpty() && lessons.isEmpty()) {
+                    break;
+                }
+                progress.catchUpRounds = round;
+                lessonDifficultyAccumulator.flush();
+                long skipped = writeAccounts(replay, replay.sortedAccountIds(accounts), to, null, progress)
+                        + writeLessons(replay, replay.sortedLessonIds(lessons), to, null, progress);
+                from = to;
+                if (skipped == 0) {
+                    break;
+                }
+            }
+
+            // Snapshot độ khó, chỉ mục gợi ý và kết quả tính trước đều đang giữ giá trị cũ
+            lessonDifficultyAccumulator.invalidateSnapshot();
+            lessonFeatureIndex.load();
+            recommendationMaterializer.refreshAll();
+            setPhase(run, RatingBackfillPhase.DONE);
+            finish(run, RatingBackfillStatus.COMPLETED, null);
+        } catch (RuntimeException e) {
+            finish(run, RatingBackfillStatus.FAILED, e.getMessage());
+        }
+    }
+
+    /**
+     * Replay các lượt trong [from, to); nếu có {@code accounts}/{@code lessons} thì đánh dấu chỉ số các
+     * người học/bài học xuất hiện.
+     */
+    private void replay(Replay replay, LocalDateTime from, LocalDateTime to, Progress progress,
+                        RoaringBitmap accounts, RoaringBitmap lessons) {
+        // Các lượt đã commit nhưng nhật ký còn trong hàng đợi
+        practiceAttemptLog.flush();
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<PracticeAttemptRow> rows = practiceAttemptRepository.streamBetween(from, to)) {
+                rows.forEach(row -> {
+                    replay.add(row);
+                    if (accounts != null) {
+                        accounts.add(replay.lastAccount);
+                        lessons.add(replay.lastLesson);
+                    }
+                    progress.replayedEvents++;
+                });
+            }
+        });
+        replay.endPeriod();
+        progress.run.setEventsReplayed(progress.replayedEvents);
+    }
+
+    /**
+     * Ghi người học theo lô (id tăng dần); {@code run} khác null thì điểm dừng được lưu trong cùng giao dịch của lô.
+     * Trả về số dòng không ghi.
+     */
+    private long writeAccounts(Replay replay, long[] accountIds, LocalDateTime notAnsweredSince,
+                               RatingBackfillRun run, Progress progress) {
+        long skipped = 0;
+        for (int from = 0; from < accountIds.length; from += chunkSize) {
+            int to = Math.min(accountIds.length, from + chunkSize);
+            List<Object[]> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int index = replay.accountIndex(accountIds[i]);
+                batch.add(new Object[]{replay.elo[index], replay.grammar[index], replay.vocab[index],
+                        replay.listening[index], accountIds[i], accountIds[i], notAnsweredSince});
+            }
+            long lastId = accountIds[to - 1];
+            // Điều kiện NOT EXISTS phải thấy cả lượt vừa trả lời còn trong hàng đợi nhật ký
+            practiceAttemptLog.flush();
+            int written = transactionTemplate.execute(status -> {
+                int rows = written(jdbcTemplate.batchUpdate(UPDATE_ACCOUNT, batch));
+                progress.accountsWritten += rows;
+                if (run != null) {
+                    run.setLastAccountId(lastId);
+                    checkpoint(run, progress);
+                }
+                return rows;
+            });
+            skipped += batch.size() - written;
+            progress.accountsSkipped += batch.size() - written;
+            pause();
+        }
+        return skipped;
+    }
+
+    private long writeLessons(Replay replay, long[] lessonIds, LocalDateTime notAnsweredSince,
+                              RatingBackfillRun run, Progress progress) {
+        long skipped = 0;
+        for (int from = 0; from < lessonIds.length; from += chunkSize) {
+            int to = Math.min(lessonIds.length, from + chunkSize);
+            List<Object[]> batch = new ArrayList<>(to - from);
+            for (int i = from; i < to; i++) {
+                int index = replay.lessonIndex(lessonIds[i]);
+                batch.add(new Object[]{replay.difficulty[index], lessonIds[i], lessonIds[i], notAnsweredSince});
+            }
+            long lastId = lessonIds[to - 1];
+            practiceAttemptLog.flush();
+            int written = transactionTemplate.execute(status -> {
+                int rows = written(jdbcTemplate.batchUpdate(UPDATE_LESSON, batch));
+                progress.lessonsWritten += rows;
+                if (run != null) {
+                    run.setLastLessonId(lastId);
+                    checkpoint(run, progress);
+                }
+                return rows;
+            });
+            skipped += batch.size() - written;
+            progress.lessonsSkipped += batch.size() - written;
+            pause();
+        }
+        return skipped;
+    }
+
+    /**
+     * So sánh giá trị tính lại với giá trị đang lưu (không ghi gì).
+     */
+    private void diff(Replay replay, Progress progress) {
+        PriorityQueue<RatingBackfillChangeDTO> largest = new PriorityQueue<>(
+                Comparator.comparingInt(RatingBackfillJob::magnitude));
+        progress.accountsWithIncompleteHistory =
+                practiceAttemptRepository.countAccountsWithEarlierProgress(progress.run.getCutoff());
+        progress.lessonsWithIncompleteHistory =
+                practiceAttemptRepository.countLessonsWithEarlierProgress(progress.run.getCutoff());
+
+        long[] accountIds = replay.sortedAccountIds(id -> true);
+        long changed = 0;
+        long compared = 0;
+        long totalChange = 0;
+        int maxChange = 0;
+        for (int from = 0; from < accountIds.length; from += chunkSize) {
+            List<Long> chunk = new ArrayList<>();
+            for (int i = from; i < Math.min(accountIds.length, from + chunkSize); i++) {
+                chunk.add(accountIds[i]);
+            }
+            for (AccountFeatureRow row : accountRepository.findFeaturesByIdIn(chunk)) {
+                int current = row.eloRating() != null ? row.eloRating() : RatingMath.DEFAULT_ELO;
+                int recomputed = replay.elo[replay.accountIndex(row.id())];
+                int change = Math.abs(recomputed - current);
+                compared++;
+                totalChange += change;
+                maxChange = Math.max(maxChange, change);
+                if (change != 0) {
+                    changed++;
+                    offer(largest, new RatingBackfillChangeDTO("ACCOUNT", row.id(), current, recomputed));
+                }
+            }
+        }
+        progress.accountsChanged = changed;
+        progress.meanAbsEloChange = compared > 0 ? (double) totalChange / compared : 0.0;
+        progress.maxAbsEloChange = maxChange;
+
+        changed = 0;
+        compared = 0;
+        totalChange = 0;
+        maxChange = 0;
+        for (long lessonId : replay.sortedLessonIds(id -> true)) {
+            int index = replay.lessonIndex(lessonId);
+            if (!replay.persisted.contains(index)) {
+                continue; // Bài học đã bị xóa
+            }
+            int current = replay.persistedDifficulty[index];
+            int recomputed = replay.difficulty[index];
+            int change = Math.abs(recomputed - current);
+            compared++;
+            totalChange += change;
+            maxChange = Math.max(maxChange, change);
+            if (change != 0) {
+                changed++;
+                offer(largest, new RatingBackfillChangeDTO("LESSON", lessonId, current, recomputed));
+            }
+        }
+        progress.lessonsChanged = changed;
+        progress.meanAbsDifficultyChange = compared > 0 ? (double) totalChange / compared : 0.0;
+        progress.maxAbsDifficultyChange = maxChange;
+
+        List<RatingBackfillChangeDTO> changes = new ArrayList<>(largest);
+        changes.sort(Comparator.comparingInt(RatingBackfillJob::magnitude).reversed());
+        progress.largestChanges = changes;
+    }
+
+    private static void offer(PriorityQueue<RatingBackfillChangeDTO> largest, RatingBackfillChangeDTO change) {
+        largest.add(change);
+        if (largest.size() > LARGEST_CHANGES) {
+            largest.poll();
+        }
+    }
+
+    private static int magnitude(RatingBackfillChangeDTO change) {
+        return Math.abs(change.getRecomputedRating() - change.getCurrentRating());
+    }
+
+    // Số dòng đã cập nhật; SUCCESS_NO_INFO (driver không báo số dòng) được coi là đã ghi
+    private static int written(int[] counts) {
+        int written = 0;
+        for (int count : counts) {
+            if (count != 0) {
+                written++;
+            }
+        }
+        return written;
+    }
+
+    private void checkpoint(RatingBackfillRun run, Progress progress) {
+        run.setEventsReplayed(progress.replayedEvents);
+        run.setAccountsWritten(progress.accountsWritten);
+        run.setLessonsWritten(progress.lessonsWritten);
+        run.setUpdatedAt(LocalDateTime.now());
+        ratingBackfillRunRepository.save(run);
+    }
+
+    private void setPhase(RatingBackfillRun run, RatingBackfillPhase phase) {
+        run.setPhase(phase);
+        progress.phase = phase;
+        checkpoint(run, progress);
+    }
+
+    private void finish(RatingBackfillRun run, RatingBackfillStatus status, String error) {
+        Progress current = progress;
+        current.finishedNanos = System.nanoTime();
+        run.setStatus(status);
+        run.setFinishedAt(LocalDateTime.now());
+        run.setError(error != null && error.length() > 1000 ? error.substring(0, 1000) : error);
+        checkpoint(run, current);
+        current.status = status;
+    }
+
+    private void pause() {
+        if (chunkPauseMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(chunkPauseMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Rating backfill interrupted", e);
+        }
+    }
+
+    /**
+     * Trạng thái replay trong bộ nhớ: mảng song song theo chỉ số người học/bài học.
+     */
+    private final class Replay {
+
+        private final ExecutorService executor;
+
+        // id -> chỉ số + 1 (0 nghĩa là chưa có)
+        private final LongIntHashMap accountIndexes = new LongIntHashMap(1 << 14);
+        private final LongIntHashMap lessonIndexes = new LongIntHashMap(1 << 12);
+
+        private int accountCount;
+        private long[] accountIds = new long[1024];
+        private int[] elo = new int[1024];
+        private double[] grammar = new double[1024];
+        private double[] vocab = new double[1024];
+        private double[] listening = new double[1024];
+
+        private int lessonCount;
+        private long[] lessonIds = new long[256];
+        // Snapshot độ khó: chỉ đổi ở cuối chu kỳ
+        private int[] difficulty = new int[256];
+        private int[] persistedDifficulty = new int[256];
+        private double[] grammarWeight = new double[256];
+        private double[] vocabWeight = new double[256];
+        private double[] listeningWeight = new double[256];
+        // Bài học còn trong bảng lessons / bài học có lượt trả lời trong lịch sử
+        private final RoaringBitmap persisted = new RoaringBitmap();
+        private final RoaringBitmap replayed = new RoaringBitmap();
+
+        // Các lượt của chu kỳ flush hiện tại
+        private long periodStart;
+        private int periodSize;
+        private int[] periodAccounts = new int[1024];
+        private int[] periodLessons = new int[1024];
+        private boolean[] periodPassed = new boolean[1024];
+
+        // Bộ đệm delta độ khó của từng phân vùng (lớp thứ hai của snapshot)
+        private final int[][] deltas;
+
+        private int lastAccount;
+        private int lastLesson;
+
+        private Replay(ExecutorService executor) {
+            this.executor = executor;
+            this.deltas = new int[Math.max(1, threads)][0];
+        }
+
+        private void registerLesson(LessonFeatureRow row) {
+            int index = lessonIndexOrAdd(row.id());
+            persisted.add(index);
+            persistedDifficulty[index] = row.difficultyRating() != null ? row.difficultyRating() : RatingMath.DEFAULT_DIFFICULTY;
+            grammarWeight[index] = row.grammarWeight() != null ? row.grammarWeight() : 0.33;
+            vocabWeight[index] = row.vocabWeight() != null ? row.vocabWeight() : 0.33;
+            listeningWeight[index] = row.listeningWeight() != null ? row.listeningWeight() : 0.34;
+        }
+
+        private void add(PracticeAttemptRow row) {
+            long at = row.answeredAt().toInstant(ZoneOffset.UTC).toEpochMilli();
+            if (periodSize > 0 && at >= periodStart + flushIntervalMs) {
+                endPeriod();
+            }
+            if (periodSize == 0) {
+                periodStart = at;
+            }
+            lastAccount = accountIndexOrAdd(row.accountId());
+            lastLesson = lessonIndexOrAdd(row.lessonId());
+            replayed.add(lastLesson);
+            if (periodSize == periodAccounts.length) {
+                periodAccounts = Arrays.copyOf(periodAccounts, periodSize * 2);
+                periodLessons = Arrays.copyOf(periodLessons, periodSize * 2);
+                periodPassed = Arrays.copyOf(periodPassed, periodSize * 2);
+            }
+            periodAccounts[periodSize] = lastAccount;
+            periodLessons[periodSize] = lastLesson;
+            periodPassed[periodSize] = row.passed();
+            periodSize++;
+        }
+
+        /**
+         * Xử lý các lượt của chu kỳ (chia theo người học nếu đủ đông) rồi gộp delta vào snapshot độ khó.
+         */
+        private void endPeriod() {
+            if (periodSize == 0) {
+                return;
+            }
+            int partitions = periodSize >= parallelThreshold ? deltas.length : 1;
+            for (int p = 0; p < partitions; p++) {
+                if (deltas[p].length < lessonCount) {
+                    deltas[p] = Arrays.copyOf(deltas[p], lessonIds.length);
+                }
+            }
+            if (partitions == 1) {
+                process(0, 1);
+            } else {
+                List<Future<?>> futures = new ArrayList<>(partitions);
+                for (int p = 0; p < partitions; p++) {
+                    int partition = p;
+                    futures.add(executor.submit(() -> process(partition, partitions)));
+                }
+                try {
+                    for (Future<?> future : futures) {
+                        future.get();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("Rating backfill interrupted", e);
+                } catch (ExecutionException e) {
+                    throw new RuntimeException("Rating backfill replay failed", e.getCause());
+                }
+            }
+            for (int i = 0; i < periodSize; i++) {
+                int lesson = periodLessons[i];
+                for (int p = 0; p < partitions; p++) {
+                    difficulty[lesson] += deltas[p][lesson];
+                    deltas[p][lesson] = 0;
+                }
+            }
+            periodSize = 0;
+        }
+
+        private void process(int partition, int partitions) {
+            int[] delta = deltas[partition];
+            for (int i = 0; i < periodSize; i++) {
+                int account = periodAccounts[i];
+                if (account % partitions != partition) {
+                    continue;
+                }
+                int lesson = periodLessons[i];
+                RatingMath.Result result = RatingMath.apply(HybridMathUtils.K_FACTOR, elo[account], difficulty[lesson],
+                        grammar[account], vocab[account], listening[account],
+                        grammarWeight[lesson], vocabWeight[lesson], listeningWeight[lesson], periodPassed[i]);
+                elo[account] = result.newUserElo();
+                grammar[account] = result.grammar();
+                vocab[account] = result.vocab();
+                listening[account] = result.listening();
+                delta[lesson] += result.lessonDifficultyDelta();
+            }
+        }
+
+        private int accountIndexOrAdd(long accountId) {
+            int index = accountIndexes.get(accountId) - 1;
+            if (index >= 0) {
+                return index;
+            }
+            index = accountCount++;
+            if (index == accountIds.length) {
+                int capacity = index * 2;
+                accountIds = Arrays.copyOf(accountIds, capacity);
+                elo = Arrays.copyOf(elo, capacity);
+                grammar = Arrays.copyOf(grammar, capacity);
+                vocab = Arrays.copyOf(vocab, capacity);
+                listening = Arrays.copyOf(listening, capacity);
+            }
+            accountIds[index] = accountId;
+            elo[index] = RatingMath.DEFAULT_ELO;
+            accountIndexes.addTo(accountId, index + 1);
+            return index;
+        }
+
+        private int lessonIndexOrAdd(long lessonId) {
+            int index = lessonIndexes.get(lessonId) - 1;
+            if (index >= 0) {
+                return index;
+            }
+            index = lessonCount++;
+            if (index == lessonIds.length) {
+                int capacity = index * 2;
+                lessonIds = Arrays.copyOf(lessonIds, capacity);
+                difficulty = Arrays.copyOf(difficulty, capacity);
+                persistedDifficulty = Arrays.copyOf(persistedDifficulty, capacity);
+                grammarWeight = Arrays.copyOf(grammarWeight, capacity);
+                vocabWeight = Arrays.copyOf(vocabWeight, capacity);
+                listeningWeight = Arrays.copyOf(listeningWeight, capacity);
+            }
+            lessonIds[index] = lessonId;
+            difficulty[index] = RatingMath.DEFAULT_DIFFICULTY;
+            grammarWeight[index] = 0.33;
+            vocabWeight[index] = 0.33;
+            listeningWeight[index] = 0.34;
+            lessonIndexes.addTo(lessonId, index + 1);
+            return index;
+        }
+
+        private int accountIndex(long accountId) {
+            return accountIndexes.get(accountId) - 1;
+        }
+
+        private int lessonIndex(long lessonId) {
+            return lessonIndexes.get(lessonId) - 1;
+        }
+
+        private long[] sortedAccountIds(LongPredicate filter) {
+            return Arrays.stream(accountIds, 0, accountCount).filter(filter).sorted().toArray();
+        }
+
+        private long[] sortedAccountIds(RoaringBitmap indices) {
+            return indices.stream().mapToLong(index -> accountIds[index]).sorted().toArray();
+        }
+
+        // Chỉ các bài học có lượt trả lời trong lịch sử; bài học còn lại giữ nguyên
+        private long[] sortedLessonIds(LongPredicate filter) {
+            return replayed.stream().mapToLong(index -> lessonIds[index]).filter(filter).sorted().toArray();
+        }
+
+        private long[] sortedLessonIds(RoaringBitmap indices) {
+            return indices.stream().mapToLong(index -> lessonIds[index]).sorted().toArray();
+        }
+    }
+
+    /**
+     * Tiến độ của một lượt; chỉ luồng chạy nền ghi, các trường volatile để API trạng thái đọc.
+     */
+    private static final class Progress {
+        private final RatingBackfillRun run;
+        private volatile RatingBackfillStatus status;
+        private volatile RatingBackfillPhase phase;
+        private volatile long totalEvents;
+        private volatile long replayedEvents;
+        private volatile long accounts;
+        private volatile long lessons;
+        private volatile long accountsWritten;
+        private volatile long lessonsWritten;
+        private volatile long accountsSkipped;
+        private volatile long lessonsSkipped;
+        private volatile int catchUpRounds;
+        private volatile long accountsWithIncompleteHistory;
+        private volatile long lessonsWithIncompleteHistory;
+        private volatile long startedNanos;
+        private volatile long finishedNanos;
+        private volatile long accountsChanged;
+        private volatile double meanAbsEloChange;
+        private volatile int maxAbsEloChange;
+        private volatile long lessonsChanged;
+        private volatile double meanAbsDifficultyChange;
+        private volatile int maxAbsDifficultyChange;
+        private volatile List<RatingBackfillChangeDTO> largestChanges = List.of();
+
+        private Progress(RatingBackfillRun run) {
+            this.run = run;
+            this.status = run.getStatus();
+            this.phase = run.getPhase();
+            this.replayedEvents = run.getEventsReplayed();
+            this.accountsWritten = run.getAccountsWritten();
+            this.lessonsWritten = run.getLessonsWritten();
+        }
+
+        private RatingBackfillStatusDTO toDto() {
+            RatingBackfillStatusDTO dto = new RatingBackfillStatusDTO();
+            dto.setRunId(run.getId());
+            dto.setStatus(status.name());
+            dto.setPhase(phase.name());
+            dto.setDryRun(run.isDryRun());
+            dto.setCutoff(run.getCutoff());
+            dto.setStartedAt(run.getStartedAt());
+            dto.setFinishedAt(run.getFinishedAt());
+            dto.setError(run.getError());
+            dto.setTotalEvents(totalEvents);
+            dto.setReplayedEvents(replayedEvents);
+            if (startedNanos > 0) {
+                long end = finishedNanos > 0 ? finishedNanos : System.nanoTime();
+                dto.setEventsPerSecond(replayedEvents / Math.max((end - startedNanos) / 1e9, 1e-3));
+            }
+            dto.setAccounts(accounts);
+            dto.setLessons(lessons);
+            dto.setAccountsWritten(accountsWritten);
+            dto.setLessonsWritten(lessonsWritten);
+            dto.setAccountsSkipped(accountsSkipped);
+            dto.setLessonsSkipped(lessonsSkipped);
+            dto.setCatchUpRounds(catchUpRounds);
+            dto.setAccountsWithIncompleteHistory(accountsWithIncompleteHistory);
+            dto.setLessonsWithIncompleteHistory(lessonsWithIncompleteHistory);
+            dto.setAccountsChanged(accountsChanged);
+            dto.setMeanAbsEloChange(meanAbsEloChange);
+            dto.setMaxAbsEloChange(maxAbsEloChange);
+            dto.setLessonsChanged(lessonsChanged);
+            dto.setMeanAbsDifficultyChange(meanAbsDifficultyChange);
+            dto.setMaxAbsDifficultyChange(maxAbsDifficultyChange);
+            dto.setLargestChanges(new ArrayList<>(largestChanges));
+            return dto;
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.RecommendationMaterializerStatsDTO;
+import com.ptit.englishlearningsuite.repository.AccountFeatureRow;
+import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import com.ptit.englishlearningsuite.util.RatingMath;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tính trước Top-5 gợi ý (kèm similarity) cho mọi người dùng hoạt động trong {@code active-days} ngày gần nhất,
+ * chia thành từng lô chạy song song; /api/recommendations chỉ còn là một lần tra map.
+ * Kết quả của một người được tính lại ngay khi Elo/mức thành thạo đổi và đã commit
+ * ({@link RecommendationService#processLessonResult}), bị bỏ khi họ học thêm bài mới (tra cứu kế tiếp sẽ tính lại),
+ * còn độ khó bài học trôi dần thì được hấp thụ bởi lượt làm mới toàn bộ theo chu kỳ.
+ * <p>
+ * Kết quả giữ trong cache giới hạn {@code max-accounts} người; mỗi lượt làm mới toàn bộ bỏ những người đã rời cửa sổ
+ * hoạt động (lần tra cứu sau của họ sẽ tính lại) nên cache không phình theo số người từng tra cứu.
+ */
+@Service
+public class RecommendationMaterializer {
+
+    public static final int TOP_N = 5;
+
+    @Value("${recommendation.materializer.active-days:30}")
+    private int activeDays;
+
+    @Value("${recommendation.materializer.chunk-size:500}")
+    private int chunkSize;
+
+    @Value("${recommendation.materializer.parallelism:4}")
+    private int parallelism;
+
+    @Value("${recommendation.materializer.max-accounts:100000}")
+    private long maxAccounts;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @Autowired
+    private LearnedLessonCache learnedLessonCache;
+
+    @Autowired
+    private ActiveUserIndexService activeUserIndexService;
+
+    @Autowired
+    private LessonCoCompletionModel lessonCoCompletionModel;
+
+    private Cache<Long, Materialized> results;
+
+    private final LongAdder lookupHits = new LongAdder();
+    private final LongAdder lookupMisses = new LongAdder();
+    private final LongAdder singleRecomputes = new LongAdder();
+    private final LongAdder totalRecomputes = new LongAdder();
+
+    private volatile RefreshRun lastRefresh;
+
+    @PostConstruct
+    void init() {
+        results = Caffeine.newBuilder()
+                .maximumSize(maxAccounts)
+                .build();
+    }
+
+    /**
+     * Gợi ý đã tính của người dùng; nếu chưa có thì tính ngay và lưu lại.
+     */
+    public List<LessonFeatureIndex.ScoredLesson> get(Long accountId) {
+        Materialized materialized = results.getIfPresent(accountId);
+        if (materialized != null) {
+            lookupHits.increment();
+            return materialized.lessons();
+        }
+        lookupMisses.increment();
+        AccountFeatureRow features = accountRepository.findFeaturesByIdIn(List.of(accountId)).stream()
+                .findFirst()
+                .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
+        return recompute(features);
+    }
+
+    /**
+     * Tính lại cho một người dùng từ giá trị hiện tại (không đọc lại DB).
+     */
+    public List<LessonFeatureIndex.ScoredLesson> recompute(AccountFeatureRow features) {
+        long computedAt = System.currentTimeMillis();
+        List<LessonFeatureIndex.ScoredLesson> lessons = compute(features, learnedLessonCache.learnedLessons(features.id()));
+        store(features.id(), new Materialized(lessons, computedAt));
+        singleRecomputes.increment();
+        totalRecomputes.increment();
+        return lessons;
+    }
+
+    /**
+     * Như {@link #recompute} nhưng trong giao dịch thì chỉ chạy sau khi commit, để kết quả không dựa trên
+     * Elo/mức thành thạo chưa (hoặc không bao giờ) được ghi xuống DB.
+     */
+    public void recomputeAfterCommit(AccountFeatureRow features) {
+        AfterCommit.run(() -> recompute(features));
+    }
+
+    /**
+     * Bỏ kết quả của người dùng (sau khi giao dịch hiện tại commit, nếu có); tra cứu kế tiếp sẽ tính lại.
+     */
+    public void evict(Long accountId) {
+        AfterCommit.run(() -> results.invalidate(accountId));
+    }
+
+    /**
+     * Làm mới toàn bộ người dùng hoạt động gần đây, theo lô chạy song song; kết quả của người đã rời cửa sổ hoạt động
+     * bị bỏ khỏi cache.
+     */
+    @Scheduled(fixedDelayString = "${recommendation.materializer.refresh-interval-ms:600000}",
+            initialDelayString = "${recommendation.materializer.refresh-interval-ms:600000}")
+    public void refreshAll() {
+        long startedAt = System.currentTimeMillis();
+        LocalDate today = LocalDate.now();
+        RoaringBitmap accounts = activeUserIndexService.activeAccounts(today.minusDays(activeDays - 1L), today);
+        results.asMap().keySet().removeIf(accountId -> !accounts.contains(Math.toIntExact(accountId)));
+
+        List<List<Long>> chunks = new ArrayList<>();
+        List<Long> chunk = new ArrayList<>(chunkSize);
+        for (int accountId : accounts) {
+            chunk.add((long) accountId);
+            if (chunk.size() == chunkSize) {
+                chunks.add(chunk);
+                chunk = new ArrayList<>(chunkSize);
+            }
+        }
+        if (!chunk.isEmpty()) {
+            chunks.add(chunk);
+        }
+
+        long refreshed = 0;
+        try (ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, parallelism))) {
+            List<Future<Integer>> futures = new ArrayList<>(chunks.size());
+            for (List<Long> accountIds : chunks) {
+                futures.add(executor.submit(() -> refreshChunk(accountIds)));
+            }
+            for (Future<Integer> future : futures) {
+                refreshed += future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Recommendation refresh interrupted", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Recommendation refresh failed", e.getCause());
+        }
+        lastRefresh = new RefreshRun(startedAt, System.currentTimeMillis() - startedAt, refreshed);
+    }
+
+    public RecommendationMaterializerStatsDTO stats() {
+        RecommendationMaterializerStatsDTO dto = new RecommendationMaterializerStatsDTO();
+        long now = System.currentTimeMillis();
+        long count = 0;
+        long totalAge = 0;
+        long maxAge = 0;
+        for (Materialized materialized : results.asMap().values()) {
+            long age = Math.max(0, now - materialized.computedAt());
+            count++;
+            totalAge += age;
+            maxAge = Math.max(maxAge, age);
+        }
+        dto.setMaterializedAccounts(count);
+        dto.setAverageStalenessSeconds(count > 0 ? totalAge / 1000.0 / count : 0.0);
+        dto.setMaxStalenessSeconds(maxAge / 1000.0);
+        dto.setLookupHits(lookupHits.sum());
+        dto.setLookupMisses(lookupMisses.sum());
+        dto.setSingleRecomputes(singleRecomputes.sum());
+        dto.setTotalRecomputes(totalRecomputes.sum());
+
+        RefreshRun run = lastRefresh;
+        if (run != null) {
+            dto.setLastRefreshStartedAt(LocalDateTime.ofInstant(Instant.ofEpochMilli(run.startedAt()), ZoneId.systemDefault()));
+            dto.setLastRefreshDurationMs(run.durationMs());
+            dto.setLastRefreshAccounts(run.accounts());
+            dto.setLastRefreshAccountsPerSecond(run.durationMs() > 0 ? run.accounts() * 1000.0 / run.durationMs() : run.accounts());
+        }
+        return dto;
+    }
+
+    private int refreshChunk(List<Long> accountIds) {
+        // Mốc thời gian lấy trước khi đọc DB: kết quả tính lại đơn lẻ mới hơn sẽ không bị lô này ghi đè
+        long computedAt = System.currentTimeMillis();
+        Map<Long, RoaringBitmap> learned = learnedLessonCache.learnedLessons(accountIds);
+        int refreshed = 0;
+        for (AccountFeatureRow features : accountRepository.findFeaturesByIdIn(accountIds)) {
+            store(features.id(), new Materialized(compute(features, learned.get(features.id())), computedAt));
+            refreshed++;
+        }
+        totalRecomputes.add(refreshed);
+        return refreshed;
+    }
+
+    private void store(Long accountId, Materialized next) {
+        results.asMap().merge(accountId, next, (current, candidate) -> current.computedAt() > candidate.computedAt() ? current : candidate);
+    }
+
+    private List<LessonFeatureIndex.ScoredLesson> compute(AccountFeatureRow features, RoaringBitmap learnedLessonIds) {
+        int userEloRating = features.eloRating() != null ? features.eloRating() : RatingMath.DEFAULT_ELO;
+        return lessonFeatureIndex.recommend(createUserNeedsVector(features), userEloRating,
+                learnedLessonIds != null ? learnedLessonIds : new RoaringBitmap(),
+                lessonCoCompletionModel.scoresFor(features.id()), TOP_N);
+    }
+
+    private double[] createUserNeedsVector(AccountFeatureRow features) {
+        double grammarNeed = 1.0 - (features.grammarProficiency() != null ? features.grammarProficiency() : 0.0);
+        double vocabNeed = 1.0 - (features.vocabProficiency() != null ? features.vocabProficiency() : 0.0);
+        double listeningNeed = 1.0 - (features.listeningProficiency() != null ? features.listeningProficiency() : 0.0);
+
+        // Đảm bảo giá trị nằm trong khoảng [0.0, 1.0]
+        grammarNeed = Math.max(0.0, Math.min(1.0, grammarNeed));
+        vocabNeed = Math.max(0.0, Math.min(1.0, vocabNeed));
+        listeningNeed = Math.max(0.0, Math.min(1.0, listeningNeed));
+
+        return new double[]{grammarNeed, vocabNeed, listeningNeed};
+    }
+
+    private record Materialized(List<LessonFeatureIndex.ScoredLesson> lessons, long computedAt) {
+    }
+
+    private record RefreshRun(long startedAt, long durationMs, long accounts) {
+    }
+}
@@ -1,14 +1,17 @@
 package com.ptit.englishlearningsuite.service;
 
-import com.ptit.englishlearningsuite.entity.Account;
 import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.repository.AccountFeatureRow;
+import com.ptit.englishlearningsuite.repository.AccountRatingState;
 import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.LessonFeatureRow;
 import com.ptit.englishlearningsuite.repository.LessonRepository;
-import com.ptit.englishlearningsuite.util.HybridMathUtils;
+import com.ptit.englishlearningsuite.util.RatingMath;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.*;
 import java.util.stream.Collectors;
 
@@ -22,71 +25,20 @@ public class RecommendationService {
     private LessonRepository lessonRepository;
 
     @Autowired
-    private com.ptit.englishlearningsuite.repository.LessonProgressRepository lessonProgressRepository;
+    private LessonDifficultyAccumulator lessonDifficultyAccumulator;
 
-    @Transactional(readOnly = true)
-    public List<Lesson> getRecommendedLessons(Long accountId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
-
-        int userEloRating = account.getEloRating() != null ? account.getEloRating() : 1500;
-
-        List<Lesson> allActiveLessons = lessonRepository.findAll().stream()
-                .filter(lesson -> {
-                    return lesson.getIsActive() != null && lesson.getIsActive();
-                })
-                .collect(Collectors.toList());
-
-        Set<Long> learnedLessonIds = lessonProgressRepository.findAllByAccount(account).stream()
-                .map(progress -> progress.getLesson().getId())
-                .collect(Collectors.toSet());
-
-        allActiveLessons = allActiveLessons.stream()
-                .filter(lesson -> !learnedLessonIds.contains(lesson.getId()))
-                .collect(Collectors.toList());
-        List<Lesson> filteredLessons = allActiveLessons.stream()
-                .filter(lesson -> {
-                    int lessonDifficulty = lesson.getDifficultyRating() != null 
-                            ? lesson.getDifficultyRating() 
-                            : 1500; // Mặc định 1500 nếu null
-                    
-                    return lessonDifficulty >= (userEloRating - 150)
-                        && lessonDifficulty <= (userEloRating + 150);
-                })
-                .collect(Collectors.toList());
+    @Autowired
+    private PracticeAttemptLog practiceAttemptLog;
 
-        if (filteredLessons.isEmpty()) {
-            filteredLessons = allActiveLessons.stream()
-                    .filter(lesson -> {
-                        int lessonDifficulty = lesson.getDifficultyRating() != null 
-                                ? lesson.getDifficultyRating() 
-                                : 1500;
-                        return lessonDifficulty >= (userEloRating - 300)
-                            && lessonDifficulty <= (userEloRating + 300);
-                    })
-                    .collect(Collectors.toList());
-        }
-        double[] userNeedsVector = createUserNeedsVector(account);
+    @Autowired
+    private Glicko2RatingEngine glicko2RatingEngine;
 
-        List<LessonWithSimilarity> lessonsWithSimilarity = filteredLessons.stream()
-                .map(lesson -> {
-                    // Tạo Lesson Content Vector
-                    double[] lessonVector = createLessonVector(lesson);
-                    
-                    // Tính Cosine Similarity
-                    double similarity = HybridMathUtils.calculateCosineSimilarity(
-                            userNeedsVector, 
-                            lessonVector
-                    );
-                    
-                    return new LessonWithSimilarity(lesson, similarity);
-                })
-                .sorted((a, b) -> Double.compare(b.similarity, a.similarity)) // Sắp xếp giảm dần
-                .collect(Collectors.toList());
+    @Autowired
+    private RecommendationMaterializer recommendationMaterializer;
 
-        // Trả về Top 5 bài học
-        return lessonsWithSimilarity.stream()
-                .limit(5)
+    @Transactional(readOnly = true)
+    public List<Lesson> getRecommendedLessons(Long accountId) {
+        return getRecommendedLessonsWithSimilarity(accountId).stream()
                 .map(lws -> lws.lesson)
                 .collect(Collectors.toList());
     }
@@ -94,187 +46,101 @@ public class RecommendationService {
 
     @Transactional(readOnly = true)
     public List<LessonWithSimilarity> getRecommendedLessonsWithSimilarity(Long accountId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
-
-        int userEloRating = account.getEloRating() != null ? account.getEloRating() : 1500;
-
-        List<Lesson> allActiveLessons = lessonRepository.findAll().stream()
-                .filter(lesson -> {
-                    // Chỉ lấy bài học đang active
-                    return lesson.getIsActive() != null && lesson.getIsActive();
-                })
-                .collect(Collectors.toList());
-        Set<Long> learnedLessonIds = lessonProgressRepository.findAllByAccount(account).stream()
-                .map(progress -> progress.getLesson().getId())
-                .collect(Collectors.toSet());
-
-        // Loại bỏ các bài học đã có tiến độ (chỉ giữ lại bài học chưa học)
-        allActiveLessons = allActiveLessons.stream()
-                .filter(lesson -> !learnedLessonIds.contains(lesson.getId()))
-                .collect(Collectors.toList());
-
-        // GIAI ĐOẠN 1: ADAPTIVE FILTERING (Lọc theo độ khó)
-        List<Lesson> filteredLessons = allActiveLessons.stream()
-                .filter(lesson -> {
-                    int lessonDifficulty = lesson.getDifficultyRating() != null 
-                            ? lesson.getDifficultyRating() 
-                            : 1500;
-                    return lessonDifficulty >= (userEloRating - 150) 
-                        && lessonDifficulty <= (userEloRating + 150);
-                })
+        // Top 5 đã được tính trước (lọc độ khó ±150/±300, loại bài đã học, xếp theo cosine similarity)
+        List<LessonFeatureIndex.ScoredLesson> scored = recommendationMaterializer.get(accountId);
+
+        // Chỉ nạp entity của các bài học được chọn
+        Map<Long, Lesson> lessonsById = lessonRepository.findAllById(scored.stream()
+                        .map(LessonFeatureIndex.ScoredLesson::lessonId)
+                        .collect(Collectors.toList()))
+                .stream()
+                .collect(Collectors.toMap(Lesson::getId, lesson -> lesson));
+
+        return scored.stream()
+                .filter(s -> lessonsById.containsKey(s.lessonId()))
+                .map(s -> new LessonWithSimilarity(lessonsById.get(s.lessonId()), s.similarity()))
                 .collect(Collectors.toList());
+    }
 
-        // Nếu không có bài học nào phù hợp, mở rộng khoảng tìm kiếm
-        if (filteredLessons.isEmpty()) {
-            filteredLessons = allActiveLessons.stream()
-                    .filter(lesson -> {
-                        int lessonDifficulty = lesson.getDifficultyRating() != null 
-                                ? lesson.getDifficultyRating() 
-                                : 1500;
-                        return lessonDifficulty >= (userEloRating - 300) 
-                            && lessonDifficulty <= (userEloRating + 300);
-                    })
-                    .collect(Collectors.toList());
+    /**
+     * Cập nhật Elo/mức thành thạo của người dùng và độ khó bài học sau một lượt làm bài.
+     * Người dùng được ghi bằng compare-and-set trên rating_version (đọc 1 lần + 1 câu UPDATE, không ghi cả entity);
+     * nếu một lượt khác của cùng người dùng (tab khác) ghi chen vào thì đọc lại có khóa dòng rồi ghi lại.
+     * Trả về giá trị trước/sau để nơi gọi không phải đọc lại Account.
+     * <p>
+     * Với {@code rating.engine=glicko2} lượt này chỉ được đưa vào kỳ xếp hạng hiện tại ({@link Glicko2RatingEngine}):
+     * mức thành thạo đổi ngay, Elo/độ khó đổi ở cuối kỳ nên {@link RatingUpdate#eloChange()} là 0.
+     */
+    @Transactional
+    public RatingUpdate processLessonResult(Long accountId, Long lessonId, boolean isPassed) {
+        LessonFeatureRow lesson = lessonRepository.findFeaturesById(lessonId)
+                .orElseThrow(() -> new RuntimeException("Lesson not found with id: " + lessonId));
+        AccountRatingState state = accountRepository.findRatingStateById(accountId)
+                .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
+        if (glicko2RatingEngine.isEnabled()) {
+            AccountFeatureRow features = glicko2RatingEngine.record(state, lesson, isPassed);
+            recommendationMaterializer.recomputeAfterCommit(features);
+            return new RatingUpdate(features.eloRating(), features, 0,
+                    lesson.difficultyRating() != null ? lesson.difficultyRating() : RatingMath.DEFAULT_DIFFICULTY);
         }
 
-        // GIAI ĐOẠN 2: CONTENT-BASED FILTERING
-        double[] userNeedsVector = createUserNeedsVector(account);
-
-        // Tính similarity cho từng lesson và sắp xếp
-        List<LessonWithSimilarity> lessonsWithSimilarity = filteredLessons.stream()
-                .map(lesson -> {
-                    double[] lessonVector = createLessonVector(lesson);
-                    double similarity = HybridMathUtils.calculateCosineSimilarity(
-                            userNeedsVector, 
-                            lessonVector
-                    );
-                    return new LessonWithSimilarity(lesson, similarity);
-                })
-                .sorted((a, b) -> Double.compare(b.similarity, a.similarity))
-                .collect(Collectors.toList());
+        // Độ khó theo snapshot lần ghi gần nhất (xem LessonDifficultyAccumulator)
+        int lessonDifficulty = lessonDifficultyAccumulator.ratingOf(lessonId, lesson.difficultyRating());
+        RatingUpdate update = calculateUpdate(state, lesson, lessonDifficulty, isPassed);
+        if (!write(state, update)) {
+            state = accountRepository.lockRatingStateById(accountId)
+                    .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
+            update = calculateUpdate(state, lesson, lessonDifficulty, isPassed);
+            if (!write(state, update)) {
+                throw new IllegalStateException("Concurrent rating update for account " + accountId);
+            }
+        }
 
-        // Trả về Top 5 bài học với similarity
-        return lessonsWithSimilarity.stream()
-                .limit(5)
-                .collect(Collectors.toList());
+        // Không ghi cả dòng lessons: delta được gom và cộng dồn nguyên tử theo lô
+        lessonDifficultyAccumulator.add(lessonId, update.lessonDifficultyDelta());
+        recordAttempt(accountId, lessonId, isPassed, update);
+        // Elo/mức thành thạo vừa đổi: tính lại gợi ý của người này ngay sau khi commit
+        recommendationMaterializer.recomputeAfterCommit(update.features());
+        return update;
     }
 
-    private double[] createUserNeedsVector(Account account) {
-        double grammarNeed = 1.0 - (account.getGrammarProficiency() != null 
-                ? account.getGrammarProficiency() 
-                : 0.0);
-        double vocabNeed = 1.0 - (account.getVocabProficiency() != null 
-                ? account.getVocabProficiency() 
-                : 0.0);
-        double listeningNeed = 1.0 - (account.getListeningProficiency() != null 
-                ? account.getListeningProficiency() 
-                : 0.0);
-
-        // Đảm bảo giá trị nằm trong khoảng [0.0, 1.0]
-        grammarNeed = Math.max(0.0, Math.min(1.0, grammarNeed));
-        vocabNeed = Math.max(0.0, Math.min(1.0, vocabNeed));
-        listeningNeed = Math.max(0.0, Math.min(1.0, listeningNeed));
-
-        return new double[]{grammarNeed, vocabNeed, listeningNeed};
+    private RatingUpdate calculateUpdate(AccountRatingState state, LessonFeatureRow lesson,
+                                         int lessonDifficulty, boolean isPassed) {
+        // Coi User và Lesson là 2 đối thủ trong trận đấu (xem RatingMath)
+        RatingMath.Result result = RatingMath.apply(state.getEloRating(), lessonDifficulty,
+                state.getGrammarProficiency(), state.getVocabProficiency(), state.getListeningProficiency(),
+                lesson.grammarWeight(), lesson.vocabWeight(), lesson.listeningWeight(), isPassed);
+        return new RatingUpdate(result.oldUserElo(),
+                new AccountFeatureRow(state.getId(), result.newUserElo(), result.grammar(), result.vocab(),
+                        result.listening()),
+                result.lessonDifficultyDelta(), lessonDifficulty);
     }
 
-    private double[] createLessonVector(Lesson lesson) {
-        double grammarWeight = lesson.getGrammarWeight() != null 
-                ? lesson.getGrammarWeight() 
-                : 0.33;
-        double vocabWeight = lesson.getVocabWeight() != null 
-                ? lesson.getVocabWeight() 
-                : 0.33;
-        double listeningWeight = lesson.getListeningWeight() != null 
-                ? lesson.getListeningWeight() 
-                : 0.34;
-
-        // Đảm bảo giá trị hợp lệ
-        grammarWeight = Math.max(0.0, Math.min(1.0, grammarWeight));
-        vocabWeight = Math.max(0.0, Math.min(1.0, vocabWeight));
-        listeningWeight = Math.max(0.0, Math.min(1.0, listeningWeight));
-
-        return new double[]{grammarWeight, vocabWeight, listeningWeight};
+    private void recordAttempt(Long accountId, Long lessonId, boolean isPassed, RatingUpdate update) {
+        // Không INSERT ngay: nhật ký được gom và ghi theo lô sau khi commit
+        practiceAttemptLog.record(accountId, lessonId, isPassed, update.oldElo(), update.lessonDifficulty(),
+                LocalDateTime.now());
     }
 
-    @Transactional
-    public void processLessonResult(Long accountId, Long lessonId, boolean isPassed) {
-        // Lấy Account và Lesson
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found with id: " + accountId));
-        
-        Lesson lesson = lessonRepository.findById(lessonId)
-                .orElseThrow(() -> new RuntimeException("Lesson not found with id: " + lessonId));
-
-        // Khởi tạo giá trị mặc định nếu null
-        int userElo = account.getEloRating() != null ? account.getEloRating() : 1500;
-        int lessonDifficulty = lesson.getDifficultyRating() != null 
-                ? lesson.getDifficultyRating() 
-                : 1500;
-
-        // =================================================================
-        // PHẦN 1: CẬP NHẬT ELO RATING
-        // =================================================================
-        // Coi User và Lesson là 2 đối thủ trong trận đấu
-        // Nếu User pass: User thắng (actualScore = 1.0), Lesson thua (actualScore = 0.0)
-        // Nếu User fail: User thua (actualScore = 0.0), Lesson thắng (actualScore = 1.0)
-
-        double userActualScore = isPassed ? 1.0 : 0.0;
-        double lessonActualScore = isPassed ? 0.0 : 1.0;
-
-        // Cập nhật Elo Rating cho User
-        int newUserElo = HybridMathUtils.calculateNewElo(userElo, lessonDifficulty, userActualScore);
-        account.setEloRating(newUserElo);
-
-        // Cập nhật Difficulty Rating cho Lesson
-        int newLessonDifficulty = HybridMathUtils.calculateNewElo(
-                lessonDifficulty, 
-                userElo, 
-                lessonActualScore
-        );
-        lesson.setDifficultyRating(newLessonDifficulty);
-
-
-        double grammarWeight = lesson.getGrammarWeight() != null 
-                ? lesson.getGrammarWeight() 
-                : 0.33;
-        double vocabWeight = lesson.getVocabWeight() != null 
-                ? lesson.getVocabWeight() 
-                : 0.33;
-        double listeningWeight = lesson.getListeningWeight() != null 
-                ? lesson.getListeningWeight() 
-                : 0.34;
-
-        // Hệ số thay đổi proficiency (có thể điều chỉnh)
-        // Khi đúng: tăng proficiency
-        // Khi sai: giảm proficiency (với hệ số nhỏ hơn để tránh giảm quá nhanh)
-        double improvementFactor = isPassed ? 0.05 : -0.02; // Giảm ít hơn khi sai
-
-        // Cập nhật Grammar Proficiency
-        double currentGrammar = account.getGrammarProficiency() != null 
-                ? account.getGrammarProficiency() 
-                : 0.0;
-        double newGrammar = currentGrammar + (grammarWeight * improvementFactor);
-        account.setGrammarProficiency(Math.max(0.0, Math.min(1.0, newGrammar))); // Giới hạn trong [0.0, 1.0]
+    private boolean write(AccountRatingState state, RatingUpdate update) {
+        AccountFeatureRow features = update.features();
+        return accountRepository.compareAndSetRating(state.getId(), state.getRatingVersion(),
+                features.eloRating(), features.grammarProficiency(), features.vocabProficiency(),
+                features.listeningProficiency()) == 1;
+    }
 
-        // Cập nhật Vocab Proficiency
-        double currentVocab = account.getVocabProficiency() != null 
-                ? account.getVocabProficiency() 
-                : 0.0;
-        double newVocab = currentVocab + (vocabWeight * improvementFactor);
-        account.setVocabProficiency(Math.max(0.0, Math.min(1.0, newVocab)));
+    /**
+     * Kết quả một lượt cập nhật: Elo trước đó, giá trị mới của người dùng, delta độ khó của bài học và độ khó đã dùng.
+     */
+    public record RatingUpdate(int oldElo, AccountFeatureRow features, int lessonDifficultyDelta, int lessonDifficulty) {
 
-        // Cập nhật Listening Proficiency
-        double currentListening = account.getListeningProficiency() != null 
-                ? account.getListeningProficiency() 
-                : 0.0;
-        double newListening = currentListening + (listeningWeight * improvementFactor);
-        account.setListeningProficiency(Math.max(0.0, Math.min(1.0, newListening)));
+        public int newElo() {
+            return features.eloRating();
+        }
 
-        // Lưu tất cả thay đổi xuống database
-        accountRepository.save(account);
-        lessonRepository.save(lesson);
+        public int eloChange() {
+            return newElo() - oldElo;
+        }
     }
 
     public static class LessonWithSimilarity {
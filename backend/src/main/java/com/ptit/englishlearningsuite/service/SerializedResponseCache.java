@@ -0,0 +1,357 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.ptit.englishlearningsuite.dto.LessonDetailDTO;
+import com.ptit.englishlearningsuite.dto.PracticeQuestionDTO;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Cache phản hồi JSON đã tuần tự hóa của các endpoint đọc nội dung ({@code /api/lessons}, {@code /api/tests} và chi tiết
+ * của chúng): nội dung giống nhau với mọi người học nên JSON (UTF-8) và bản gzip được dựng một lần rồi ghi thẳng ra
+ * output stream, không qua Jackson ở mỗi lượt.
+ * <p>
+ * Riêng chi tiết bài học có đáp án MULTIPLE_CHOICE được xáo ở từng lượt: JSON được cắt thành các đoạn cố định và
+ * các đoạn đáp án (mỗi đáp án đã tuần tự hóa sẵn), mỗi lượt chỉ ghép lại theo một hoán vị ngẫu nhiên. Bản gzip không
+ * vá được nên các phản hồi này được gửi không nén.
+ * <p>
+ * Mục được khóa theo phiên bản nội dung ({@link ContentVersionService}) và gửi kèm ETag mạnh tương ứng; các đường
+ * CRUD của admin trong {@link LessonService}/{@link TestService} gọi {@link #invalidateLesson}/{@link #invalidateTest}
+ * để bỏ các bản cũ.
+ */
+@Service
+public class SerializedResponseCache {
+
+    private static final byte[] OPTIONS_PLACEHOLDER = "\"options\":null".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] OPTIONS_PREFIX = "\"options\":[".getBytes(StandardCharsets.UTF_8);
+    private static final long ALL = 0L;
+    // Phiên bản chưa biết (mục chưa có trong ContentVersionService): phản hồi không có ETag
+    private static final long UNVERSIONED = -1L;
+    private static final String GZIP_ETAG_SUFFIX = "-gzip";
+
+    @Value("${content.response-cache.max-bytes:67108864}")
+    private long maxBytes;
+
+    @Value("${content.response-cache.ttl-minutes:60}")
+    private long ttlMinutes;
+
+    // Phản hồi nhỏ hơn ngưỡng này không được nén (gzip không đáng)
+    @Value("${content.response-cache.gzip-min-bytes:1024}")
+    private int gzipMinBytes;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private Cache<Key, SerializedResponse> cache;
+
+    @PostConstruct
+    void init() {
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, SerializedResponse response) -> response.size())
+                .expireAfterWrite(ttlMinutes, TimeUnit.MINUTES)
+                .build();
+    }
+
+    // Mỗi mục được khóa theo phiên bản nội dung (xem ContentVersionService); version null = chưa biết
+    public SerializedResponse lessonList(long catalogVersion, Supplier<?> loader) {
+        return cache.get(new Key(Kind.LESSON_LIST, ALL, catalogVersion), key -> serialize(loader.get()));
+    }
+
+    public SerializedResponse testList(long catalogVersion, Supplier<?> loader) {
+        return cache.get(new Key(Kind.TEST_LIST, ALL, catalogVersion), key -> serialize(loader.get()));
+    }
+
+    public SerializedResponse testDetail(Long testId, Long version, Supplier<?> loader) {
+        return cache.get(new Key(Kind.TEST_DETAIL, testId, versionOf(version)), key -> serialize(loader.get()));
+    }
+
+    /**
+     * {@code loader} trả bản dựng sẵn dùng chung (thứ tự đáp án gốc, xem {@link LessonDetailCache#getShared}).
+     */
+    public SerializedResponse lessonDetail(Long lessonId, Long version, Supplier<LessonDetailDTO> loader) {
+        return cache.get(new Key(Kind.LESSON_DETAIL, lessonId, versionOf(version)),
+                key -> serializeLessonDetail(loader.get()));
+    }
+
+    /**
+     * Tuần tự hóa một phản hồi không được cache (ví dụ một trang danh mục) để ghi cùng cách với các mục trong cache.
+     */
+    public SerializedResponse uncached(Object value) {
+        return serialize(value);
+    }
+
+    /**
+     * ETag mạnh của một tài nguyên ở một phiên bản nội dung; null nếu chưa biết phiên bản.
+     * Bản gzip được gửi với ETag có hậu tố {@value #GZIP_ETAG_SUFFIX} (hai cách mã hóa là hai biểu diễn khác nhau).
+     */
+    public static String etag(String resource, Long version) {
+        return version != null ? "\"" + resource + "-v" + Long.toUnsignedString(version, 36) + "\"" : null;
+    }
+
+    /**
+     * Nếu {@code If-None-Match} khớp {@code etag} (bản thường hoặc bản gzip) thì trả 304 và true.
+     */
+    public static boolean notModified(String etag, HttpServletRequest request, HttpServletResponse response) {
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (etag == null || ifNoneMatch == null) {
+            return false;
+        }
+        String gzipEtag = gzipEtagOf(etag);
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            // Khớp yếu (bỏ W/) như RFC 9110 yêu cầu cho If-None-Match
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzipEtag)) {
+                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                response.setHeader(HttpHeaders.ETAG, tag.equals(gzipEtag) ? gzipEtag : etag);
+                response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Bỏ danh sách bài học và chi tiết của bài; trong giao dịch thì bỏ thêm lần nữa sau khi commit
+     * (cùng lý do với {@link LessonDetailCache#invalidate}).
+     */
+    public void invalidateLesson(Long lessonId) {
+        invalidate(Kind.LESSON_LIST, Kind.LESSON_DETAIL, lessonId);
+    }
+
+    public void invalidateTest(Long testId) {
+        invalidate(Kind.TEST_LIST, Kind.TEST_DETAIL, testId);
+    }
+
+    // Bỏ mọi phiên bản của danh sách và của mục (các phiên bản cũ không còn được hỏi tới)
+    private void invalidate(Kind list, Kind detail, Long id) {
+        Predicate<Key> stale = key -> key.kind() == list || (key.kind() == detail && id != null && key.id() == id);
+        AfterCommit.runNowAndAfterCommit(() -> cache.asMap().keySet().removeIf(stale));
+    }
+
+    private static long versionOf(Long version) {
+        return version != null ? version : UNVERSIONED;
+    }
+
+    private static String gzipEtagOf(String etag) {
+        return etag.substring(0, etag.length() - 1) + GZIP_ETAG_SUFFIX + "\"";
+    }
+
+    private SerializedResponse serialize(Object value) {
+        byte[] json = toJson(value);
+        return new SerializedResponse(new byte[][]{json}, new byte[0][][], gzipOf(json));
+    }
+
+    /**
+     * Tuần tự hóa một bản sao có {@code "options":null} ở mỗi câu MULTIPLE_CHOICE, rồi cắt JSON tại các chỗ đó;
+     * đáp án của từng câu được tuần tự hóa riêng theo đúng thứ tự câu hỏi.
+     */
+    private SerializedResponse serializeLessonDetail(LessonDetailDTO shared) {
+        List<byte[][]> shuffled = new ArrayList<>();
+        for (PracticeQuestionDTO question : shared.getPracticeQuestions()) {
+            if (LessonDetailCache.isShuffled(question)) {
+                byte[][] options = new byte[question.getOptions().size()][];
+                for (int i = 0; i < options.length; i++) {
+                    options[i] = toJson(question.getOptions().get(i));
+                }
+                shuffled.add(options);
+            }
+        }
+        byte[] template = toJson(LessonDetailCache.copyWithOptions(shared, options -> null));
+        if (shuffled.isEmpty()) {
+            return new SerializedResponse(new byte[][]{template}, new byte[0][][], gzipOf(template));
+        }
+
+        byte[][] fixed = new byte[shuffled.size() + 1][];
+        int from = 0;
+        for (int i = 0; i < shuffled.size(); i++) {
+            int at = indexOf(template, OPTIONS_PLACEHOLDER, from);
+            if (at < 0) {
+                throw new IllegalStateException("Lesson " + shared.getId() + ": expected " + shuffled.size()
+                        + " shuffled option lists, found " + i);
+            }
+            fixed[i] = slice(template, from, at);
+            from = at + OPTIONS_PLACEHOLDER.length;
+        }
+        fixed[shuffled.size()] = slice(template, from, template.length);
+        return new SerializedResponse(fixed, shuffled.toArray(new byte[0][][]), null);
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Cannot serialize " + value.getClass().getSimpleName(), e);
+        }
+    }
+
+    private byte[] gzipOf(byte[] json) {
+        if (json.length < gzipMinBytes) {
+            return null;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(json.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(json);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        byte[] compressed = out.toByteArray();
+        return compressed.length < json.length ? compressed : null;
+    }
+
+    private static int indexOf(byte[] source, byte[] target, int from) {
+        outer:
+        for (int i = from; i <= source.length - target.length; i++) {
+            for (int j = 0; j < target.length; j++) {
+                if (source[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] slice(byte[] source, int from, int to) {
+        byte[] part = new byte[to - from];
+        System.arraycopy(source, from, part, 0, part.length);
+        return part;
+    }
+
+    private enum Kind {
+        LESSON_LIST, LESSON_DETAIL, TEST_LIST, TEST_DETAIL
+    }
+
+    private record Key(Kind kind, long id, long version) {
+    }
+
+    /**
+     * Một phản hồi đã tuần tự hóa: {@code fixed[0] options[0] fixed[1] ... fixed[n]}, trong đó {@code options[i]} là
+     * mảng JSON ghép từ các đáp án của câu xáo thứ i theo một hoán vị mới ở mỗi lượt. Không có câu xáo thì
+     * {@code fixed[0]} là toàn bộ JSON và {@code gzip} (nếu có) là bản nén của nó.
+     */
+    public static final class SerializedResponse {
+
+        private final byte[][] fixed;
+        private final byte[][][] options;
+        private final byte[] gzip;
+        private final int length;
+
+        private SerializedResponse(byte[][] fixed, byte[][][] options, byte[] gzip) {
+            this.fixed = fixed;
+            this.options = options;
+            this.gzip = gzip;
+            int total = 0;
+            for (byte[] part : fixed) {
+                total += part.length;
+            }
+            for (byte[][] list : options) {
+                // "options":[ ... ] và dấu phẩy giữa các đáp án
+                total += OPTIONS_PREFIX.length + 1 + Math.max(0, list.length - 1);
+                for (byte[] option : list) {
+                    total += option.length;
+                }
+            }
+            this.length = total;
+        }
+
+        /**
+         * Ghi thẳng ra response (bản gzip nếu có và client chấp nhận), kèm {@code etag} nếu khác null.
+         */
+        public void writeTo(HttpServletRequest request, HttpServletResponse response, String etag) throws IOException {
+            response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            boolean gzipped = gzip != null && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            if (etag != null) {
+                response.setHeader(HttpHeaders.ETAG, gzipped ? gzipEtagOf(etag) : etag);
+                // Luôn hỏi lại bằng If-None-Match; nội dung đổi khi admin sửa
+                response.setHeader(HttpHeaders.CACHE_CONTROL, "no-cache");
+            }
+            if (gzipped) {
+                response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+                response.setContentLength(gzip.length);
+                response.getOutputStream().write(gzip);
+                return;
+            }
+            response.setContentLength(length);
+            if (options.length == 0) {
+                response.getOutputStream().write(fixed[0]);
+                return;
+            }
+            response.getOutputStream().write(assemble());
+        }
+
+        private byte[] assemble() {
+            byte[] out = new byte[length];
+            int pos = put(out, 0, fixed[0]);
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            for (int q = 0; q < options.length; q++) {
+                byte[][] list = options[q];
+                int[] order = new int[list.length];
+                for (int i = 0; i < order.length; i++) {
+                    // Fisher-Yates từng bước khi điền (inside-out)
+                    int j = random.nextInt(i + 1);
+                    order[i] = order[j];
+                    order[j] = i;
+                }
+                pos = put(out, pos, OPTIONS_PREFIX);
+                for (int i = 0; i < order.length; i++) {
+                    if (i > 0) {
+                        out[pos++] = ',';
+                    }
+                    pos = put(out, pos, list[order[i]]);
+                }
+                out[pos++] = ']';
+                pos = put(out, pos, fixed[q + 1]);
+            }
+            return out;
+        }
+
+        private int size() {
+            return length + (gzip != null ? gzip.length : 0);
+        }
+
+        private static int put(byte[] out, int pos, byte[] part) {
+            System.arraycopy(part, 0, out, pos, part.length);
+            return pos + part.length;
+        }
+
+        private static boolean acceptsGzip(String acceptEncoding) {
+            if (acceptEncoding == null) {
+                return false;
+            }
+            for (String token : acceptEncoding.split(",")) {
+                String[] parts = token.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase("gzip")) {
+                    return parts.length < 2 || !parts[1].replace(" ", "").matches("q=0(\\.0*)?");
+                }
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.entity.LessonProgress;
+import com.ptit.englishlearningsuite.entity.StatisticsCounter;
+import com.ptit.englishlearningsuite.entity.Test;
+import com.ptit.englishlearningsuite.entity.TestProgress;
+import com.ptit.englishlearningsuite.entity.TopKDimension;
+import com.ptit.englishlearningsuite.repository.AccountStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.LessonStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.StatisticsCounterRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestStatisticsRepository;
+import com.ptit.englishlearningsuite.util.AfterCommit;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Duy trì lớp số liệu tổng hợp (bộ đếm toàn hệ thống, số liệu theo bài học/bài kiểm tra/người dùng).
+ * Mỗi lần ghi tiến độ chỉ cộng phần chênh lệch (delta) giữa trạng thái cũ và mới,
+ * nhờ vậy StatisticsService không cần quét lại toàn bộ bảng lesson_progress/test_progress.
+ * Bảng xếp hạng XP và sketch Top-K trong bộ nhớ chỉ được cộng sau khi commit, để lượt ghi bị rollback không làm
+ * chúng lệch khỏi DB.
+ */
+@Service
+public class StatisticsAggregateService {
+
+    public static final String LESSON_COMPLETIONS = "lesson.completions";
+    public static final String LESSON_SCORE_SUM = "lesson.score_sum";
+    public static final String LESSON_TIME_SPENT = "lesson.time_spent";
+    public static final String TEST_COMPLETIONS = "test.completions";
+    public static final String TEST_SCORE_SUM = "test.score_sum";
+    public static final String TEST_TIME_SPENT = "test.time_spent";
+
+    private static final List<String> COUNTER_KEYS = List.of(
+            LESSON_COMPLETIONS, LESSON_SCORE_SUM, LESSON_TIME_SPENT,
+            TEST_COMPLETIONS, TEST_SCORE_SUM, TEST_TIME_SPENT);
+
+    @Value("${statistics.aggregate.bootstrap.enabled:true}")
+    private boolean bootstrapEnabled;
+
+    @Autowired
+    private StatisticsCounterRepository statisticsCounterRepository;
+
+    @Autowired
+    private LessonStatisticsRepository lessonStatisticsRepository;
+
+    @Autowired
+    private TestStatisticsRepository testStatisticsRepository;
+
+    @Autowired
+    private AccountStatisticsRepository accountStatisticsRepository;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TestProgressRepository testProgressRepository;
+
+    @Autowired
+    private PopularityTopKService popularityTopKService;
+
+    @Autowired
+    private XpLeaderboardService xpLeaderboardService;
+
+    /**
+     * Ghi nhận thay đổi của một LessonProgress. {@code before} là trạng thái trước khi ghi đè
+     * (lấy bằng {@link Contribution#ofLesson} trước khi set giá trị mới).
+     */
+    @Transactional
+    public void applyLessonProgress(Long accountId, Lesson lesson, Contribution before, Contribution after) {
+        long completions = after.count() - before.count();
+        long scoreSum = after.score() - before.score();
+        long timeSpent = after.timeSpentSeconds() - before.timeSpentSeconds();
+        if (completions == 0 && scoreSum == 0 && timeSpent == 0) {
+            return;
+        }
+
+        lessonStatisticsRepository.applyDelta(lesson.getId(), lesson.getLevel(), completions, scoreSum, timeSpent);
+        increment(LESSON_COMPLETIONS, completions);
+        increment(LESSON_SCORE_SUM, scoreSum);
+        increment(LESSON_TIME_SPENT, timeSpent);
+        if (completions != 0) {
+            accountStatisticsRepository.applyDelta(accountId, completions, 0, 0);
+        }
+        Long lessonId = lesson.getId();
+        AfterCommit.run(() -> {
+            xpLeaderboardService.apply(accountId, completions, 0, 0);
+            popularityTopKService.record(TopKDimension.LESSON, lessonId, completions, null);
+            popularityTopKService.record(TopKDimension.USER, accountId, completions, null);
+        });
+    }
+
+    @Transactional
+    public void applyTestProgress(Long accountId, Test test, Contribution before, Contribution after) {
+        long completions = after.count() - before.count();
+        long scoreSum = after.score() - before.score();
+        long timeSpent = after.timeSpentSeconds() - before.timeSpentSeconds();
+        if (completions == 0 && scoreSum == 0 && timeSpent == 0) {
+            return;
+        }
+
+        testStatisticsRepository.applyDelta(test.getId(), test.getLevel(), completions, scoreSum, timeSpent);
+        increment(TEST_COMPLETIONS, completions);
+        increment(TEST_SCORE_SUM, scoreSum);
+        increment(TEST_TIME_SPENT, timeSpent);
+        accountStatisticsRepository.applyDelta(accountId, 0, completions, scoreSum);
+        Long testId = test.getId();
+        AfterCommit.run(() -> {
+            xpLeaderboardService.apply(accountId, 0, completions, scoreSum);
+            popularityTopKService.record(TopKDimension.TEST, testId, completions, null);
+            popularityTopKService.record(TopKDimension.USER, accountId, completions, null);
+        });
+    }
+
+    @Transactional
+    public void onLessonLevelChanged(Long lessonId, int level) {
+        lessonStatisticsRepository.updateLevel(lessonId, level);
+    }
+
+    @Transactional
+    public void onTestLevelChanged(Long testId, int level) {
+        testStatisticsRepository.updateLevel(testId, level);
+    }
+
+    @Transactional(readOnly = true)
+    public Map<String, Long> getCounters() {
+        Map<String, Long> counters = new HashMap<>();
+        COUNTER_KEYS.forEach(key -> counters.put(key, 0L));
+        for (StatisticsCounter counter : statisticsCounterRepository.findAllById(COUNTER_KEYS)) {
+            counters.put(counter.getCounterKey(), counter.getCounterValue());
+        }
+        return counters;
+    }
+
+    @Transactional(readOnly = true)
+    public boolean isEmpty() {
+        return statisticsCounterRepository.count() == 0;
+    }
+
+    /**
+     * Backfill ở lần khởi động đầu tiên: bảng statistics_counters còn trống nhưng đã có dữ liệu tiến độ từ trước.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(3)
+    @Transactional
+    public void bootstrap() {
+        if (bootstrapEnabled && isEmpty()
+                && (lessonProgressRepository.count() > 0 || testProgressRepository.count() > 0)) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Xây lại toàn bộ lớp tổng hợp từ bảng lesson_progress/test_progress (backfill).
+     * Nên chạy lúc ít người dùng: các lượt ghi đồng thời trong lúc rebuild có thể bị tính thiếu/thừa.
+     */
+    @Transactional
+    public void rebuild() {
+        statisticsCounterRepository.deleteAllInBatch();
+        lessonStatisticsRepository.deleteAllInBatch();
+        testStatisticsRepository.deleteAllInBatch();
+        accountStatisticsRepository.deleteAllInBatch();
+
+        lessonStatisticsRepository.rebuildFromProgress();
+        testStatisticsRepository.rebuildFromProgress();
+        accountStatisticsRepository.rebuildFromProgress();
+        statisticsCounterRepository.rebuildFromStatistics();
+    }
+
+    private void increment(String key, long delta) {
+        if (delta != 0) {
+            statisticsCounterRepository.increment(key, delta);
+        }
+    }
+
+    /**
+     * Phần đóng góp của một bản ghi tiến độ vào số liệu tổng hợp.
+     */
+    public record Contribution(long count, long score, long timeSpentSeconds) {
+
+        public static final Contribution NONE = new Contribution(0, 0, 0);
+
+        /** Bài học chỉ được tính khi đã lưu và đã hoàn thành. */
+        public static Contribution ofLesson(LessonProgress progress) {
+            if (progress == null || progress.getId() == null || !progress.isCompleted()) {
+                return NONE;
+            }
+            return new Contribution(1, progress.getScore(), seconds(progress.getTimeSpentSeconds()));
+        }
+
+        /** Mọi TestProgress đã lưu đều được tính là một lượt hoàn thành. */
+        public static Contribution ofTest(TestProgress progress) {
+            if (progress == null || progress.getId() == null) {
+                return NONE;
+            }
+            return new Contribution(1, progress.getScore(), seconds(progress.getTimeSpentSeconds()));
+        }
+
+        private static long seconds(Integer timeSpentSeconds) {
+            return timeSpentSeconds != null ? timeSpentSeconds : 0L;
+        }
+    }
+}
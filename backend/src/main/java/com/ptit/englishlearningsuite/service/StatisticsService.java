@@ -3,23 +3,34 @@ package com.ptit.englishlearningsuite.service;
 import com.ptit.englishlearningsuite.dto.DetailedStatisticsDTO;
 import com.ptit.englishlearningsuite.dto.StatisticsDTO;
 import com.ptit.englishlearningsuite.entity.Account;
+import com.ptit.englishlearningsuite.entity.AccountStatistics;
+import com.ptit.englishlearningsuite.entity.ActivityMetric;
 import com.ptit.englishlearningsuite.entity.Lesson;
-import com.ptit.englishlearningsuite.entity.LessonProgress;
+import com.ptit.englishlearningsuite.entity.LessonStatistics;
 import com.ptit.englishlearningsuite.entity.Test;
-import com.ptit.englishlearningsuite.entity.TestProgress;
+import com.ptit.englishlearningsuite.entity.TestStatistics;
+import com.ptit.englishlearningsuite.entity.TopKDimension;
 import com.ptit.englishlearningsuite.repository.*;
+import com.ptit.englishlearningsuite.util.SpaceSavingTopK;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.time.LocalDate;
-import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
 
 @Service
 public class StatisticsService {
 
+    private static final int DEFAULT_DETAILED_DAYS = 30;
+    private static final int MAX_DETAILED_DAYS = 365;
+    private static final DateTimeFormatter LABEL_FORMAT = DateTimeFormatter.ofPattern("dd/MM");
+    private static final int TOP_N = 10;
+    // Số ứng viên lấy từ sketch Top-K trước khi đối chiếu số chính xác (số đếm của sketch là cận trên)
+    private static final int TOP_CANDIDATES = TOP_N * 2;
+
     @Autowired
     private AccountRepository accountRepository;
 
@@ -33,10 +44,28 @@ public class StatisticsService {
     private MediaAssetRepository mediaAssetRepository;
 
     @Autowired
-    private LessonProgressRepository lessonProgressRepository;
+    private LessonStatisticsRepository lessonStatisticsRepository;
+
+    @Autowired
+    private TestStatisticsRepository testStatisticsRepository;
+
+    @Autowired
+    private AccountStatisticsRepository accountStatisticsRepository;
+
+    @Autowired
+    private StatisticsAggregateService statisticsAggregateService;
+
+    @Autowired
+    private DailyActivityRollupService dailyActivityRollupService;
+
+    @Autowired
+    private ActiveUserIndexService activeUserIndexService;
+
+    @Autowired
+    private PopularityTopKService popularityTopKService;
 
     @Autowired
-    private TestProgressRepository testProgressRepository;
+    private XpLeaderboardService xpLeaderboardService;
 
     public StatisticsDTO getStatistics() {
         StatisticsDTO stats = new StatisticsDTO();
@@ -48,485 +77,350 @@ public class StatisticsService {
         stats.setTotalTests(testRepository.count());
         stats.setTotalMediaAssets(mediaAssetRepository.count());
 
-        // Lấy tất cả progress
-        List<LessonProgress> allLessonProgress = lessonProgressRepository.findAll();
-        List<TestProgress> allTestProgress = testProgressRepository.findAll();
+        // Active users: người dùng đã hoàn thành ít nhất 1 bài học hoặc test
+        stats.setActiveUsers(accountStatisticsRepository.countByTotalCompletionsGreaterThan(0));
 
-        // Tính active users (người dùng đã hoàn thành ít nhất 1 bài học hoặc test)
-        Set<Long> activeUserIds = new HashSet<>();
-        allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .forEach(lp -> activeUserIds.add(lp.getAccount().getId()));
-        allTestProgress.forEach(tp -> activeUserIds.add(tp.getAccount().getId()));
-        stats.setActiveUsers(activeUserIds.size());
+        // Bộ đếm tổng hợp (được cộng dồn khi ghi tiến độ)
+        Map<String, Long> counters = statisticsAggregateService.getCounters();
 
         // Thống kê bài học
-        List<LessonProgress> completedLessons = allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .collect(Collectors.toList());
-        
-        stats.setTotalLessonCompletions(completedLessons.size());
-        
-        if (!completedLessons.isEmpty()) {
-            double avgScore = completedLessons.stream()
-                    .mapToInt(LessonProgress::getScore)
-                    .average()
-                    .orElse(0.0);
-            stats.setAverageLessonScore(Math.round(avgScore * 100.0) / 100.0);
-            
-            long totalTime = completedLessons.stream()
-                    .filter(lp -> lp.getTimeSpentSeconds() != null)
-                    .mapToLong(LessonProgress::getTimeSpentSeconds)
-                    .sum();
-            stats.setTotalLessonTimeSpent(totalTime);
-            
-            // Thống kê theo cấp độ
-            Map<Integer, Long> completionsByLevel = completedLessons.stream()
-                    .collect(Collectors.groupingBy(
-                            lp -> lp.getLesson().getLevel(),
-                            Collectors.counting()
-                    ));
-            stats.setLessonCompletionsByLevel(completionsByLevel);
-        } else {
-            stats.setAverageLessonScore(0.0);
-            stats.setTotalLessonTimeSpent(0);
-            stats.setLessonCompletionsByLevel(new HashMap<>());
-        }
+        long lessonCompletions = counters.get(StatisticsAggregateService.LESSON_COMPLETIONS);
+        stats.setTotalLessonCompletions(lessonCompletions);
+        stats.setAverageLessonScore(average(counters.get(StatisticsAggregateService.LESSON_SCORE_SUM), lessonCompletions));
+        stats.setTotalLessonTimeSpent(counters.get(StatisticsAggregateService.LESSON_TIME_SPENT));
+        stats.setLessonCompletionsByLevel(lessonStatisticsRepository.sumCompletionsByLevel().stream()
+                .collect(Collectors.toMap(LessonStatisticsRepository.LevelCompletions::getLevel,
+                        LessonStatisticsRepository.LevelCompletions::getCompletions)));
 
         // Thống kê bài kiểm tra
-        stats.setTotalTestCompletions(allTestProgress.size());
-        
-        if (!allTestProgress.isEmpty()) {
-            double avgScore = allTestProgress.stream()
-                    .mapToInt(TestProgress::getScore)
-                    .average()
-                    .orElse(0.0);
-            stats.setAverageTestScore(Math.round(avgScore * 100.0) / 100.0);
-            
-            long totalTime = allTestProgress.stream()
-                    .filter(tp -> tp.getTimeSpentSeconds() != null)
-                    .mapToLong(TestProgress::getTimeSpentSeconds)
-                    .sum();
-            stats.setTotalTestTimeSpent(totalTime);
-            
-            // Thống kê theo cấp độ
-            Map<Integer, Long> completionsByLevel = allTestProgress.stream()
-                    .collect(Collectors.groupingBy(
-                            tp -> tp.getTest().getLevel(),
-                            Collectors.counting()
-                    ));
-            stats.setTestCompletionsByLevel(completionsByLevel);
-        } else {
-            stats.setAverageTestScore(0.0);
-            stats.setTotalTestTimeSpent(0);
-            stats.setTestCompletionsByLevel(new HashMap<>());
-        }
+        long testCompletions = counters.get(StatisticsAggregateService.TEST_COMPLETIONS);
+        stats.setTotalTestCompletions(testCompletions);
+        stats.setAverageTestScore(average(counters.get(StatisticsAggregateService.TEST_SCORE_SUM), testCompletions));
+        stats.setTotalTestTimeSpent(counters.get(StatisticsAggregateService.TEST_TIME_SPENT));
+        stats.setTestCompletionsByLevel(testStatisticsRepository.sumCompletionsByLevel().stream()
+                .collect(Collectors.toMap(TestStatisticsRepository.LevelCompletions::getLevel,
+                        TestStatisticsRepository.LevelCompletions::getCompletions)));
 
         // Top bài học phổ biến
-        Map<Lesson, List<LessonProgress>> lessonProgressMap = completedLessons.stream()
-                .collect(Collectors.groupingBy(LessonProgress::getLesson));
-        
-        List<StatisticsDTO.LessonStatisticsDTO> topLessons = lessonProgressMap.entrySet().stream()
-                .map(entry -> {
-                    Lesson lesson = entry.getKey();
-                    List<LessonProgress> progresses = entry.getValue();
+        List<LessonStatistics> lessonStatistics = topLessonStatistics();
+        Map<Long, Lesson> lessonsById = lessonRepository.findAllById(lessonStatistics.stream()
+                        .map(LessonStatistics::getLessonId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Lesson::getId, lesson -> lesson));
+
+        List<StatisticsDTO.LessonStatisticsDTO> topLessons = lessonStatistics.stream()
+                .filter(ls -> lessonsById.containsKey(ls.getLessonId()))
+                .map(ls -> {
+                    Lesson lesson = lessonsById.get(ls.getLessonId());
                     StatisticsDTO.LessonStatisticsDTO dto = new StatisticsDTO.LessonStatisticsDTO();
                     dto.setLessonId(lesson.getId());
                     dto.setLessonName(lesson.getName());
                     dto.setLessonNumber(lesson.getLessonNumber());
                     dto.setLevel(lesson.getLevel());
-                    dto.setCompletionCount(progresses.size());
-                    double avgScore = progresses.stream()
-                            .mapToInt(LessonProgress::getScore)
-                            .average()
-                            .orElse(0.0);
-                    dto.setAverageScore(Math.round(avgScore * 100.0) / 100.0);
+                    dto.setCompletionCount(ls.getCompletionCount());
+                    dto.setAverageScore(average(ls.getScoreSum(), ls.getCompletionCount()));
                     return dto;
                 })
-                .sorted((a, b) -> Long.compare(b.getCompletionCount(), a.getCompletionCount()))
-                .limit(10)
                 .collect(Collectors.toList());
         stats.setTopLessons(topLessons);
 
         // Top bài kiểm tra phổ biến
-        Map<Test, List<TestProgress>> testProgressMap = allTestProgress.stream()
-                .collect(Collectors.groupingBy(TestProgress::getTest));
-        
-        List<StatisticsDTO.TestStatisticsDTO> topTests = testProgressMap.entrySet().stream()
-                .map(entry -> {
-                    Test test = entry.getKey();
-                    List<TestProgress> progresses = entry.getValue();
+        List<TestStatistics> testStatistics = topTestStatistics();
+        Map<Long, Test> testsById = testRepository.findAllById(testStatistics.stream()
+                        .map(TestStatistics::getTestId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Test::getId, test -> test));
+
+        List<StatisticsDTO.TestStatisticsDTO> topTests = testStatistics.stream()
+                .filter(ts -> testsById.containsKey(ts.getTestId()))
+                .map(ts -> {
+                    Test test = testsById.get(ts.getTestId());
                     StatisticsDTO.TestStatisticsDTO dto = new StatisticsDTO.TestStatisticsDTO();
                     dto.setTestId(test.getId());
                     dto.setTestName(test.getName());
                     dto.setLevel(test.getLevel());
-                    dto.setCompletionCount(progresses.size());
-                    double avgScore = progresses.stream()
-                            .mapToInt(TestProgress::getScore)
-                            .average()
-                            .orElse(0.0);
-                    dto.setAverageScore(Math.round(avgScore * 100.0) / 100.0);
+                    dto.setCompletionCount(ts.getCompletionCount());
+                    dto.setAverageScore(average(ts.getScoreSum(), ts.getCompletionCount()));
                     return dto;
                 })
-                .sorted((a, b) -> Long.compare(b.getCompletionCount(), a.getCompletionCount()))
-                .limit(10)
                 .collect(Collectors.toList());
         stats.setTopTests(topTests);
 
-        // Top người dùng
-        Map<Account, List<LessonProgress>> userLessonMap = completedLessons.stream()
-                .collect(Collectors.groupingBy(LessonProgress::getAccount));
-        
-        Map<Account, List<TestProgress>> userTestMap = allTestProgress.stream()
-                .collect(Collectors.groupingBy(TestProgress::getAccount));
-        
-        Set<Account> allActiveAccounts = new HashSet<>();
-        allActiveAccounts.addAll(userLessonMap.keySet());
-        allActiveAccounts.addAll(userTestMap.keySet());
-        
-        List<StatisticsDTO.UserStatisticsDTO> topUsers = allActiveAccounts.stream()
-                .map(account -> {
+        // Top người dùng (sắp xếp theo tổng số bài học + test đã hoàn thành)
+        List<AccountStatistics> accountStatistics = topAccountStatistics();
+        Map<Long, Account> accountsById = accountRepository.findAllById(accountStatistics.stream()
+                        .map(AccountStatistics::getAccountId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Account::getId, account -> account));
+
+        List<StatisticsDTO.UserStatisticsDTO> topUsers = accountStatistics.stream()
+                .filter(as -> accountsById.containsKey(as.getAccountId()))
+                .map(as -> {
+                    Account account = accountsById.get(as.getAccountId());
                     StatisticsDTO.UserStatisticsDTO dto = new StatisticsDTO.UserStatisticsDTO();
                     dto.setUserId(account.getId());
                     dto.setUsername(account.getUsername());
                     dto.setFullName(account.getFullName());
+                    dto.setCompletedLessons(as.getCompletedLessons());
+                    dto.setCompletedTests(as.getCompletedTests());
+                    dto.setAverageTestScore(average(as.getTestScoreSum(), as.getCompletedTests()));
+                    // Công thức XP: mỗi bài học hoàn thành = 10 XP, mỗi bài kiểm tra = 20 XP
+                    dto.setXp(as.getXp());
+                    return dto;
+                })
+                .collect(Collectors.toList());
+        stats.setTopUsers(topUsers);
 
-                    long completedLessonsCount = userLessonMap.getOrDefault(account, Collections.emptyList()).size();
-                    dto.setCompletedLessons(completedLessonsCount);
+        return stats;
+    }
 
-                    List<TestProgress> userTests = userTestMap.getOrDefault(account, Collections.emptyList());
-                    dto.setCompletedTests(userTests.size());
+    /**
+     * Top bài học toàn thời gian: ứng viên lấy từ sketch Top-K, số lượt chính xác lấy từ lesson_statistics.
+     */
+    private List<LessonStatistics> topLessonStatistics() {
+        return lessonStatisticsRepository.findAllById(candidateIds(TopKDimension.LESSON)).stream()
+                .filter(ls -> ls.getCompletionCount() > 0)
+                .sorted(Comparator.comparingLong(LessonStatistics::getCompletionCount).reversed())
+                .limit(TOP_N)
+                .collect(Collectors.toList());
+    }
 
-                    if (!userTests.isEmpty()) {
-                        double avgScore = userTests.stream()
-                                .mapToInt(TestProgress::getScore)
-                                .average()
-                                .orElse(0.0);
-                        dto.setAverageTestScore(Math.round(avgScore * 100.0) / 100.0);
-                    } else {
-                        dto.setAverageTestScore(0.0);
-                    }
+    private List<TestStatistics> topTestStatistics() {
+        return testStatisticsRepository.findAllById(candidateIds(TopKDimension.TEST)).stream()
+                .filter(ts -> ts.getCompletionCount() > 0)
+                .sorted(Comparator.comparingLong(TestStatistics::getCompletionCount).reversed())
+                .limit(TOP_N)
+                .collect(Collectors.toList());
+    }
 
-                    // Công thức XP đơn giản: mỗi bài học hoàn thành = 10 XP, mỗi bài kiểm tra = 20 XP
-                    long xp = completedLessonsCount * 10L + userTests.size() * 20L;
-                    dto.setXp(xp);
+    private List<AccountStatistics> topAccountStatistics() {
+        return accountStatisticsRepository.findAllById(candidateIds(TopKDimension.USER)).stream()
+                .filter(as -> as.getTotalCompletions() > 0)
+                .sorted(Comparator.comparingLong(AccountStatistics::getTotalCompletions).reversed())
+                .limit(TOP_N)
+                .collect(Collectors.toList());
+    }
 
-                    return dto;
-                })
-                .sorted((a, b) -> {
-                    // Sắp xếp theo tổng số bài học + test đã hoàn thành
-                    long totalA = a.getCompletedLessons() + a.getCompletedTests();
-                    long totalB = b.getCompletedLessons() + b.getCompletedTests();
-                    return Long.compare(totalB, totalA);
-                })
-                .limit(10)
+    private List<Long> candidateIds(TopKDimension dimension) {
+        return popularityTopKService.topAllTime(dimension, TOP_CANDIDATES).stream()
+                .map(SpaceSavingTopK.Entry::item)
                 .collect(Collectors.toList());
-        stats.setTopUsers(topUsers);
+    }
 
-        return stats;
+    public void rebuildAggregates() {
+        statisticsAggregateService.rebuild();
+        popularityTopKService.rebuild();
+        xpLeaderboardService.rebuild();
+    }
+
+    private double average(long sum, long count) {
+        if (count <= 0) {
+            return 0.0;
+        }
+        return Math.round(((double) sum / count) * 100.0) / 100.0;
     }
 
     public DetailedStatisticsDTO getDetailedStatistics() {
+        return getDetailedStatistics(DEFAULT_DETAILED_DAYS);
+    }
+
+    /**
+     * Thống kê chi tiết cho cửa sổ {@code days} ngày gần nhất (tính cả hôm nay).
+     * Các chuỗi theo ngày đọc từ bảng daily_activity_rollup nên chỉ tốn tối đa days * số chỉ số dòng.
+     */
+    public DetailedStatisticsDTO getDetailedStatistics(int days) {
+        int windowDays = Math.max(1, Math.min(days, MAX_DETAILED_DAYS));
         DetailedStatisticsDTO detailed = new DetailedStatisticsDTO();
-        
-        // Lấy dữ liệu 30 ngày gần nhất
-        LocalDateTime endDate = LocalDateTime.now();
-        LocalDateTime startDate = endDate.minusDays(30);
-        
-        // 1. User growth over time (30 ngày)
-        List<DetailedStatisticsDTO.TimeSeriesData> userGrowth = new ArrayList<>();
-        for (int i = 29; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            LocalDateTime dayStart = date.atStartOfDay();
-            LocalDateTime dayEnd = date.plusDays(1).atStartOfDay();
-            
-            long newUsers = accountRepository.countByCreatedAtBetween(dayStart, dayEnd);
-            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
-            data.setDate(date.format(DateTimeFormatter.ISO_LOCAL_DATE));
-            data.setValue(newUsers);
-            data.setLabel(date.format(DateTimeFormatter.ofPattern("dd/MM")));
-            userGrowth.add(data);
-        }
-        detailed.setUserGrowth(userGrowth);
-        
-        // 2. Lesson completions over time
-        List<DetailedStatisticsDTO.TimeSeriesData> lessonCompletions = new ArrayList<>();
-        List<LessonProgress> allLessonProgress = lessonProgressRepository.findAll();
-        Map<String, Long> lessonCompletionsByDate = allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .filter(lp -> lp.getCompletedAt() != null)
-                .filter(lp -> lp.getCompletedAt().isAfter(startDate))
-                .collect(Collectors.groupingBy(
-                        lp -> lp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE),
-                        Collectors.counting()
-                ));
-        
-        for (int i = 29; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            String dateStr = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
-            data.setDate(dateStr);
-            data.setValue(lessonCompletionsByDate.getOrDefault(dateStr, 0L));
-            data.setLabel(date.format(DateTimeFormatter.ofPattern("dd/MM")));
-            lessonCompletions.add(data);
-        }
-        detailed.setLessonCompletionsOverTime(lessonCompletions);
-        
-        // 3. Test completions over time
-        List<DetailedStatisticsDTO.TimeSeriesData> testCompletions = new ArrayList<>();
-        List<TestProgress> allTestProgress = testProgressRepository.findAll();
-        Map<String, Long> testCompletionsByDate = allTestProgress.stream()
-                .filter(tp -> tp.getCompletedAt() != null)
-                .filter(tp -> tp.getCompletedAt().isAfter(startDate))
-                .collect(Collectors.groupingBy(
-                        tp -> tp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE),
-                        Collectors.counting()
-                ));
-        
-        for (int i = 29; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            String dateStr = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
-            data.setDate(dateStr);
-            data.setValue(testCompletionsByDate.getOrDefault(dateStr, 0L));
-            data.setLabel(date.format(DateTimeFormatter.ofPattern("dd/MM")));
-            testCompletions.add(data);
-        }
-        detailed.setTestCompletionsOverTime(testCompletions);
-        
-        // 4. Daily active users (users who completed lesson or test on that day)
-        List<DetailedStatisticsDTO.TimeSeriesData> dailyActiveUsers = new ArrayList<>();
-        Map<String, Set<Long>> activeUsersByDate = new HashMap<>();
-        
-        allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(startDate))
-                .forEach(lp -> {
-                    String dateStr = lp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
-                    activeUsersByDate.computeIfAbsent(dateStr, k -> new HashSet<>())
-                            .add(lp.getAccount().getId());
-                });
-        
-        allTestProgress.stream()
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(startDate))
-                .forEach(tp -> {
-                    String dateStr = tp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
-                    activeUsersByDate.computeIfAbsent(dateStr, k -> new HashSet<>())
-                            .add(tp.getAccount().getId());
-                });
-        
-        for (int i = 29; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            String dateStr = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
-            data.setDate(dateStr);
-            data.setValue((long) activeUsersByDate.getOrDefault(dateStr, new HashSet<>()).size());
-            data.setLabel(date.format(DateTimeFormatter.ofPattern("dd/MM")));
-            dailyActiveUsers.add(data);
-        }
+
+        LocalDate today = LocalDate.now();
+        LocalDate startDay = today.minusDays(windowDays - 1L);
+
+        Map<LocalDate, Map<ActivityMetric, Long>> series = dailyActivityRollupService.getSeries(startDay, today);
+
+        // 1-3. Người dùng mới, lượt hoàn thành bài học/bài kiểm tra theo ngày
+        detailed.setUserGrowth(toTimeSeries(series, metrics -> metrics.get(ActivityMetric.NEW_USERS)));
+        detailed.setLessonCompletionsOverTime(toTimeSeries(series, metrics -> metrics.get(ActivityMetric.LESSON_COMPLETIONS)));
+        detailed.setTestCompletionsOverTime(toTimeSeries(series, metrics -> metrics.get(ActivityMetric.TEST_COMPLETIONS)));
+
+        // 4. DAU theo ngày - cardinality của bitmap từng ngày (đã gồm cả hôm nay)
+        List<DetailedStatisticsDTO.TimeSeriesData> dailyActiveUsers =
+                toTimeSeries(series.keySet(), activeUserIndexService::countActive);
         detailed.setDailyActiveUsers(dailyActiveUsers);
-        
+
         // 5. Average study time per day (in hours)
-        List<DetailedStatisticsDTO.TimeSeriesData> avgStudyTime = new ArrayList<>();
-        Map<String, List<Long>> studyTimeByDate = new HashMap<>();
-        
-        allLessonProgress.stream()
-                .filter(lp -> lp.getTimeSpentSeconds() != null && lp.getTimeSpentSeconds() > 0)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(startDate))
-                .forEach(lp -> {
-                    String dateStr = lp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
-                    studyTimeByDate.computeIfAbsent(dateStr, k -> new ArrayList<>())
-                            .add(lp.getTimeSpentSeconds().longValue());
-                });
-        
-        allTestProgress.stream()
-                .filter(tp -> tp.getTimeSpentSeconds() != null && tp.getTimeSpentSeconds() > 0)
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(startDate))
-                .forEach(tp -> {
-                    String dateStr = tp.getCompletedAt().toLocalDate().format(DateTimeFormatter.ISO_LOCAL_DATE);
-                    studyTimeByDate.computeIfAbsent(dateStr, k -> new ArrayList<>())
-                            .add(tp.getTimeSpentSeconds().longValue());
-                });
-        
-        for (int i = 29; i >= 0; i--) {
-            LocalDate date = LocalDate.now().minusDays(i);
-            String dateStr = date.format(DateTimeFormatter.ISO_LOCAL_DATE);
-            List<Long> times = studyTimeByDate.getOrDefault(dateStr, new ArrayList<>());
-            double avgSeconds = times.isEmpty() ? 0 : times.stream().mapToLong(Long::longValue).average().orElse(0);
-            double avgHours = avgSeconds / 3600.0;
-            
-            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
-            data.setDate(dateStr);
-            data.setValue(Math.round(avgHours * 100)); // Store hours * 100 (e.g., 1.5 hours = 150)
-            data.setLabel(date.format(DateTimeFormatter.ofPattern("dd/MM")));
-            avgStudyTime.add(data);
-        }
-        detailed.setAverageStudyTimePerDay(avgStudyTime);
-        
-        // 6. Lesson completions by level
-        Map<Integer, Long> lessonCompletionsByLevel = allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .collect(Collectors.groupingBy(
-                        lp -> lp.getLesson().getLevel(),
-                        Collectors.counting()
-                ));
-        detailed.setLessonCompletionsByLevel(lessonCompletionsByLevel);
-        
-        // 7. Test completions by level
-        Map<Integer, Long> testCompletionsByLevel = allTestProgress.stream()
-                .collect(Collectors.groupingBy(
-                        tp -> tp.getTest().getLevel(),
-                        Collectors.counting()
-                ));
-        detailed.setTestCompletionsByLevel(testCompletionsByLevel);
-        
+        detailed.setAverageStudyTimePerDay(toTimeSeries(series, metrics -> {
+            long sessions = metrics.get(ActivityMetric.STUDY_SESSIONS);
+            double avgSeconds = sessions > 0 ? (double) metrics.get(ActivityMetric.STUDY_SECONDS) / sessions : 0;
+            return Math.round(avgSeconds / 3600.0 * 100); // Store hours * 100 (e.g., 1.5 hours = 150)
+        }));
+
+        // 6-7. Lượt hoàn thành theo cấp độ (từ bảng tổng hợp)
+        detailed.setLessonCompletionsByLevel(lessonStatisticsRepository.sumCompletionsByLevel().stream()
+                .collect(Collectors.toMap(LessonStatisticsRepository.LevelCompletions::getLevel,
+                        LessonStatisticsRepository.LevelCompletions::getCompletions)));
+        detailed.setTestCompletionsByLevel(testStatisticsRepository.sumCompletionsByLevel().stream()
+                .collect(Collectors.toMap(TestStatisticsRepository.LevelCompletions::getLevel,
+                        TestStatisticsRepository.LevelCompletions::getCompletions)));
+
         // 8. Popular lessons
-        Map<Lesson, List<LessonProgress>> lessonProgressMap = allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .collect(Collectors.groupingBy(LessonProgress::getLesson));
-        
-        List<DetailedStatisticsDTO.PopularItemDTO> popularLessons = lessonProgressMap.entrySet().stream()
-                .map(entry -> {
-                    Lesson lesson = entry.getKey();
-                    List<LessonProgress> progresses = entry.getValue();
-                    DetailedStatisticsDTO.PopularItemDTO dto = new DetailedStatisticsDTO.PopularItemDTO();
-                    dto.setId(lesson.getId());
-                    dto.setName(lesson.getName());
-                    dto.setLevel(lesson.getLevel());
-                    dto.setCompletionCount(progresses.size());
-                    double avgScore = progresses.stream()
-                            .mapToInt(LessonProgress::getScore)
-                            .average()
-                            .orElse(0.0);
-                    dto.setAverageScore(Math.round(avgScore * 100.0) / 100.0);
-                    long totalTime = progresses.stream()
-                            .filter(lp -> lp.getTimeSpentSeconds() != null)
-                            .mapToLong(lp -> lp.getTimeSpentSeconds())
-                            .sum();
-                    dto.setTotalTimeSpent(totalTime);
-                    return dto;
+        List<LessonStatistics> lessonStatistics = topLessonStatistics();
+        Map<Long, Lesson> lessonsById = lessonRepository.findAllById(lessonStatistics.stream()
+                        .map(LessonStatistics::getLessonId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Lesson::getId, lesson -> lesson));
+        detailed.setPopularLessons(lessonStatistics.stream()
+                .filter(ls -> lessonsById.containsKey(ls.getLessonId()))
+                .map(ls -> {
+                    Lesson lesson = lessonsById.get(ls.getLessonId());
+                    return toPopularItem(lesson.getId(), lesson.getName(), lesson.getLevel(),
+                            ls.getCompletionCount(), ls.getScoreSum(), ls.getTimeSpentSeconds());
                 })
-                .sorted((a, b) -> Long.compare(b.getCompletionCount(), a.getCompletionCount()))
-                .limit(10)
-                .collect(Collectors.toList());
-        detailed.setPopularLessons(popularLessons);
-        
+                .collect(Collectors.toList()));
+
         // 9. Popular tests
-        Map<Test, List<TestProgress>> testProgressMap = allTestProgress.stream()
-                .collect(Collectors.groupingBy(TestProgress::getTest));
-        
-        List<DetailedStatisticsDTO.PopularItemDTO> popularTests = testProgressMap.entrySet().stream()
+        List<TestStatistics> testStatistics = topTestStatistics();
+        Map<Long, Test> testsById = testRepository.findAllById(testStatistics.stream()
+                        .map(TestStatistics::getTestId)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Test::getId, test -> test));
+        detailed.setPopularTests(testStatistics.stream()
+                .filter(ts -> testsById.containsKey(ts.getTestId()))
+                .map(ts -> {
+                    Test test = testsById.get(ts.getTestId());
+                    return toPopularItem(test.getId(), test.getName(), test.getLevel(),
+                            ts.getCompletionCount(), ts.getScoreSum(), ts.getTimeSpentSeconds());
+                })
+                .collect(Collectors.toList()));
+
+        // 9b. Bài học/bài kiểm tra nổi bật trong cửa sổ - gộp các sketch Top-K theo ngày (số lượt là xấp xỉ cận trên)
+        List<SpaceSavingTopK.Entry<Long>> trendingLessonEntries =
+                popularityTopKService.topLastDays(TopKDimension.LESSON, windowDays, TOP_N);
+        Map<Long, Lesson> trendingLessonsById = lessonRepository.findAllById(trendingLessonEntries.stream()
+                        .map(SpaceSavingTopK.Entry::item)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Lesson::getId, lesson -> lesson));
+        detailed.setTrendingLessons(trendingLessonEntries.stream()
+                .filter(entry -> trendingLessonsById.containsKey(entry.item()))
                 .map(entry -> {
-                    Test test = entry.getKey();
-                    List<TestProgress> progresses = entry.getValue();
-                    DetailedStatisticsDTO.PopularItemDTO dto = new DetailedStatisticsDTO.PopularItemDTO();
-                    dto.setId(test.getId());
-                    dto.setName(test.getName());
-                    dto.setLevel(test.getLevel());
-                    dto.setCompletionCount(progresses.size());
-                    double avgScore = progresses.stream()
-                            .mapToInt(TestProgress::getScore)
-                            .average()
-                            .orElse(0.0);
-                    dto.setAverageScore(Math.round(avgScore * 100.0) / 100.0);
-                    long totalTime = progresses.stream()
-                            .filter(tp -> tp.getTimeSpentSeconds() != null)
-                            .mapToLong(tp -> tp.getTimeSpentSeconds())
-                            .sum();
-                    dto.setTotalTimeSpent(totalTime);
-                    return dto;
+                    Lesson lesson = trendingLessonsById.get(entry.item());
+                    return toTrendingItem(lesson.getId(), lesson.getName(), lesson.getLevel(), entry.count());
                 })
-                .sorted((a, b) -> Long.compare(b.getCompletionCount(), a.getCompletionCount()))
-                .limit(10)
-                .collect(Collectors.toList());
-        detailed.setPopularTests(popularTests);
-        
+                .collect(Collectors.toList()));
+
+        List<SpaceSavingTopK.Entry<Long>> trendingTestEntries =
+                popularityTopKService.topLastDays(TopKDimension.TEST, windowDays, TOP_N);
+        Map<Long, Test> trendingTestsById = testRepository.findAllById(trendingTestEntries.stream()
+                        .map(SpaceSavingTopK.Entry::item)
+                        .collect(Collectors.toList())).stream()
+                .collect(Collectors.toMap(Test::getId, test -> test));
+        detailed.setTrendingTests(trendingTestEntries.stream()
+                .filter(entry -> trendingTestsById.containsKey(entry.item()))
+                .map(entry -> {
+                    Test test = trendingTestsById.get(entry.item());
+                    return toTrendingItem(test.getId(), test.getName(), test.getLevel(), entry.count());
+                })
+                .collect(Collectors.toList()));
+
         // 10. Engagement metrics
         DetailedStatisticsDTO.EngagementMetricsDTO engagement = new DetailedStatisticsDTO.EngagementMetricsDTO();
-        
-        // Calculate average study hours per day (last 30 days)
-        long totalStudySeconds = allLessonProgress.stream()
-                .filter(lp -> lp.getTimeSpentSeconds() != null && lp.getTimeSpentSeconds() > 0)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(startDate))
-                .mapToLong(lp -> lp.getTimeSpentSeconds())
-                .sum();
-        totalStudySeconds += allTestProgress.stream()
-                .filter(tp -> tp.getTimeSpentSeconds() != null && tp.getTimeSpentSeconds() > 0)
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(startDate))
-                .mapToLong(tp -> tp.getTimeSpentSeconds())
+        double weeks = windowDays / 7.0;
+
+        long totalStudySeconds = series.values().stream()
+                .mapToLong(metrics -> metrics.get(ActivityMetric.STUDY_SECONDS))
                 .sum();
-        
         double totalStudyHours = totalStudySeconds / 3600.0;
-        engagement.setAverageStudyHoursPerDay(Math.round((totalStudyHours / 30.0) * 100.0) / 100.0);
-        
-        // Calculate average study days per week
-        Set<LocalDate> activeDates = new HashSet<>();
-        allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(startDate))
-                .forEach(lp -> activeDates.add(lp.getCompletedAt().toLocalDate()));
-        allTestProgress.stream()
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(startDate))
-                .forEach(tp -> activeDates.add(tp.getCompletedAt().toLocalDate()));
-        
-        engagement.setTotalActiveDays(activeDates.size());
-        engagement.setAverageStudyDaysPerWeek(Math.round((activeDates.size() / 4.285) * 100.0) / 100.0); // 30 days ≈ 4.285 weeks
-        
-        // Retention rate (users active in last 7 days / total users)
-        LocalDateTime sevenDaysAgo = endDate.minusDays(7);
-        Set<Long> recentActiveUserIds = new HashSet<>();
-        allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(sevenDaysAgo))
-                .forEach(lp -> recentActiveUserIds.add(lp.getAccount().getId()));
-        allTestProgress.stream()
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(sevenDaysAgo))
-                .forEach(tp -> recentActiveUserIds.add(tp.getAccount().getId()));
-        
-        long totalUsers = accountRepository.count();
-        double retentionRate = totalUsers > 0 ? (recentActiveUserIds.size() * 100.0 / totalUsers) : 0;
+        engagement.setAverageStudyHoursPerDay(Math.round((totalStudyHours / windowDays) * 100.0) / 100.0);
+
+        long activeDays = series.values().stream()
+                .filter(metrics -> metrics.get(ActivityMetric.LESSON_COMPLETIONS) > 0
+                        || metrics.get(ActivityMetric.TEST_COMPLETIONS) > 0)
+                .count();
+        engagement.setTotalActiveDays(activeDays);
+        engagement.setAverageStudyDaysPerWeek(Math.round((activeDays / weeks) * 100.0) / 100.0);
+
+        // WAU/MAU - OR bitmap của các ngày
+        long weeklyActiveUsers = activeUserIndexService.countActiveBetween(today.minusDays(6), today);
+        engagement.setWeeklyActiveUsers(weeklyActiveUsers);
+        engagement.setMonthlyActiveUsers(activeUserIndexService.countActiveBetween(today.minusDays(29), today));
+
+        // Retention 7 ngày theo cohort: trong số người hoạt động tuần trước, bao nhiêu người quay lại trong tuần này
+        // (AND bitmap của hai tuần)
+        long previousWeekActiveUsers = activeUserIndexService.countActiveBetween(today.minusDays(13), today.minusDays(7));
+        long retainedUsers = activeUserIndexService.countRetained(
+                today.minusDays(13), today.minusDays(7), today.minusDays(6), today);
+        double retentionRate = previousWeekActiveUsers > 0 ? (retainedUsers * 100.0 / previousWeekActiveUsers) : 0;
         engagement.setRetentionRate(Math.round(retentionRate * 100.0) / 100.0);
-        
-        // Peak concurrent users (estimate based on max daily active users in last 30 days)
+
+        // Peak concurrent users (estimate based on max daily active users in the window)
         long peakDailyActive = dailyActiveUsers.stream()
                 .mapToLong(DetailedStatisticsDTO.TimeSeriesData::getValue)
                 .max()
                 .orElse(0);
         engagement.setPeakConcurrentUsers(peakDailyActive);
-        
+
         detailed.setEngagementMetrics(engagement);
-        
-        // 11. Study frequency distribution (days per week)
-        Map<Account, Set<LocalDate>> userActiveDates = new HashMap<>();
-        allLessonProgress.stream()
-                .filter(LessonProgress::isCompleted)
-                .filter(lp -> lp.getCompletedAt() != null && lp.getCompletedAt().isAfter(startDate))
-                .forEach(lp -> {
-                    userActiveDates.computeIfAbsent(lp.getAccount(), k -> new HashSet<>())
-                            .add(lp.getCompletedAt().toLocalDate());
-                });
-        allTestProgress.stream()
-                .filter(tp -> tp.getCompletedAt() != null && tp.getCompletedAt().isAfter(startDate))
-                .forEach(tp -> {
-                    userActiveDates.computeIfAbsent(tp.getAccount(), k -> new HashSet<>())
-                            .add(tp.getCompletedAt().toLocalDate());
-                });
-        
+
+        // 11. Study frequency distribution (days per week) - số ngày hoạt động của từng người tính trên bitmap
         Map<String, Long> frequencyDistribution = new HashMap<>();
-        userActiveDates.values().forEach(dates -> {
-            long daysPerWeek = Math.round(dates.size() / 4.285); // 30 days ≈ 4.285 weeks
-            String category;
-            if (daysPerWeek == 0) category = "0 ngày/tuần";
-            else if (daysPerWeek <= 2) category = "1-2 ngày/tuần";
-            else if (daysPerWeek <= 4) category = "3-4 ngày/tuần";
-            else if (daysPerWeek <= 6) category = "5-6 ngày/tuần";
-            else category = "7 ngày/tuần";
-            
-            frequencyDistribution.put(category, frequencyDistribution.getOrDefault(category, 0L) + 1);
+        activeUserIndexService.activeDaysDistribution(startDay, today).forEach((activeDayCount, users) -> {
+            String category = frequencyCategory(Math.round(activeDayCount / weeks));
+            frequencyDistribution.merge(category, users, Long::sum);
         });
         detailed.setStudyFrequencyDistribution(frequencyDistribution);
-        
+
         return detailed;
     }
+
+    public int rebuildDailyRollups(int days) {
+        LocalDate yesterday = LocalDate.now().minusDays(1);
+        return dailyActivityRollupService.rebuild(yesterday.minusDays(Math.max(1, days) - 1L), yesterday);
+    }
+
+    private List<DetailedStatisticsDTO.TimeSeriesData> toTimeSeries(Map<LocalDate, Map<ActivityMetric, Long>> series,
+                                                                    ToLongFunction<Map<ActivityMetric, Long>> valueExtractor) {
+        return toTimeSeries(series.keySet(), date -> valueExtractor.applyAsLong(series.get(date)));
+    }
+
+    private List<DetailedStatisticsDTO.TimeSeriesData> toTimeSeries(Collection<LocalDate> days,
+                                                                    ToLongFunction<LocalDate> valueExtractor) {
+        List<DetailedStatisticsDTO.TimeSeriesData> result = new ArrayList<>(days.size());
+        for (LocalDate date : days) {
+            DetailedStatisticsDTO.TimeSeriesData data = new DetailedStatisticsDTO.TimeSeriesData();
+            data.setDate(date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+            data.setValue(valueExtractor.applyAsLong(date));
+            data.setLabel(date.format(LABEL_FORMAT));
+            result.add(data);
+        }
+        return result;
+    }
+
+    private DetailedStatisticsDTO.PopularItemDTO toPopularItem(Long id, String name, int level,
+                                                              long completionCount, long scoreSum, long timeSpent) {
+        DetailedStatisticsDTO.PopularItemDTO dto = new DetailedStatisticsDTO.PopularItemDTO();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setLevel(level);
+        dto.setCompletionCount(completionCount);
+        dto.setAverageScore(average(scoreSum, completionCount));
+        dto.setTotalTimeSpent(timeSpent);
+        return dto;
+    }
+
+    private DetailedStatisticsDTO.TrendingItemDTO toTrendingItem(Long id, String name, int level, long completionCount) {
+        DetailedStatisticsDTO.TrendingItemDTO dto = new DetailedStatisticsDTO.TrendingItemDTO();
+        dto.setId(id);
+        dto.setName(name);
+        dto.setLevel(level);
+        dto.setCompletionCount(completionCount);
+        return dto;
+    }
+
+    private String frequencyCategory(long daysPerWeek) {
+        if (daysPerWeek == 0) return "0 ngày/tuần";
+        if (daysPerWeek <= 2) return "1-2 ngày/tuần";
+        if (daysPerWeek <= 4) return "3-4 ngày/tuần";
+        if (daysPerWeek <= 6) return "5-6 ngày/tuần";
+        return "7 ngày/tuần";
+    }
 }
 
@@ -3,10 +3,16 @@ package com.ptit.englishlearningsuite.service;
 import com.ptit.englishlearningsuite.dto.*;
 import com.ptit.englishlearningsuite.entity.*;
 import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.LevelCountRow;
 import com.ptit.englishlearningsuite.repository.QuestionRepository;
 import com.ptit.englishlearningsuite.repository.TestProgressRepository;
 import com.ptit.englishlearningsuite.repository.TestRepository;
+import com.ptit.englishlearningsuite.repository.TestSummaryRow;
+import com.ptit.englishlearningsuite.util.CatalogCursor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
@@ -36,15 +42,80 @@ public class TestService {
     @Autowired
     private TestProgressRepository testProgressRepository;
 
+    @Autowired
+    private StatisticsAggregateService statisticsAggregateService;
+
+    @Autowired
+    private ActiveUserIndexService activeUserIndexService;
+
+    @Autowired
+    private LearnerMailbox learnerMailbox;
+
+    @Autowired
+    private SerializedResponseCache serializedResponseCache;
+
+    @Autowired
+    private ContentVersionService contentVersionService;
+
+    @Value("${catalog.page.default-limit:50}")
+    private int defaultPageLimit;
+
+    @Value("${catalog.page.max-limit:200}")
+    private int maxPageLimit;
+
+    // Số bài kiểm tra theo cấp độ của phiên bản danh mục gần nhất; null cho tới lần đầu cần
+    private volatile LevelFacets levelFacets;
+
     public List<TestSummaryDTO> getAllTests() {
-        return testRepository.findAll().stream()
+        return testRepository.findAllSummaries().stream()
                 .map(this::convertToSummaryDto)
                 .collect(Collectors.toList());
     }
 
+    /**
+     * Một trang danh mục bài kiểm tra, sắp theo (level, id) và phân trang keyset (như LessonService#getLessonCatalogPage;
+     * bài kiểm tra không có cờ active nên chỉ lọc theo cấp độ).
+     */
+    public CatalogPageDTO<TestSummaryDTO> getTestCatalogPage(Integer level, String cursor, Integer limit) {
+        int size = Math.max(1, Math.min(limit != null ? limit : defaultPageLimit, maxPageLimit));
+        long[] after = cursor != null ? CatalogCursor.decode(cursor, 2) : new long[]{Integer.MIN_VALUE, Long.MIN_VALUE};
+        // Đọc thêm một dòng để biết còn trang sau hay không
+        Pageable page = PageRequest.of(0, size + 1);
+        List<TestSummaryRow> rows = level != null
+                ? testRepository.findSummariesByLevelAfter(level, after[1], page)
+                : testRepository.findSummariesAfter(CatalogCursor.intKey(after[0]), after[1], page);
+
+        CatalogPageDTO<TestSummaryDTO> dto = new CatalogPageDTO<>();
+        List<TestSummaryRow> items = rows.subList(0, Math.min(size, rows.size()));
+        dto.setItems(items.stream().map(this::convertToSummaryDto).collect(Collectors.toList()));
+        if (rows.size() > size) {
+            TestSummaryRow last = items.get(items.size() - 1);
+            dto.setNextCursor(CatalogCursor.encode(last.level(), last.id()));
+        }
+        dto.setLimit(size);
+        dto.setLevelCounts(levelCounts());
+        return dto;
+    }
+
+    // Tổng hợp GROUP BY được giữ lại tới khi phiên bản danh mục đổi (xem ContentVersionService)
+    private Map<Integer, Long> levelCounts() {
+        long catalogVersion = contentVersionService.testCatalogVersion();
+        LevelFacets facets = levelFacets;
+        if (facets == null || facets.catalogVersion() != catalogVersion) {
+            facets = new LevelFacets(catalogVersion, testRepository.countByLevel());
+            levelFacets = facets;
+        }
+        Map<Integer, Long> counts = new TreeMap<>();
+        for (LevelCountRow row : facets.rows()) {
+            counts.merge(row.level(), row.count(), Long::sum);
+        }
+        return counts;
+    }
+
     // PHƯƠNG THỨC MỚI
     public TestDetailDTO getTestById(Long id) {
-        Test test = testRepository.findById(id)
+        // Câu hỏi và đáp án được nạp cùng bài kiểm tra trong một câu SQL
+        Test test = testRepository.findDetailById(id)
                 .orElseThrow(() -> new RuntimeException("Test not found with id: " + id));
         return convertToDetailDto(test);
     }
@@ -58,6 +129,10 @@ public class TestService {
         Account account = accountRepository.findByUsername(currentUsername)
                 .orElseThrow(() -> new UsernameNotFoundException("User not found: " + currentUsername));
 
+        return learnerMailbox.submitInTransaction(account.getId(), () -> submitTestInMailbox(account, submission));
+    }
+
+    private int submitTestInMailbox(Account account, TestSubmissionDTO submission) {
         // Tìm bài test
         Test test = testRepository.findById(submission.getTestId())
                 .orElseThrow(() -> new RuntimeException("Test not found"));
@@ -118,6 +193,7 @@ public class TestService {
         // Lưu tiến trình (dùng Account entity thay vì accountId)
         TestProgress progress = testProgressRepository.findByAccountAndTest(account, test)
                 .orElse(new TestProgress());
+        StatisticsAggregateService.Contribution before = StatisticsAggregateService.Contribution.ofTest(progress);
 
         progress.setAccount(account);
         progress.setTest(test);
@@ -128,14 +204,17 @@ public class TestService {
         progress.setTimeSpentSeconds(submission.getTimeSpentSeconds());
         progress.setCompletedAt(java.time.LocalDateTime.now());
 
-        testProgressRepository.save(progress);
+        TestProgress saved = testProgressRepository.save(progress);
+        statisticsAggregateService.applyTestProgress(account.getId(), test, before,
+                StatisticsAggregateService.Contribution.ofTest(saved));
+        activeUserIndexService.markActive(account.getId(), saved.getCompletedAt());
 
         return scorePercentage;
     }
 
 
     // --- CÁC HÀM CHUYỂN ĐỔI ---
-    private TestDetailDTO convertToDetailDto(Test test) {
+    TestDetailDTO convertToDetailDto(Test test) {
         TestDetailDTO dto = new TestDetailDTO();
         dto.setId(test.getId());
         dto.setName(test.getName());
@@ -169,11 +248,11 @@ public class TestService {
         return dto;
     }
 
-    private TestSummaryDTO convertToSummaryDto(Test test) {
+    private TestSummaryDTO convertToSummaryDto(TestSummaryRow row) {
         TestSummaryDTO dto = new TestSummaryDTO();
-        dto.setId(test.getId());
-        dto.setName(test.getName());
-        dto.setLevel(test.getLevel());
+        dto.setId(row.id());
+        dto.setName(row.name());
+        dto.setLevel(row.level());
         return dto;
     }
 
@@ -217,6 +296,8 @@ public class TestService {
                 questionRepository.save(q);
             }
         }
+        contentVersionService.bumpTest(savedTest.getId());
+        serializedResponseCache.invalidateTest(savedTest.getId());
         return savedTest;
     }
 
@@ -229,6 +310,9 @@ public class TestService {
 
         // 2. Cập nhật thông tin chung
         test.setName(req.getName());
+        if (test.getLevel() != req.getLevel()) {
+            statisticsAggregateService.onTestLevelChanged(id, req.getLevel());
+        }
         test.setLevel(req.getLevel());
         if (req.getAudioUrl() != null && !req.getAudioUrl().isEmpty()) {
             test.setAudioUrl(req.getAudioUrl());
@@ -268,12 +352,20 @@ public class TestService {
             }
         }
 
-        return testRepository.save(test);
+        Test savedTest = testRepository.save(test);
+        contentVersionService.bumpTest(id);
+        serializedResponseCache.invalidateTest(id);
+        return savedTest;
     }
 
     // --- [DELETE] XÓA BÀI TEST ---
     public void deleteTest(Long id) {
         // Cascade sẽ xóa luôn Questions và Answers
         testRepository.deleteById(id);
+        contentVersionService.testRemoved(id);
+        serializedResponseCache.invalidateTest(id);
+    }
+
+    private record LevelFacets(long catalogVersion, List<LevelCountRow> rows) {
     }
-}
\ No newline at end of file
+}
@@ -4,22 +4,24 @@ import com.ptit.englishlearningsuite.dto.UserLessonProgressDTO;
 import com.ptit.englishlearningsuite.dto.UserProgressSummaryDTO;
 import com.ptit.englishlearningsuite.dto.UserTestProgressDTO;
 import com.ptit.englishlearningsuite.entity.Account;
-import com.ptit.englishlearningsuite.entity.LessonProgress;
-import com.ptit.englishlearningsuite.entity.TestProgress;
 import com.ptit.englishlearningsuite.repository.AccountRepository;
 import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRow;
 import com.ptit.englishlearningsuite.repository.LessonRepository;
 import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRow;
 import com.ptit.englishlearningsuite.repository.TestRepository;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
-import java.util.Comparator;
+import java.time.LocalDateTime;
+import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 @Service
 public class UserProgressService {
@@ -75,68 +77,78 @@ public class UserProgressService {
                 }).collect(Collectors.toList());
     }
 
+    /**
+     * Tổng hợp tiến độ của một người dùng trong một lượt duyệt stream mỗi bảng:
+     * chỉ giữ các bộ cộng dồn và tập ngày hoàn thành (phục vụ tính streak), không nạp danh sách entity.
+     */
+    @Transactional(readOnly = true)
     public UserProgressSummaryDTO getProgressSummary(Long accountId) {
-        Account account = accountRepository.findById(accountId)
-                .orElseThrow(() -> new RuntimeException("Account not found"));
-
-        List<LessonProgress> lessonProgresses = lessonProgressRepository.findAllByAccount(account);
-        List<TestProgress> testProgresses = testProgressRepository.findAllByAccount(account);
-
-        int completedLessons = (int) lessonProgresses.stream()
-                .filter(LessonProgress::isCompleted)
-                .count();
+        if (!accountRepository.existsById(accountId)) {
+            throw new RuntimeException("Account not found");
+        }
 
-        long lessonTimeSpent = lessonProgresses.stream()
-                .map(LessonProgress::getTimeSpentSeconds)
-                .filter(Objects::nonNull)
-                .mapToLong(Integer::longValue)
-                .sum();
+        int completedLessons = 0;
+        long lessonTimeSpent = 0;
+        LocalDateTime lastLessonCompletedAt = null;
+        Set<LocalDate> completionDates = new HashSet<>();
+        try (Stream<LessonProgressRow> rows = lessonProgressRepository.streamByAccountId(accountId)) {
+            for (LessonProgressRow row : (Iterable<LessonProgressRow>) rows::iterator) {
+                if (row.timeSpentSeconds() != null) {
+                    lessonTimeSpent += row.timeSpentSeconds();
+                }
+                lastLessonCompletedAt = latest(lastLessonCompletedAt, row.completedAt());
+                if (row.completed()) {
+                    completedLessons++;
+                    if (row.completedAt() != null) {
+                        completionDates.add(row.completedAt().toLocalDate());
+                    }
+                }
+            }
+        }
 
-        long testTimeSpent = testProgresses.stream()
-                .map(TestProgress::getTimeSpentSeconds)
-                .filter(Objects::nonNull)
-                .mapToLong(Integer::longValue)
-                .sum();
+        int completedTests = 0;
+        long testScoreSum = 0;
+        long testTimeSpent = 0;
+        LocalDateTime lastTestCompletedAt = null;
+        try (Stream<TestProgressRow> rows = testProgressRepository.streamByAccountId(accountId)) {
+            for (TestProgressRow row : (Iterable<TestProgressRow>) rows::iterator) {
+                completedTests++;
+                testScoreSum += row.score();
+                if (row.timeSpentSeconds() != null) {
+                    testTimeSpent += row.timeSpentSeconds();
+                }
+                lastTestCompletedAt = latest(lastTestCompletedAt, row.completedAt());
+            }
+        }
 
-        double averageScore = testProgresses.stream()
-                .mapToInt(TestProgress::getScore)
-                .average()
-                .orElse(0);
+        double averageScore = completedTests > 0 ? (double) testScoreSum / completedTests : 0;
 
-        LocalDateStreak streak = computeStreak(lessonProgresses);
+        LocalDateStreak streak = computeStreak(completionDates);
 
         UserProgressSummaryDTO summaryDTO = new UserProgressSummaryDTO();
         summaryDTO.setAccountId(accountId);
         summaryDTO.setTotalLessons(lessonRepository.count());
         summaryDTO.setCompletedLessons(completedLessons);
         summaryDTO.setTotalTests(testRepository.count());
-        summaryDTO.setCompletedTests(testProgressRepository.countByAccount(account));
+        summaryDTO.setCompletedTests(completedTests);
         summaryDTO.setAverageTestScore(averageScore);
         summaryDTO.setLessonTimeSpentSeconds(lessonTimeSpent);
         summaryDTO.setTestTimeSpentSeconds(testTimeSpent);
         summaryDTO.setCurrentStreak(streak.current);
         summaryDTO.setLongestStreak(streak.longest);
-        summaryDTO.setLastLessonCompletedAt(lessonProgresses.stream()
-                .map(LessonProgress::getCompletedAt)
-                .filter(Objects::nonNull)
-                .max(Comparator.naturalOrder())
-                .orElse(null));
-        summaryDTO.setLastTestCompletedAt(testProgresses.stream()
-                .map(TestProgress::getCompletedAt)
-                .filter(Objects::nonNull)
-                .max(Comparator.naturalOrder())
-                .orElse(null));
+        summaryDTO.setLastLessonCompletedAt(lastLessonCompletedAt);
+        summaryDTO.setLastTestCompletedAt(lastTestCompletedAt);
         return summaryDTO;
     }
 
-    private LocalDateStreak computeStreak(List<LessonProgress> progresses) {
-        Set<LocalDate> completionDates = progresses.stream()
-                .filter(LessonProgress::isCompleted)
-                .map(LessonProgress::getCompletedAt)
-                .filter(Objects::nonNull)
-                .map(LocalDate::from)
-                .collect(Collectors.toSet());
+    private LocalDateTime latest(LocalDateTime current, LocalDateTime candidate) {
+        if (candidate == null) {
+            return current;
+        }
+        return current == null || candidate.isAfter(current) ? candidate : current;
+    }
 
+    private LocalDateStreak computeStreak(Set<LocalDate> completionDates) {
         int longest = 0;
         int currentRun = 0;
         LocalDate previousDate = null;
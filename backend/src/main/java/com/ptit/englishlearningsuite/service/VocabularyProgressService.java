@@ -28,6 +28,9 @@ public class VocabularyProgressService {
     @Autowired
     private AccountRepository accountRepository;
 
+    @Autowired
+    private ActiveUserIndexService activeUserIndexService;
+
     public VocabularyProgressDTO toggleRemembered(Long vocabularyId, boolean remembered) {
         VocabularyProgress progress = upsertProgress(vocabularyId);
         progress.setRemembered(remembered);
@@ -37,6 +40,7 @@ public class VocabularyProgressService {
         }
         progress.setReviewCount(progress.getReviewCount() + 1);
         vocabularyProgressRepository.save(progress);
+        activeUserIndexService.markActive(progress.getAccount().getId(), progress.getLastReviewedAt());
         return toDto(progress);
     }
 
@@ -0,0 +1,569 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.LeaderboardEntryDTO;
+import com.ptit.englishlearningsuite.dto.LeaderboardPageDTO;
+import com.ptit.englishlearningsuite.entity.Account;
+import com.ptit.englishlearningsuite.entity.LeaderboardPeriod;
+import com.ptit.englishlearningsuite.entity.LeaderboardSnapshot;
+import com.ptit.englishlearningsuite.repository.AccountRepository;
+import com.ptit.englishlearningsuite.repository.AccountStatisticsRepository;
+import com.ptit.englishlearningsuite.repository.DailyAccountTestTotals;
+import com.ptit.englishlearningsuite.repository.DailyItemCount;
+import com.ptit.englishlearningsuite.repository.LeaderboardRow;
+import com.ptit.englishlearningsuite.repository.LeaderboardSnapshotRepository;
+import com.ptit.englishlearningsuite.repository.LessonProgressRepository;
+import com.ptit.englishlearningsuite.repository.TestProgressRepository;
+import com.ptit.englishlearningsuite.util.OrderStatisticTree;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Bảng xếp hạng XP trong bộ nhớ. Người dùng được sắp theo XP giảm dần (cùng XP thì theo id tăng dần)
+ * trong một cây thống kê thứ tự, nên top-N, phân trang và tra hạng của một người đều là O(log n)
+ * và không cần truy vấn MySQL ở đường đọc. Cập nhật khi hoàn thành bài học/bài kiểm tra; dựng lại từ
+ * account_statistics khi khởi động.
+ * <p>
+ * Bảng tuần/tháng là cửa sổ trượt 7/30 ngày: phần tăng theo ngày của từng người được giữ trong một vòng
+ * {@value #RING_DAYS} bucket; sang ngày mới chỉ cần trừ bucket vừa rơi khỏi cửa sổ thay vì tính lại.
+ * Các kỳ tuần/tháng theo lịch đã đóng được chốt vào bảng leaderboard_snapshots.
+ */
+@Service
+public class XpLeaderboardService {
+
+    // Công thức XP: mỗi bài học hoàn thành = 10 XP, mỗi bài kiểm tra = 20 XP (giống account_statistics.xp)
+    public static final long LESSON_XP = 10;
+    public static final long TEST_XP = 20;
+
+    // Đủ chứa tháng dài nhất đã đóng (31 ngày) cộng với hôm nay
+    private static final int RING_DAYS = 32;
+
+    private static final Comparator<LeaderboardRow> ORDER = Comparator
+            .comparingLong((LeaderboardRow row) -> -row.xp())
+            .thenComparingLong(LeaderboardRow::accountId);
+
+    @Value("${statistics.leaderboard.snapshot-size:100}")
+    private int snapshotSize;
+
+    @Value("${statistics.leaderboard.rebuild-on-startup:true}")
+    private boolean startupRebuildEnabled;
+
+    @Autowired
+    private AccountStatisticsRepository accountStatisticsRepository;
+
+    @Autowired
+    private AccountRepository accountRepository;
+
+    @Autowired
+    private LessonProgressRepository lessonProgressRepository;
+
+    @Autowired
+    private TestProgressRepository testProgressRepository;
+
+    @Autowired
+    private LeaderboardSnapshotRepository leaderboardSnapshotRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private State state = new State(LocalDate.now().toEpochDay());
+
+    /**
+     * Cộng phần chênh lệch số bài học/bài kiểm tra hoàn thành (và tổng điểm test) của một người dùng.
+     */
+    public void apply(Long accountId, long lessons, long tests, long testScoreSum) {
+        if (accountId == null || (lessons == 0 && tests == 0 && testScoreSum == 0)) {
+            return;
+        }
+        Identity identity = findIdentity(accountId);
+        if (identity == null) {
+            Account account = accountRepository.findById(accountId).orElse(null);
+            if (account == null) {
+                return;
+            }
+            identity = new Identity(account.getUsername(), account.getFullName());
+        }
+
+        long today = LocalDate.now().toEpochDay();
+        lock.writeLock().lock();
+        try {
+            state.advanceTo(today);
+            state.identities.putIfAbsent(accountId, identity);
+            state.usernames.putIfAbsent(identity.username(), accountId);
+            state.add(accountId, today, lessons, tests, testScoreSum);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Cập nhật tên hiển thị sau khi tài khoản được sửa.
+     */
+    public void rename(Account account) {
+        lock.writeLock().lock();
+        try {
+            Identity previous = state.identities.get(account.getId());
+            if (previous == null) {
+                return;
+            }
+            state.usernames.remove(previous.username());
+            Identity identity = new Identity(account.getUsername(), account.getFullName());
+            state.identities.put(account.getId(), identity);
+            state.usernames.put(identity.username(), account.getId());
+            for (Board board : state.boards()) {
+                board.rename(account.getId(), identity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Long accountId) {
+        lock.writeLock().lock();
+        try {
+            Identity previous = state.identities.remove(accountId);
+            if (previous != null) {
+                state.usernames.remove(previous.username());
+            }
+            for (Board board : state.boards()) {
+                board.put(accountId, null);
+            }
+            for (DayBucket bucket : state.ring) {
+                if (bucket != null) {
+                    bucket.totals.remove(accountId);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Dựng bảng từ account_statistics (sau bước backfill của {@link StatisticsAggregateService}) rồi chốt bù các
+     * kỳ tuần/tháng đã đóng trong lúc server tắt.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Order(6)
+    public void rebuildOnStartup() {
+        if (startupRebuildEnabled) {
+            rebuild();
+            snapshotClosedPeriods();
+        }
+    }
+
+    /**
+     * Dựng lại toàn bộ từ DB (đọc dạng stream) rồi tráo vào một lần: bảng toàn thời gian từ account_statistics,
+     * các bucket ngày từ lesson_progress/test_progress của {@value #RING_DAYS} ngày gần nhất.
+     */
+    public void rebuild() {
+        LocalDate today = LocalDate.now();
+        State newState = new State(today.toEpochDay());
+        LocalDateTime startDate = today.minusDays(RING_DAYS - 1L).atStartOfDay();
+        LocalDateTime endDate = today.plusDays(1).atStartOfDay();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            try (Stream<LeaderboardRow> rows = accountStatisticsRepository.streamLeaderboardRows()) {
+                rows.forEach(row -> {
+                    newState.identities.put(row.accountId(), new Identity(row.username(), row.fullName()));
+                    newState.usernames.put(row.username(), row.accountId());
+                    newState.allTime.put(row.accountId(), row);
+                });
+            }
+            try (Stream<DailyItemCount> rows = lessonProgressRepository.streamCompletionsByDayAndAccount(startDate, endDate)) {
+                rows.forEach(row -> newState.addToWindows(row.getItemId(), row.getEpochDay(), row.getMetricValue(), 0, 0));
+            }
+            try (Stream<DailyAccountTestTotals> rows = testProgressRepository.streamTestTotalsByDayAndAccount(startDate, endDate)) {
+                rows.forEach(row -> newState.addToWindows(row.getAccountId(), row.getEpochDay(), 0, row.getCompletions(),
+                        row.getScoreSum() != null ? row.getScoreSum() : 0));
+            }
+        });
+
+        lock.writeLock().lock();
+        try {
+            state = newState;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public List<LeaderboardEntryDTO> top(LeaderboardPeriod period, int limit) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            return toEntries(state.board(period), 0, limit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public LeaderboardPageDTO page(LeaderboardPeriod period, int page, int size) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            Board board = state.board(period);
+            LeaderboardPageDTO dto = newPage(period);
+            dto.setPage(page);
+            dto.setSize(size);
+            dto.setTotalUsers(board.ranking.size());
+            dto.setEntries(toEntries(board, (long) page * size, size));
+            return dto;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hạng của người dùng cùng {@code radius} người ngay trên và ngay dưới.
+     */
+    public LeaderboardPageDTO around(LeaderboardPeriod period, String username, int radius) {
+        ensureCurrent();
+        lock.readLock().lock();
+        try {
+            Board board = state.board(period);
+            LeaderboardPageDTO dto = newPage(period);
+            dto.setTotalUsers(board.ranking.size());
+            Long accountId = state.usernames.get(username);
+            LeaderboardRow row = accountId != null ? board.rows.get(accountId) : null;
+            if (row == null) {
+                dto.setEntries(List.of());
+                return dto;
+            }
+            int index = board.ranking.indexOf(row);
+            int from = Math.max(0, index - radius);
+            dto.setMe(toEntry(row, index));
+            dto.setEntries(toEntries(board, from, index + radius + 1 - from));
+            dto.setSize(dto.getEntries().size());
+            return dto;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Kết quả đã chốt của một kỳ tuần/tháng theo lịch; {@code periodStart} null = kỳ gần nhất.
+     */
+    public LeaderboardPageDTO history(LeaderboardPeriod period, LocalDate periodStart) {
+        if (period == LeaderboardPeriod.ALL) {
+            throw new IllegalArgumentException("History is only available for week and month");
+        }
+        LocalDate start = periodStart != null ? periodStart : leaderboardSnapshotRepository.findLatestPeriodStart(period);
+        List<LeaderboardSnapshot> snapshots = start != null
+                ? leaderboardSnapshotRepository.findAllByPeriodAndPeriodStartOrderByRankPositionAsc(period, start)
+                : List.of();
+
+        LeaderboardPageDTO dto = new LeaderboardPageDTO();
+        dto.setPeriod(period.name().toLowerCase());
+        dto.setPeriodStart(start);
+        dto.setSize(snapshots.size());
+        dto.setTotalUsers(snapshots.size());
+        dto.setEntries(snapshots.stream()
+                .map(snapshot -> toEntry(new LeaderboardRow(snapshot.getAccountId(), snapshot.getUsername(),
+                        snapshot.getFullName(), snapshot.getCompletedLessons(), snapshot.getCompletedTests(),
+                        snapshot.getTestScoreSum(), snapshot.getXp()), snapshot.getRankPosition() - 1))
+                .collect(Collectors.toList()));
+        if (!snapshots.isEmpty()) {
+            dto.setPeriodEnd(snapshots.get(0).getPeriodEnd());
+        }
+        return dto;
+    }
+
+    /**
+     * Chốt tuần (Thứ 2 - Chủ nhật) và tháng theo lịch vừa đóng nếu chưa chốt.
+     * Chạy sau nửa đêm và một lần lúc khởi động để bù các kỳ bị lỡ khi server tắt.
+     */
+    @Scheduled(cron = "${statistics.leaderboard.snapshot-cron:0 10 0 * * *}")
+    public void snapshotClosedPeriods() {
+        LocalDate today = LocalDate.now();
+        LocalDate weekStart = today.with(DayOfWeek.MONDAY).minusWeeks(1);
+        snapshotIfMissing(LeaderboardPeriod.WEEK, weekStart, weekStart.plusDays(6));
+        LocalDate monthStart = today.withDayOfMonth(1).minusMonths(1);
+        snapshotIfMissing(LeaderboardPeriod.MONTH, monthStart, monthStart.plusMonths(1).minusDays(1));
+    }
+
+    private void snapshotIfMissing(LeaderboardPeriod period, LocalDate start, LocalDate end) {
+        if (leaderboardSnapshotRepository.existsByPeriodAndPeriodStart(period, start)) {
+            return;
+        }
+        List<LeaderboardRow> rows;
+        lock.writeLock().lock();
+        try {
+            state.advanceTo(LocalDate.now().toEpochDay());
+            if (start.toEpochDay() <= state.currentDay - RING_DAYS) {
+                return; // Kỳ đã ra khỏi vòng bucket, không còn đủ dữ liệu để chốt
+            }
+            rows = state.rankRange(start.toEpochDay(), end.toEpochDay(), snapshotSize);
+        } finally {
+            lock.writeLock().unlock();
+        }
+
+        List<LeaderboardSnapshot> snapshots = new ArrayList<>(rows.size());
+        for (int i = 0; i < rows.size(); i++) {
+            LeaderboardRow row = rows.get(i);
+            LeaderboardSnapshot snapshot = new LeaderboardSnapshot();
+            snapshot.setPeriod(period);
+            snapshot.setPeriodStart(start);
+            snapshot.setPeriodEnd(end);
+            snapshot.setRankPosition(i + 1);
+            snapshot.setAccountId(row.accountId());
+            snapshot.setUsername(row.username());
+            snapshot.setFullName(row.fullName());
+            snapshot.setCompletedLessons(row.completedLessons());
+            snapshot.setCompletedTests(row.completedTests());
+            snapshot.setTestScoreSum(row.testScoreSum());
+            snapshot.setXp(row.xp());
+            snapshots.add(snapshot);
+        }
+        leaderboardSnapshotRepository.saveAll(snapshots);
+    }
+
+    /** Đẩy các cửa sổ sang hôm nay nếu chưa có lượt ghi nào trong ngày mới. */
+    private void ensureCurrent() {
+        long today = LocalDate.now().toEpochDay();
+        lock.readLock().lock();
+        try {
+            if (state.currentDay >= today) {
+                return;
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        lock.writeLock().lock();
+        try {
+            state.advanceTo(today);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private Identity findIdentity(Long accountId) {
+        lock.readLock().lock();
+        try {
+            return state.identities.get(accountId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private LeaderboardPageDTO newPage(LeaderboardPeriod period) {
+        LeaderboardPageDTO dto = new LeaderboardPageDTO();
+        dto.setPeriod(period.name().toLowerCase());
+        if (period != LeaderboardPeriod.ALL) {
+            LocalDate today = LocalDate.ofEpochDay(state.currentDay);
+            dto.setPeriodStart(today.minusDays(period.getDays() - 1L));
+            dto.setPeriodEnd(today);
+        }
+        return dto;
+    }
+
+    private List<LeaderboardEntryDTO> toEntries(Board board, long from, int count) {
+        if (from >= board.ranking.size() || count <= 0) {
+            return List.of();
+        }
+        int start = (int) from;
+        List<LeaderboardRow> rows = board.ranking.range(start, start + count);
+        return IntStream.range(0, rows.size())
+                .mapToObj(i -> toEntry(rows.get(i), start + i))
+                .collect(Collectors.toList());
+    }
+
+    private LeaderboardEntryDTO toEntry(LeaderboardRow row, int index) {
+        LeaderboardEntryDTO dto = new LeaderboardEntryDTO();
+        dto.setRank(index + 1);
+        dto.setUserId(row.accountId());
+        dto.setUsername(row.username());
+        dto.setFullName(row.fullName());
+        dto.setCompletedLessons(row.completedLessons());
+        dto.setCompletedTests(row.completedTests());
+        dto.setAverageTestScore(row.completedTests() > 0
+                ? Math.round(((double) row.testScoreSum() / row.completedTests()) * 100.0) / 100.0
+                : 0.0);
+        dto.setXp(row.xp());
+        return dto;
+    }
+
+    private static LeaderboardRow row(Long accountId, Identity identity, long lessons, long tests, long scoreSum) {
+        return new LeaderboardRow(accountId, identity.username(), identity.fullName(), lessons, tests, scoreSum,
+                lessons * LESSON_XP + tests * TEST_XP);
+    }
+
+    private record Identity(String username, String fullName) {
+    }
+
+    /**
+     * Toàn bộ trạng thái bảng xếp hạng, được thay nguyên khối khi rebuild. Chỉ truy cập khi đang giữ lock.
+     */
+    private static final class State {
+        private final Board allTime = new Board();
+        private final Map<LeaderboardPeriod, Board> windows = new EnumMap<>(LeaderboardPeriod.class);
+        private final DayBucket[] ring = new DayBucket[RING_DAYS];
+        private final Map<Long, Identity> identities = new HashMap<>();
+        private final Map<String, Long> usernames = new HashMap<>();
+        private long currentDay;
+
+        private State(long currentDay) {
+            this.currentDay = currentDay;
+            windows.put(LeaderboardPeriod.WEEK, new Board());
+            windows.put(LeaderboardPeriod.MONTH, new Board());
+        }
+
+        private Board board(LeaderboardPeriod period) {
+            return period == LeaderboardPeriod.ALL ? allTime : windows.get(period);
+        }
+
+        private List<Board> boards() {
+            List<Board> boards = new ArrayList<>(windows.values());
+            boards.add(allTime);
+            return boards;
+        }
+
+        private void add(Long accountId, long day, long lessons, long tests, long scoreSum) {
+            allTime.add(accountId, identities.get(accountId), lessons, tests, scoreSum);
+            addToWindows(accountId, day, lessons, tests, scoreSum);
+        }
+
+        /**
+         * Ghi vào bucket của {@code day} và cộng vào các cửa sổ đang chứa ngày đó.
+         */
+        private void addToWindows(Long accountId, long day, long lessons, long tests, long scoreSum) {
+            Identity identity = identities.get(accountId);
+            if (identity == null || day > currentDay || day <= currentDay - RING_DAYS) {
+                return;
+            }
+            long[] totals = bucket(day).totals.computeIfAbsent(accountId, id -> new long[3]);
+            totals[0] += lessons;
+            totals[1] += tests;
+            totals[2] += scoreSum;
+            windows.forEach((period, board) -> {
+                if (day > currentDay - period.getDays()) {
+                    board.add(accountId, identity, lessons, tests, scoreSum);
+                }
+            });
+        }
+
+        /**
+         * Sang ngày mới: mỗi cửa sổ trừ đi bucket vừa rơi ra, slot cũ nhất của vòng được dùng lại cho ngày mới.
+         */
+        private void advanceTo(long today) {
+            while (currentDay < today) {
+                long day = ++currentDay;
+                windows.forEach((period, board) -> {
+                    long droppedDay = day - period.getDays();
+                    DayBucket dropped = ring[slot(droppedDay)];
+                    if (dropped != null && dropped.epochDay == droppedDay) {
+                        dropped.totals.forEach((accountId, totals) ->
+                                board.add(accountId, identities.get(accountId), -totals[0], -totals[1], -totals[2]));
+                    }
+                });
+                ring[slot(day)] = new DayBucket(day);
+            }
+        }
+
+        /**
+         * Top {@code limit} theo XP trong [startDay, endDay], cộng từ các bucket ngày (dùng khi chốt kỳ).
+         */
+        private List<LeaderboardRow> rankRange(long startDay, long endDay, int limit) {
+            Map<Long, long[]> sums = new HashMap<>();
+            for (long day = startDay; day <= endDay; day++) {
+                DayBucket bucket = ring[slot(day)];
+                if (bucket == null || bucket.epochDay != day) {
+                    continue;
+                }
+                bucket.totals.forEach((accountId, totals) -> {
+                    long[] sum = sums.computeIfAbsent(accountId, id -> new long[3]);
+                    sum[0] += totals[0];
+                    sum[1] += totals[1];
+                    sum[2] += totals[2];
+                });
+            }
+            return sums.entrySet().stream()
+                    .filter(entry -> identities.containsKey(entry.getKey()))
+                    .map(entry -> row(entry.getKey(), identities.get(entry.getKey()),
+                            entry.getValue()[0], entry.getValue()[1], entry.getValue()[2]))
+                    .filter(row -> row.xp() > 0)
+                    .sorted(ORDER)
+                    .limit(limit)
+                    .collect(Collectors.toList());
+        }
+
+        private DayBucket bucket(long day) {
+            int slot = slot(day);
+            if (ring[slot] == null || ring[slot].epochDay != day) {
+                ring[slot] = new DayBucket(day);
+            }
+            return ring[slot];
+        }
+
+        private static int slot(long day) {
+            return (int) Math.floorMod(day, (long) RING_DAYS);
+        }
+    }
+
+    private static final class DayBucket {
+        private final long epochDay;
+        // accountId -> {số bài học, số bài kiểm tra, tổng điểm test} phát sinh trong ngày
+        private final Map<Long, long[]> totals = new HashMap<>();
+
+        private DayBucket(long epochDay) {
+            this.epochDay = epochDay;
+        }
+    }
+
+    /**
+     * Một bảng xếp hạng: cây thống kê thứ tự + tra cứu theo account id. Người dùng không còn XP bị bỏ khỏi bảng.
+     */
+    private static final class Board {
+        private final OrderStatisticTree<LeaderboardRow> ranking = new OrderStatisticTree<>(ORDER);
+        private final Map<Long, LeaderboardRow> rows = new HashMap<>();
+
+        private void add(Long accountId, Identity identity, long lessons, long tests, long scoreSum) {
+            if (identity == null) {
+                return;
+            }
+            LeaderboardRow previous = rows.get(accountId);
+            put(accountId, row(accountId, identity,
+                    lessons + (previous != null ? previous.completedLessons() : 0),
+                    tests + (previous != null ? previous.completedTests() : 0),
+                    scoreSum + (previous != null ? previous.testScoreSum() : 0)));
+        }
+
+        private void rename(Long accountId, Identity identity) {
+            LeaderboardRow previous = rows.get(accountId);
+            if (previous != null) {
+                put(accountId, row(accountId, identity, previous.completedLessons(), previous.completedTests(),
+                        previous.testScoreSum()));
+            }
+        }
+
+        private void put(Long accountId, LeaderboardRow next) {
+            LeaderboardRow previous = rows.remove(accountId);
+            if (previous != null) {
+                ranking.remove(previous);
+            }
+            if (next != null && next.xp() > 0) {
+                ranking.add(next);
+                rows.put(accountId, next);
+            }
+        }
+    }
+}
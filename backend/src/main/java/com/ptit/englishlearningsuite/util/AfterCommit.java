@@ -0,0 +1,41 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Cập nhật trạng thái trong bộ nhớ (cache, chỉ mục, bộ đếm) theo một lượt ghi DB: trong giao dịch thì chỉ chạy sau khi
+ * commit, để lượt ghi bị rollback không để lại dấu vết; ngoài giao dịch thì chạy ngay.
+ */
+public final class AfterCommit {
+
+    private AfterCommit() {
+    }
+
+    /**
+     * Chạy {@code action} sau khi giao dịch hiện tại commit (không chạy nếu rollback), hoặc ngay nếu không có giao dịch.
+     */
+    public static void run(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Chạy {@code action} ngay, và trong giao dịch thì chạy thêm lần nữa sau khi commit. Dùng để bỏ mục cache: lượt đọc
+     * chen vào trước commit (còn thấy dữ liệu cũ) không để lại bản cũ.
+     */
+    public static void runNowAndAfterCommit(Runnable action) {
+        action.run();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            run(action);
+        }
+    }
+}
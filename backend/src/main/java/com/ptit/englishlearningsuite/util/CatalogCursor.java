@@ -0,0 +1,59 @@
+package com.ptit.englishlearningsuite.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Con trỏ phân trang keyset dạng chuỗi mờ (opaque): các giá trị khóa sắp xếp của dòng cuối trang được mã hóa
+ * base64url để client chỉ việc gửi lại nguyên văn.
+ */
+public final class CatalogCursor {
+
+    private static final String PREFIX = "c1:";
+
+    private CatalogCursor() {
+    }
+
+    public static String encode(long... keys) {
+        StringBuilder text = new StringBuilder(PREFIX);
+        for (int i = 0; i < keys.length; i++) {
+            if (i > 0) {
+                text.append(',');
+            }
+            text.append(keys[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Giải mã con trỏ gồm đúng {@code arity} khóa; con trỏ hỏng hoặc của loại danh mục khác thì ném IllegalArgumentException.
+     */
+    public static long[] decode(String cursor, int arity) {
+        try {
+            String text = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            if (!text.startsWith(PREFIX)) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            String[] parts = text.substring(PREFIX.length()).split(",");
+            if (parts.length != arity) {
+                throw new IllegalArgumentException("Invalid cursor");
+            }
+            long[] keys = new long[arity];
+            for (int i = 0; i < arity; i++) {
+                keys[i] = Long.parseLong(parts[i]);
+            }
+            return keys;
+        } catch (IllegalArgumentException e) {
+            // Gồm cả lỗi base64 và NumberFormatException
+            throw new IllegalArgumentException("Invalid cursor", e);
+        }
+    }
+
+    /** Khóa kiểu int của con trỏ (cấp độ, số thứ tự bài); ngoài phạm vi int thì coi là con trỏ hỏng. */
+    public static int intKey(long key) {
+        if (key < Integer.MIN_VALUE || key > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Invalid cursor");
+        }
+        return (int) key;
+    }
+}
@@ -0,0 +1,181 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Chỉ mục vector chính xác: id, độ khó và vector (ma trận float row-major) nằm trong các mảng song song
+ * sắp theo (độ khó, id). Lọc cửa sổ độ khó là tìm nhị phân + một đoạn liên tiếp, được chấm cosine theo lô
+ * ({@link HybridMathUtils#cosineSimilarityBatch}) rồi đi qua heap top-K.
+ * <p>
+ * Đọc không khóa trên snapshot bất biến; ghi thay snapshot (copy-on-write), hợp khi ghi thưa hơn đọc rất nhiều.
+ */
+public class ExactLessonVectorIndex implements LessonVectorIndex {
+
+    private final int dimensions;
+    private volatile Snapshot snapshot;
+
+    public ExactLessonVectorIndex(int dimensions) {
+        this.dimensions = dimensions;
+        this.snapshot = new Snapshot(0, dimensions);
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        return snapshot.size();
+    }
+
+    @Override
+    public synchronized void rebuild(List<Entry> entries) {
+        List<Entry> sorted = new ArrayList<>(entries);
+        sorted.sort(Comparator.comparingInt(Entry::difficulty).thenComparingLong(Entry::lessonId));
+        Snapshot next = new Snapshot(sorted.size(), dimensions);
+        for (int i = 0; i < sorted.size(); i++) {
+            next.set(i, sorted.get(i));
+        }
+        snapshot = next;
+    }
+
+    @Override
+    public synchronized void upsert(Entry entry) {
+        checkDimensions(entry.vector());
+        Snapshot current = snapshot;
+        int existing = current.positionOf(entry.lessonId());
+        Snapshot next = new Snapshot(current.size() + (existing < 0 ? 1 : 0), dimensions);
+        int target = 0;
+        boolean inserted = false;
+        for (int i = 0; i < current.size(); i++) {
+            if (i == existing) {
+                continue;
+            }
+            if (!inserted && (current.difficulty[i] > entry.difficulty()
+                    || (current.difficulty[i] == entry.difficulty() && current.ids[i] > entry.lessonId()))) {
+                next.set(target++, entry);
+                inserted = true;
+            }
+            next.copy(target++, current, i);
+        }
+        if (!inserted) {
+            next.set(target, entry);
+        }
+        snapshot = next;
+    }
+
+    @Override
+    public synchronized void remove(long lessonId) {
+        Snapshot current = snapshot;
+        int existing = current.positionOf(lessonId);
+        if (existing < 0) {
+            return;
+        }
+        Snapshot next = new Snapshot(current.size() - 1, dimensions);
+        for (int i = 0, target = 0; i < current.size(); i++) {
+            if (i != existing) {
+                next.copy(target++, current, i);
+            }
+        }
+        snapshot = next;
+    }
+
+    @Override
+    public List<Hit> search(float[] query, int minDifficulty, int maxDifficulty, RoaringBitmap allowed,
+                            Ranking ranking, int limit) {
+        checkDimensions(query);
+        Snapshot current = snapshot;
+        int from = current.lowerBound(minDifficulty);
+        int end = current.lowerBound(maxDifficulty + 1);
+        if (from >= end || limit <= 0) {
+            return List.of();
+        }
+        float[] scores = new float[end - from];
+        HybridMathUtils.cosineSimilarityBatch(query, current.vectors, dimensions, from, end, scores);
+        TopHits top = new TopHits(limit);
+        for (int i = from; i < end; i++) {
+            if (allowed != null && !allowed.contains((int) current.ids[i])) {
+                continue;
+            }
+            double similarity = scores[i - from];
+            top.offer(current.ids[i], ranking.rank(current.ids[i], similarity), similarity);
+        }
+        return top.drain();
+    }
+
+    private void checkDimensions(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                String.format("Vector must have %d dimensions, got %d", dimensions, vector.length));
+        }
+    }
+
+    private static final class Snapshot {
+        private final int dimensions;
+        private final long[] ids;
+        private final int[] difficulty;
+        private final float[] vectors;
+
+        private Snapshot(int size, int dimensions) {
+            this.dimensions = dimensions;
+            ids = new long[size];
+            difficulty = new int[size];
+            vectors = new float[size * dimensions];
+        }
+
+        private int size() {
+            return ids.length;
+        }
+
+        private void set(int i, Entry entry) {
+            ids[i] = entry.lessonId();
+            difficulty[i] = entry.difficulty();
+            System.arraycopy(entry.vector(), 0, vectors, i * dimensions, dimensions);
+            float norm = 0f;
+            for (int d = 0; d < dimensions; d++) {
+                norm += vectors[i * dimensions + d] * vectors[i * dimensions + d];
+            }
+            if (norm != 0f) {
+                float inv = (float) (1.0 / Math.sqrt(norm));
+                for (int d = 0; d < dimensions; d++) {
+                    vectors[i * dimensions + d] *= inv;
+                }
+            }
+        }
+
+        private void copy(int i, Snapshot from, int j) {
+            ids[i] = from.ids[j];
+            difficulty[i] = from.difficulty[j];
+            System.arraycopy(from.vectors, j * dimensions, vectors, i * dimensions, dimensions);
+        }
+
+        private int positionOf(long id) {
+            for (int i = 0; i < ids.length; i++) {
+                if (ids[i] == id) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /** Vị trí đầu tiên có độ khó >= {@code value}. */
+        private int lowerBound(int value) {
+            int low = 0;
+            int high = difficulty.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (difficulty[mid] < value) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.ptit.englishlearningsuite.util;
+
+/**
+ * Phép cập nhật Glicko-2 cho một kỳ xếp hạng (Glickman, "Example of the Glicko-2 system"): mỗi đối tượng có rating r,
+ * độ lệch RD (độ không chắc chắn) và độ biến động σ; mọi trận trong kỳ được tính cùng lúc từ giá trị đầu kỳ
+ * của cả hai phía. Rating dùng cùng thang với Elo (1500 ở giữa) nên đọc/ghi thẳng vào cột Elo hiện có.
+ */
+public final class Glicko2 {
+
+    public static final double DEFAULT_DEVIATION = 350.0;
+    public static final double DEFAULT_VOLATILITY = 0.06;
+
+    private static final double SCALE = 173.7178;
+    private static final double CENTER = 1500.0;
+    private static final double EPSILON = 0.000001;
+
+    private Glicko2() {
+    }
+
+    /**
+     * RD sau {@code periods} kỳ không có trận nào: φ' = sqrt(φ² + periods·σ²), không vượt quá RD mặc định.
+     */
+    public static double idle(double deviation, double volatility, long periods) {
+        if (periods <= 0) {
+            return deviation;
+        }
+        double phi = deviation / SCALE;
+        double next = Math.sqrt(phi * phi + periods * volatility * volatility) * SCALE;
+        return Math.min(DEFAULT_DEVIATION, next);
+    }
+
+    /**
+     * Cập nhật một đối tượng sau {@code games} trận trong kỳ; đối thủ thứ j có rating {@code opponentRatings[j]},
+     * RD {@code opponentDeviations[j]} và kết quả {@code scores[j]} (1 thắng, 0 thua). {@code tau} giới hạn tốc độ đổi
+     * của σ (0.3 - 1.2). Không có trận nào thì chỉ tăng RD như {@link #idle}.
+     */
+    public static Rating update(double rating, double deviation, double volatility,
+                                double[] opponentRatings, double[] opponentDeviations, double[] scores, int games,
+                                double tau) {
+        double mu = (rating - CENTER) / SCALE;
+        double phi = deviation / SCALE;
+        if (games == 0) {
+            return new Rating(rating, idle(deviation, volatility, 1), volatility);
+        }
+
+        // v: phương sai ước lượng từ kết quả các trận; delta: mức cải thiện ước lượng
+        double inverseVariance = 0.0;
+        double improvement = 0.0;
+        for (int j = 0; j < games; j++) {
+            double muJ = (opponentRatings[j] - CENTER) / SCALE;
+            double g = g(opponentDeviations[j] / SCALE);
+            double expected = 1.0 / (1.0 + Math.exp(-g * (mu - muJ)));
+            inverseVariance += g * g * expected * (1.0 - expected);
+            improvement += g * (scores[j] - expected);
+        }
+        double v = 1.0 / inverseVariance;
+        double delta = v * improvement;
+
+        double sigma = newVolatility(phi, volatility, v, delta, tau);
+        double phiStar = Math.sqrt(phi * phi + sigma * sigma);
+        double newPhi = 1.0 / Math.sqrt(1.0 / (phiStar * phiStar) + 1.0 / v);
+        double newMu = mu + newPhi * newPhi * improvement;
+        return new Rating(newMu * SCALE + CENTER, Math.min(DEFAULT_DEVIATION, newPhi * SCALE), sigma);
+    }
+
+    private static double g(double phi) {
+        return 1.0 / Math.sqrt(1.0 + 3.0 * phi * phi / (Math.PI * Math.PI));
+    }
+
+    // Giải f(x) = 0 bằng phương pháp Illinois (regula falsi cải tiến) như bước 5 của thuật toán
+    private static double newVolatility(double phi, double sigma, double v, double delta, double tau) {
+        double a = Math.log(sigma * sigma);
+        double phi2 = phi * phi;
+        double delta2 = delta * delta;
+
+        double lowerA = a;
+        double upperB;
+        if (delta2 > phi2 + v) {
+            upperB = Math.log(delta2 - phi2 - v);
+        } else {
+            int k = 1;
+            while (f(a - k * tau, a, phi2, v, delta2, tau) < 0) {
+                k++;
+            }
+            upperB = a - k * tau;
+        }
+
+        double fA = f(lowerA, a, phi2, v, delta2, tau);
+        double fB = f(upperB, a, phi2, v, delta2, tau);
+        while (Math.abs(upperB - lowerA) > EPSILON) {
+            double c = lowerA + (lowerA - upperB) * fA / (fB - fA);
+            double fC = f(c, a, phi2, v, delta2, tau);
+            if (fC * fB <= 0) {
+                lowerA = upperB;
+                fA = fB;
+            } else {
+                fA = fA / 2.0;
+            }
+            upperB = c;
+            fB = fC;
+        }
+        return Math.exp(lowerA / 2.0);
+    }
+
+    private static double f(double x, double a, double phi2, double v, double delta2, double tau) {
+        double ex = Math.exp(x);
+        double denominator = phi2 + v + ex;
+        return ex * (delta2 - phi2 - v - ex) / (2.0 * denominator * denominator) - (x - a) / (tau * tau);
+    }
+
+    public record Rating(double rating, double deviation, double volatility) {
+    }
+}
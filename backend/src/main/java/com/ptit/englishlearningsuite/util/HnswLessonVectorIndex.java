@@ -0,0 +1,527 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Chỉ mục vector xấp xỉ bằng đồ thị HNSW (Malkov &amp; Yashunin): mỗi bài học là một nút, tầng trên thưa để
+ * nhảy xa, tầng 0 chứa mọi nút với tối đa 2M láng giềng. Tìm kiếm đi tham lam từ tầng trên cùng xuống rồi
+ * mở rộng chùm {@code efSearch} ứng viên ở tầng 0.
+ * <p>
+ * Lọc theo cửa sổ độ khó / tập id được phép áp dụng khi thu kết quả (đồ thị vẫn được duyệt qua nút bị loại
+ * để không đứt đường đi). Nếu bộ lọc quá chặt khiến phải duyệt quá {@code 1/4} số nút thì chuyển sang quét
+ * chính xác trên các nút thỏa lọc - khi đó quét rẻ hơn đi đồ thị.
+ * <p>
+ * Xóa/cập nhật đánh dấu nút cũ là đã xóa (nút vẫn dùng để dẫn đường); khi số nút đã xóa vượt số nút còn sống
+ * thì đồ thị được dựng lại. Đọc song song dưới khóa đọc, ghi dưới khóa ghi.
+ */
+public class HnswLessonVectorIndex implements LessonVectorIndex {
+
+    private final int dimensions;
+    private final int maxConnections;
+    private final int efConstruction;
+    private final int efSearch;
+    private final double levelMultiplier;
+    private final SplittableRandom random = new SplittableRandom(42);
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int count;
+    private long[] ids = new long[16];
+    private int[] difficulty = new int[16];
+    private float[] vectors;
+    // links[node][level]: phần tử 0 là số láng giềng, sau đó là các nút láng giềng
+    private int[][][] links = new int[16][][];
+    private final BitSet deleted = new BitSet();
+    private final Map<Long, Integer> nodeOf = new HashMap<>();
+    private int entryPoint = -1;
+    private int topLevel = -1;
+
+    /**
+     * @param maxConnections số láng giềng tối đa mỗi nút ở tầng trên (M); tầng 0 là 2M
+     * @param efConstruction độ rộng chùm khi thêm nút
+     * @param efSearch       độ rộng chùm khi tìm (tối thiểu, luôn >= limit)
+     */
+    public HnswLessonVectorIndex(int dimensions, int maxConnections, int efConstruction, int efSearch) {
+        if (dimensions <= 0 || maxConnections < 2 || efConstruction <= 0 || efSearch <= 0) {
+            throw new IllegalArgumentException("Invalid HNSW parameters");
+        }
+        this.dimensions = dimensions;
+        this.maxConnections = maxConnections;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.levelMultiplier = 1.0 / Math.log(maxConnections);
+        this.vectors = new float[16 * dimensions];
+    }
+
+    @Override
+    public int dimensions() {
+        return dimensions;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return nodeOf.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void rebuild(List<Entry> entries) {
+        entries.forEach(entry -> checkDimensions(entry.vector()));
+        lock.writeLock().lock();
+        try {
+            reset();
+            for (Entry entry : entries) {
+                Integer existing = nodeOf.get(entry.lessonId());
+                if (existing != null) {
+                    deleted.set(existing);
+                }
+                insert(entry.lessonId(), entry.difficulty(), entry.vector());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void upsert(Entry entry) {
+        checkDimensions(entry.vector());
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeOf.get(entry.lessonId());
+            if (existing != null) {
+                deleted.set(existing);
+            }
+            insert(entry.lessonId(), entry.difficulty(), entry.vector());
+            compactIfNeeded();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(long lessonId) {
+        lock.writeLock().lock();
+        try {
+            Integer existing = nodeOf.remove(lessonId);
+            if (existing != null) {
+                deleted.set(existing);
+                compactIfNeeded();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public List<Hit> search(float[] query, int minDifficulty, int maxDifficulty, RoaringBitmap allowed,
+                            Ranking ranking, int limit) {
+        checkDimensions(query);
+        if (limit <= 0) {
+            return List.of();
+        }
+        float[] normalized = normalize(query, 0);
+        lock.readLock().lock();
+        try {
+            if (nodeOf.isEmpty()) {
+                return List.of();
+            }
+            int ef = Math.max(efSearch, limit);
+            NodeHeap found = new NodeHeap(ef);
+            boolean complete = false;
+            if (normalized != null) {
+                int entry = entryPoint;
+                for (int level = topLevel; level > 0; level--) {
+                    entry = greedyClosest(normalized, 0, entry, level);
+                }
+                complete = searchLayer(normalized, 0, entry, ef, 0, found,
+                        minDifficulty, maxDifficulty, allowed, Math.max(ef, count / 4));
+            } else {
+                // Truy vấn toàn 0: mọi cosine bằng 0, thứ hạng chỉ còn phụ thuộc ranking/id
+                normalized = new float[dimensions];
+            }
+
+            TopHits top = new TopHits(limit);
+            if (complete) {
+                for (int i = 0; i < found.size(); i++) {
+                    offer(top, found.nodes[i], found.scores[i], ranking);
+                }
+            } else {
+                // Bộ lọc chặt (hoặc truy vấn toàn 0): quét chính xác các nút thỏa lọc
+                for (int node = 0; node < count; node++) {
+                    if (accepts(node, minDifficulty, maxDifficulty, allowed)) {
+                        offer(top, node, similarity(normalized, 0, node), ranking);
+                    }
+                }
+            }
+            return top.drain();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void offer(TopHits top, int node, float similarity, Ranking ranking) {
+        double clamped = Math.max(-1.0, Math.min(1.0, similarity));
+        top.offer(ids[node], ranking.rank(ids[node], clamped), clamped);
+    }
+
+    private void insert(long lessonId, int lessonDifficulty, float[] vector) {
+        int node = count++;
+        ensureCapacity(count);
+        ids[node] = lessonId;
+        difficulty[node] = lessonDifficulty;
+        float[] normalized = normalize(vector, 0);
+        if (normalized != null) {
+            System.arraycopy(normalized, 0, vectors, node * dimensions, dimensions);
+        } else {
+            Arrays.fill(vectors, node * dimensions, (node + 1) * dimensions, 0f);
+        }
+        nodeOf.put(lessonId, node);
+
+        int level = (int) (-Math.log(1.0 - random.nextDouble()) * levelMultiplier);
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[capacity(l) + 1];
+        }
+        if (entryPoint < 0) {
+            entryPoint = node;
+            topLevel = level;
+            return;
+        }
+
+        int entry = entryPoint;
+        for (int l = topLevel; l > level; l--) {
+            entry = greedyClosest(vectors, node * dimensions, entry, l);
+        }
+        for (int l = Math.min(level, topLevel); l >= 0; l--) {
+            NodeHeap found = new NodeHeap(efConstruction);
+            searchLayer(vectors, node * dimensions, entry, efConstruction, l, found,
+                    Integer.MIN_VALUE, Integer.MAX_VALUE, null, Integer.MAX_VALUE);
+            int[] candidates = Arrays.copyOf(found.nodes, found.size());
+            float[] scores = Arrays.copyOf(found.scores, found.size());
+            int selected = selectNeighbours(node, candidates, scores, candidates.length, maxConnections);
+            for (int i = 0; i < selected; i++) {
+                link(node, candidates[i], l);
+                link(candidates[i], node, l);
+            }
+            entry = candidates.length > 0 ? candidates[0] : entry;
+        }
+        if (level > topLevel) {
+            topLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /** Thêm cạnh from -> to ở tầng {@code level}; danh sách đầy thì chọn lại bằng heuristic. */
+    private void link(int from, int to, int level) {
+        int[] list = links[from][level];
+        int size = list[0];
+        for (int i = 1; i <= size; i++) {
+            if (list[i] == to) {
+                return;
+            }
+        }
+        if (size < list.length - 1) {
+            list[size + 1] = to;
+            list[0] = size + 1;
+            return;
+        }
+        int[] candidates = new int[size + 1];
+        float[] scores = new float[size + 1];
+        System.arraycopy(list, 1, candidates, 0, size);
+        candidates[size] = to;
+        for (int i = 0; i <= size; i++) {
+            scores[i] = similarity(vectors, from * dimensions, candidates[i]);
+        }
+        sortDescending(candidates, scores, size + 1);
+        int selected = selectNeighbours(from, candidates, scores, size + 1, size);
+        System.arraycopy(candidates, 0, list, 1, selected);
+        list[0] = selected;
+    }
+
+    /**
+     * Heuristic chọn láng giềng của HNSW: lấy ứng viên (đã sắp theo độ gần {@code base} giảm dần) nếu nó gần
+     * {@code base} hơn mọi láng giềng đã chọn, để cạnh trải đều nhiều hướng; còn chỗ thì lấp bằng các ứng viên
+     * bị bỏ qua. Kết quả nằm ở đầu {@code candidates}; trả về số phần tử được chọn.
+     */
+    private int selectNeighbours(int base, int[] candidates, float[] scores, int size, int max) {
+        int[] selected = new int[Math.min(size, max)];
+        int[] skipped = new int[size];
+        int selectedCount = 0;
+        int skippedCount = 0;
+        for (int i = 0; i < size && selectedCount < max; i++) {
+            int candidate = candidates[i];
+            if (candidate == base) {
+                continue;
+            }
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount && diverse; j++) {
+                diverse = similarity(vectors, candidate * dimensions, selected[j]) < scores[i];
+            }
+            if (diverse) {
+                selected[selectedCount++] = candidate;
+            } else {
+                skipped[skippedCount++] = candidate;
+            }
+        }
+        for (int i = 0; i < skippedCount && selectedCount < max; i++) {
+            selected[selectedCount++] = skipped[i];
+        }
+        System.arraycopy(selected, 0, candidates, 0, selectedCount);
+        return selectedCount;
+    }
+
+    private int greedyClosest(float[] query, int queryOffset, int entry, int level) {
+        int current = entry;
+        float best = similarity(query, queryOffset, current);
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                float score = similarity(query, queryOffset, list[i]);
+                if (score > best) {
+                    best = score;
+                    current = list[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Tìm theo chùm ở một tầng; {@code found} giữ tối đa {@code ef} nút thỏa lọc gần nhất.
+     * Trả về false nếu đã duyệt quá {@code visitBudget} nút mà chưa xong (bộ lọc quá chặt).
+     */
+    private boolean searchLayer(float[] query, int queryOffset, int entry, int ef, int level, NodeHeap found,
+                                int minDifficulty, int maxDifficulty, RoaringBitmap allowed, int visitBudget) {
+        BitSet visited = new BitSet(count);
+        // Hàng đợi ứng viên là max-heap theo độ gần (lưu điểm âm trong min-heap)
+        NodeHeap candidates = new NodeHeap(Math.max(16, ef));
+        float entryScore = similarity(query, queryOffset, entry);
+        visited.set(entry);
+        candidates.push(entry, -entryScore);
+        if (accepts(entry, minDifficulty, maxDifficulty, allowed)) {
+            found.push(entry, entryScore);
+        }
+        int visitedCount = 1;
+        while (candidates.size() > 0) {
+            float closest = -candidates.peekScore();
+            if (found.size() >= ef && closest < found.peekScore()) {
+                break;
+            }
+            int current = candidates.pop();
+            int[] list = links[current][level];
+            for (int i = 1; i <= list[0]; i++) {
+                int neighbour = list[i];
+                if (visited.get(neighbour)) {
+                    continue;
+                }
+                visited.set(neighbour);
+                if (++visitedCount > visitBudget) {
+                    return false;
+                }
+                float score = similarity(query, queryOffset, neighbour);
+                if (found.size() < ef || score > found.peekScore()) {
+                    candidates.push(neighbour, -score);
+                    if (accepts(neighbour, minDifficulty, maxDifficulty, allowed)) {
+                        if (found.size() >= ef) {
+                            found.pop();
+                        }
+                        found.push(neighbour, score);
+                    }
+                }
+            }
+        }
+        found.sortDescending();
+        return true;
+    }
+
+    private boolean accepts(int node, int minDifficulty, int maxDifficulty, RoaringBitmap allowed) {
+        return !deleted.get(node)
+                && difficulty[node] >= minDifficulty && difficulty[node] <= maxDifficulty
+                && (allowed == null || allowed.contains((int) ids[node]));
+    }
+
+    private float similarity(float[] query, int queryOffset, int node) {
+        int offset = node * dimensions;
+        float dot = 0f;
+        for (int d = 0; d < dimensions; d++) {
+            dot += query[queryOffset + d] * vectors[offset + d];
+        }
+        return dot;
+    }
+
+    private void compactIfNeeded() {
+        int dead = count - nodeOf.size();
+        if (dead <= nodeOf.size()) {
+            return;
+        }
+        List<Entry> live = new ArrayList<>(nodeOf.size());
+        for (int node = 0; node < count; node++) {
+            if (!deleted.get(node)) {
+                live.add(new Entry(ids[node], difficulty[node],
+                        Arrays.copyOfRange(vectors, node * dimensions, (node + 1) * dimensions)));
+            }
+        }
+        reset();
+        for (Entry entry : live) {
+            insert(entry.lessonId(), entry.difficulty(), entry.vector());
+        }
+    }
+
+    private void reset() {
+        count = 0;
+        deleted.clear();
+        nodeOf.clear();
+        entryPoint = -1;
+        topLevel = -1;
+        Arrays.fill(links, null);
+    }
+
+    private void ensureCapacity(int size) {
+        if (size <= ids.length) {
+            return;
+        }
+        int capacity = Math.max(size, ids.length * 2);
+        ids = Arrays.copyOf(ids, capacity);
+        difficulty = Arrays.copyOf(difficulty, capacity);
+        vectors = Arrays.copyOf(vectors, capacity * dimensions);
+        links = Arrays.copyOf(links, capacity);
+    }
+
+    private int capacity(int level) {
+        return level == 0 ? 2 * maxConnections : maxConnections;
+    }
+
+    private float[] normalize(float[] vector, int offset) {
+        float norm = 0f;
+        for (int d = 0; d < dimensions; d++) {
+            norm += vector[offset + d] * vector[offset + d];
+        }
+        if (norm == 0f) {
+            return null;
+        }
+        float inv = (float) (1.0 / Math.sqrt(norm));
+        float[] normalized = new float[dimensions];
+        for (int d = 0; d < dimensions; d++) {
+            normalized[d] = vector[offset + d] * inv;
+        }
+        return normalized;
+    }
+
+    private void checkDimensions(float[] vector) {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException(
+                String.format("Vector must have %d dimensions, got %d", dimensions, vector.length));
+        }
+    }
+
+    private static void sortDescending(int[] nodes, float[] scores, int size) {
+        for (int i = 1; i < size; i++) {
+            int node = nodes[i];
+            float score = scores[i];
+            int j = i - 1;
+            while (j >= 0 && scores[j] < score) {
+                nodes[j + 1] = nodes[j];
+                scores[j + 1] = scores[j];
+                j--;
+            }
+            nodes[j + 1] = node;
+            scores[j + 1] = score;
+        }
+    }
+
+    /**
+     * Min-heap (điểm, nút) trên hai mảng nguyên thủy, tự nới khi đầy.
+     */
+    private static final class NodeHeap {
+        private int[] nodes;
+        private float[] scores;
+        private int size;
+
+        private NodeHeap(int capacity) {
+            nodes = new int[Math.max(1, capacity)];
+            scores = new float[nodes.length];
+        }
+
+        private int size() {
+            return size;
+        }
+
+        private float peekScore() {
+            return scores[0];
+        }
+
+        private void push(int node, float score) {
+            if (size == nodes.length) {
+                nodes = Arrays.copyOf(nodes, size * 2);
+                scores = Arrays.copyOf(scores, size * 2);
+            }
+            int i = size++;
+            while (i > 0) {
+                int parent = (i - 1) >>> 1;
+                if (scores[parent] <= score) {
+                    break;
+                }
+                nodes[i] = nodes[parent];
+                scores[i] = scores[parent];
+                i = parent;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+        }
+
+        private int pop() {
+            int top = nodes[0];
+            size--;
+            int node = nodes[size];
+            float score = scores[size];
+            int i = 0;
+            while (true) {
+                int child = 2 * i + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && scores[child + 1] < scores[child]) {
+                    child++;
+                }
+                if (scores[child] >= score) {
+                    break;
+                }
+                nodes[i] = nodes[child];
+                scores[i] = scores[child];
+                i = child;
+            }
+            nodes[i] = node;
+            scores[i] = score;
+            return top;
+        }
+
+        /** Sắp lại mảng theo điểm giảm dần (heap không còn dùng như heap sau đó). */
+        private void sortDescending() {
+            int n = size;
+            int[] sortedNodes = new int[Math.max(1, n)];
+            float[] sortedScores = new float[sortedNodes.length];
+            for (int i = n - 1; i >= 0; i--) {
+                sortedScores[i] = scores[0];
+                sortedNodes[i] = pop();
+            }
+            nodes = sortedNodes;
+            scores = sortedScores;
+            size = n;
+        }
+    }
+}
@@ -1,13 +1,18 @@
 package com.ptit.englishlearningsuite.util;
 
 public class HybridMathUtils {
-    private static final int K_FACTOR = 32;
+    public static final int K_FACTOR = 32;
+    private static final int SIMD_LANES = detectSimdLanes();
     public static int calculateNewElo(int currentRating, int opponentRating, double actualScore) {
+        return calculateNewElo(currentRating, opponentRating, actualScore, K_FACTOR);
+    }
+
+    public static int calculateNewElo(int currentRating, int opponentRating, double actualScore, int kFactor) {
         // Tính Expected Score (xác suất thắng dựa trên rating)
         double expectedScore = calculateExpectedScore(currentRating, opponentRating);
         
         // Tính rating mới
-        double newRating = currentRating + K_FACTOR * (actualScore - expectedScore);
+        double newRating = currentRating + kFactor * (actualScore - expectedScore);
         
         // Làm tròn và đảm bảo rating không âm
         return Math.max(0, (int) Math.round(newRating));
@@ -31,24 +36,16 @@ public class HybridMathUtils {
             );
         }
         
-        // Tính dot product (A · B)
+        // Một lượt duyệt: dot product (A · B), ||A||² và ||B||²
         double dotProduct = 0.0;
+        double normA = 0.0;
+        double normB = 0.0;
         for (int i = 0; i < vectorA.length; i++) {
             dotProduct += vectorA[i] * vectorB[i];
-        }
-        
-        // Tính norm (độ dài) của vector A: ||A|| = sqrt(Σ(Ai²))
-        double normA = 0.0;
-        for (double value : vectorA) {
-            normA += value * value;
+            normA += vectorA[i] * vectorA[i];
+            normB += vectorB[i] * vectorB[i];
         }
         normA = Math.sqrt(normA);
-        
-        // Tính norm của vector B: ||B|| = sqrt(Σ(Bi²))
-        double normB = 0.0;
-        for (double value : vectorB) {
-            normB += value * value;
-        }
         normB = Math.sqrt(normB);
         
         // Xử lý trường hợp chia cho 0 (vector zero)
@@ -64,6 +61,88 @@ public class HybridMathUtils {
         // Đảm bảo kết quả nằm trong khoảng [-1, 1] (do lỗi làm tròn số)
         return Math.max(-1.0, Math.min(1.0, cosineSimilarity));
     }
+
+    /**
+     * Cosine similarity của một vector truy vấn với nhiều vector bài học cùng lúc.
+     * {@code lessonMatrix} xếp theo hàng (row-major), mỗi hàng {@code dimensions} phần tử và đã chuẩn hóa
+     * về độ dài 1 (xem {@link #normalizeRows}), nên chỉ cần dot product rồi chia cho ||query|| một lần.
+     * Kết quả của hàng {@code fromRow + i} được ghi vào {@code out[i]}.
+     * Dùng JDK Vector API khi có (và vector đủ dài để lấp đầy một thanh ghi SIMD), ngược lại dùng vòng lặp vô hướng.
+     */
+    public static void cosineSimilarityBatch(float[] query, float[] lessonMatrix, int dimensions,
+                                             int fromRow, int toRow, float[] out) {
+        if (query.length != dimensions) {
+            throw new IllegalArgumentException(
+                String.format("Query must have %d dimensions, got %d", dimensions, query.length));
+        }
+        if (fromRow < 0 || toRow < fromRow || (long) toRow * dimensions > lessonMatrix.length || out.length < toRow - fromRow) {
+            throw new IllegalArgumentException(
+                String.format("Invalid row range [%d, %d) for %d rows", fromRow, toRow, lessonMatrix.length / Math.max(1, dimensions)));
+        }
+
+        float queryNorm = 0f;
+        for (float value : query) {
+            queryNorm += value * value;
+        }
+        if (queryNorm == 0f) {
+            java.util.Arrays.fill(out, 0, toRow - fromRow, 0f);
+            return;
+        }
+        float invQueryNorm = (float) (1.0 / Math.sqrt(queryNorm));
+
+        if (SIMD_LANES > 0 && dimensions >= SIMD_LANES) {
+            SimdSkillScorer.score(query, invQueryNorm, lessonMatrix, dimensions, fromRow, toRow, out);
+            return;
+        }
+        for (int row = fromRow; row < toRow; row++) {
+            int offset = row * dimensions;
+            float dot = 0f;
+            for (int i = 0; i < dimensions; i++) {
+                dot += query[i] * lessonMatrix[offset + i];
+            }
+            out[row - fromRow] = Math.max(-1f, Math.min(1f, dot * invQueryNorm));
+        }
+    }
+
+    public static void cosineSimilarityBatch(float[] query, float[] lessonMatrix, int dimensions, float[] out) {
+        cosineSimilarityBatch(query, lessonMatrix, dimensions, 0, lessonMatrix.length / dimensions, out);
+    }
+
+    /**
+     * Chuẩn hóa tại chỗ từng hàng của ma trận row-major về độ dài 1 (hàng toàn 0 giữ nguyên).
+     */
+    public static void normalizeRows(float[] matrix, int dimensions) {
+        for (int offset = 0; offset + dimensions <= matrix.length; offset += dimensions) {
+            float norm = 0f;
+            for (int i = 0; i < dimensions; i++) {
+                norm += matrix[offset + i] * matrix[offset + i];
+            }
+            if (norm == 0f) {
+                continue;
+            }
+            float inv = (float) (1.0 / Math.sqrt(norm));
+            for (int i = 0; i < dimensions; i++) {
+                matrix[offset + i] *= inv;
+            }
+        }
+    }
+
+    /** Số làn float của Vector API trên máy này, 0 nếu không dùng được (thiếu module jdk.incubator.vector). */
+    public static int simdLanes() {
+        return SIMD_LANES;
+    }
+
+    private static int detectSimdLanes() {
+        if (ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()
+                || Boolean.getBoolean("skill.vector.simd.disabled")) {
+            return 0;
+        }
+        try {
+            return SimdSkillScorer.lanes();
+        } catch (LinkageError e) {
+            return 0;
+        }
+    }
     
     public static double[] normalizeVector(double[] vector) {
         double norm = 0.0;
@@ -0,0 +1,53 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.List;
+
+/**
+ * Chỉ mục vector của bài học: tìm các bài có vector gần vector truy vấn nhất (cosine), chỉ trong
+ * cửa sổ độ khó [minDifficulty, maxDifficulty] và trong tập lesson id được phép.
+ * Vector được chuẩn hóa về độ dài 1 khi thêm vào; số chiều cố định theo từng chỉ mục.
+ * <p>
+ * Hai cài đặt: {@link ExactLessonVectorIndex} (quét chính xác, hợp với danh mục nhỏ / vector ít chiều) và
+ * {@link HnswLessonVectorIndex} (đồ thị HNSW xấp xỉ, cho danh mục lớn với vector nhiều chiều).
+ * Các cài đặt an toàn cho nhiều luồng đọc song song với luồng ghi.
+ */
+public interface LessonVectorIndex {
+
+    int dimensions();
+
+    int size();
+
+    /** Thay toàn bộ nội dung chỉ mục. */
+    void rebuild(List<Entry> entries);
+
+    /** Thêm hoặc thay vector/độ khó của một bài học. */
+    void upsert(Entry entry);
+
+    void remove(long lessonId);
+
+    /**
+     * Tối đa {@code limit} bài học theo {@code ranking} giảm dần (cùng hạng thì id nhỏ hơn trước).
+     * {@code allowed} null nghĩa là không lọc theo id. Danh sách rỗng khi không có bài nào thỏa bộ lọc.
+     */
+    List<Hit> search(float[] query, int minDifficulty, int maxDifficulty, RoaringBitmap allowed,
+                     Ranking ranking, int limit);
+
+    record Entry(long lessonId, int difficulty, float[] vector) {
+    }
+
+    /** {@code similarity} luôn là cosine với truy vấn, kể cả khi thứ hạng dùng {@link Ranking} khác. */
+    record Hit(long lessonId, double similarity) {
+    }
+
+    /**
+     * Thứ hạng của một ứng viên từ cosine của nó (ví dụ trộn thêm điểm lọc cộng tác).
+     */
+    @FunctionalInterface
+    interface Ranking {
+        Ranking SIMILARITY = (lessonId, similarity) -> similarity;
+
+        double rank(long lessonId, double similarity);
+    }
+}
@@ -0,0 +1,175 @@
+package com.ptit.englishlearningsuite.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Cây thống kê thứ tự (treap có lưu kích thước cây con): thêm/xóa, tra hạng của một phần tử và lấy phần tử
+ * ở vị trí i đều là O(log n) kỳ vọng. Các phần tử phải phân biệt theo {@code comparator}.
+ * Lớp này không thread-safe; người dùng tự đồng bộ.
+ */
+public class OrderStatisticTree<T> {
+
+    private final Comparator<? super T> comparator;
+    private final SplittableRandom random = new SplittableRandom();
+    private Node<T> root;
+
+    public OrderStatisticTree(Comparator<? super T> comparator) {
+        this.comparator = comparator;
+    }
+
+    public int size() {
+        return size(root);
+    }
+
+    public void clear() {
+        root = null;
+    }
+
+    /**
+     * Thêm phần tử; trả về false nếu đã có phần tử bằng nó.
+     */
+    public boolean add(T value) {
+        if (indexOf(value) >= 0) {
+            return false;
+        }
+        Split<T> split = split(root, value, false);
+        root = merge(merge(split.left, new Node<>(value, random.nextInt())), split.right);
+        return true;
+    }
+
+    public boolean remove(T value) {
+        Split<T> lower = split(root, value, false);
+        Split<T> upper = split(lower.right, value, true);
+        root = merge(lower.left, upper.right);
+        return upper.left != null;
+    }
+
+    /**
+     * Vị trí (tính từ 0) của phần tử trong thứ tự, hoặc -1 nếu không có.
+     */
+    public int indexOf(T value) {
+        int index = 0;
+        Node<T> node = root;
+        while (node != null) {
+            int cmp = comparator.compare(value, node.value);
+            if (cmp < 0) {
+                node = node.left;
+            } else if (cmp > 0) {
+                index += size(node.left) + 1;
+                node = node.right;
+            } else {
+                return index + size(node.left);
+            }
+        }
+        return -1;
+    }
+
+    public T get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", size: " + size());
+        }
+        Node<T> node = root;
+        while (true) {
+            int leftSize = size(node.left);
+            if (index < leftSize) {
+                node = node.left;
+            } else if (index > leftSize) {
+                index -= leftSize + 1;
+                node = node.right;
+            } else {
+                return node.value;
+            }
+        }
+    }
+
+    /**
+     * Các phần tử ở vị trí [fromIndex, toIndex), tự cắt theo kích thước cây.
+     */
+    public List<T> range(int fromIndex, int toIndex) {
+        int from = Math.max(0, fromIndex);
+        int to = Math.min(size(), toIndex);
+        List<T> result = new ArrayList<>(Math.max(0, to - from));
+        collect(root, from, to, 0, result);
+        return result;
+    }
+
+    private void collect(Node<T> node, int from, int to, int offset, List<T> result) {
+        if (node == null || from >= to) {
+            return;
+        }
+        int index = offset + size(node.left);
+        if (from < index) {
+            collect(node.left, from, to, offset, result);
+        }
+        if (from <= index && index < to) {
+            result.add(node.value);
+        }
+        if (index + 1 < to) {
+            collect(node.right, from, to, index + 1, result);
+        }
+    }
+
+    /**
+     * Tách cây thành (các phần tử &lt; value, còn lại); nếu {@code inclusive} thì phần trái gồm cả phần tử bằng value.
+     */
+    private Split<T> split(Node<T> node, T value, boolean inclusive) {
+        if (node == null) {
+            return new Split<>(null, null);
+        }
+        int cmp = comparator.compare(node.value, value);
+        if (cmp < 0 || (inclusive && cmp == 0)) {
+            Split<T> split = split(node.right, value, inclusive);
+            node.right = split.left;
+            node.update();
+            return new Split<>(node, split.right);
+        }
+        Split<T> split = split(node.left, value, inclusive);
+        node.left = split.right;
+        node.update();
+        return new Split<>(split.left, node);
+    }
+
+    private Node<T> merge(Node<T> left, Node<T> right) {
+        if (left == null) {
+            return right;
+        }
+        if (right == null) {
+            return left;
+        }
+        if (left.priority > right.priority) {
+            left.right = merge(left.right, right);
+            left.update();
+            return left;
+        }
+        right.left = merge(left, right.left);
+        right.update();
+        return right;
+    }
+
+    private static int size(Node<?> node) {
+        return node != null ? node.size : 0;
+    }
+
+    private record Split<T>(Node<T> left, Node<T> right) {
+    }
+
+    private static final class Node<T> {
+        private final T value;
+        private final int priority;
+        private int size = 1;
+        private Node<T> left;
+        private Node<T> right;
+
+        private Node(T value, int priority) {
+            this.value = value;
+            this.priority = priority;
+        }
+
+        private void update() {
+            size = 1 + size(left) + size(right);
+        }
+    }
+}
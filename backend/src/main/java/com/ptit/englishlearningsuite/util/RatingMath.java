@@ -0,0 +1,83 @@
+package com.ptit.englishlearningsuite.util;
+
+/**
+ * Phép tính của một lượt làm bài (Elo người học, độ khó bài học, mức thành thạo từng kỹ năng), tách khỏi
+ * Spring/DB để dùng chung giữa {@code RecommendationService#processLessonResult} và bộ mô phỏng replay.
+ * <p>
+ * Người học và bài học được coi là hai đối thủ: người học đúng thì người học "thắng", bài học "thua" và ngược lại.
+ * Cả hai phía đều tính từ rating trước lượt này.
+ */
+public final class RatingMath {
+
+    /** Elo của người học chưa có rating (giống giá trị mặc định của Account). */
+    public static final int DEFAULT_ELO = 1000;
+
+    /** Độ khó của bài học chưa có rating (giống giá trị mặc định của Lesson). */
+    public static final int DEFAULT_DIFFICULTY = 1500;
+
+    // Hệ số thay đổi proficiency: khi sai giảm ít hơn khi đúng để tránh giảm quá nhanh
+    public static final double IMPROVEMENT_ON_PASS = 0.05;
+    public static final double IMPROVEMENT_ON_FAIL = -0.02;
+
+    private RatingMath() {
+    }
+
+    /**
+     * Kết quả của một lượt với hệ số K {@code kFactor}. Giá trị null được thay bằng mặc định
+     * (Elo {@link #DEFAULT_ELO}, độ khó {@link #DEFAULT_DIFFICULTY}, thành thạo 0, trọng số 0.33/0.33/0.34).
+     */
+    public static Result apply(int kFactor, Integer userElo, Integer lessonDifficulty,
+                               Double grammar, Double vocab, Double listening,
+                               Double grammarWeight, Double vocabWeight, Double listeningWeight,
+                               boolean passed) {
+        return apply(kFactor,
+                userElo != null ? userElo : DEFAULT_ELO,
+                lessonDifficulty != null ? lessonDifficulty : DEFAULT_DIFFICULTY,
+                grammar != null ? grammar : 0.0,
+                vocab != null ? vocab : 0.0,
+                listening != null ? listening : 0.0,
+                grammarWeight != null ? grammarWeight : 0.33,
+                vocabWeight != null ? vocabWeight : 0.33,
+                listeningWeight != null ? listeningWeight : 0.34,
+                passed);
+    }
+
+    /**
+     * Như trên nhưng với giá trị nguyên thủy (không boxing), cho các vòng replay hàng triệu lượt.
+     */
+    public static Result apply(int kFactor, int userElo, int lessonDifficulty,
+                               double grammar, double vocab, double listening,
+                               double grammarWeight, double vocabWeight, double listeningWeight,
+                               boolean passed) {
+        int newUserElo = HybridMathUtils.calculateNewElo(userElo, lessonDifficulty, passed ? 1.0 : 0.0, kFactor);
+        int newLessonDifficulty = HybridMathUtils.calculateNewElo(lessonDifficulty, userElo, passed ? 0.0 : 1.0, kFactor);
+
+        double improvementFactor = passed ? IMPROVEMENT_ON_PASS : IMPROVEMENT_ON_FAIL;
+        return new Result(userElo, newUserElo,
+                nextProficiency(grammar, grammarWeight, improvementFactor),
+                nextProficiency(vocab, vocabWeight, improvementFactor),
+                nextProficiency(listening, listeningWeight, improvementFactor),
+                newLessonDifficulty - lessonDifficulty);
+    }
+
+    public static Result apply(Integer userElo, Integer lessonDifficulty,
+                               Double grammar, Double vocab, Double listening,
+                               Double grammarWeight, Double vocabWeight, Double listeningWeight,
+                               boolean passed) {
+        return apply(HybridMathUtils.K_FACTOR, userElo, lessonDifficulty, grammar, vocab, listening,
+                grammarWeight, vocabWeight, listeningWeight, passed);
+    }
+
+    private static double nextProficiency(double current, double weight, double improvementFactor) {
+        // Giới hạn trong [0.0, 1.0]
+        return Math.max(0.0, Math.min(1.0, current + weight * improvementFactor));
+    }
+
+    /**
+     * @param oldUserElo            Elo người học dùng cho lượt này (đã thay mặc định nếu null)
+     * @param lessonDifficultyDelta thay đổi độ khó bài học
+     */
+    public record Result(int oldUserElo, int newUserElo, double grammar, double vocab, double listening,
+                         int lessonDifficultyDelta) {
+    }
+}
@@ -0,0 +1,40 @@
+package com.ptit.englishlearningsuite.util;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Nhánh SIMD của {@link HybridMathUtils#cosineSimilarityBatch}: dùng JDK Vector API (jdk.incubator.vector).
+ * Chỉ được nạp khi module có mặt lúc chạy (--add-modules jdk.incubator.vector).
+ */
+final class SimdSkillScorer {
+
+    private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+    private SimdSkillScorer() {
+    }
+
+    static int lanes() {
+        return SPECIES.length();
+    }
+
+    static void score(float[] query, float invQueryNorm, float[] matrix, int dimensions, int fromRow, int toRow, float[] out) {
+        int loopBound = SPECIES.loopBound(dimensions);
+        for (int row = fromRow; row < toRow; row++) {
+            int offset = row * dimensions;
+            FloatVector acc = FloatVector.zero(SPECIES);
+            int i = 0;
+            for (; i < loopBound; i += SPECIES.length()) {
+                FloatVector q = FloatVector.fromArray(SPECIES, query, i);
+                FloatVector m = FloatVector.fromArray(SPECIES, matrix, offset + i);
+                acc = q.fma(m, acc);
+            }
+            float dot = acc.reduceLanes(VectorOperators.ADD);
+            for (; i < dimensions; i++) {
+                dot += query[i] * matrix[offset + i];
+            }
+            out[row - fromRow] = Math.max(-1f, Math.min(1f, dot * invQueryNorm));
+        }
+    }
+}
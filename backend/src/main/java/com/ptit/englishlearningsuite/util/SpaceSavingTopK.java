@@ -0,0 +1,125 @@
+package com.ptit.englishlearningsuite.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Sketch Top-K theo thuật toán Space-Saving (Metwally et al.): chỉ giữ tối đa {@code capacity} bộ đếm.
+ * Phần tử đã có chỗ được đếm chính xác từ lúc được nhận vào; khi đầy, phần tử mới thay chỗ bộ đếm nhỏ nhất
+ * và thừa hưởng giá trị của nó làm sai số ({@link Entry#error()}), nên {@code count - error <= số thật <= count}.
+ * Chi phí mỗi lần ghi là O(log capacity), truy vấn top-N là O(N) - không phụ thuộc số lượt ghi.
+ */
+public class SpaceSavingTopK<K> {
+
+    private static final Comparator<Counter<?>> ORDER = Comparator
+            .<Counter<?>>comparingLong(counter -> counter.count)
+            .thenComparingLong(counter -> counter.sequence);
+
+    private final int capacity;
+    private final Map<K, Counter<K>> counters = new HashMap<>();
+    private final TreeSet<Counter<K>> ordered = new TreeSet<>(ORDER);
+    private long sequence;
+
+    public SpaceSavingTopK(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public synchronized void offer(K item, long weight) {
+        offer(item, weight, 0);
+    }
+
+    /**
+     * Khôi phục một bộ đếm đã lưu (count, error) hoặc cộng dồn khi gộp nhiều sketch.
+     */
+    public synchronized void offer(K item, long weight, long error) {
+        if (item == null || weight <= 0) {
+            return;
+        }
+        Counter<K> counter = counters.get(item);
+        if (counter != null) {
+            ordered.remove(counter);
+            counter.count += weight;
+            counter.error += error;
+            ordered.add(counter);
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            counter = new Counter<>(item, weight, error, sequence++);
+        } else {
+            Counter<K> min = ordered.pollFirst();
+            counters.remove(min.item);
+            counter = new Counter<>(item, min.count + weight, min.count + error, sequence++);
+        }
+        counters.put(item, counter);
+        ordered.add(counter);
+    }
+
+    /**
+     * N phần tử có bộ đếm lớn nhất, giảm dần.
+     */
+    public synchronized List<Entry<K>> top(int n) {
+        List<Entry<K>> result = new ArrayList<>(Math.min(n, counters.size()));
+        Iterator<Counter<K>> iterator = ordered.descendingIterator();
+        while (iterator.hasNext() && result.size() < n) {
+            result.add(iterator.next().toEntry());
+        }
+        return result;
+    }
+
+    public synchronized List<Entry<K>> entries() {
+        return top(counters.size());
+    }
+
+    public synchronized boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    /**
+     * Gộp sketch khác vào sketch này (dùng cho cửa sổ trượt: gộp các sketch theo ngày).
+     * Bộ đếm cùng phần tử được cộng; kết quả vẫn giữ tối đa {@code capacity} phần tử lớn nhất.
+     */
+    public void merge(SpaceSavingTopK<K> other) {
+        for (Entry<K> entry : other.entries()) {
+            offer(entry.item(), entry.count(), entry.error());
+        }
+    }
+
+    public record Entry<K>(K item, long count, long error) {
+
+        /** Cận dưới của số lượt thật. */
+        public long guaranteedCount() {
+            return count - error;
+        }
+    }
+
+    private static final class Counter<K> {
+        private final K item;
+        private long count;
+        private long error;
+        private final long sequence;
+
+        private Counter(K item, long count, long error, long sequence) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+            this.sequence = sequence;
+        }
+
+        private Entry<K> toEntry() {
+            return new Entry<>(item, count, error);
+        }
+    }
+}
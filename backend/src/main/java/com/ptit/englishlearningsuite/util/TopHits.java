@@ -0,0 +1,98 @@
+package com.ptit.englishlearningsuite.util;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Min-heap kích thước cố định trên các mảng song song (id, thứ hạng, cosine): phần tử "kém nhất"
+ * (thứ hạng thấp nhất, cùng hạng thì id lớn hơn) nằm ở gốc và bị thay khi có ứng viên tốt hơn.
+ * Không cấp phát gì cho từng ứng viên. Không thread-safe.
+ */
+final class TopHits {
+
+    private final long[] ids;
+    private final double[] ranks;
+    private final double[] similarities;
+    private int size;
+
+    TopHits(int capacity) {
+        ids = new long[Math.max(0, capacity)];
+        ranks = new double[ids.length];
+        similarities = new double[ids.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    void offer(long id, double rank, double similarity) {
+        if (size < ids.length) {
+            set(size, id, rank, similarity);
+            siftUp(size++);
+        } else if (size > 0 && worse(0, id, rank)) {
+            set(0, id, rank, similarity);
+            siftDown(0);
+        }
+    }
+
+    /** Lấy kết quả theo thứ hạng giảm dần (heap rỗng sau đó). */
+    List<LessonVectorIndex.Hit> drain() {
+        LessonVectorIndex.Hit[] result = new LessonVectorIndex.Hit[size];
+        while (size > 0) {
+            result[size - 1] = new LessonVectorIndex.Hit(ids[0], similarities[0]);
+            size--;
+            set(0, ids[size], ranks[size], similarities[size]);
+            siftDown(0);
+        }
+        return Arrays.asList(result);
+    }
+
+    /** Phần tử ở {@code i} xếp sau ứng viên (id, rank)? */
+    private boolean worse(int i, long id, double rank) {
+        return ranks[i] < rank || (ranks[i] == rank && ids[i] > id);
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!worse(i, ids[parent], ranks[parent])) {
+                break;
+            }
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int left = 2 * i + 1;
+            if (left >= size) {
+                return;
+            }
+            int worst = left;
+            int right = left + 1;
+            if (right < size && worse(right, ids[left], ranks[left])) {
+                worst = right;
+            }
+            if (!worse(worst, ids[i], ranks[i])) {
+                return;
+            }
+            swap(i, worst);
+            i = worst;
+        }
+    }
+
+    private void set(int i, long id, double rank, double similarity) {
+        ids[i] = id;
+        ranks[i] = rank;
+        similarities[i] = similarity;
+    }
+
+    private void swap(int a, int b) {
+        long id = ids[a];
+        double rank = ranks[a];
+        double similarity = similarities[a];
+        set(a, ids[b], ranks[b], similarities[b]);
+        set(b, id, rank, similarity);
+    }
+}
@@ -0,0 +1,84 @@
+package com.ptit.englishlearningsuite.controller;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ptit.englishlearningsuite.dto.CatalogPageDTO;
+import com.ptit.englishlearningsuite.dto.LessonSummaryDTO;
+import com.ptit.englishlearningsuite.service.ContentVersionService;
+import com.ptit.englishlearningsuite.service.LessonService;
+import com.ptit.englishlearningsuite.service.SerializedResponseCache;
+import com.ptit.englishlearningsuite.util.CatalogCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Trang danh mục của {@link LessonController}: con trỏ hợp lệ đi qua, con trỏ bị sửa trả 400.
+ */
+class LessonControllerCatalogTest {
+
+    private final LessonService lessonService = mock(LessonService.class);
+    private LessonController controller;
+
+    @BeforeEach
+    void setUp() {
+        SerializedResponseCache cache = new SerializedResponseCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "gzipMinBytes", 1024);
+        ReflectionTestUtils.invokeMethod(cache, "init");
+
+        controller = new LessonController();
+        ReflectionTestUtils.setField(controller, "lessonService", lessonService);
+        ReflectionTestUtils.setField(controller, "serializedResponseCache", cache);
+        ReflectionTestUtils.setField(controller, "contentVersionService", mock(ContentVersionService.class));
+
+        // Giải mã con trỏ như LessonService (3 khóa: level, lessonNumber, id)
+        when(lessonService.getLessonCatalogPage(any(), any(), any(), any())).thenAnswer(invocation -> {
+            String cursor = invocation.getArgument(2);
+            if (cursor != null) {
+                CatalogCursor.decode(cursor, 3);
+            }
+            CatalogPageDTO<LessonSummaryDTO> page = new CatalogPageDTO<>();
+            page.setItems(List.of());
+            page.setNextCursor(CatalogCursor.encode(1, 2, 3));
+            return page;
+        });
+    }
+
+    @Test
+    void nextCursorIsAcceptedOnTheFollowingPage() throws Exception {
+        MockHttpServletResponse first = get(null);
+        assertEquals(200, first.getStatus());
+        String next = new ObjectMapper().readTree(first.getContentAsByteArray()).get("nextCursor").asText();
+
+        assertEquals(200, get(next).getStatus());
+    }
+
+    @Test
+    void tamperedCursorGives400() throws Exception {
+        String tampered = CatalogCursor.encode(1, 2, 3) + "A";
+
+        MockHttpServletResponse response = get(tampered);
+
+        assertEquals(400, response.getStatus());
+        assertTrue(response.getContentAsString().contains("Invalid cursor"));
+    }
+
+    private MockHttpServletResponse get(String cursor) throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/lessons");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getAllLessons(null, null, cursor, 20, request, response);
+        return response;
+    }
+}
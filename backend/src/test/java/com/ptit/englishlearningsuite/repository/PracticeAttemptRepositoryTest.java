@@ -0,0 +1,103 @@
+package com.ptit.englishlearningsuite.repository;
+
+import com.ptit.englishlearningsuite.entity.Account;
+import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.entity.LessonProgress;
+import com.ptit.englishlearningsuite.entity.PracticeAttempt;
+import com.ptit.englishlearningsuite.entity.TestProgress;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Người học/bài học có lượt hoàn thành trước lượt trả lời đầu tiên trong practice_attempts (lịch sử có trước nhật ký)
+ * phải được đếm, để lượt backfill không ghi đè rating của họ về mặc định (chạy trên H2).
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class PracticeAttemptRepositoryTest {
+
+    private static final LocalDateTime LOG_START = LocalDateTime.of(2026, 3, 1, 0, 0);
+
+    @Autowired
+    private PracticeAttemptRepository practiceAttemptRepository;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Test
+    void countsAccountsAndLessonsWhoseProgressPredatesTheLog() {
+        Lesson oldLesson = lesson(1);
+        Lesson newLesson = lesson(2);
+        com.ptit.englishlearningsuite.entity.Test test = new com.ptit.englishlearningsuite.entity.Test();
+        test.setName("Test 1");
+        entityManager.persist(test);
+
+        // Học bài cũ trước khi có nhật ký
+        Account lessonVeteran = account("lesson-veteran");
+        lessonProgress(lessonVeteran, oldLesson, LOG_START.minusDays(10));
+        attempt(lessonVeteran, oldLesson, LOG_START.plusDays(1));
+
+        // Chỉ làm bài kiểm tra trước khi có nhật ký
+        Account testVeteran = account("test-veteran");
+        TestProgress testProgress = new TestProgress();
+        testProgress.setAccount(testVeteran);
+        testProgress.setTest(test);
+        testProgress.setCompletedAt(LOG_START.minusDays(5));
+        entityManager.persist(testProgress);
+        attempt(testVeteran, newLesson, LOG_START.plusDays(2));
+
+        // Toàn bộ lịch sử nằm trong nhật ký
+        Account newcomer = account("newcomer");
+        attempt(newcomer, newLesson, LOG_START.plusDays(3));
+        lessonProgress(newcomer, newLesson, LOG_START.plusDays(3).plusMinutes(5));
+        entityManager.flush();
+
+        LocalDateTime cutoff = LOG_START.plusDays(30);
+        assertEquals(2, practiceAttemptRepository.countAccountsWithEarlierProgress(cutoff));
+        assertEquals(1, practiceAttemptRepository.countLessonsWithEarlierProgress(cutoff));
+        // Lượt sau mốc không được replay nên không tính
+        assertEquals(1, practiceAttemptRepository.countAccountsWithEarlierProgress(LOG_START.plusDays(2)));
+    }
+
+    private Account account(String username) {
+        Account account = new Account();
+        account.setUsername(username);
+        account.setPassword("secret");
+        account.setRole("USER");
+        return entityManager.persist(account);
+    }
+
+    private Lesson lesson(int number) {
+        Lesson lesson = new Lesson();
+        lesson.setLessonNumber(number);
+        lesson.setName("Lesson " + number);
+        return entityManager.persist(lesson);
+    }
+
+    private void lessonProgress(Account account, Lesson lesson, LocalDateTime completedAt) {
+        LessonProgress progress = new LessonProgress();
+        progress.setAccount(account);
+        progress.setLesson(lesson);
+        progress.setCompleted(true);
+        progress.setCompletedAt(completedAt);
+        entityManager.persist(progress);
+    }
+
+    private void attempt(Account account, Lesson lesson, LocalDateTime answeredAt) {
+        PracticeAttempt attempt = new PracticeAttempt();
+        attempt.setAccountId(account.getId());
+        attempt.setLessonId(lesson.getId());
+        attempt.setPassed(true);
+        attempt.setAnsweredAt(answeredAt);
+        entityManager.persist(attempt);
+    }
+}
@@ -0,0 +1,163 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.ptit.englishlearningsuite.dto.LessonDetailDTO;
+import com.ptit.englishlearningsuite.dto.TestDetailDTO;
+import com.ptit.englishlearningsuite.entity.AnswerOption;
+import com.ptit.englishlearningsuite.entity.Conversation;
+import com.ptit.englishlearningsuite.entity.Grammar;
+import com.ptit.englishlearningsuite.entity.Lesson;
+import com.ptit.englishlearningsuite.entity.Question;
+import com.ptit.englishlearningsuite.entity.Sentence;
+import com.ptit.englishlearningsuite.entity.Vocabulary;
+import com.ptit.englishlearningsuite.repository.LessonRepository;
+import com.ptit.englishlearningsuite.repository.TestRepository;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.autoconfigure.orm.jpa.TestEntityManager;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Chi tiết bài học/bài kiểm tra phải được nạp bằng số câu SQL cố định, không phụ thuộc số hội thoại, câu hỏi, đáp án
+ * (đếm bằng Hibernate statistics trên H2). Nếu một thay đổi làm quay lại nạp lazy từng phần tử thì test này hỏng.
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+class ContentDetailFetchPlanTest {
+
+    // findDetailById: từ vựng, ngữ pháp, hội thoại + câu, câu hỏi + đáp án
+    private static final long LESSON_DETAIL_STATEMENTS = 4;
+    private static final long TEST_DETAIL_STATEMENTS = 1;
+
+    @Autowired
+    private TestEntityManager entityManager;
+
+    @Autowired
+    private LessonRepository lessonRepository;
+
+    @Autowired
+    private TestRepository testRepository;
+
+    @Test
+    void lessonDetailLoadsInConstantNumberOfStatements() {
+        Long small = persistLesson(1, 1, 1, 2);
+        Long large = persistLesson(8, 6, 10, 4);
+
+        assertEquals(LESSON_DETAIL_STATEMENTS, lessonDetailStatements(small, 1, 1));
+        assertEquals(LESSON_DETAIL_STATEMENTS, lessonDetailStatements(large, 6, 10));
+    }
+
+    @Test
+    void testDetailLoadsInConstantNumberOfStatements() {
+        Long small = persistTest(1, 2);
+        Long large = persistTest(20, 4);
+
+        assertEquals(TEST_DETAIL_STATEMENTS, testDetailStatements(small, 1));
+        assertEquals(TEST_DETAIL_STATEMENTS, testDetailStatements(large, 20));
+    }
+
+    private long lessonDetailStatements(Long lessonId, int conversations, int questions) {
+        Statistics statistics = startCounting();
+        LessonDetailDTO dto = new LessonService().convertToDetailDto(lessonRepository.findDetailById(lessonId).orElseThrow());
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(conversations, dto.getConversations().size());
+        assertEquals(questions, dto.getPracticeQuestions().size());
+        assertTrue(dto.getConversations().stream().allMatch(c -> c.getSentences().size() == 3));
+        assertTrue(dto.getPracticeQuestions().stream().noneMatch(q -> q.getOptions().isEmpty()));
+        return statements;
+    }
+
+    private long testDetailStatements(Long testId, int questions) {
+        Statistics statistics = startCounting();
+        TestDetailDTO dto = new TestService().convertToDetailDto(testRepository.findDetailById(testId).orElseThrow());
+        long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(questions, dto.getQuestions().size());
+        assertTrue(dto.getQuestions().stream().noneMatch(q -> q.getAnswerOptions().isEmpty()));
+        return statements;
+    }
+
+    private Statistics startCounting() {
+        entityManager.flush();
+        entityManager.clear();
+        Statistics statistics = entityManager.getEntityManager().getEntityManagerFactory()
+                .unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+        return statistics;
+    }
+
+    private Long persistLesson(int vocabularies, int conversations, int questions, int options) {
+        Lesson lesson = new Lesson();
+        lesson.setName("Lesson");
+        lesson.setLessonNumber(1);
+        lesson.setLevel(1);
+        entityManager.persist(lesson);
+
+        for (int i = 0; i < vocabularies; i++) {
+            Vocabulary vocabulary = new Vocabulary();
+            vocabulary.setLesson(lesson);
+            vocabulary.setWordEnglish("word " + i);
+            entityManager.persist(vocabulary);
+        }
+        Grammar grammar = new Grammar();
+        grammar.setLesson(lesson);
+        grammar.setExplanationEnglish("grammar");
+        entityManager.persist(grammar);
+        for (int i = 0; i < conversations; i++) {
+            Conversation conversation = new Conversation();
+            conversation.setLesson(lesson);
+            conversation.setTitle("conversation " + i);
+            entityManager.persist(conversation);
+            for (int j = 0; j < 3; j++) {
+                Sentence sentence = new Sentence();
+                sentence.setConversation(conversation);
+                sentence.setTextEnglish("sentence " + j);
+                entityManager.persist(sentence);
+            }
+        }
+        for (int i = 0; i < questions; i++) {
+            Question question = new Question();
+            question.setLesson(lesson);
+            question.setQuestionText("question " + i);
+            question.setQuestionType("MULTIPLE_CHOICE");
+            entityManager.persist(question);
+            persistOptions(question, options);
+        }
+        return lesson.getId();
+    }
+
+    private Long persistTest(int questions, int options) {
+        com.ptit.englishlearningsuite.entity.Test test = new com.ptit.englishlearningsuite.entity.Test();
+        test.setName("Test");
+        test.setLevel(1);
+        entityManager.persist(test);
+        for (int i = 0; i < questions; i++) {
+            Question question = new Question();
+            question.setTest(test);
+            question.setQuestionText("question " + i);
+            question.setQuestionType("SINGLE_CHOICE");
+            entityManager.persist(question);
+            persistOptions(question, options);
+        }
+        return test.getId();
+    }
+
+    private void persistOptions(Question question, int options) {
+        for (int i = 0; i < options; i++) {
+            AnswerOption option = new AnswerOption();
+            option.setQuestion(question);
+            option.setOptionText("option " + i);
+            option.setCorrect(i == 0);
+            entityManager.persist(option);
+        }
+    }
+}
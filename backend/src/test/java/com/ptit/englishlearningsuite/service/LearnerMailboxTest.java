@@ -0,0 +1,161 @@
+package com.ptit.englishlearningsuite.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Thứ tự, áp lực ngược và hết hạn chờ của {@link LearnerMailbox}.
+ */
+class LearnerMailboxTest {
+
+    private final ExecutorService threads = Executors.newCachedThreadPool();
+    private LearnerMailbox mailbox;
+
+    @BeforeEach
+    void setUp() {
+        mailbox = new LearnerMailbox();
+        ReflectionTestUtils.setField(mailbox, "maxDepth", 8);
+        ReflectionTestUtils.setField(mailbox, "maxPending", 10_000);
+        ReflectionTestUtils.setField(mailbox, "timeoutMs", 5_000L);
+    }
+
+    @AfterEach
+    void tearDown() {
+        threads.shutdownNow();
+    }
+
+    @Test
+    void runsSubmissionsOfOneAccountInSubmissionOrder() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        List<Integer> order = new CopyOnWriteArrayList<>();
+        Future<?> holder = hold(1L, release);
+
+        for (int i = 0; i < 5; i++) {
+            int index = i;
+            threads.submit(() -> mailbox.submit(1L, () -> order.add(index)));
+            int waiting = i + 1;
+            awaitTrue(() -> mailbox.stats().getMaxQueueDepth() == waiting);
+        }
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        awaitTrue(() -> order.size() == 5);
+
+        assertEquals(List.of(0, 1, 2, 3, 4), order);
+        awaitTrue(() -> mailbox.stats().getActiveMailboxes() == 0);
+    }
+
+    @Test
+    void rejectsWhenTooManySubmissionsAreWaiting() throws Exception {
+        ReflectionTestUtils.setField(mailbox, "maxDepth", 1);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = hold(1L, release);
+        Future<?> waiter = threads.submit(() -> mailbox.submit(1L, () -> 1));
+        awaitTrue(() -> mailbox.stats().getMaxQueueDepth() == 1);
+
+        assertThrows(LearnerMailbox.MailboxFullException.class, () -> mailbox.submit(1L, () -> 2));
+        // Người học khác không bị ảnh hưởng
+        assertEquals(3, mailbox.submit(2L, () -> 3));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        waiter.get(5, TimeUnit.SECONDS);
+        assertEquals(1, mailbox.stats().getRejected());
+    }
+
+    @Test
+    void timedOutSubmissionIsNeverRun() throws Exception {
+        ReflectionTestUtils.setField(mailbox, "timeoutMs", 100L);
+        CountDownLatch release = new CountDownLatch(1);
+        Future<?> holder = hold(1L, release);
+        AtomicBoolean ran = new AtomicBoolean();
+
+        assertThrows(LearnerMailbox.MailboxFullException.class, () -> mailbox.submit(1L, () -> ran.getAndSet(true)));
+
+        release.countDown();
+        holder.get(5, TimeUnit.SECONDS);
+        assertFalse(ran.get());
+        assertEquals(1, mailbox.stats().getTimedOut());
+        assertEquals(0, mailbox.stats().getActiveMailboxes());
+    }
+
+    @Test
+    void nestedSubmissionForSameAccountRunsInline() {
+        int result = mailbox.submit(1L, () -> mailbox.submit(1L, () -> 42));
+        assertEquals(42, result);
+    }
+
+    @Test
+    void taskExceptionIsRethrownAndReleasesTheAccount() {
+        IllegalStateException error = new IllegalStateException("boom");
+        assertThrows(IllegalStateException.class, () -> mailbox.submit(1L, () -> {
+            throw error;
+        }));
+        assertEquals(7, mailbox.submit(1L, () -> 7));
+        assertEquals(1, mailbox.stats().getFailed());
+        assertEquals(0, mailbox.stats().getActiveMailboxes());
+    }
+
+    @Test
+    void submitInTransactionCommitsBeforeReleasingTheAccount() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        ReflectionTestUtils.setField(mailbox, "transactionTemplate", new TransactionTemplate(transactionManager));
+
+        int result = mailbox.submitInTransaction(1L, () -> {
+            assertEquals(1, mailbox.stats().getActiveMailboxes());
+            return 5;
+        });
+
+        assertEquals(5, result);
+        InOrder order = inOrder(transactionManager);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(transactionManager).commit(any());
+        assertEquals(0, mailbox.stats().getActiveMailboxes());
+    }
+
+    private Future<?> hold(Long accountId, CountDownLatch release) throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        Future<?> holder = threads.submit(() -> mailbox.submit(accountId, () -> {
+            started.countDown();
+            try {
+                return release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        return holder;
+    }
+
+    private static void awaitTrue(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) {
+                throw new AssertionError("Condition not met in time");
+            }
+            Thread.sleep(5);
+        }
+    }
+}
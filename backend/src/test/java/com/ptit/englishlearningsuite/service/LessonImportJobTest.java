@@ -0,0 +1,148 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.ptit.englishlearningsuite.dto.LessonImportErrorDTO;
+import com.ptit.englishlearningsuite.dto.LessonImportStatusDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.verify;
+
+/**
+ * Bản ghi hỏng (JSON sai, thuộc tính lạ, thiếu trường, hoặc bị DB từ chối) của {@link LessonImportJob} chỉ làm hỏng
+ * chính nó: các bài khác, kể cả cùng lô, vẫn được nhập đủ (chạy trên H2, mỗi lô một giao dịch thật).
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@Import({LessonImportJob.class, LessonImportJobTest.Config.class})
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class LessonImportJobTest {
+
+    @TestConfiguration
+    static class Config {
+        @Bean
+        ObjectMapper objectMapper() {
+            return new ObjectMapper();
+        }
+    }
+
+    @Autowired
+    private LessonImportJob lessonImportJob;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @MockBean
+    private LessonFeatureIndex lessonFeatureIndex;
+
+    @MockBean
+    private ContentVersionService contentVersionService;
+
+    @MockBean
+    private SerializedResponseCache serializedResponseCache;
+
+    @TempDir
+    private Path dir;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM sentences");
+        jdbcTemplate.update("DELETE FROM conversations");
+        jdbcTemplate.update("DELETE FROM vocabularies");
+        jdbcTemplate.update("DELETE FROM grammars");
+        jdbcTemplate.update("DELETE FROM lessons");
+        ReflectionTestUtils.setField(lessonImportJob, "chunkSize", 3);
+    }
+
+    @Test
+    void badRecordsFailAloneAndTheRestAreImported() throws Exception {
+        // Ràng buộc chỉ có ở DB: bài "rejected" qua được kiểm tra hợp lệ nhưng bị DB từ chối giữa một lô
+        jdbcTemplate.execute("ALTER TABLE lessons ADD CONSTRAINT lessons_not_rejected CHECK (name <> 'rejected')");
+        try {
+            Path file = write("lessons.jsonl",
+                    lesson("Greetings", 1),
+                    "{\"name\": \"Broken\", ",
+                    lesson("Numbers", 2),
+                    "{\"name\": \"Colors\", \"lessonNumber\": 3, \"colour\": \"red\"}",
+                    lesson("rejected", 4),
+                    "{\"name\": \"Family\", \"lessonNumber\": 5, \"level\": 1, "
+                            + "\"vocabularies\": [{\"wordEnglish\": \"mother\", \"vietnameseMeaning\": \"mẹ\"}], "
+                            + "\"grammars\": [{\"explanationEnglish\": \"Possessive 's\"}], "
+                            + "\"conversations\": [{\"title\": \"At home\", \"sentences\": "
+                            + "[{\"characterName\": \"A\", \"textEnglish\": \"Hi mum\"}, "
+                            + "{\"characterName\": \"B\", \"textEnglish\": \"Hello\"}]}]}",
+                    "",
+                    "{\"lessonNumber\": 7, \"level\": 1}",
+                    lesson("Food", 8));
+
+            LessonImportStatusDTO result = lessonImportJob.run(file);
+
+            assertEquals("COMPLETED", result.getStatus());
+            assertNull(result.getError());
+            assertEquals(8, result.getRecordsRead());
+            assertEquals(4, result.getLessonsImported());
+            assertEquals(4, result.getRecordsFailed());
+            assertEquals(List.of("lessons.jsonl:2", "lessons.jsonl:4", "lessons.jsonl:5", "lessons.jsonl:8"),
+                    result.getErrors().stream().map(LessonImportErrorDTO::getLocation).toList());
+            assertTrue(result.getErrors().get(3).getMessage().contains("name is required"));
+
+            assertEquals(List.of("Family", "Food", "Greetings", "Numbers"),
+                    jdbcTemplate.queryForList("SELECT name FROM lessons ORDER BY name", String.class));
+            assertEquals(1, count("vocabularies"));
+            assertEquals(1, count("grammars"));
+            assertEquals(1, count("conversations"));
+            assertEquals(2, count("sentences"));
+            // 4 bài + 1 từ vựng + 1 ngữ pháp + 1 hội thoại + 2 câu thoại
+            assertEquals(9, result.getRowsInserted());
+            verify(lessonFeatureIndex).load();
+            verify(serializedResponseCache).invalidateLesson(null);
+        } finally {
+            jdbcTemplate.execute("ALTER TABLE lessons DROP CONSTRAINT lessons_not_rejected");
+        }
+    }
+
+    @Test
+    void missingFileFailsTheWholeRunWithoutImporting() {
+        LessonImportStatusDTO result = lessonImportJob.run(dir.resolve("missing.jsonl"));
+
+        assertEquals("FAILED", result.getStatus());
+        assertEquals(0, result.getLessonsImported());
+        assertEquals(0, count("lessons"));
+    }
+
+    private Path write(String name, String... lines) throws Exception {
+        Path file = dir.resolve(name);
+        Files.write(file, List.of(lines), StandardCharsets.UTF_8);
+        return file;
+    }
+
+    private int count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Integer.class);
+    }
+
+    private static String lesson(String name, int lessonNumber) {
+        return "{\"name\": \"" + name + "\", \"lessonNumber\": " + lessonNumber + ", \"level\": 1}";
+    }
+}
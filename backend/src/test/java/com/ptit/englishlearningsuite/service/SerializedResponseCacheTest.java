@@ -0,0 +1,140 @@
+package com.ptit.englishlearningsuite.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.ptit.englishlearningsuite.dto.LessonDetailDTO;
+import com.ptit.englishlearningsuite.dto.OptionDTO;
+import com.ptit.englishlearningsuite.dto.PracticeQuestionDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Ghép đáp án xáo của {@link SerializedResponseCache}: mỗi phản hồi là JSON hợp lệ, đủ mọi đáp án, và ngoài thứ tự
+ * đáp án của các câu MULTIPLE_CHOICE thì giống hệt JSON của bản dựng sẵn.
+ */
+class SerializedResponseCacheTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private SerializedResponseCache cache;
+
+    @BeforeEach
+    void setUp() {
+        cache = new SerializedResponseCache();
+        ReflectionTestUtils.setField(cache, "objectMapper", objectMapper);
+        ReflectionTestUtils.setField(cache, "maxBytes", 1_000_000L);
+        ReflectionTestUtils.setField(cache, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(cache, "gzipMinBytes", 16);
+        cache.init();
+    }
+
+    @Test
+    void everyResponseIsTheSharedJsonWithOptionsPermuted() throws Exception {
+        LessonDetailDTO lesson = lesson(
+                question(1L, "MULTIPLE_CHOICE", "Pick one", 11L, 12L, 13L),
+                question(2L, "FILL_IN_THE_BLANK", "Type it", 21L, 22L, 23L),
+                // Văn bản giống chỗ giữ chỗ đáp án không được bị cắt nhầm
+                question(3L, "multiple_choice", "Đáp án đúng là \"options\":null", 31L, 32L, 33L, 34L));
+        JsonNode expected = objectMapper.readTree(objectMapper.writeValueAsBytes(lesson));
+        SerializedResponseCache.SerializedResponse response = cache.lessonDetail(7L, 1L, () -> lesson);
+
+        Set<List<Long>> orders = new HashSet<>();
+        for (int i = 0; i < 300; i++) {
+            MockHttpServletResponse http = write(response, "gzip");
+            byte[] body = http.getContentAsByteArray();
+            assertEquals(body.length, http.getContentLength());
+            // Bản ghép không nén được nên luôn gửi thẳng
+            assertNull(http.getHeader(HttpHeaders.CONTENT_ENCODING));
+
+            JsonNode actual = objectMapper.readTree(body);
+            orders.add(optionIds(actual.get("practiceQuestions").get(0)));
+            // Câu không xáo giữ nguyên thứ tự
+            assertEquals(List.of(21L, 22L, 23L), optionIds(actual.get("practiceQuestions").get(1)));
+            assertEquals(expected, sortOptions(actual));
+        }
+        assertEquals(6, orders.size());
+    }
+
+    @Test
+    void lessonWithoutShuffledQuestionsIsServedAsIsAndGzipped() throws Exception {
+        LessonDetailDTO lesson = lesson(question(2L, "FILL_IN_THE_BLANK", "Type it", 21L, 22L));
+        SerializedResponseCache.SerializedResponse response = cache.lessonDetail(8L, 1L, () -> lesson);
+
+        assertEquals(objectMapper.readTree(objectMapper.writeValueAsBytes(lesson)),
+                objectMapper.readTree(write(response, null).getContentAsByteArray()));
+        assertEquals("gzip", write(response, "gzip, deflate").getHeader(HttpHeaders.CONTENT_ENCODING));
+    }
+
+    private MockHttpServletResponse write(SerializedResponseCache.SerializedResponse response, String acceptEncoding)
+            throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        if (acceptEncoding != null) {
+            request.addHeader(HttpHeaders.ACCEPT_ENCODING, acceptEncoding);
+        }
+        MockHttpServletResponse http = new MockHttpServletResponse();
+        response.writeTo(request, http, SerializedResponseCache.etag("lesson-7", 1L));
+        return http;
+    }
+
+    // Sắp đáp án của mọi câu theo id để so với bản dựng sẵn (đáp án trong bản dựng sẵn xếp theo id)
+    private static JsonNode sortOptions(JsonNode lesson) {
+        for (JsonNode question : lesson.get("practiceQuestions")) {
+            List<JsonNode> options = new ArrayList<>();
+            question.get("options").forEach(options::add);
+            options.sort(Comparator.comparingLong(option -> option.get("id").asLong()));
+            ArrayNode sorted = ((ObjectNode) question).putArray("options");
+            options.forEach(sorted::add);
+        }
+        return lesson;
+    }
+
+    private static List<Long> optionIds(JsonNode question) {
+        List<Long> ids = new ArrayList<>();
+        question.get("options").forEach(option -> ids.add(option.get("id").asLong()));
+        return ids;
+    }
+
+    private static LessonDetailDTO lesson(PracticeQuestionDTO... questions) {
+        LessonDetailDTO lesson = new LessonDetailDTO();
+        lesson.setId(7L);
+        lesson.setLessonNumber(3);
+        lesson.setLevel(1);
+        lesson.setName("Greetings");
+        lesson.setAudioUrl("https://example.com/a.mp3");
+        lesson.setVocabularies(Set.of());
+        lesson.setGrammars(Set.of());
+        lesson.setConversations(Set.of());
+        lesson.setPracticeQuestions(List.of(questions));
+        return lesson;
+    }
+
+    private static PracticeQuestionDTO question(Long id, String type, String text, Long... optionIds) {
+        PracticeQuestionDTO question = new PracticeQuestionDTO();
+        question.setId(id);
+        question.setQuestionType(type);
+        question.setQuestionText(text);
+        List<OptionDTO> options = new ArrayList<>();
+        for (Long optionId : optionIds) {
+            OptionDTO option = new OptionDTO();
+            option.setId(optionId);
+            option.setOptionText("Option " + optionId);
+            options.add(option);
+        }
+        question.setOptions(options);
+        return question;
+    }
+}
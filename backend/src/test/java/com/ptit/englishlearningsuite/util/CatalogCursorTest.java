@@ -0,0 +1,60 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Mã hóa/giải mã {@link CatalogCursor}; con trỏ bị sửa hoặc sai loại luôn ra IllegalArgumentException.
+ */
+class CatalogCursorTest {
+
+    @Test
+    void roundTripsKeys() {
+        long[] keys = {3, 42, Long.MAX_VALUE};
+        String cursor = CatalogCursor.encode(keys);
+
+        assertArrayEquals(keys, CatalogCursor.decode(cursor, 3));
+        assertArrayEquals(new long[]{-1, 0}, CatalogCursor.decode(CatalogCursor.encode(-1, 0), 2));
+        // An toàn trong URL: không cần mã hóa thêm
+        assertTrue(cursor.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test
+    void rejectsTamperedCursors() {
+        String cursor = CatalogCursor.encode(3, 42, 1001);
+
+        assertInvalid(cursor.substring(0, cursor.length() - 2) + "!!", 3);
+        assertInvalid(cursor + "x", 3);
+        assertInvalid("", 3);
+        assertInvalid(urlBase64("c1:3,abc,1001"), 3);
+        assertInvalid(urlBase64("c2:3,42,1001"), 3);
+        assertInvalid(urlBase64("c1:3,42,1001,7"), 3);
+        assertInvalid(urlBase64("c1:99999999999999999999,42,1001"), 3);
+        // Con trỏ của danh mục khác (số khóa khác)
+        assertInvalid(cursor, 2);
+    }
+
+    @Test
+    void intKeyRejectsValuesOutsideIntRange() {
+        assertEquals(Integer.MAX_VALUE, CatalogCursor.intKey(Integer.MAX_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> CatalogCursor.intKey(Integer.MAX_VALUE + 1L));
+        assertThrows(IllegalArgumentException.class, () -> CatalogCursor.intKey(Integer.MIN_VALUE - 1L));
+    }
+
+    private static void assertInvalid(String cursor, int arity) {
+        IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+                () -> CatalogCursor.decode(cursor, arity), cursor);
+        assertEquals("Invalid cursor", error.getMessage());
+    }
+
+    private static String urlBase64(String text) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(text.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,109 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh chấm điểm một vector nhu cầu với cả danh mục bài học: cài đặt ba lượt duyệt trước đây,
+ * {@link HybridMathUtils#calculateCosineSimilarity} (một lượt) gọi cho từng bài, và
+ * {@link HybridMathUtils#cosineSimilarityBatch} trên ma trận đã chuẩn hóa (Vector API nếu vector đủ dài).
+ * <p>
+ * Chạy: {@code mvn -q test-compile} rồi
+ * {@code java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) org.openjdk.jmh.Main CosineSimilarityBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class CosineSimilarityBenchmark {
+
+    @Param({"3", "16", "64"})
+    private int dimensions;
+
+    @Param({"1000", "20000"})
+    private int lessons;
+
+    private double[] query;
+    private double[][] lessonVectors;
+    private float[] queryFloat;
+    private float[] lessonMatrix;
+    private float[] scores;
+
+    @Setup
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        query = new double[dimensions];
+        queryFloat = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            query[i] = random.nextDouble();
+            queryFloat[i] = (float) query[i];
+        }
+        lessonVectors = new double[lessons][dimensions];
+        lessonMatrix = new float[lessons * dimensions];
+        for (int row = 0; row < lessons; row++) {
+            for (int i = 0; i < dimensions; i++) {
+                lessonVectors[row][i] = random.nextDouble();
+                lessonMatrix[row * dimensions + i] = (float) lessonVectors[row][i];
+            }
+        }
+        HybridMathUtils.normalizeRows(lessonMatrix, dimensions);
+        scores = new float[lessons];
+    }
+
+    @Benchmark
+    public void legacyPerLessonCosine(Blackhole blackhole) {
+        for (double[] lessonVector : lessonVectors) {
+            blackhole.consume(legacyCosine(query, lessonVector));
+        }
+    }
+
+    @Benchmark
+    public void perLessonCosine(Blackhole blackhole) {
+        for (double[] lessonVector : lessonVectors) {
+            blackhole.consume(HybridMathUtils.calculateCosineSimilarity(query, lessonVector));
+        }
+    }
+
+    @Benchmark
+    public float[] batchCosine() {
+        HybridMathUtils.cosineSimilarityBatch(queryFloat, lessonMatrix, dimensions, scores);
+        return scores;
+    }
+
+    // Bản calculateCosineSimilarity trước khi gộp thành một lượt duyệt (dot, ||A||, ||B|| tính riêng)
+    private static double legacyCosine(double[] vectorA, double[] vectorB) {
+        double dotProduct = 0.0;
+        for (int i = 0; i < vectorA.length; i++) {
+            dotProduct += vectorA[i] * vectorB[i];
+        }
+        double normA = 0.0;
+        for (double value : vectorA) {
+            normA += value * value;
+        }
+        normA = Math.sqrt(normA);
+        double normB = 0.0;
+        for (double value : vectorB) {
+            normB += value * value;
+        }
+        normB = Math.sqrt(normB);
+        if (normA == 0.0 || normB == 0.0) {
+            return 0.0;
+        }
+        return Math.max(-1.0, Math.min(1.0, dotProduct / (normA * normB)));
+    }
+}
@@ -0,0 +1,407 @@
+package com.ptit.englishlearningsuite.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Bộ mô phỏng offline cho phép tính Elo của {@link RatingMath} (không Spring, không DB), để chỉnh hệ số K và
+ * cửa sổ độ khó ±150/±300 của bộ gợi ý trước khi đổi trên hệ thống thật.
+ * <p>
+ * Hai chế độ:
+ * <ul>
+ *     <li>{@code mode=synthetic}: sinh người học có năng lực thật ẩn và bài học có độ khó thật ẩn; mỗi vòng mọi
+ *     người học làm một bài được chọn theo cửa sổ độ khó quanh Elo hiện tại, kết quả rút theo xác suất Elo thật.
+ *     Báo cáo RMSE (Elo ước lượng so với năng lực thật, đã trừ độ lệch trung bình) theo vòng và số vòng để hội tụ.</li>
+ *     <li>{@code mode=history file=...}: replay lịch sử thật từ CSV {@code accountId,lessonId,passed(0/1),epochMillis}
+ *     - xuất bằng {@code SELECT account_id, lesson_id, passed, UNIX_TIMESTAMP(answered_at) * 1000 FROM practice_attempts
+ *     ORDER BY answered_at}. Báo cáo log-loss / Brier của xác suất dự đoán trước mỗi lượt.</li>
+ * </ul>
+ * Chạy song song theo phân vùng người học: trong một chu kỳ ({@code period} lượt theo thời gian), mỗi phân vùng xử lý
+ * người học của mình với độ khó bài học cố định (snapshot), delta độ khó được cộng riêng từng phân vùng rồi gộp cuối
+ * chu kỳ - đúng như {@code LessonDifficultyAccumulator} gom và ghi theo lô trên hệ thống thật.
+ * <p>
+ * Chạy: {@code mvn -q test-compile} rồi
+ * {@code java -cp target/test-classes:target/classes com.ptit.englishlearningsuite.util.EloReplaySimulator mode=synthetic learners=10000 rounds=3650 k=32 threads=8}
+ */
+public class EloReplaySimulator {
+
+    private final int kFactor;
+    private final int narrowWindow;
+    private final int wideWindow;
+    private final int threads;
+
+    public EloReplaySimulator(int kFactor, int narrowWindow, int wideWindow, int threads) {
+        this.kFactor = kFactor;
+        this.narrowWindow = narrowWindow;
+        this.wideWindow = wideWindow;
+        this.threads = Math.max(1, threads);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            String[] parts = arg.split("=", 2);
+            options.put(parts[0], parts.length > 1 ? parts[1] : "");
+        }
+        EloReplaySimulator simulator = new EloReplaySimulator(
+                intOption(options, "k", HybridMathUtils.K_FACTOR),
+                intOption(options, "narrow", 150),
+                intOption(options, "wide", 300),
+                intOption(options, "threads", Runtime.getRuntime().availableProcessors()));
+        String mode = options.getOrDefault("mode", "synthetic");
+        Report report = switch (mode) {
+            case "synthetic" -> simulator.runSynthetic(
+                    intOption(options, "learners", 10_000),
+                    intOption(options, "lessons", 2_000),
+                    intOption(options, "rounds", 365),
+                    intOption(options, "seed", 42));
+            case "history" -> simulator.runHistory(
+                    History.load(Path.of(options.getOrDefault("file", "practice_attempts.csv"))),
+                    intOption(options, "period", 1_000));
+            default -> throw new IllegalArgumentException("Unknown mode: " + mode);
+        };
+        System.out.println(report);
+    }
+
+    /**
+     * Người học và bài học tổng hợp; mọi rating (cả người học) bắt đầu từ
+     * {@link RatingMath#DEFAULT_DIFFICULTY} để hai phía cùng một mốc.
+     */
+    public Report runSynthetic(int learners, int lessons, int rounds, long seed) throws Exception {
+        SplittableRandom random = new SplittableRandom(seed);
+        double[] ability = new double[learners];
+        for (int i = 0; i < learners; i++) {
+            ability[i] = 1500 + 300 * random.nextGaussian();
+        }
+        double[] difficulty = new double[lessons];
+        for (int i = 0; i < lessons; i++) {
+            difficulty[i] = 800 + 1400 * random.nextDouble();
+        }
+        int[] userElo = new int[learners];
+        int[] lessonElo = new int[lessons];
+        Arrays.fill(userElo, RatingMath.DEFAULT_DIFFICULTY);
+        Arrays.fill(lessonElo, RatingMath.DEFAULT_DIFFICULTY);
+
+        Report report = new Report("synthetic", kFactor, narrowWindow, wideWindow, threads);
+        int[][] deltas = new int[threads][lessons];
+        int checkpoint = Math.max(1, rounds / 10);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int round = 0; round < rounds; round++) {
+                // Snapshot độ khó đã sắp xếp cho việc chọn bài theo cửa sổ
+                int[] order = sortByRating(lessonElo);
+                int[] sortedRatings = new int[lessons];
+                for (int i = 0; i < lessons; i++) {
+                    sortedRatings[i] = lessonElo[order[i]];
+                }
+                List<Future<?>> futures = new ArrayList<>(threads);
+                for (int p = 0; p < threads; p++) {
+                    int partition = p;
+                    SplittableRandom partitionRandom = new SplittableRandom(seed * 31 + (long) round * threads + p);
+                    futures.add(executor.submit(() -> {
+                        int[] delta = deltas[partition];
+                        for (int learner = partition; learner < learners; learner += threads) {
+                            int lesson = order[pickLesson(sortedRatings, userElo[learner], partitionRandom)];
+                            boolean passed = partitionRandom.nextDouble()
+                                    < expected(ability[learner], difficulty[lesson]);
+                            int user = userElo[learner];
+                            int opponent = lessonElo[lesson];
+                            userElo[learner] = HybridMathUtils.calculateNewElo(user, opponent, passed ? 1.0 : 0.0, kFactor);
+                            delta[lesson] += HybridMathUtils.calculateNewElo(opponent, user, passed ? 0.0 : 1.0, kFactor) - opponent;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                applyDeltas(lessonElo, deltas);
+                report.events += learners;
+
+                double rmse = alignedRmse(userElo, ability);
+                if (report.convergedRound < 0 && rmse < Report.CONVERGED_RMSE) {
+                    report.convergedRound = round + 1;
+                }
+                if ((round + 1) % checkpoint == 0 || round == rounds - 1) {
+                    report.curve.add(String.format(Locale.ROOT, "round %d: learner RMSE %.1f, lesson RMSE %.1f",
+                            round + 1, rmse, alignedRmse(lessonElo, difficulty)));
+                }
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - started;
+        report.learnerRmse = alignedRmse(userElo, ability);
+        report.lessonRmse = alignedRmse(lessonElo, difficulty);
+        return report;
+    }
+
+    /**
+     * Replay lịch sử theo thứ tự thời gian; {@code period} lượt liên tiếp dùng chung một snapshot độ khó bài học.
+     * Như {@link #runSynthetic}, mọi rating bắt đầu từ {@link RatingMath#DEFAULT_DIFFICULTY}.
+     */
+    public Report runHistory(History history, int period) throws Exception {
+        int[] userElo = new int[history.accounts];
+        int[] lessonElo = new int[history.lessons];
+        Arrays.fill(userElo, RatingMath.DEFAULT_DIFFICULTY);
+        Arrays.fill(lessonElo, RatingMath.DEFAULT_DIFFICULTY);
+        int[][] deltas = new int[threads][history.lessons];
+        double[] logLoss = new double[threads];
+        double[] brier = new double[threads];
+
+        Report report = new Report("history", kFactor, narrowWindow, wideWindow, threads);
+        long started = System.nanoTime();
+        try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+            for (int from = 0; from < history.size; from += period) {
+                int to = Math.min(history.size, from + period);
+                int start = from;
+                List<Future<?>> futures = new ArrayList<>(threads);
+                for (int p = 0; p < threads; p++) {
+                    int partition = p;
+                    futures.add(executor.submit(() -> {
+                        int[] delta = deltas[partition];
+                        for (int i = start; i < to; i++) {
+                            int learner = history.account[i];
+                            if (learner % threads != partition) {
+                                continue;
+                            }
+                            int lesson = history.lesson[i];
+                            boolean passed = history.passed[i];
+                            int user = userElo[learner];
+                            int opponent = lessonElo[lesson];
+                            double predicted = HybridMathUtils.calculateExpectedScore(user, opponent);
+                            double p1 = Math.min(1 - 1e-9, Math.max(1e-9, predicted));
+                            logLoss[partition] -= passed ? Math.log(p1) : Math.log(1 - p1);
+                            brier[partition] += (predicted - (passed ? 1 : 0)) * (predicted - (passed ? 1 : 0));
+                            userElo[learner] = HybridMathUtils.calculateNewElo(user, opponent, passed ? 1.0 : 0.0, kFactor);
+                            delta[lesson] += HybridMathUtils.calculateNewElo(opponent, user, passed ? 0.0 : 1.0, kFactor) - opponent;
+                        }
+                    }));
+                }
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                applyDeltas(lessonElo, deltas);
+            }
+        }
+        report.elapsedNanos = System.nanoTime() - started;
+        report.events = history.size;
+        report.logLoss = Arrays.stream(logLoss).sum() / Math.max(1, history.size);
+        report.brier = Arrays.stream(brier).sum() / Math.max(1, history.size);
+        return report;
+    }
+
+    /** Bài ngẫu nhiên trong ±narrow quanh Elo người học, không có thì ±wide, vẫn không có thì bài gần nhất. */
+    private int pickLesson(int[] sortedRatings, int userElo, SplittableRandom random) {
+        for (int window : new int[]{narrowWindow, wideWindow}) {
+            int from = lowerBound(sortedRatings, userElo - window);
+            int to = lowerBound(sortedRatings, userElo + window + 1);
+            if (from < to) {
+                return from + random.nextInt(to - from);
+            }
+        }
+        int at = lowerBound(sortedRatings, userElo);
+        if (at == sortedRatings.length) {
+            return at - 1;
+        }
+        if (at > 0 && userElo - sortedRatings[at - 1] < sortedRatings[at] - userElo) {
+            return at - 1;
+        }
+        return at;
+    }
+
+    private static void applyDeltas(int[] ratings, int[][] deltas) {
+        for (int[] delta : deltas) {
+            for (int i = 0; i < delta.length; i++) {
+                if (delta[i] != 0) {
+                    ratings[i] = Math.max(0, ratings[i] + delta[i]);
+                    delta[i] = 0;
+                }
+            }
+        }
+    }
+
+    private static double expected(double ability, double difficulty) {
+        return 1.0 / (1.0 + Math.pow(10, (difficulty - ability) / 400.0));
+    }
+
+    /** RMSE sau khi trừ độ lệch trung bình (Elo chỉ có nghĩa tương đối). */
+    private static double alignedRmse(int[] estimates, double[] truth) {
+        double offset = 0;
+        for (int i = 0; i < estimates.length; i++) {
+            offset += estimates[i] - truth[i];
+        }
+        offset /= estimates.length;
+        double sum = 0;
+        for (int i = 0; i < estimates.length; i++) {
+            double error = estimates[i] - truth[i] - offset;
+            sum += error * error;
+        }
+        return Math.sqrt(sum / estimates.length);
+    }
+
+    private static int[] sortByRating(int[] ratings) {
+        long[] packed = new long[ratings.length];
+        for (int i = 0; i < ratings.length; i++) {
+            packed[i] = ((long) ratings[i] << 32) | i;
+        }
+        Arrays.sort(packed);
+        int[] order = new int[ratings.length];
+        for (int i = 0; i < ratings.length; i++) {
+            order[i] = (int) packed[i];
+        }
+        return order;
+    }
+
+    private static int lowerBound(int[] sorted, int value) {
+        int low = 0;
+        int high = sorted.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (sorted[mid] < value) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static int intOption(Map<String, String> options, String key, int defaultValue) {
+        String value = options.get(key);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    /**
+     * Lịch sử đã nạp vào các mảng song song; id người học/bài học được đánh lại chỉ số liên tục.
+     */
+    public static final class History {
+        private final int size;
+        private final int accounts;
+        private final int lessons;
+        private final int[] account;
+        private final int[] lesson;
+        private final boolean[] passed;
+
+        private History(int size, int accounts, int lessons, int[] account, int[] lesson, boolean[] passed) {
+            this.size = size;
+            this.accounts = accounts;
+            this.lessons = lessons;
+            this.account = account;
+            this.lesson = lesson;
+            this.passed = passed;
+        }
+
+        public static History load(Path file) throws IOException {
+            Map<Long, Integer> accountIndex = new HashMap<>();
+            Map<Long, Integer> lessonIndex = new HashMap<>();
+            List<long[]> rows = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(file)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    String[] parts = line.split("[,\\t]");
+                    if (parts.length < 4 || !Character.isDigit(parts[0].trim().charAt(0))) {
+                        continue; // dòng tiêu đề / dòng hỏng
+                    }
+                    long accountId = Long.parseLong(parts[0].trim());
+                    long lessonId = Long.parseLong(parts[1].trim());
+                    String result = parts[2].trim();
+                    long passed = result.equals("1") || result.equalsIgnoreCase("true") ? 1 : 0;
+                    long at = (long) Double.parseDouble(parts[3].trim());
+                    rows.add(new long[]{at,
+                            accountIndex.computeIfAbsent(accountId, id -> accountIndex.size()),
+                            lessonIndex.computeIfAbsent(lessonId, id -> lessonIndex.size()),
+                            passed});
+                }
+            }
+            rows.sort((a, b) -> Long.compare(a[0], b[0]));
+            int[] account = new int[rows.size()];
+            int[] lesson = new int[rows.size()];
+            boolean[] passed = new boolean[rows.size()];
+            for (int i = 0; i < rows.size(); i++) {
+                account[i] = (int) rows.get(i)[1];
+                lesson[i] = (int) rows.get(i)[2];
+                passed[i] = rows.get(i)[3] == 1;
+            }
+            return new History(rows.size(), accountIndex.size(), lessonIndex.size(), account, lesson, passed);
+        }
+    }
+
+    public static final class Report {
+        private static final double CONVERGED_RMSE = 100.0;
+
+        private final String mode;
+        private final int kFactor;
+        private final int narrowWindow;
+        private final int wideWindow;
+        private final int threads;
+        private final List<String> curve = new ArrayList<>();
+        private long events;
+        private long elapsedNanos;
+        private int convergedRound = -1;
+        private double learnerRmse = Double.NaN;
+        private double lessonRmse = Double.NaN;
+        private double logLoss = Double.NaN;
+        private double brier = Double.NaN;
+
+        private Report(String mode, int kFactor, int narrowWindow, int wideWindow, int threads) {
+            this.mode = mode;
+            this.kFactor = kFactor;
+            this.narrowWindow = narrowWindow;
+            this.wideWindow = wideWindow;
+            this.threads = threads;
+        }
+
+        public long events() {
+            return events;
+        }
+
+        public int convergedRound() {
+            return convergedRound;
+        }
+
+        public double learnerRmse() {
+            return learnerRmse;
+        }
+
+        public double lessonRmse() {
+            return lessonRmse;
+        }
+
+        public double logLoss() {
+            return logLoss;
+        }
+
+        public double brier() {
+            return brier;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            double seconds = elapsedNanos / 1e9;
+            out.append(String.format(Locale.ROOT, "mode=%s k=%d windows=±%d/±%d threads=%d%n",
+                    mode, kFactor, narrowWindow, wideWindow, threads));
+            out.append(String.format(Locale.ROOT, "events=%d in %.2f s (%.0f events/s)%n",
+                    events, seconds, events / Math.max(seconds, 1e-9)));
+            curve.forEach(line -> out.append(line).append(System.lineSeparator()));
+            if (!Double.isNaN(learnerRmse)) {
+                out.append(String.format(Locale.ROOT, "final learner RMSE %.1f, lesson RMSE %.1f, converged (RMSE < %.0f) at round %s%n",
+                        learnerRmse, lessonRmse, CONVERGED_RMSE, convergedRound > 0 ? convergedRound : "never"));
+            }
+            if (!Double.isNaN(logLoss)) {
+                out.append(String.format(Locale.ROOT, "log-loss %.4f, Brier %.4f%n", logLoss, brier));
+            }
+            return out.toString();
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Bộ mô phỏng {@link EloReplaySimulator} ở quy mô nhỏ: Elo hội tụ về năng lực thật, replay lịch sử không phụ thuộc số
+ * luồng (phân vùng theo người học + snapshot độ khó theo chu kỳ) và chỉ số dự đoán đúng công thức.
+ */
+class EloReplaySimulatorTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void syntheticRatingsConvergeTowardsTrueAbility() throws Exception {
+        EloReplaySimulator simulator = new EloReplaySimulator(HybridMathUtils.K_FACTOR, 150, 300, 2);
+        EloReplaySimulator.Report report = simulator.runSynthetic(500, 200, 150, 7);
+
+        assertEquals(500L * 150, report.events());
+        assertTrue(report.learnerRmse() < 100, "learner RMSE " + report.learnerRmse());
+        assertTrue(report.lessonRmse() < 120, "lesson RMSE " + report.lessonRmse());
+        assertTrue(report.convergedRound() > 0);
+        // Cùng seed, cùng số luồng: cùng kết quả
+        assertEquals(report.learnerRmse(), simulator.runSynthetic(500, 200, 150, 7).learnerRmse());
+    }
+
+    @Test
+    void historyReplayDoesNotDependOnThreadCount() throws Exception {
+        SplittableRandom random = new SplittableRandom(3);
+        List<String> lines = new ArrayList<>();
+        lines.add("account_id,lesson_id,passed,answered_at");
+        for (int i = 0; i < 5_000; i++) {
+            lines.add((1 + random.nextInt(100)) + "," + (1 + random.nextInt(40)) + "," + random.nextInt(2) + ","
+                    + (1_700_000_000_000L + i * 1000L));
+        }
+        EloReplaySimulator.History history = EloReplaySimulator.History.load(write(lines));
+
+        EloReplaySimulator.Report single = new EloReplaySimulator(32, 150, 300, 1).runHistory(history, 250);
+        EloReplaySimulator.Report parallel = new EloReplaySimulator(32, 150, 300, 4).runHistory(history, 250);
+
+        assertEquals(5_000, single.events());
+        assertEquals(single.logLoss(), parallel.logLoss(), 1e-12);
+        assertEquals(single.brier(), parallel.brier(), 1e-12);
+    }
+
+    @Test
+    void firstPredictionIsEvenOdds() throws Exception {
+        // Dòng tiêu đề bị bỏ qua; mọi rating bắt đầu bằng nhau nên xác suất dự đoán là 0.5
+        EloReplaySimulator.History history = EloReplaySimulator.History.load(
+                write(List.of("account_id,lesson_id,passed,answered_at", "10,20,1,1700000000000")));
+
+        EloReplaySimulator.Report report = new EloReplaySimulator(32, 150, 300, 1).runHistory(history, 100);
+
+        assertEquals(1, report.events());
+        assertEquals(Math.log(2), report.logLoss(), 1e-9);
+        assertEquals(0.25, report.brier(), 1e-9);
+    }
+
+    private Path write(List<String> lines) throws IOException {
+        return Files.write(dir.resolve("attempts.csv"), lines);
+    }
+}
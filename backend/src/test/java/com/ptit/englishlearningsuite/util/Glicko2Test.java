@@ -0,0 +1,54 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * {@link Glicko2} so với ví dụ tính tay trong bài "Example of the Glicko-2 system" của Glickman.
+ */
+class Glicko2Test {
+
+    @Test
+    void matchesGlickmanReferenceExample() {
+        // Người chơi 1500/200/0.06 gặp 1400/30 (thắng), 1550/100 (thua), 1700/300 (thua), τ = 0.5
+        Glicko2.Rating result = Glicko2.update(1500, 200, 0.06,
+                new double[]{1400, 1550, 1700}, new double[]{30, 100, 300}, new double[]{1, 0, 0}, 3, 0.5);
+
+        assertEquals(1464.06, result.rating(), 0.01);
+        assertEquals(151.52, result.deviation(), 0.01);
+        assertEquals(0.05999, result.volatility(), 0.00001);
+    }
+
+    @Test
+    void onlyConsidersTheFirstGamesEntries() {
+        Glicko2.Rating reference = Glicko2.update(1500, 200, 0.06,
+                new double[]{1400, 1550, 1700}, new double[]{30, 100, 300}, new double[]{1, 0, 0}, 3, 0.5);
+        // Mảng tái sử dụng có thể dài hơn số trận thật
+        Glicko2.Rating padded = Glicko2.update(1500, 200, 0.06,
+                new double[]{1400, 1550, 1700, 0, 0}, new double[]{30, 100, 300, 0, 0},
+                new double[]{1, 0, 0, 0, 0}, 3, 0.5);
+
+        assertEquals(reference, padded);
+    }
+
+    @Test
+    void noGamesOnlyWidensDeviation() {
+        Glicko2.Rating result = Glicko2.update(1500, 200, 0.06, new double[0], new double[0], new double[0], 0, 0.5);
+
+        assertEquals(1500, result.rating());
+        assertEquals(0.06, result.volatility());
+        // Ví dụ của Glickman: φ* = sqrt(1.1513² + 0.06²) ≈ 1.1528 → 200.27
+        assertEquals(200.27, result.deviation(), 0.01);
+    }
+
+    @Test
+    void idleDeviationGrowsWithPeriodsAndIsCapped() {
+        assertEquals(80.0, Glicko2.idle(80.0, 0.06, 0));
+        double afterOne = Glicko2.idle(80.0, 0.06, 1);
+        double afterTen = Glicko2.idle(80.0, 0.06, 10);
+        assertTrue(80.0 < afterOne && afterOne < afterTen);
+        assertEquals(Glicko2.DEFAULT_DEVIATION, Glicko2.idle(300.0, 0.06, 1_000_000));
+    }
+}
@@ -0,0 +1,132 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.roaringbitmap.RoaringBitmap;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Recall@10 của {@link HnswLessonVectorIndex} so với kết quả chính xác của {@link ExactLessonVectorIndex}
+ * (cùng dữ liệu, cùng bộ lọc), kể cả sau khi xóa/cập nhật bài học.
+ */
+class HnswLessonVectorIndexTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int LESSONS = 5_000;
+    private static final int QUERIES = 100;
+    private static final int TOP_K = 10;
+
+    private final SplittableRandom random = new SplittableRandom(42);
+    private ExactLessonVectorIndex exact;
+    private HnswLessonVectorIndex hnsw;
+
+    @BeforeEach
+    void setUp() {
+        List<LessonVectorIndex.Entry> entries = new ArrayList<>(LESSONS);
+        for (int i = 0; i < LESSONS; i++) {
+            entries.add(new LessonVectorIndex.Entry(i + 1, 800 + random.nextInt(1401), randomVector()));
+        }
+        exact = new ExactLessonVectorIndex(DIMENSIONS);
+        exact.rebuild(entries);
+        hnsw = new HnswLessonVectorIndex(DIMENSIONS, 16, 200, 64);
+        hnsw.rebuild(entries);
+    }
+
+    @Test
+    void unfilteredRecallIsHigh() {
+        assertTrue(recall(Integer.MIN_VALUE, Integer.MAX_VALUE, null) >= 0.95);
+    }
+
+    @Test
+    void difficultyWindowRecallIsHigh() {
+        double total = 0.0;
+        for (int q = 0; q < QUERIES; q++) {
+            int center = 800 + random.nextInt(1401);
+            total += recallOf(randomVector(), center - 300, center + 300, null);
+        }
+        assertTrue(total / QUERIES >= 0.9, "recall " + total / QUERIES);
+    }
+
+    @Test
+    void tightAllowedSetMatchesExactSearch() {
+        RoaringBitmap allowed = new RoaringBitmap();
+        for (int i = 0; i < 40; i++) {
+            allowed.add(1 + random.nextInt(LESSONS));
+        }
+        for (int q = 0; q < 20; q++) {
+            float[] query = randomVector();
+            List<LessonVectorIndex.Hit> expected = exact.search(query, 0, 5_000, allowed,
+                    LessonVectorIndex.Ranking.SIMILARITY, TOP_K);
+            List<LessonVectorIndex.Hit> actual = hnsw.search(query, 0, 5_000, allowed,
+                    LessonVectorIndex.Ranking.SIMILARITY, TOP_K);
+            assertEquals(ids(expected), ids(actual));
+        }
+    }
+
+    @Test
+    void recallStaysHighAfterRemovesAndUpdates() {
+        Set<Long> removed = new HashSet<>();
+        for (long id = 1; id <= LESSONS; id += 3) {
+            exact.remove(id);
+            hnsw.remove(id);
+            removed.add(id);
+        }
+        for (long id = 2; id <= LESSONS; id += 7) {
+            if (removed.contains(id)) {
+                continue;
+            }
+            LessonVectorIndex.Entry entry = new LessonVectorIndex.Entry(id, 800 + random.nextInt(1401), randomVector());
+            exact.upsert(entry);
+            hnsw.upsert(entry);
+        }
+        assertEquals(exact.size(), hnsw.size());
+
+        for (int q = 0; q < 20; q++) {
+            for (LessonVectorIndex.Hit hit : hnsw.search(randomVector(), 0, 5_000, null,
+                    LessonVectorIndex.Ranking.SIMILARITY, TOP_K)) {
+                assertFalse(removed.contains(hit.lessonId()), "Removed lesson " + hit.lessonId() + " returned");
+            }
+        }
+        assertTrue(recall(Integer.MIN_VALUE, Integer.MAX_VALUE, null) >= 0.9);
+    }
+
+    private double recall(int minDifficulty, int maxDifficulty, RoaringBitmap allowed) {
+        double total = 0.0;
+        for (int q = 0; q < QUERIES; q++) {
+            total += recallOf(randomVector(), minDifficulty, maxDifficulty, allowed);
+        }
+        return total / QUERIES;
+    }
+
+    private double recallOf(float[] query, int minDifficulty, int maxDifficulty, RoaringBitmap allowed) {
+        List<Long> expected = ids(exact.search(query, minDifficulty, maxDifficulty, allowed,
+                LessonVectorIndex.Ranking.SIMILARITY, TOP_K));
+        if (expected.isEmpty()) {
+            return 1.0;
+        }
+        Set<Long> actual = new HashSet<>(ids(hnsw.search(query, minDifficulty, maxDifficulty, allowed,
+                LessonVectorIndex.Ranking.SIMILARITY, TOP_K)));
+        return expected.stream().filter(actual::contains).count() / (double) expected.size();
+    }
+
+    private float[] randomVector() {
+        float[] vector = new float[DIMENSIONS];
+        for (int i = 0; i < DIMENSIONS; i++) {
+            vector[i] = (float) (random.nextDouble() * 2 - 1);
+        }
+        return vector;
+    }
+
+    private static List<Long> ids(List<LessonVectorIndex.Hit> hits) {
+        return hits.stream().map(LessonVectorIndex.Hit::lessonId).toList();
+    }
+}
@@ -0,0 +1,111 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * So sánh {@link ExactLessonVectorIndex} và {@link HnswLessonVectorIndex}: độ trễ một lượt tìm top 10 trong cửa sổ
+ * độ khó (benchmark) và recall@10 của HNSW so với kết quả chính xác (in ra khi setup, trung bình trên 200 truy vấn).
+ * {@code window} = nửa độ rộng cửa sổ Elo quanh độ khó ngẫu nhiên trong [800, 2200]; 100000 nghĩa là không lọc.
+ * <p>
+ * Chạy: {@code mvn -q test-compile} rồi
+ * {@code java -cp target/test-classes:target/classes:$(mvn -q dependency:build-classpath -Dmdep.outputFile=/dev/stdout) org.openjdk.jmh.Main LessonVectorIndexBenchmark}
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Benchmark)
+public class LessonVectorIndexBenchmark {
+
+    private static final int TOP_K = 10;
+    private static final int QUERIES = 200;
+
+    @Param({"16", "64"})
+    private int dimensions;
+
+    @Param({"10000", "50000"})
+    private int lessons;
+
+    @Param({"300", "100000"})
+    private int window;
+
+    private ExactLessonVectorIndex exact;
+    private HnswLessonVectorIndex hnsw;
+    private float[][] queries;
+    private int[] centers;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        List<LessonVectorIndex.Entry> entries = new ArrayList<>(lessons);
+        for (int i = 0; i < lessons; i++) {
+            entries.add(new LessonVectorIndex.Entry(i + 1, 800 + random.nextInt(1401), randomVector(random)));
+        }
+        exact = new ExactLessonVectorIndex(dimensions);
+        exact.rebuild(entries);
+        long started = System.nanoTime();
+        hnsw = new HnswLessonVectorIndex(dimensions, 16, 200, 64);
+        hnsw.rebuild(entries);
+        long buildMillis = (System.nanoTime() - started) / 1_000_000;
+
+        queries = new float[QUERIES][];
+        centers = new int[QUERIES];
+        double recall = 0.0;
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = randomVector(random);
+            centers[q] = 800 + random.nextInt(1401);
+            Set<Long> expected = new HashSet<>();
+            exact.search(queries[q], centers[q] - window, centers[q] + window, null,
+                    LessonVectorIndex.Ranking.SIMILARITY, TOP_K).forEach(hit -> expected.add(hit.lessonId()));
+            long matched = hnsw.search(queries[q], centers[q] - window, centers[q] + window, null,
+                    LessonVectorIndex.Ranking.SIMILARITY, TOP_K).stream()
+                    .filter(hit -> expected.contains(hit.lessonId()))
+                    .count();
+            recall += expected.isEmpty() ? 1.0 : (double) matched / expected.size();
+        }
+        System.out.printf("%nHNSW dims=%d lessons=%d window=%d: build %d ms, recall@%d = %.4f%n",
+                dimensions, lessons, window, buildMillis, TOP_K, recall / QUERIES);
+    }
+
+    @Benchmark
+    public Object exactSearch() {
+        int q = next++ % QUERIES;
+        return exact.search(queries[q], centers[q] - window, centers[q] + window, null,
+                LessonVectorIndex.Ranking.SIMILARITY, TOP_K);
+    }
+
+    @Benchmark
+    public Object hnswSearch() {
+        int q = next++ % QUERIES;
+        return hnsw.search(queries[q], centers[q] - window, centers[q] + window, null,
+                LessonVectorIndex.Ranking.SIMILARITY, TOP_K);
+    }
+
+    private float[] randomVector(SplittableRandom random) {
+        float[] vector = new float[dimensions];
+        for (int i = 0; i < dimensions; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+}
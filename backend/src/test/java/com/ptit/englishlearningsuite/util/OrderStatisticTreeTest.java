@@ -0,0 +1,88 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hạng, phần tử theo vị trí và khoảng của {@link OrderStatisticTree}, đặc biệt sau khi xóa.
+ */
+class OrderStatisticTreeTest {
+
+    @Test
+    void rankAndRangeShiftAfterRemove() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.reverseOrder());
+        for (int value : new int[]{50, 10, 40, 20, 30}) {
+            assertTrue(tree.add(value));
+        }
+        assertFalse(tree.add(30));
+        assertEquals(List.of(50, 40, 30, 20, 10), tree.range(0, 5));
+        assertEquals(3, tree.indexOf(20));
+
+        assertTrue(tree.remove(40));
+        assertFalse(tree.remove(40));
+
+        assertEquals(4, tree.size());
+        assertEquals(-1, tree.indexOf(40));
+        assertEquals(1, tree.indexOf(30));
+        assertEquals(2, tree.indexOf(20));
+        assertEquals(20, tree.get(2));
+        assertEquals(List.of(30, 20), tree.range(1, 3));
+        // Khoảng vượt kích thước bị cắt
+        assertEquals(List.of(20, 10), tree.range(2, 10));
+        assertEquals(List.of(), tree.range(5, 8));
+        assertThrows(IndexOutOfBoundsException.class, () -> tree.get(4));
+    }
+
+    @Test
+    void removingFirstAndLastKeepsRanksConsistent() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        for (int value = 1; value <= 5; value++) {
+            tree.add(value);
+        }
+        tree.remove(1);
+        tree.remove(5);
+
+        assertEquals(List.of(2, 3, 4), tree.range(0, 10));
+        assertEquals(0, tree.indexOf(2));
+        assertEquals(2, tree.indexOf(4));
+        assertEquals(4, tree.get(2));
+    }
+
+    @Test
+    void matchesSortedReferenceUnderRandomAddsAndRemoves() {
+        OrderStatisticTree<Integer> tree = new OrderStatisticTree<>(Comparator.naturalOrder());
+        TreeSet<Integer> reference = new TreeSet<>();
+        Random random = new Random(3);
+        for (int step = 0; step < 20_000; step++) {
+            int value = random.nextInt(2_000);
+            if (random.nextInt(3) == 0) {
+                assertEquals(reference.remove(value), tree.remove(value));
+            } else {
+                assertEquals(reference.add(value), tree.add(value));
+            }
+
+            if (step % 500 == 0) {
+                List<Integer> sorted = new ArrayList<>(reference);
+                assertEquals(sorted.size(), tree.size());
+                assertEquals(sorted, tree.range(0, tree.size()));
+                for (int i = 0; i < sorted.size(); i++) {
+                    assertEquals(i, tree.indexOf(sorted.get(i)));
+                    assertEquals(sorted.get(i), tree.get(i));
+                }
+                int from = random.nextInt(sorted.size() + 1);
+                int to = from + random.nextInt(50);
+                assertEquals(sorted.subList(from, Math.min(to, sorted.size())), tree.range(from, to));
+            }
+        }
+    }
+}
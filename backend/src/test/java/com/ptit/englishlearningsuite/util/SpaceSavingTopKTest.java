@@ -0,0 +1,114 @@
+package com.ptit.englishlearningsuite.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Đếm chính xác khi chưa đầy, thay chỗ bộ đếm nhỏ nhất khi đầy, và cận sai số của {@link SpaceSavingTopK}.
+ */
+class SpaceSavingTopKTest {
+
+    @Test
+    void countsExactlyWhileBelowCapacity() {
+        SpaceSavingTopK<String> sketch = new SpaceSavingTopK<>(4);
+        sketch.offer("a", 3);
+        sketch.offer("b", 5);
+        sketch.offer("a", 4);
+        sketch.offer("c", 1);
+
+        assertEquals(List.of(
+                new SpaceSavingTopK.Entry<>("a", 7, 0),
+                new SpaceSavingTopK.Entry<>("b", 5, 0),
+                new SpaceSavingTopK.Entry<>("c", 1, 0)), sketch.entries());
+        assertEquals(List.of("a", "b"), items(sketch.top(2)));
+    }
+
+    @Test
+    void newItemReplacesSmallestCounterAndInheritsItAsError() {
+        SpaceSavingTopK<String> sketch = new SpaceSavingTopK<>(2);
+        sketch.offer("a", 5);
+        sketch.offer("b", 3);
+        sketch.offer("c", 1);
+
+        assertEquals(List.of(
+                new SpaceSavingTopK.Entry<>("a", 5, 0),
+                new SpaceSavingTopK.Entry<>("c", 4, 3)), sketch.entries());
+        assertEquals(1, sketch.top(2).get(1).guaranteedCount());
+    }
+
+    @Test
+    void ignoresNullItemsAndNonPositiveWeights() {
+        SpaceSavingTopK<String> sketch = new SpaceSavingTopK<>(2);
+        sketch.offer(null, 5);
+        sketch.offer("a", 0);
+        sketch.offer("a", -2);
+
+        assertTrue(sketch.isEmpty());
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSavingTopK<>(0));
+    }
+
+    @Test
+    void boundsTrueCountsAndKeepsHeavyHittersOnSkewedStream() {
+        int capacity = 50;
+        int events = 100_000;
+        SpaceSavingTopK<Integer> sketch = new SpaceSavingTopK<>(capacity);
+        Map<Integer, Long> exact = new HashMap<>();
+        Random random = new Random(11);
+        for (int i = 0; i < events; i++) {
+            // Phân bố lệch: vài phần tử rất phổ biến, đuôi dài 5000 phần tử
+            int item = random.nextDouble() < 0.5 ? random.nextInt(10) : random.nextInt(5000);
+            sketch.offer(item, 1);
+            exact.merge(item, 1L, Long::sum);
+        }
+
+        List<SpaceSavingTopK.Entry<Integer>> entries = sketch.entries();
+        assertEquals(capacity, entries.size());
+        for (SpaceSavingTopK.Entry<Integer> entry : entries) {
+            long actual = exact.getOrDefault(entry.item(), 0L);
+            assertTrue(entry.guaranteedCount() <= actual && actual <= entry.count(),
+                    "Item " + entry.item() + ": " + entry + " vs actual " + actual);
+            assertTrue(entry.error() <= events / capacity);
+        }
+        // Mọi phần tử xuất hiện hơn N/capacity lần chắc chắn còn trong sketch
+        for (Map.Entry<Integer, Long> heavy : exact.entrySet()) {
+            if (heavy.getValue() > events / capacity) {
+                assertTrue(items(entries).contains(heavy.getKey()), "Missing heavy hitter " + heavy.getKey());
+            }
+        }
+        for (int i = 1; i < entries.size(); i++) {
+            assertTrue(entries.get(i - 1).count() >= entries.get(i).count());
+        }
+    }
+
+    @Test
+    void mergeAddsCountersOfTheSameItem() {
+        SpaceSavingTopK<String> monday = new SpaceSavingTopK<>(3);
+        monday.offer("a", 4);
+        monday.offer("b", 2);
+        SpaceSavingTopK<String> tuesday = new SpaceSavingTopK<>(3);
+        tuesday.offer("b", 5);
+        tuesday.offer("c", 1);
+
+        SpaceSavingTopK<String> week = new SpaceSavingTopK<>(3);
+        week.merge(monday);
+        week.merge(tuesday);
+
+        assertEquals(List.of(
+                new SpaceSavingTopK.Entry<>("b", 7, 0),
+                new SpaceSavingTopK.Entry<>("a", 4, 0),
+                new SpaceSavingTopK.Entry<>("c", 1, 0)), week.entries());
+    }
+
+    private static <K> List<K> items(List<SpaceSavingTopK.Entry<K>> entries) {
+        return entries.stream().map(SpaceSavingTopK.Entry::item).collect(Collectors.toList());
+    }
+}